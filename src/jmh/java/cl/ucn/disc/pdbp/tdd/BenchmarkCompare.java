@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compara dos resultados de JMH en JSON ({@code -rf json}), ej: el baseline versionado
+ * (src/jmh/baseline.json) contra la ultima corrida (build/reports/jmh/results.json).
+ * Imprime por benchmark y parametros ambos puntajes y el cambio; marca como REGRESION los que
+ * empeoran mas que el umbral. Con {@code --fail} termina con error si hay alguna regresion.
+ *
+ * @author Gerald Lopez
+ */
+public final class BenchmarkCompare {
+
+  /**
+   * Umbral por defecto (porcentaje) para marcar una regresion.
+   */
+  private static final double DEFAULT_THRESHOLD = 10.0;
+
+  /**
+   * Constructor privado.
+   */
+  private BenchmarkCompare() {
+    //Nada aqui.
+  }
+
+  /**
+   * Main.
+   * @param args baseline.json results.json [umbral %] [--fail]
+   * @throws IOException si no se pueden leer los archivos.
+   */
+  public static void main(String[] args) throws IOException {
+
+    if (args.length < 2) {
+      System.err.println("Uso: BenchmarkCompare baseline.json results.json [umbral %] [--fail]");
+      System.exit(2);
+    }
+
+    double threshold = args.length > 2 && !args[2].startsWith("--")
+            ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+    boolean fail = args[args.length - 1].equals("--fail");
+
+    Map<String, JsonObject> baseline = leer(args[0]);
+    Map<String, JsonObject> actual = leer(args[1]);
+
+    System.out.printf(Locale.ROOT, "%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Actual",
+            "Cambio");
+    int regresiones = 0;
+    for (Map.Entry<String, JsonObject> entry : actual.entrySet()) {
+      JsonObject metrica = entry.getValue().getAsJsonObject("primaryMetric");
+      double score = metrica.get("score").getAsDouble();
+      String unidad = metrica.get("scoreUnit").getAsString();
+
+      JsonObject anterior = baseline.get(entry.getKey());
+      if (anterior == null) {
+        System.out.printf(Locale.ROOT, "%-70s %14s %14.3f %9s  %s%n", entry.getKey(), "-",
+                score, "nuevo", unidad);
+        continue;
+      }
+      double base = anterior.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+
+      // En throughput mas es mejor, en el resto (tiempos) menos es mejor.
+      boolean throughput = entry.getValue().get("mode").getAsString().equals("thrpt");
+      double cambio = 100.0 * (score - base) / base;
+      double empeora = throughput ? -cambio : cambio;
+      boolean regresion = empeora > threshold;
+      if (regresion) {
+        regresiones++;
+      }
+      System.out.printf(Locale.ROOT, "%-70s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), base,
+              score, cambio, unidad, regresion ? "  REGRESION" : "");
+    }
+
+    System.out.printf(Locale.ROOT, "%d benchmarks, %d regresiones (umbral %.1f%%).%n",
+            actual.size(), regresiones, threshold);
+    if (fail && regresiones > 0) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Lee un resultado de JMH indexado por benchmark y parametros.
+   * @param archivo JSON de JMH.
+   * @return benchmark[param=valor,..] -> resultado.
+   * @throws IOException en caso de error.
+   */
+  private static Map<String, JsonObject> leer(String archivo) throws IOException {
+
+    Map<String, JsonObject> resultados = new LinkedHashMap<>();
+    try (Reader reader = Files.newBufferedReader(Paths.get(archivo), StandardCharsets.UTF_8)) {
+      JsonArray array = JsonParser.parseReader(reader).getAsJsonArray();
+      for (JsonElement element : array) {
+        JsonObject resultado = element.getAsJsonObject();
+        resultados.put(llave(resultado), resultado);
+      }
+    }
+    return resultados;
+  }
+
+  /**
+   * Llave de un resultado: nombre corto del benchmark y sus parametros ordenados.
+   * @param resultado de JMH.
+   * @return la llave.
+   */
+  private static String llave(JsonObject resultado) {
+
+    String benchmark = resultado.get("benchmark").getAsString();
+    String nombre = benchmark.substring(benchmark.lastIndexOf('.',
+            benchmark.lastIndexOf('.') - 1) + 1);
+
+    if (!resultado.has("params")) {
+      return nombre;
+    }
+    Map<String, String> params = new TreeMap<>();
+    for (Map.Entry<String, JsonElement> param : resultado.getAsJsonObject("params").entrySet()) {
+      params.put(param.getKey(), param.getValue().getAsString());
+    }
+    return nombre + params.toString().replace('{', '[').replace('}', ']').replace(" ", "");
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.dao.DatasetGenerator;
+import cl.ucn.disc.pdbp.tdd.dao.QueryCounter;
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.Persona;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Datos de los benchmarks: el dataset de {@link DatasetGenerator} con semilla y fecha de
+ * referencia fijas, para que cada corrida mida exactamente los mismos datos.
+ *
+ * @author Gerald Lopez
+ */
+final class BenchmarkData {
+
+  /**
+   * Semilla.
+   */
+  static final long SEED = 42;
+
+  /**
+   * Fecha de referencia.
+   */
+  static final ZonedDateTime HOY = ZonedDateTime.of(2020, 7, 1, 0, 0, 0, 0,
+          ZoneId.of("America/Santiago"));
+
+  /**
+   * Constructor privado.
+   */
+  private BenchmarkData() {
+    //Nada aqui.
+  }
+
+  /**
+   * Generador del dataset.
+   * @param fichas del dataset.
+   * @return el generador.
+   */
+  static DatasetGenerator generator(int fichas) {
+    return new DatasetGenerator(SEED, fichas, HOY);
+  }
+
+  /**
+   * Genera en memoria todas las fichas del dataset, con su duenio.
+   * @param generator del dataset.
+   * @return las fichas, en orden de numero.
+   */
+  static List<Ficha> fichas(DatasetGenerator generator) {
+
+    List<Ficha> lista = new ArrayList<>((int) generator.getFichas());
+    for (long id = 1; id <= generator.getFichas(); id++) {
+      lista.add(generator.ficha(id));
+    }
+    return lista;
+  }
+
+  /**
+   * Genera una ficha del dataset con los ids asignados (el de la ficha y el de su duenio), como
+   * si se hubiera leido de la base de datos.
+   * @param generator del dataset.
+   * @param id de la ficha.
+   * @return la ficha.
+   */
+  static Ficha ficha(DatasetGenerator generator, long id) {
+
+    Ficha ficha = generator.ficha(id);
+    try {
+      Field fichaId = Ficha.class.getDeclaredField("id");
+      fichaId.setAccessible(true);
+      fichaId.set(ficha, id);
+      Field personaId = Persona.class.getDeclaredField("id");
+      personaId.setAccessible(true);
+      personaId.set(ficha.getDuenio(), generator.getDuenioId(id));
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException(ex);
+    }
+    return ficha;
+  }
+
+  /**
+   * Carga el dataset en una base de datos nueva y crea los contratos sobre ella.
+   * @param databaseUrl de la base de datos (vacia).
+   * @param generator del dataset.
+   * @return los contratos.
+   */
+  static Contratos cargar(String databaseUrl, DatasetGenerator generator) {
+
+    QueryCounter.install();
+    try {
+      ConnectionSource connectionSource = new JdbcConnectionSource(databaseUrl);
+      generator.load(connectionSource);
+      return new ContratosImpl(connectionSource);
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+}
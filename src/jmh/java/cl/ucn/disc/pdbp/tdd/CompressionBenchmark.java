@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Costo de CPU de {@link Compression} vs bytes ahorrados, sobre el JSON de GET /v1/fichas con
+ * 10k fichas (con su duenio). El tamanio comprimido de cada combinacion se imprime en el setup.
+ *
+ * @author Gerald Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+  /**
+   * Fichas del dataset.
+   */
+  @Param({"10000"})
+  private int fichas;
+
+  /**
+   * Codificacion.
+   */
+  @Param({Compression.GZIP, Compression.DEFLATE})
+  private String encoding;
+
+  /**
+   * Nivel de compresion.
+   */
+  @Param({"1", "4", "6", "9"})
+  private int level;
+
+  /**
+   * El JSON sin comprimir.
+   */
+  private byte[] json;
+
+  /**
+   * La compresion (sin umbral).
+   */
+  private Compression compression;
+
+  /**
+   * Serializa las fichas como la API (JSON compacto) e informa el tamanio comprimido.
+   * @throws IOException en caso de error.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+
+    List<Ficha> lista = BenchmarkData.fichas(BenchmarkData.generator(fichas));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JsonMapper(false).writeArray(out, lista.stream());
+    this.json = out.toByteArray();
+
+    this.compression = new Compression(0, level);
+    int comprimido = compression.compress(json, encoding).length;
+    System.out.printf("%n%s level %d: %d -> %d bytes (%.1f%%)%n", encoding, level, json.length,
+            comprimido, 100.0 * comprimido / json.length);
+  }
+
+  @Benchmark
+  public byte[] compress() {
+    return compression.compress(json, encoding);
+  }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.dao.DatasetGenerator;
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.search.FichaIndex;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FichaIndex#search(String, int)} con el dataset completo en el indice (sin base de
+ * datos), como GET /v1/fichas/find/{query}: a lo mas 50 fichas. Incluye consultas de 1 y 2
+ * caracteres (los prefijos cortos) y mide la distribucion de latencias (p99 en el reporte).
+ * Cada invocacion busca la siguiente de 64 consultas del mismo tipo.
+ *
+ * @author Gerald Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class FichaIndexBenchmark {
+
+  /**
+   * Consultas de cada tipo.
+   */
+  private static final int CONSULTAS = 64;
+
+  /**
+   * Fichas por busqueda.
+   */
+  private static final int LIMIT = 50;
+
+  /**
+   * Fichas del dataset.
+   */
+  @Param({"1000000"})
+  private int fichas;
+
+  /**
+   * El indice.
+   */
+  private FichaIndex index;
+
+  /**
+   * Primer caracter del nombre del paciente o del duenio.
+   */
+  private final String[] unCaracter = new String[CONSULTAS];
+
+  /**
+   * Dos primeros caracteres del nombre del paciente o del duenio.
+   */
+  private final String[] dosCaracteres = new String[CONSULTAS];
+
+  /**
+   * Tres caracteres del nombre del paciente, nombre + apellido del duenio.
+   */
+  private final String[] nombres = new String[CONSULTAS];
+
+  /**
+   * Seis digitos del rut del duenio.
+   */
+  private final String[] ruts = new String[CONSULTAS];
+
+  /**
+   * Numero de ficha.
+   */
+  private final String[] numeros = new String[CONSULTAS];
+
+  /**
+   * Siguiente consulta.
+   */
+  private int siguiente;
+
+  /**
+   * Indexa el dataset y elige las consultas.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+
+    DatasetGenerator generator = BenchmarkData.generator(fichas);
+    this.index = new FichaIndex();
+    for (long id = 1; id <= fichas; id++) {
+      this.index.addFicha(BenchmarkData.ficha(generator, id));
+    }
+
+    Random random = new Random(7);
+    for (int i = 0; i < CONSULTAS; i++) {
+      Ficha ficha = generator.ficha(1 + random.nextInt(fichas));
+      String nombre = i % 2 == 0 ? ficha.getNombre() : ficha.getDuenio().getNombre();
+      unCaracter[i] = nombre.substring(0, 1);
+      dosCaracteres[i] = nombre.substring(0, 2);
+      nombres[i] = i % 2 == 0 ? ficha.getNombre().substring(0, 3)
+              : ficha.getDuenio().getNombre() + " " + ficha.getDuenio().getApellido();
+      String rut = ficha.getDuenio().getRut();
+      ruts[i] = rut.substring(1, 7);
+      numeros[i] = String.valueOf(ficha.getNumero());
+    }
+  }
+
+  /**
+   * Siguiente consulta de la lista.
+   * @param consultas del tipo.
+   * @return la consulta.
+   */
+  private String siguiente(String[] consultas) {
+    siguiente = (siguiente + 1) % CONSULTAS;
+    return consultas[siguiente];
+  }
+
+  @Benchmark
+  public List<Long> buscarUnCaracter() {
+    return index.search(siguiente(unCaracter), LIMIT);
+  }
+
+  @Benchmark
+  public List<Long> buscarDosCaracteres() {
+    return index.search(siguiente(dosCaracteres), LIMIT);
+  }
+
+  @Benchmark
+  public List<Long> buscarNombre() {
+    return index.search(siguiente(nombres), LIMIT);
+  }
+
+  @Benchmark
+  public List<Long> buscarRut() {
+    return index.search(siguiente(ruts), LIMIT);
+  }
+
+  @Benchmark
+  public List<Long> buscarNumero() {
+    return index.search(siguiente(numeros), LIMIT);
+  }
+
+}
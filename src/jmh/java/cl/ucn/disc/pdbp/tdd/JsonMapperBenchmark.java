@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.dao.FetchProfile;
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serializacion JSON ({@link JsonMapper}) de grafos de {@link Ficha} como los entrega la API con
+ * {@code ?include=controles,examenes}: cada ficha con su duenio, sus controles (con veterinario)
+ * y los examenes de cada control, leidos desde H2 en memoria.
+ *
+ * @author Gerald Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMapperBenchmark {
+
+  /**
+   * Fichas del grafo.
+   */
+  @Param({"100", "1000"})
+  private int fichas;
+
+  /**
+   * El mapper de la API (compacto).
+   */
+  private final JsonMapper mapper = new JsonMapper(false);
+
+  /**
+   * Las fichas con sus colecciones cargadas.
+   */
+  private List<Ficha> grafo;
+
+  /**
+   * El JSON del grafo.
+   */
+  private String json;
+
+  /**
+   * Buffer reutilizado por la escritura.
+   */
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+
+  /**
+   * Carga el dataset en H2 y carga el grafo completo.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+
+    Contratos contratos = BenchmarkData.cargar("jdbc:h2:mem:json_" + fichas,
+            BenchmarkData.generator(fichas));
+    this.grafo = contratos.getFichas(null, fichas, FetchProfile.EAGER);
+    this.json = mapper.toJson(grafo);
+    System.out.printf("%n%d fichas: %d bytes%n", grafo.size(),
+            json.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  @Benchmark
+  public int escribir() throws IOException {
+    out.reset();
+    mapper.write(out, grafo);
+    return out.size();
+  }
+
+  @Benchmark
+  public Ficha[] leer() {
+    return mapper.fromJson(json, Ficha[].class);
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias (microsegundos) al estilo HdrHistogram: 64 sub-buckets lineales por
+ * cada potencia de 2, asi el error relativo de un percentil es menor a 1.6% en todo el rango
+ * (1 us .. ~1 hora). Registrar no bloquea ni crea objetos, puede hacerse desde varios hilos.
+ *
+ * @author Gerald Lopez
+ */
+final class LatencyHistogram {
+
+  /**
+   * Bits de los sub-buckets.
+   */
+  private static final int SUB_BITS = 6;
+
+  /**
+   * Sub-buckets por potencia de 2.
+   */
+  private static final int SUB = 1 << SUB_BITS;
+
+  /**
+   * Valores exactos (sin agrupar): 0 .. 2 * SUB - 1.
+   */
+  private static final int LINEAL = 2 * SUB;
+
+  /**
+   * Latencia maxima registrable (sobre este valor se registra este valor): ~1 hora.
+   */
+  static final long MAX = (1L << 32) - 1;
+
+  /**
+   * Cantidad de buckets.
+   */
+  private static final int BUCKETS = indice(MAX) + 1;
+
+  /**
+   * Cuentas por bucket.
+   */
+  private final AtomicLongArray cuentas = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Total de valores.
+   */
+  private final LongAdder total = new LongAdder();
+
+  /**
+   * Suma de los valores.
+   */
+  private final LongAdder suma = new LongAdder();
+
+  /**
+   * Maximo registrado.
+   */
+  private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Registra una latencia.
+   * @param micros a registrar.
+   */
+  void record(long micros) {
+    long valor = Math.min(Math.max(micros, 0), MAX);
+    cuentas.incrementAndGet(indice(valor));
+    total.increment();
+    suma.add(valor);
+    maximo.accumulate(valor);
+  }
+
+  /**
+   * Suma los valores de otro histograma.
+   * @param otro histograma.
+   */
+  void add(LatencyHistogram otro) {
+    for (int i = 0; i < BUCKETS; i++) {
+      cuentas.addAndGet(i, otro.cuentas.get(i));
+    }
+    total.add(otro.total.sum());
+    suma.add(otro.suma.sum());
+    maximo.accumulate(otro.getMax());
+  }
+
+  /**
+   * Obtiene la cantidad de valores registrados.
+   * @return la cantidad.
+   */
+  long getCount() {
+    return total.sum();
+  }
+
+  /**
+   * Obtiene el promedio.
+   * @return el promedio (us), 0 si no hay valores.
+   */
+  double getMean() {
+    long n = total.sum();
+    return n == 0 ? 0 : (double) suma.sum() / n;
+  }
+
+  /**
+   * Obtiene el maximo.
+   * @return el maximo (us).
+   */
+  long getMax() {
+    return maximo.get();
+  }
+
+  /**
+   * Obtiene un percentil: el limite superior del bucket que lo contiene.
+   * @param percentil entre 0 y 100.
+   * @return la latencia (us), 0 si no hay valores.
+   */
+  long percentile(double percentil) {
+
+    long n = total.sum();
+    if (n == 0) {
+      return 0;
+    }
+
+    long objetivo = Math.max(1, (long) Math.ceil(percentil / 100.0 * n));
+    long acumulado = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      acumulado += cuentas.get(i);
+      if (acumulado >= objetivo) {
+        return Math.min(superior(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Bucket de un valor.
+   * @param valor entre 0 y {@link #MAX}.
+   * @return el indice.
+   */
+  private static int indice(long valor) {
+
+    if (valor < LINEAL) {
+      return (int) valor;
+    }
+    // valor >>> shift queda entre SUB y 2 * SUB - 1.
+    int shift = 63 - Long.numberOfLeadingZeros(valor) - SUB_BITS;
+    return LINEAL + (shift - 1) * SUB + (int) ((valor >>> shift) - SUB);
+  }
+
+  /**
+   * Mayor valor de un bucket.
+   * @param indice del bucket.
+   * @return el valor.
+   */
+  private static long superior(int indice) {
+
+    if (indice < LINEAL) {
+      return indice;
+    }
+    int shift = (indice - LINEAL) / SUB + 1;
+    long sub = (indice - LINEAL) % SUB + SUB;
+    return ((sub + 1) << shift) - 1;
+  }
+
+}
@@ -0,0 +1,496 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.dao.DatasetGenerator;
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.Persona;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import io.javalin.Javalin;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prueba de carga HTTP de la API, en el mismo proceso: carga un dataset sintetico
+ * ({@link DatasetGenerator}), levanta las rutas de {@link Application} en un puerto efimero y
+ * ejecuta una mezcla de peticiones (buscar, listar, crear ficha, crear control).
+ *
+ * <p>Con {@code tasa=N} la carga es de lazo abierto: se programa una peticion cada 1/N segundos
+ * sin esperar las respuestas y la latencia se mide desde el instante programado (incluye la
+ * espera en cola, sin omision coordinada). Con {@code tasa=0} cada hilo envia una peticion tras
+ * otra (lazo cerrado). Al final imprime por ruta el throughput y los percentiles de latencia.
+ *
+ * <p>Argumentos (clave=valor): url, fichas, seed, hilos, tasa, warmup, duracion (segundos),
+ * mezcla (ej: buscar:50,listar:30,ficha:10,control:10) y cola ({@code false} escribe sin la
+ * {@link cl.ucn.disc.pdbp.tdd.dao.WriteQueue}, para comparar).
+ *
+ * @author Gerald Lopez
+ */
+public final class LoadTest {
+
+  /**
+   * Argumentos por defecto.
+   */
+  private static final String[][] DEFAULTS = {{"url", "jdbc:h2:mem:fivet_load"},
+      {"fichas", String.valueOf(DatasetGenerator.SMALL)}, {"seed", "42"}, {"hilos", "8"},
+      {"tasa", "0"}, {"warmup", "5"}, {"duracion", "30"},
+      {"mezcla", "buscar:50,listar:30,ficha:10,control:10"}, {"cola", "true"}};
+
+  /**
+   * Tamanio de pagina al listar.
+   */
+  private static final int PAGINA = 50;
+
+  /**
+   * Formato de las fechas enviadas.
+   */
+  private static final DateTimeFormatter FECHA = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+  /**
+   * Las rutas de la mezcla.
+   */
+  private enum Ruta {
+
+    BUSCAR("GET /v1/fichas/find/:query"),
+    LISTAR("GET /v1/fichas?limit=" + PAGINA + "&after="),
+    FICHA("POST /v1/fichas"),
+    CONTROL("POST /v1/fichas/:numeroFicha/controles");
+
+    /**
+     * Nombre en el reporte.
+     */
+    private final String nombre;
+
+    /**
+     * Constructor.
+     * @param nombre en el reporte.
+     */
+    Ruta(String nombre) {
+      this.nombre = nombre;
+    }
+  }
+
+  /**
+   * Generador del dataset.
+   */
+  private final DatasetGenerator generator;
+
+  /**
+   * Url base del servidor.
+   */
+  private final String base;
+
+  /**
+   * Siguiente numero de ficha a crear.
+   */
+  private final AtomicLong numero;
+
+  /**
+   * Mezcla: peso acumulado de cada ruta.
+   */
+  private final Map<Ruta, Integer> mezcla;
+
+  /**
+   * Suma de los pesos.
+   */
+  private final int pesos;
+
+  /**
+   * Latencias por ruta.
+   */
+  private final Map<Ruta, LatencyHistogram> latencias = new EnumMap<>(Ruta.class);
+
+  /**
+   * Errores (status >= 400 o de red) por ruta.
+   */
+  private final Map<Ruta, LongAdder> errores = new EnumMap<>(Ruta.class);
+
+  /**
+   * Bytes recibidos por ruta.
+   */
+  private final Map<Ruta, LongAdder> bytes = new EnumMap<>(Ruta.class);
+
+  /**
+   * Instante (nanoTime) desde el que se registran las peticiones (fin del warmup).
+   */
+  private volatile long medicion;
+
+  /**
+   * Constructor.
+   * @param generator del dataset cargado.
+   * @param base url del servidor.
+   * @param ultimoNumero mayor numero de ficha existente.
+   * @param mezcla ruta:peso separados por coma.
+   */
+  private LoadTest(DatasetGenerator generator, String base, long ultimoNumero, String mezcla) {
+
+    this.generator = generator;
+    this.base = base;
+    this.numero = new AtomicLong(ultimoNumero);
+    this.mezcla = new LinkedHashMap<>();
+
+    int acumulado = 0;
+    for (String parte : mezcla.split(",")) {
+      String[] rutaPeso = parte.split(":");
+      int peso = Integer.parseInt(rutaPeso[1]);
+      if (peso <= 0) {
+        continue;
+      }
+      acumulado += peso;
+      this.mezcla.put(Ruta.valueOf(rutaPeso[0].trim().toUpperCase(Locale.ROOT)), acumulado);
+    }
+    if (acumulado == 0) {
+      throw new IllegalArgumentException("Mezcla sin rutas: " + mezcla);
+    }
+    this.pesos = acumulado;
+
+    for (Ruta ruta : this.mezcla.keySet()) {
+      latencias.put(ruta, new LatencyHistogram());
+      errores.put(ruta, new LongAdder());
+      bytes.put(ruta, new LongAdder());
+    }
+  }
+
+  /**
+   * Main.
+   * @param args clave=valor (ver {@link #DEFAULTS}).
+   * @throws Exception en caso de error.
+   */
+  public static void main(String[] args) throws Exception {
+
+    Map<String, String> opciones = new LinkedHashMap<>();
+    for (String[] opcion : DEFAULTS) {
+      opciones.put(opcion[0], opcion[1]);
+    }
+    for (String arg : args) {
+      int igual = arg.indexOf('=');
+      if (igual < 0 || !opciones.containsKey(arg.substring(0, igual))) {
+        System.err.println("Argumento invalido: " + arg + ", opciones: " + opciones.keySet());
+        System.exit(2);
+      }
+      opciones.put(arg.substring(0, igual), arg.substring(igual + 1));
+    }
+
+    String url = opciones.get("url");
+    DatasetGenerator generator = new DatasetGenerator(Long.parseLong(opciones.get("seed")),
+            Long.parseLong(opciones.get("fichas")));
+
+    // Se mantiene abierta durante la prueba (H2 en memoria se borra al cerrar la ultima).
+    try (ConnectionSource datos = new JdbcConnectionSource(url)) {
+
+      try {
+        generator.load(datos);
+      } catch (IllegalStateException ex) {
+        System.out.println("Base de datos con datos, se asume generada con los mismos "
+                + "argumentos: " + ex.getMessage());
+      }
+      long ultimoNumero = DaoManager.createDao(datos, Ficha.class)
+              .queryRawValue("SELECT MAX(numero) FROM Ficha");
+
+      System.setProperty(ApiRestEndpoints.DATABASE_PROPERTY, url);
+      System.setProperty(ApiRestEndpoints.WRITE_QUEUE_PROPERTY, opciones.get("cola"));
+      Javalin javalin = Application.create().start(0);
+      try {
+        LoadTest loadTest = new LoadTest(generator, "http://localhost:" + javalin.port(),
+                ultimoNumero, opciones.get("mezcla"));
+        System.out.println("Carga: " + opciones);
+        loadTest.ejecutar(Integer.parseInt(opciones.get("hilos")),
+                Double.parseDouble(opciones.get("tasa")), Integer.parseInt(opciones.get("warmup")),
+                Integer.parseInt(opciones.get("duracion")));
+      } finally {
+        javalin.stop();
+      }
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+
+    // Termina los hilos de la aplicacion (pool de conexiones, escritor).
+    System.exit(0);
+  }
+
+  /**
+   * Ejecuta la carga e imprime el reporte.
+   * @param hilos que envian las peticiones.
+   * @param tasa peticiones por segundo (lazo abierto), 0 para lazo cerrado.
+   * @param warmup segundos sin registrar.
+   * @param duracion segundos registrados.
+   * @throws InterruptedException si se interrumpe la espera.
+   */
+  private void ejecutar(int hilos, double tasa, int warmup, int duracion)
+          throws InterruptedException {
+
+    ExecutorService workers = Executors.newFixedThreadPool(hilos);
+    long inicio = System.nanoTime();
+    this.medicion = inicio + TimeUnit.SECONDS.toNanos(warmup);
+    long fin = this.medicion + TimeUnit.SECONDS.toNanos(duracion);
+
+    if (tasa > 0) {
+      // Lazo abierto: las peticiones se programan a tasa fija, sin esperar las respuestas.
+      double intervalo = TimeUnit.SECONDS.toNanos(1) / tasa;
+      for (long i = 0; ; i++) {
+        long programado = inicio + (long) (i * intervalo);
+        if (programado >= fin) {
+          break;
+        }
+        long espera = programado - System.nanoTime();
+        if (espera > 0) {
+          LockSupport.parkNanos(espera);
+        }
+        Ruta ruta = elegir();
+        workers.execute(() -> medir(ruta, programado));
+      }
+    } else {
+      for (int h = 0; h < hilos; h++) {
+        workers.execute(() -> {
+          while (System.nanoTime() < fin) {
+            medir(elegir(), System.nanoTime());
+          }
+        });
+      }
+    }
+
+    workers.shutdown();
+    if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+      workers.shutdownNow();
+    }
+
+    reportar(hilos, tasa, duracion, (System.nanoTime() - inicio) / 1e9);
+  }
+
+  /**
+   * Elige una ruta segun los pesos de la mezcla.
+   * @return la ruta.
+   */
+  private Ruta elegir() {
+    int valor = ThreadLocalRandom.current().nextInt(this.pesos);
+    for (Map.Entry<Ruta, Integer> entry : this.mezcla.entrySet()) {
+      if (valor < entry.getValue()) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("Mezcla invalida");
+  }
+
+  /**
+   * Envia una peticion y registra su latencia desde el instante programado.
+   * @param ruta a pedir.
+   * @param programado instante (nanoTime) programado de la peticion.
+   */
+  private void medir(Ruta ruta, long programado) {
+
+    long leidos = 0;
+    boolean error;
+    try {
+      leidos = pedir(ruta);
+      error = leidos < 0;
+    } catch (IOException | RuntimeException ex) {
+      error = true;
+    }
+
+    if (programado < this.medicion) {
+      return;
+    }
+    latencias.get(ruta).record((System.nanoTime() - programado) / 1000);
+    if (error) {
+      errores.get(ruta).increment();
+    } else {
+      bytes.get(ruta).add(leidos);
+    }
+  }
+
+  /**
+   * Envia una peticion de la ruta con datos al azar del dataset.
+   * @param ruta a pedir.
+   * @return los bytes de la respuesta, -1 si el status es de error.
+   * @throws IOException en caso de error de red.
+   */
+  private long pedir(Ruta ruta) throws IOException {
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long fichas = generator.getFichas();
+    long id = 1 + random.nextLong(fichas);
+
+    switch (ruta) {
+
+      case BUSCAR: {
+        // Nombre del paciente, nombre completo del duenio o su rut.
+        Ficha ficha = generator.ficha(id);
+        Persona duenio = ficha.getDuenio();
+        int tipo = random.nextInt(3);
+        String query = tipo == 0 ? ficha.getNombre() : tipo == 1
+                ? duenio.getNombre() + " " + duenio.getApellido() : duenio.getRut();
+        return http("GET", "/v1/fichas/find/" + URLEncoder.encode(query, "UTF-8")
+                .replace("+", "%20"), null);
+      }
+
+      case LISTAR:
+        return http("GET", "/v1/fichas?limit=" + PAGINA + "&after="
+                + random.nextLong(Math.max(1, fichas - PAGINA)), null);
+
+      case FICHA: {
+        Ficha ficha = generator.ficha(id);
+        return http("POST", "/v1/fichas", form("numeroFicha", numero.incrementAndGet(),
+                "nombrePaciente", ficha.getNombre(), "especie", ficha.getEspecie(),
+                "raza", ficha.getRaza(), "color", ficha.getColor(),
+                "fechaNacimiento", FECHA.format(ficha.getFechaNacimiento()),
+                "sexo", ficha.getSexo(), "tipo", ficha.getTipo(),
+                "duenio", generator.getDuenioId(id)));
+      }
+
+      case CONTROL:
+        return http("POST", "/v1/fichas/" + id + "/controles", form(
+                "proximoControl", FECHA.format(ZonedDateTime.now().plusWeeks(2)),
+                "temperatura", 38.5, "peso", 12.3, "altura", 45.0, "diagnostico", "Sano",
+                "veterinario", 1 + random.nextLong(generator.getVeterinarios())));
+
+      default:
+        throw new IllegalArgumentException("Ruta desconocida: " + ruta);
+    }
+  }
+
+  /**
+   * Cuerpo application/x-www-form-urlencoded.
+   * @param pares nombre, valor, nombre, valor, ..
+   * @return el cuerpo.
+   * @throws IOException en caso de error.
+   */
+  private static String form(Object... pares) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < pares.length; i += 2) {
+      if (i > 0) {
+        sb.append('&');
+      }
+      sb.append(pares[i]).append('=')
+              .append(URLEncoder.encode(String.valueOf(pares[i + 1]), "UTF-8"));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Envia una peticion HTTP (con keep-alive) y lee la respuesta completa.
+   * @param metodo GET o POST.
+   * @param path de la peticion.
+   * @param form cuerpo del POST, null para GET.
+   * @return los bytes de la respuesta, -1 si el status es de error.
+   * @throws IOException en caso de error de red.
+   */
+  private long http(String metodo, String path, String form) throws IOException {
+
+    HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+    connection.setRequestMethod(metodo);
+    connection.setConnectTimeout(5_000);
+    connection.setReadTimeout(60_000);
+    connection.setRequestProperty("Accept-Encoding", Compression.GZIP);
+
+    if (form != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(form.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    int status = connection.getResponseCode();
+    InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    long leidos = 0;
+    if (in != null) {
+      // Se lee todo para que la conexion vuelva al pool de keep-alive.
+      try (InputStream body = in) {
+        byte[] buffer = new byte[8192];
+        for (int n; (n = body.read(buffer)) > 0; ) {
+          leidos += n;
+        }
+      }
+    }
+    return status >= 400 ? -1 : leidos;
+  }
+
+  /**
+   * Imprime el throughput y los percentiles de latencia por ruta.
+   * @param hilos usados.
+   * @param tasa programada.
+   * @param duracion registrada (segundos).
+   * @param total segundos de la prueba.
+   */
+  private void reportar(int hilos, double tasa, int duracion, double total) {
+
+    System.out.printf(Locale.ROOT, "%n%s, %d hilos, %.1f s (%d s de warmup)%n",
+            tasa > 0 ? String.format(Locale.ROOT, "Lazo abierto a %.1f req/s", tasa)
+                    : "Lazo cerrado", hilos, total, Math.round(total - duracion));
+    System.out.printf(Locale.ROOT, "%-45s %8s %9s %7s %9s %8s %8s %8s %8s %8s %8s%n", "Ruta",
+            "Total", "req/s", "Errores", "Bytes/req", "Prom", "p50", "p90", "p99", "p99.9",
+            "Max");
+
+    LatencyHistogram todas = new LatencyHistogram();
+    long erroresTotal = 0;
+    for (Ruta ruta : this.mezcla.keySet()) {
+      LatencyHistogram latencia = latencias.get(ruta);
+      long n = latencia.getCount();
+      long fallidas = errores.get(ruta).sum();
+      erroresTotal += fallidas;
+      System.out.printf(Locale.ROOT, "%-45s %8d %9.1f %7d %9d %s%n", ruta.nombre, n,
+              (double) n / duracion, fallidas,
+              n > fallidas ? bytes.get(ruta).sum() / (n - fallidas) : 0, percentiles(latencia));
+      todas.add(latencia);
+    }
+    System.out.printf(Locale.ROOT, "%-45s %8d %9.1f %7d %9s %s%n", "Total", todas.getCount(),
+            (double) todas.getCount() / duracion, erroresTotal, "", percentiles(todas));
+    System.out.println("Latencias en ms, desde el instante programado de cada peticion.");
+  }
+
+  /**
+   * Promedio, percentiles y maximo en ms.
+   * @param latencia histograma.
+   * @return las columnas.
+   */
+  private static String percentiles(LatencyHistogram latencia) {
+    return String.format(Locale.ROOT, "%8.2f %8.2f %8.2f %8.2f %8.2f %8.2f",
+            latencia.getMean() / 1000, latencia.percentile(50) / 1000.0,
+            latencia.percentile(90) / 1000.0, latencia.percentile(99) / 1000.0,
+            latencia.percentile(99.9) / 1000.0, latencia.getMax() / 1000.0);
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.dao.DatasetGenerator;
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.search.SuggestIndex;
+import cl.ucn.disc.pdbp.tdd.search.Sugerencia;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SuggestIndex#suggest(String, int)} con el dataset completo en el indice (nombres de
+ * pacientes, nombres de personas y ruts), como GET /v1/fichas/suggest: a lo mas 10 sugerencias.
+ * Mide la distribucion de latencias (p99 en el reporte), el objetivo es menos de 1 ms.
+ * Cada invocacion busca el siguiente de 64 prefijos del mismo tipo.
+ *
+ * @author Gerald Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SuggestIndexBenchmark {
+
+  /**
+   * Prefijos de cada tipo.
+   */
+  private static final int CONSULTAS = 64;
+
+  /**
+   * Sugerencias por consulta.
+   */
+  private static final int LIMIT = 10;
+
+  /**
+   * Fichas del dataset.
+   */
+  @Param({"1000000"})
+  private int fichas;
+
+  /**
+   * El indice.
+   */
+  private SuggestIndex index;
+
+  /**
+   * Primer caracter del nombre del paciente o del duenio.
+   */
+  private final String[] unCaracter = new String[CONSULTAS];
+
+  /**
+   * Tres caracteres del nombre del paciente o del apellido del duenio.
+   */
+  private final String[] nombres = new String[CONSULTAS];
+
+  /**
+   * Cinco digitos del rut del duenio.
+   */
+  private final String[] ruts = new String[CONSULTAS];
+
+  /**
+   * Siguiente consulta.
+   */
+  private int siguiente;
+
+  /**
+   * Indexa el dataset y elige los prefijos.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+
+    DatasetGenerator generator = BenchmarkData.generator(fichas);
+    this.index = new SuggestIndex();
+    for (long id = 1; id <= fichas; id++) {
+      Ficha ficha = generator.ficha(id);
+      this.index.addFicha(ficha);
+      // Dos fichas por duenio: cada persona se indexa una vez.
+      if (id == 1 || generator.getDuenioId(id) != generator.getDuenioId(id - 1)) {
+        this.index.addPersona(ficha.getDuenio());
+      }
+    }
+
+    Random random = new Random(7);
+    for (int i = 0; i < CONSULTAS; i++) {
+      Ficha ficha = generator.ficha(1 + random.nextInt(fichas));
+      String nombre = i % 2 == 0 ? ficha.getNombre() : ficha.getDuenio().getApellido();
+      unCaracter[i] = nombre.substring(0, 1);
+      nombres[i] = nombre.substring(0, 3);
+      ruts[i] = ficha.getDuenio().getRut().substring(0, 5);
+    }
+  }
+
+  /**
+   * Siguiente consulta de la lista.
+   * @param consultas del tipo.
+   * @return la consulta.
+   */
+  private String siguiente(String[] consultas) {
+    siguiente = (siguiente + 1) % CONSULTAS;
+    return consultas[siguiente];
+  }
+
+  @Benchmark
+  public List<Sugerencia> sugerirUnCaracter() {
+    return index.suggest(siguiente(unCaracter), LIMIT);
+  }
+
+  @Benchmark
+  public List<Sugerencia> sugerirNombre() {
+    return index.suggest(siguiente(nombres), LIMIT);
+  }
+
+  @Benchmark
+  public List<Sugerencia> sugerirRut() {
+    return index.suggest(siguiente(ruts), LIMIT);
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parser / formatter de {@link ZonedDateTimeType} vs {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}
+ * sobre las columnas de fecha de filas de Control (fecha, proximoControl) y Examen (fecha).
+ *
+ * @author Gerald Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZonedDateTimeParseBenchmark {
+
+  /**
+   * The formatter.
+   */
+  private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+  /**
+   * Filas de Control y de Examen.
+   */
+  @Param({"1000"})
+  private int filas;
+
+  /**
+   * Las fechas de las filas, como se leen de la base de datos.
+   */
+  private String[] columnas;
+
+  /**
+   * Las mismas fechas.
+   */
+  private ZonedDateTime[] fechas;
+
+  /**
+   * Crea las fechas como las escribe la aplicacion: ZonedDateTime.now() (microsegundos) en la
+   * zona de Chile, el proximo control semanas despues.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+
+    Random random = new Random(42);
+    ZonedDateTime base = ZonedDateTime.of(2020, 1, 1, 9, 0, 0, 0, ZoneId.of("America/Santiago"));
+
+    // Control: fecha + proximoControl, Examen: fecha.
+    this.fechas = new ZonedDateTime[3 * filas];
+    for (int i = 0; i < filas; i++) {
+      ZonedDateTime control = base.plusMinutes(random.nextInt(365 * 24 * 60))
+              .plusNanos(random.nextInt(1_000_000) * 1000L);
+      fechas[3 * i] = control;
+      fechas[3 * i + 1] = control.plusWeeks(1 + random.nextInt(4));
+      fechas[3 * i + 2] = control.plusDays(random.nextInt(7)).plusNanos(random.nextInt(1000) * 1000L);
+    }
+
+    this.columnas = new String[fechas.length];
+    for (int i = 0; i < fechas.length; i++) {
+      columnas[i] = FORMATTER.format(fechas[i]);
+    }
+  }
+
+  @Benchmark
+  public void parseFormatter(Blackhole blackhole) {
+    for (String columna : columnas) {
+      blackhole.consume(ZonedDateTime.parse(columna, FORMATTER));
+    }
+  }
+
+  @Benchmark
+  public void parseFastPath(Blackhole blackhole) {
+    for (String columna : columnas) {
+      blackhole.consume(ZonedDateTimeType.parse(columna));
+    }
+  }
+
+  @Benchmark
+  public void formatFormatter(Blackhole blackhole) {
+    for (ZonedDateTime fecha : fechas) {
+      blackhole.consume(FORMATTER.format(fecha));
+    }
+  }
+
+  @Benchmark
+  public void formatFastPath(Blackhole blackhole) {
+    for (ZonedDateTime fecha : fechas) {
+      blackhole.consume(ZonedDateTimeType.format(fecha));
+    }
+  }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+import java.io.File;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link ZonedDateTimeType} (texto ISO-8601) vs {@link ZonedDateTimeMillisType} (BIGINT):
+ * costo de convertir una columna y consultas por rango de fechas sobre SQLite.
+ *
+ * @author Gerald Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZonedDateTimeTypeBenchmark {
+
+  /**
+   * Fechas a convertir por invocacion.
+   */
+  private static final int FECHAS = 1024;
+
+  /**
+   * Filas en cada tabla.
+   */
+  @Param({"10000"})
+  private int filas;
+
+  /**
+   * Dias del rango consultado.
+   */
+  @Param({"7"})
+  private int dias;
+
+  /**
+   * Las fechas como texto.
+   */
+  private String[] isos;
+
+  /**
+   * Las fechas como epoch millis + offset.
+   */
+  private Long[] millis;
+
+  /**
+   * Las fechas.
+   */
+  private ZonedDateTime[] fechas;
+
+  /**
+   * Archivo SQLite temporal.
+   */
+  private File file;
+
+  /**
+   * Conexion.
+   */
+  private ConnectionSource connectionSource;
+
+  /**
+   * Tabla con fechas como texto.
+   */
+  private Dao<FechaIso, Long> daoIso;
+
+  /**
+   * Tabla con fechas como BIGINT.
+   */
+  private Dao<FechaMillis, Long> daoMillis;
+
+  /**
+   * Inicio del rango.
+   */
+  private ZonedDateTime desde;
+
+  /**
+   * Fin del rango.
+   */
+  private ZonedDateTime hasta;
+
+  /**
+   * Fecha al azar de 2020 con offsets de Chile (-03:00 / -04:00) o UTC.
+   * @param random generador.
+   * @return la fecha.
+   */
+  private static ZonedDateTime fecha(Random random) {
+    ZoneOffset[] offsets = {ZoneOffset.ofHours(-3), ZoneOffset.ofHours(-4), ZoneOffset.UTC};
+    long segundos = 1_577_836_800L + random.nextInt(365 * 24 * 60 * 60);
+    return ZonedDateTime.ofInstant(Instant.ofEpochSecond(segundos, random.nextInt(1000) * 1_000_000L),
+            offsets[random.nextInt(offsets.length)]);
+  }
+
+  /**
+   * Crea las fechas y llena ambas tablas con las mismas filas.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+
+    Random random = new Random(42);
+
+    this.fechas = new ZonedDateTime[FECHAS];
+    this.isos = new String[FECHAS];
+    this.millis = new Long[FECHAS];
+    for (int i = 0; i < FECHAS; i++) {
+      this.fechas[i] = fecha(random);
+      this.isos[i] = (String) ZonedDateTimeType.getSingleton().javaToSqlArg(null, fechas[i]);
+      this.millis[i] = (Long) ZonedDateTimeMillisType.getSingleton().javaToSqlArg(null, fechas[i]);
+    }
+
+    this.file = File.createTempFile("fivet-bench", ".db");
+    this.connectionSource = new JdbcConnectionSource("jdbc:sqlite:" + file.getAbsolutePath());
+    TableUtils.createTable(connectionSource, FechaIso.class);
+    TableUtils.createTable(connectionSource, FechaMillis.class);
+    this.daoIso = DaoManager.createDao(connectionSource, FechaIso.class);
+    this.daoMillis = DaoManager.createDao(connectionSource, FechaMillis.class);
+
+    // Las mismas fechas en ambas tablas.
+    TransactionManager.callInTransaction(connectionSource, () -> {
+      for (int i = 0; i < filas; i++) {
+        ZonedDateTime fecha = fecha(random);
+        daoIso.create(new FechaIso(fecha));
+        daoMillis.create(new FechaMillis(fecha));
+      }
+      return null;
+    });
+
+    this.desde = ZonedDateTime.of(2020, 6, 1, 0, 0, 0, 0, ZoneOffset.ofHours(-4));
+    this.hasta = desde.plusDays(dias);
+  }
+
+  /**
+   * Cierra la conexion y borra el archivo.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    this.connectionSource.close();
+    this.file.delete();
+  }
+
+  @Benchmark
+  public void parseIso(Blackhole blackhole) {
+    for (String iso : isos) {
+      blackhole.consume(ZonedDateTimeType.getSingleton().sqlArgToJava(null, iso, 0));
+    }
+  }
+
+  @Benchmark
+  public void parseMillis(Blackhole blackhole) {
+    for (Long valor : millis) {
+      blackhole.consume(ZonedDateTimeMillisType.getSingleton().sqlArgToJava(null, valor, 0));
+    }
+  }
+
+  @Benchmark
+  public void formatIso(Blackhole blackhole) {
+    for (ZonedDateTime fecha : fechas) {
+      blackhole.consume(ZonedDateTimeType.getSingleton().javaToSqlArg(null, fecha));
+    }
+  }
+
+  @Benchmark
+  public void formatMillis(Blackhole blackhole) {
+    for (ZonedDateTime fecha : fechas) {
+      blackhole.consume(ZonedDateTimeMillisType.getSingleton().javaToSqlArg(null, fecha));
+    }
+  }
+
+  /**
+   * Rango sobre el texto: compara strings, por lo que es incorrecto con offsets distintos.
+   */
+  @Benchmark
+  public List<FechaIso> rangeIso() throws Exception {
+    return daoIso.queryBuilder().where().between("fecha", desde, hasta).query();
+  }
+
+  @Benchmark
+  public List<FechaMillis> rangeMillis() throws Exception {
+    return daoMillis.queryBuilder().where().between("fecha",
+            ZonedDateTimeMillisType.desde(desde.toInstant()),
+            ZonedDateTimeMillisType.hasta(hasta.toInstant())).query();
+  }
+
+  /**
+   * Fila con la fecha como texto.
+   */
+  @DatabaseTable(tableName = "fecha_iso")
+  public static class FechaIso {
+
+    @DatabaseField(generatedId = true)
+    private Long id;
+
+    @DatabaseField(index = true, persisterClass = ZonedDateTimeType.class)
+    private ZonedDateTime fecha;
+
+    FechaIso() {
+      //Nada aqui.
+    }
+
+    FechaIso(ZonedDateTime fecha) {
+      this.fecha = fecha;
+    }
+  }
+
+  /**
+   * Fila con la fecha como BIGINT.
+   */
+  @DatabaseTable(tableName = "fecha_millis")
+  public static class FechaMillis {
+
+    @DatabaseField(generatedId = true)
+    private Long id;
+
+    @DatabaseField(index = true, persisterClass = ZonedDateTimeMillisType.class)
+    private ZonedDateTime fecha;
+
+    FechaMillis() {
+      //Nada aqui.
+    }
+
+    FechaMillis(ZonedDateTime fecha) {
+      this.fecha = fecha;
+    }
+  }
+
+}
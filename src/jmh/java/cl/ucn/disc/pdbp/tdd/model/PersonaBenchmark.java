@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.model;
+
+import cl.ucn.disc.pdbp.tdd.utils.Validation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Costo de construir (constructor validado) e hidratar (constructor vacio, como ORMLite) una
+ * {@link Persona}, antes y despues de los validadores estaticos de {@link Validation}.
+ * Los metodos "regex" repiten lo que hacia cada Persona: compilar sus tres {@link Pattern} y
+ * validar los telefonos con Integer.toString.
+ *
+ * @author Gerald Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonaBenchmark {
+
+  /**
+   * Personas por operacion.
+   */
+  @Param({"1000"})
+  private int filas;
+
+  /**
+   * Las filas de una importacion.
+   */
+  private List<String[]> datos;
+
+  /**
+   * Genera personas validas.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+
+    Random random = new Random(42);
+    this.datos = new ArrayList<>(filas);
+    for (int i = 0; i < filas; i++) {
+      datos.add(new String[] {"Nombre" + i, "Apellido" + i, rut(10_000_000 + random.nextInt(
+              15_000_000)), "Calle " + i, String.valueOf(55_000_000 + random.nextInt(999_999)),
+              String.valueOf(900_000_000 + random.nextInt(99_999_999)),
+              "persona" + i + "@gmail.com"});
+    }
+  }
+
+  @Benchmark
+  public void hidratarRegex(Blackhole blackhole) {
+    for (int i = 0; i < filas; i++) {
+      // Inicializadores de los campos Pattern de cada Persona.
+      blackhole.consume(Pattern.compile("^[0-9]{8}$"));
+      blackhole.consume(Pattern.compile("^9[0-9]{8}$"));
+      blackhole.consume(Pattern.compile("^[_a-z0-9-]+(.[_a-z0-9-]+)*@[a-z0-9-]+"
+              + "(.[a-z0-9-]+)*(.[a-z]{2,4})$"));
+      blackhole.consume(new Persona());
+    }
+  }
+
+  @Benchmark
+  public void hidratar(Blackhole blackhole) {
+    for (int i = 0; i < filas; i++) {
+      blackhole.consume(new Persona());
+    }
+  }
+
+  @Benchmark
+  public void construirRegex(Blackhole blackhole) {
+    for (String[] fila : datos) {
+      Pattern fijo = Pattern.compile("^[0-9]{8}$");
+      Pattern movil = Pattern.compile("^9[0-9]{8}$");
+      Pattern email = Pattern.compile("^[_a-z0-9-]+(.[_a-z0-9-]+)*@[a-z0-9-]+"
+              + "(.[a-z0-9-]+)*(.[a-z]{2,4})$");
+      Integer telefonoFijo = Integer.valueOf(fila[4]);
+      Integer telefonoMovil = Integer.valueOf(fila[5]);
+      blackhole.consume(fila[0].length() >= 2 && fila[1].length() >= 3
+              && Validation.isRutValid(fila[2]) && fila[3].length() >= 2
+              && fijo.matcher(Integer.toString(telefonoFijo)).matches()
+              && movil.matcher(Integer.toString(telefonoMovil)).matches()
+              && email.matcher(fila[6]).matches());
+      blackhole.consume(new Persona());
+    }
+  }
+
+  @Benchmark
+  public void construir(Blackhole blackhole) {
+    for (String[] fila : datos) {
+      blackhole.consume(new Persona(fila[0], fila[1], fila[2], fila[3],
+              Integer.valueOf(fila[4]), Integer.valueOf(fila[5]), fila[6]));
+    }
+  }
+
+  @Benchmark
+  public void validarLote(Blackhole blackhole) {
+    blackhole.consume(Validation.validarPersonas(datos));
+  }
+
+  /**
+   * Construye un rut valido (cuerpo + digito verificador).
+   * @param cuerpo del rut.
+   * @return el rut.
+   */
+  private static String rut(int cuerpo) {
+    int m = 0;
+    int s = 1;
+    for (int t = cuerpo; t != 0; t /= 10) {
+      s = (s + t % 10 * (9 - m++ % 6)) % 11;
+    }
+    return cuerpo + ((s > 0) ? String.valueOf(s - 1) : "k");
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.utils;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link Validation#isRutValid(String)} y {@link Validation#normalizeRut(String)} sobre ruts
+ * como llegan en una importacion: sin formato (152532873) o con puntos y guion (15.253.287-3),
+ * uno de cada diez con el digito verificador incorrecto.
+ *
+ * @author Gerald Lopez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+  /**
+   * Ruts por operacion.
+   */
+  @Param({"1000", "100000"})
+  private int ruts;
+
+  /**
+   * Formato de los ruts: plano o con puntos y guion.
+   */
+  @Param({"plano", "puntos"})
+  private String formato;
+
+  /**
+   * Los ruts.
+   */
+  private String[] datos;
+
+  /**
+   * Genera los ruts.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+
+    Random random = new Random(42);
+    this.datos = new String[ruts];
+    for (int i = 0; i < ruts; i++) {
+      int cuerpo = 1_000_000 + random.nextInt(25_000_000);
+      char dv = digito(cuerpo);
+      if (random.nextInt(10) == 0) {
+        dv = dv == '0' ? '1' : '0';
+      }
+      datos[i] = formato.equals("plano") ? String.valueOf(cuerpo) + dv
+              : String.format(Locale.ROOT, "%,d", cuerpo).replace(',', '.') + "-" + dv;
+    }
+  }
+
+  @Benchmark
+  public void isRutValid(Blackhole blackhole) {
+    for (String rut : datos) {
+      blackhole.consume(Validation.isRutValid(rut));
+    }
+  }
+
+  @Benchmark
+  public void normalizeRut(Blackhole blackhole) {
+    for (String rut : datos) {
+      blackhole.consume(Validation.normalizeRut(rut));
+    }
+  }
+
+  /**
+   * Digito verificador de un cuerpo.
+   * @param cuerpo del rut.
+   * @return el digito verificador.
+   */
+  private static char digito(int cuerpo) {
+    int m = 0;
+    int s = 1;
+    for (int t = cuerpo; t != 0; t /= 10) {
+      s = (s + t % 10 * (9 - m++ % 6)) % 11;
+    }
+    return s > 0 ? (char) ('0' + s - 1) : 'K';
+  }
+
+}
@@ -24,15 +24,29 @@
 
 package cl.ucn.disc.pdbp.tdd;
 
+import cl.ucn.disc.pdbp.tdd.dao.FetchProfile;
+import cl.ucn.disc.pdbp.tdd.dao.FieldSet;
+import cl.ucn.disc.pdbp.tdd.dao.PoolConfig;
 import cl.ucn.disc.pdbp.tdd.model.Control;
+import cl.ucn.disc.pdbp.tdd.model.Examen;
 import cl.ucn.disc.pdbp.tdd.model.Ficha;
 import cl.ucn.disc.pdbp.tdd.model.Persona;
 import cl.ucn.disc.pdbp.tdd.model.Sexo;
 import cl.ucn.disc.pdbp.tdd.model.Tipo;
+import cl.ucn.disc.pdbp.tdd.search.Sugerencia;
+import cl.ucn.disc.pdbp.tdd.utils.Validation;
+import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import io.javalin.http.NotFoundResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,9 +63,57 @@ public class ApiRestEndpoints {
   private static final Logger log = LoggerFactory.getLogger(ApiRestEndpoints.class);
 
   /**
-   * Contratos usando SQLite.
+   * Propiedad del sistema con la url de la base de datos (por defecto {@link #DATABASE_URL}).
    */
-  private static final Contratos CONTRATOS = new ContratosImpl("jdbc:sqlite:fivet.db");
+  public static final String DATABASE_PROPERTY = "fivet.db.url";
+
+  /**
+   * Base de datos por defecto.
+   */
+  public static final String DATABASE_URL = "jdbc:sqlite:fivet.db";
+
+  /**
+   * Propiedad del sistema que desactiva la cola de escrituras con {@code false} (comparar).
+   */
+  public static final String WRITE_QUEUE_PROPERTY = "fivet.db.writeQueue";
+
+  /**
+   * Contratos usando SQLite: pool de conexiones para las lecturas y un unico hilo escritor.
+   */
+  private static final Contratos CONTRATOS = new ContratosImpl(
+          System.getProperty(DATABASE_PROPERTY, DATABASE_URL), PoolConfig.defaults(),
+          Boolean.parseBoolean(System.getProperty(WRITE_QUEUE_PROPERTY, "true")));
+
+  /**
+   * Respuestas JSON serializadas, por version de los datos.
+   */
+  private static final ResponseCache RESPONSE_CACHE = new ResponseCache(
+          ResponseCache.DEFAULT_MAX_ENTRIES, ResponseCache.DEFAULT_MAX_BYTES, Compression.get());
+
+  /**
+   * Header con el cursor de la pagina siguiente.
+   */
+  private static final String NEXT_CURSOR = "X-Next-Cursor";
+
+  /**
+   * Tamanio maximo de pagina.
+   */
+  private static final int MAX_LIMIT = 1000;
+
+  /**
+   * Cantidad de fichas por defecto en una busqueda.
+   */
+  private static final int FIND_LIMIT = 50;
+
+  /**
+   * Cantidad de sugerencias por defecto.
+   */
+  private static final int SUGGEST_LIMIT = 10;
+
+  /**
+   * Dias de la agenda de proximos controles por defecto.
+   */
+  private static final int AGENDA_DIAS = 7;
 
   /**
    * Contructor privado.
@@ -62,29 +124,71 @@ public class ApiRestEndpoints {
 
   /**
    * Metodo que busca todas las fichas que existen en la DB.
+   * Con {@code ?limit=N&after=ID} entrega una pagina y el cursor siguiente en X-Next-Cursor.
+   * Los controles y examenes solo se cargan con {@code ?include=controles,examenes}.
+   * Con {@code ?fields=numero,nombre,duenio.email} solo se leen esos campos (el id siempre) y
+   * las colecciones que no estan en fields no se consultan.
    * @param ctx the Javalin {@link Context}
    */
   public static void getAllFichas(Context ctx) {
 
-    log.debug("Obteniendo todas las fichas ..");
-    List<Ficha> fichas = CONTRATOS.getAllFichas();
-    ctx.json(fichas);
+    FetchProfile profile = include(ctx);
+    FieldSet fields = fields(ctx);
+    Integer limit = ctx.queryParam("limit") != null ? limit(ctx) : null;
+    Long after = after(ctx);
+
+    RESPONSE_CACHE.serve(ctx, CONTRATOS.getVersion(clases(fields.restrict(profile))), out -> {
+
+      if (limit != null) {
+        log.debug("Obteniendo {} fichas despues de {} ..", limit, after);
+        List<Ficha> fichas = CONTRATOS.getFichas(after, limit, profile, fields);
+        if (fichas.size() == limit) {
+          ctx.header(NEXT_CURSOR, String.valueOf(fichas.get(fichas.size() - 1).getId()));
+        }
+        json(out, fichas);
+        return;
+      }
+
+      log.debug("Obteniendo todas las fichas ..");
+      try (Stream<Ficha> fichas = CONTRATOS.streamFichas(profile, fields)) {
+        jsonArray(out, fichas);
+      }
+    });
   }
 
   /**
-   * Busca las fichas segun una query.
+   * Busca las fichas segun una query, las mas relevantes primero.
+   * Con {@code ?limit=N} entrega a lo mas N fichas (por defecto FIND_LIMIT).
+   * Los controles y examenes solo se cargan con {@code ?include=controles,examenes}.
    * @param ctx the Javalin {@link Context}
    */
   public static void findFichas(Context ctx) {
 
     String query = ctx.pathParam("query");
-    log.debug("Buscando fichas consultada <{}> ..", query);
+    int limit = ctx.queryParam("limit") != null ? limit(ctx) : FIND_LIMIT;
+    log.debug("Buscando {} fichas consultada <{}> ..", limit, query);
 
-    List<Ficha> fichas = CONTRATOS.buscarFicha(query);
-    ctx.json(fichas);
+    List<Ficha> fichas = CONTRATOS.buscarFicha(query, limit, include(ctx));
+    json(ctx, fichas);
 
   }
 
+  /**
+   * Sugiere pacientes, personas y ruts mientras se escribe: {@code ?prefix=texto&limit=N}.
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void suggestFichas(Context ctx) {
+
+    String prefix = ctx.queryParam("prefix");
+    if (prefix == null) {
+      throw new BadRequestResponse("Falta el parametro prefix");
+    }
+    int limit = ctx.queryParam("limit") != null ? limit(ctx) : SUGGEST_LIMIT;
+
+    List<Sugerencia> sugerencias = CONTRATOS.sugerir(prefix, limit);
+    json(ctx, sugerencias);
+  }
+
   /**
    * Crea una ficha.
    * @param ctx the Javalin {@link Context}
@@ -128,17 +232,53 @@ public class ApiRestEndpoints {
 
   /**
    * Obtiene un listado de personas.
+   * Con {@code ?limit=N&after=ID} entrega una pagina y el cursor siguiente en X-Next-Cursor.
    * @param ctx the Javalin {@link Context}
    */
   public static void getAllPersonas(Context ctx) {
 
-    log.debug("Listado de personas en el sistema ..");
+    Integer limit = ctx.queryParam("limit") != null ? limit(ctx) : null;
+    Long after = after(ctx);
+
+    RESPONSE_CACHE.serve(ctx, CONTRATOS.getVersion(Persona.class), out -> {
+
+      if (limit != null) {
+        log.debug("Listado de {} personas despues de {} ..", limit, after);
+        List<Persona> personas = CONTRATOS.getPersonas(after, limit);
+        if (personas.size() == limit) {
+          ctx.header(NEXT_CURSOR, String.valueOf(personas.get(personas.size() - 1).getId()));
+        }
+        json(out, personas);
+        return;
+      }
+
+      log.debug("Listado de personas en el sistema ..");
 
-    List<Persona> personas = CONTRATOS.getAllPersonas();
-    ctx.json(personas);
+      try (Stream<Persona> personas = CONTRATOS.streamPersonas()) {
+        jsonArray(out, personas);
+      }
+    });
 
   }
 
+  /**
+   * Obtiene una persona por su rut, con o sin puntos y guion (ej: 15.253.287-3).
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void getPersona(Context ctx) {
+
+    String rut = ctx.pathParam("rut");
+    if (!Validation.isRutValid(rut)) {
+      throw new BadRequestResponse("Rut invalido: " + rut);
+    }
+
+    Persona persona = CONTRATOS.getPersonaByRut(rut);
+    if (persona == null) {
+      throw new NotFoundResponse("Persona " + rut + " no existe");
+    }
+    json(ctx, persona);
+  }
+
   /**
    * Crear una Persona.
    * @param ctx the Javalin {@link Context}
@@ -157,7 +297,7 @@ public class ApiRestEndpoints {
     Persona persona = new Persona(nombre, apellido, rut, direccion, telefonoFijo, telefonoMovil,
             email);
     CONTRATOS.registrarPersona(persona);
-    ctx.json(persona);
+    json(ctx, persona);
 
   }
 
@@ -167,9 +307,17 @@ public class ApiRestEndpoints {
    */
   public static void getControles(Context ctx) {
 
-    Long numeroFicha = Long.valueOf(ctx.formParam("numeroFicha"));
-    List<Control> controles = CONTRATOS.getControles(numeroFicha);
-    ctx.json(controles);
+    Long numeroFicha = ctx.pathParam("numeroFicha", Long.class).get();
+
+    //Los controles incluyen su ficha (con su duenio), su veterinario y sus examenes.
+    long version = CONTRATOS.getVersion(Control.class, Examen.class, Ficha.class, Persona.class);
+    RESPONSE_CACHE.serve(ctx, version, out -> {
+      List<Control> controles = CONTRATOS.getControles(numeroFicha);
+      if (controles == null) {
+        throw new NotFoundResponse("Ficha " + numeroFicha + " no existe");
+      }
+      json(out, controles);
+    });
 
 
   }
@@ -181,8 +329,10 @@ public class ApiRestEndpoints {
   public static void createControl(Context ctx) {
 
     log.debug("Add control .. ");
-    //Atributos del control.
-    ZonedDateTime fecha = ZonedDateTime.parse(ctx.pathParam("fecha"));
+    //Atributos del control (por defecto con fecha de ahora).
+    String fechaParam = ctx.formParam("fecha");
+    ZonedDateTime fecha = fechaParam != null ? ZonedDateTime.parse(fechaParam)
+            : ZonedDateTime.now();
     ZonedDateTime proximoControl = ZonedDateTime.parse(ctx.formParam("proximoControl"));
     Float temperatura = Float.valueOf(ctx.formParam("temperatura"));
     Float peso = Float.valueOf(ctx.formParam("peso"));
@@ -194,29 +344,201 @@ public class ApiRestEndpoints {
     Persona veterinario = CONTRATOS.getId(veterinarioId);
 
     //Ficha asociada al control
-    Long numeroFicha = Long.valueOf(ctx.pathParam("numeroFicha"));
-    Ficha ficha = CONTRATOS.buscarFicha(numeroFicha.toString()).get(0);
+    Long numeroFicha = ctx.pathParam("numeroFicha", Long.class).get();
+    Ficha ficha = CONTRATOS.getFichaByNumero(numeroFicha);
+    if (ficha == null) {
+      throw new NotFoundResponse("Ficha " + numeroFicha + " no existe");
+    }
 
     Control control = new Control(fecha, proximoControl, temperatura, peso, altura, diagnostico,
             veterinario, ficha);
 
-    ctx.json(control);
+    json(ctx, CONTRATOS.registrarControl(control));
 
 
   }
 
+  /**
+   * Agenda: controles cuyo proximo control cae entre {@code ?desde=} y {@code ?hasta=}
+   * (fecha ISO 2020-07-01 o fecha-hora 2020-07-01T10:00-04:00), el mas cercano primero.
+   * Por defecto desde ahora y una semana; con {@code ?limit=N} a lo mas N controles.
+   * @param ctx the Javalin {@link Context}
+   */
+  public static void getProximosControles(Context ctx) {
+
+    ZonedDateTime desde = fecha(ctx, "desde", false);
+    if (desde == null) {
+      desde = ZonedDateTime.now();
+    }
+    ZonedDateTime hasta = fecha(ctx, "hasta", true);
+    if (hasta == null) {
+      hasta = desde.plusDays(AGENDA_DIAS);
+    }
+    if (hasta.isBefore(desde)) {
+      throw new BadRequestResponse("hasta debe ser posterior a desde");
+    }
+    int limit = ctx.queryParam("limit") != null ? limit(ctx) : MAX_LIMIT;
+
+    log.debug("Proximos controles entre {} y {} ..", desde, hasta);
+    List<Control> controles = CONTRATOS.getProximosControles(desde, hasta, limit);
+    json(ctx, controles);
+  }
+
   /**
    * Obtiene el duenio de una ficha.
    * @param ctx the Javalin {@link Context}
    */
   public static void getDuenioOfFicha(Context ctx) {
 
-    Integer numeroFicha = Integer.parseInt(ctx.formParam("numeroFicha"));
+    Integer numeroFicha = ctx.pathParam("numeroFicha", Integer.class).get();
     Persona duenio = CONTRATOS.getDuenioOfFicha(numeroFicha);
-    ctx.json(duenio);
+    if (duenio == null) {
+      throw new NotFoundResponse("Ficha " + numeroFicha + " no existe");
+    }
+    json(ctx, duenio);
 
   }
 
+  /**
+   * Escribe los elementos como un arreglo JSON directamente en la respuesta, uno a la vez,
+   * sin construir la respuesta completa en memoria.
+   * @param out donde escribir.
+   * @param elementos a escribir.
+   * @param <T> tipo de los elementos.
+   * @throws IOException en caso de error al escribir.
+   */
+  private static <T> void jsonArray(OutputStream out, Stream<T> elementos) throws IOException {
+    JsonMapper.get().writeArray(out, elementos);
+  }
 
-}
+  /**
+   * Escribe el objeto como JSON.
+   * @param out donde escribir.
+   * @param objeto a escribir.
+   * @throws IOException en caso de error al escribir.
+   */
+  private static void json(OutputStream out, Object objeto) throws IOException {
+    JsonMapper.get().write(out, objeto);
+  }
+
+  /**
+   * Escribe el objeto como JSON directamente en la respuesta (comprimida si corresponde),
+   * sin construir el String.
+   * @param ctx the Javalin {@link Context}
+   * @param objeto a escribir.
+   */
+  private static void json(Context ctx, Object objeto) {
+
+    ctx.contentType("application/json");
+    Compression.Salida salida = Compression.get().open(ctx);
+    try {
+      json(salida, objeto);
+      salida.finish();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    } finally {
+      salida.close();
+    }
+  }
+
+  /**
+   * Obtiene las clases cuyos datos incluyen las fichas con el perfil.
+   * @param profile colecciones incluidas.
+   * @return las clases del modelo.
+   */
+  private static Class<?>[] clases(FetchProfile profile) {
+    if (profile.isExamenes()) {
+      return new Class<?>[] {Ficha.class, Persona.class, Control.class, Examen.class};
+    }
+    if (profile.isControles()) {
+      return new Class<?>[] {Ficha.class, Persona.class, Control.class};
+    }
+    return new Class<?>[] {Ficha.class, Persona.class};
+  }
+
+  /**
+   * Obtiene el cache de respuestas, con sus metricas.
+   * @return el {@link ResponseCache}.
+   */
+  static ResponseCache getResponseCache() {
+    return RESPONSE_CACHE;
+  }
+
+  /**
+   * Obtiene el parametro limit (1..MAX_LIMIT).
+   * @param ctx the Javalin {@link Context}
+   * @return el tamanio de pagina.
+   */
+  private static int limit(Context ctx) {
+    return ctx.queryParam("limit", Integer.class)
+            .check(limit -> limit > 0 && limit <= MAX_LIMIT, "debe estar entre 1 y " + MAX_LIMIT)
+            .get();
+  }
+
+  /**
+   * Obtiene el parametro include (colecciones a cargar), por defecto ninguna.
+   * @param ctx the Javalin {@link Context}
+   * @return el {@link FetchProfile}.
+   */
+  private static FetchProfile include(Context ctx) {
+    try {
+      return FetchProfile.of(ctx.queryParam("include"));
+    } catch (IllegalArgumentException ex) {
+      throw new BadRequestResponse(ex.getMessage());
+    }
+  }
 
+  /**
+   * Obtiene el parametro fields (campos a leer de cada ficha), por defecto todos.
+   * @param ctx the Javalin {@link Context}
+   * @return el {@link FieldSet}.
+   */
+  private static FieldSet fields(Context ctx) {
+    try {
+      return FieldSet.of(ctx.queryParam("fields"));
+    } catch (IllegalArgumentException ex) {
+      throw new BadRequestResponse(ex.getMessage());
+    }
+  }
+
+  /**
+   * Obtiene un parametro de fecha: fecha-hora ISO con offset, o solo la fecha (en la zona del
+   * servidor, al inicio del dia o al final si es el fin de un rango).
+   * @param ctx the Javalin {@link Context}
+   * @param nombre del parametro.
+   * @param finDelDia true si una fecha sin hora se refiere al final del dia.
+   * @return la fecha, null si no viene.
+   */
+  private static ZonedDateTime fecha(Context ctx, String nombre, boolean finDelDia) {
+
+    String valor = ctx.queryParam(nombre);
+    if (valor == null) {
+      return null;
+    }
+
+    try {
+      if (valor.indexOf('T') < 0) {
+        LocalDate dia = LocalDate.parse(valor);
+        return finDelDia
+                ? dia.plusDays(1).atStartOfDay(ZoneId.systemDefault()).minusNanos(1)
+                : dia.atStartOfDay(ZoneId.systemDefault());
+      }
+      return ZonedDateTime.parse(valor);
+    } catch (DateTimeParseException ex) {
+      throw new BadRequestResponse("Fecha invalida en " + nombre + ": " + valor);
+    }
+  }
+
+  /**
+   * Obtiene el parametro after (cursor), null si no viene.
+   * @param ctx the Javalin {@link Context}
+   * @return el id despues del cual empieza la pagina.
+   */
+  private static Long after(Context ctx) {
+    if (ctx.queryParam("after") == null) {
+      return null;
+    }
+    return ctx.queryParam("after", Long.class).get();
+  }
+
+}
@@ -24,12 +24,13 @@
 
 package cl.ucn.disc.pdbp.tdd;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import cl.ucn.disc.pdbp.tdd.dao.QueryCounter;
+import cl.ucn.disc.pdbp.tdd.dao.RequestTiming;
 import io.javalin.Javalin;
 import io.javalin.apibuilder.ApiBuilder;
 import io.javalin.core.util.RouteOverviewPlugin;
 import io.javalin.plugin.json.JavalinJson;
+import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +47,16 @@ public final class Application {
    */
   private static final Logger log = LoggerFactory.getLogger(Application.class);
 
+  /**
+   * Header con la cantidad de consultas a la base de datos de la peticion.
+   */
+  private static final String QUERY_COUNT = "X-Query-Count";
+
+  /**
+   * Header con el tiempo de la peticion por etapa (base de datos, serializacion) y sus bytes.
+   */
+  private static final String SERVER_TIMING = "Server-Timing";
+
   /**
    * Constructor privado.
    */
@@ -59,35 +70,81 @@ public final class Application {
    */
   public static void main(String[] args) {
 
+    Javalin javalin = create().start(7000);
+
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      log.debug("Stopping the server .. ");
+      javalin.stop();
+      log.info("{}", ApiRestEndpoints.getResponseCache());
+      log.info("{}", Compression.get());
+      log.debug("The end.");
+    }));
+
+  }
+
+  /**
+   * Agrega a la respuesta los headers de consultas y tiempos de la peticion hasta ahora.
+   * {@link Compression} los agrega antes de escribir el body (una respuesta grande, comprimida o
+   * en stream se envia antes de terminar) y el filtro after los reemplaza con los finales si la
+   * respuesta aun no se envio.
+   * @param res la respuesta.
+   */
+  static void timing(HttpServletResponse res) {
+    long queries = QueryCounter.get();
+    res.setHeader(QUERY_COUNT, String.valueOf(queries));
+    res.setHeader(SERVER_TIMING, RequestTiming.header(queries));
+  }
+
+  /**
+   * Crea el servidor con la configuracion y las rutas de la API, sin iniciarlo
+   * (ej: {@code create().start(0)} en un puerto efimero).
+   * La base de datos se elige con {@link ApiRestEndpoints#DATABASE_PROPERTY}.
+   * @return el {@link Javalin}.
+   */
+  public static Javalin create() {
+
     //Configuracion Gson
-    //Persona <-> Json via libreria Gson
-    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    //Modelo <-> Json via TypeAdapters, compacto (indentado con -Dfivet.json.pretty=true).
+    JsonMapper json = JsonMapper.get();
+    log.debug("Json: {}", json);
+    //Respuestas JSON comprimidas (gzip/deflate) segun Accept-Encoding, sobre el umbral.
+    log.debug("Compression: {}", Compression.get());
 
-    JavalinJson.setFromJsonMapper(gson::fromJson);
-    JavalinJson.setToJsonMapper(gson::toJson);
+    JavalinJson.setFromJsonMapper(json::fromJson);
+    JavalinJson.setToJsonMapper(json::toJson);
 
     //Servidor de Javalin
-    log.debug("Starting Javalin ..");
-    Javalin javalin = Javalin.create(config -> {
+    log.debug("Creating Javalin ..");
+    return Javalin.create(config -> {
 
       config.enableDevLogging();
       //Configuracion del Logger
       config.requestLogger((ctx, executionTimeMs) -> {
-        log.info("Served {} in {} ms.", ctx.fullUrl(), executionTimeMs);
-        ctx.header("Server-Timing", "total;dur=" + executionTimeMs);
+        log.info("Served {} in {} ms with {} queries: {}", ctx.fullUrl(), executionTimeMs,
+                QueryCounter.get(), RequestTiming.header(QueryCounter.get()));
       });
 
       //Muestra todas las rutas.
       config.registerPlugin(new RouteOverviewPlugin("/routes"));
 
       //Define las rutas
+    }).before(ctx -> {
+      //Consultas a la base de datos y tiempos por peticion.
+      QueryCounter.reset();
+      RequestTiming.reset();
+    }).after(ctx -> {
+      //Una respuesta ya enviada (sobre el buffer de Jetty) no admite mas headers: conserva los
+      //que se agregaron antes de escribir el body.
+      if (!ctx.res.isCommitted()) {
+        timing(ctx.res);
+      }
     }).routes(() -> {
       //Version
       ApiBuilder.path("v1", () -> {
 
         // /fichas
         ApiBuilder.path("fichas", () -> {
-          //Get /fichas
+          //Get /fichas (paginada con ?limit=&after=)
           ApiBuilder.get(ApiRestEndpoints::getAllFichas);
 
           //Post /fichas
@@ -98,6 +155,11 @@ public final class Application {
             ApiBuilder.get(ApiRestEndpoints::findFichas);
           });
 
+          //Get /fichas/suggest?prefix=
+          ApiBuilder.path("suggest", () -> {
+            ApiBuilder.get(ApiRestEndpoints::suggestFichas);
+          });
+
           // Get /fichas/{numeroFicha}
           ApiBuilder.path(":numeroFicha", () -> {
 
@@ -116,27 +178,31 @@ public final class Application {
 
         });
 
+        // /controles
+        ApiBuilder.path("controles", () -> {
+          //Get /controles/proximos?desde=&hasta= (agenda)
+          ApiBuilder.path("proximos", () -> {
+            ApiBuilder.get(ApiRestEndpoints::getProximosControles);
+          });
+        });
+
         // /personas
         ApiBuilder.path("personas", () -> {
-          //Get /persona
+          //Get /persona (paginada con ?limit=&after=)
           ApiBuilder.get(ApiRestEndpoints::getAllPersonas);
 
           //Post /persona
           ApiBuilder.post(ApiRestEndpoints::createPersona);
 
-          //TODO: obtener la lista de personas paginada.
+          //Get /personas/{rut}
+          ApiBuilder.path(":rut", () -> {
+            ApiBuilder.get(ApiRestEndpoints::getPersona);
+          });
         });
 
       });
 
-    }).start(7000);
-
-    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-      log.debug("Stopping the server .. ");
-      javalin.stop();
-      log.debug("The end.");
-    }));
-
+    });
   }
 
 }
@@ -0,0 +1,557 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import io.javalin.http.Context;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Compresion de las respuestas (gzip o deflate) negociada con {@code Accept-Encoding}.
+ * Las respuestas menores al umbral se envian sin comprimir: se acumulan hasta superarlo y recien
+ * ahi se decide, asi funciona tambien con la escritura en stream.
+ * Umbral y nivel configurables con {@code -Dfivet.compression.threshold=} y
+ * {@code -Dfivet.compression.level=} (0 desactiva la compresion).
+ *
+ * @author Gerald Lopez
+ */
+public final class Compression {
+
+  /**
+   * Propiedad del sistema con el umbral (bytes).
+   */
+  public static final String THRESHOLD_PROPERTY = "fivet.compression.threshold";
+
+  /**
+   * Propiedad del sistema con el nivel (0-9).
+   */
+  public static final String LEVEL_PROPERTY = "fivet.compression.level";
+
+  /**
+   * Umbral por defecto: bajo este tamanio la cabecera gzip y el costo no compensan.
+   */
+  public static final int DEFAULT_THRESHOLD = 1024;
+
+  /**
+   * Nivel por defecto. En CompressionBenchmark (10k fichas, 3.6 MB) el nivel 6 deja el 8.0% en
+   * ~2x el CPU del nivel 1 (10.8%); el 9 cuesta el doble del 6 por un 0.4% menos.
+   */
+  public static final int DEFAULT_LEVEL = 6;
+
+  /**
+   * Content-Encoding gzip.
+   */
+  public static final String GZIP = "gzip";
+
+  /**
+   * Content-Encoding deflate (formato zlib).
+   */
+  public static final String DEFLATE = "deflate";
+
+  /**
+   * Tamanio del buffer de los compresores.
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * La instancia de la aplicacion, segun las propiedades del sistema.
+   */
+  private static final Compression INSTANCE = new Compression(
+          Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD),
+          Integer.getInteger(LEVEL_PROPERTY, DEFAULT_LEVEL));
+
+  /**
+   * Umbral (bytes) desde el cual se comprime.
+   */
+  private final int threshold;
+
+  /**
+   * Nivel de compresion, 0 sin compresion.
+   */
+  private final int level;
+
+  /**
+   * Respuestas comprimidas.
+   */
+  private final LongAdder compressedCount = new LongAdder();
+
+  /**
+   * Bytes antes de comprimir.
+   */
+  private final LongAdder bytesIn = new LongAdder();
+
+  /**
+   * Bytes comprimidos.
+   */
+  private final LongAdder bytesOut = new LongAdder();
+
+  /**
+   * Constructor.
+   * @param threshold umbral (bytes) desde el cual se comprime.
+   * @param level de compresion, 0 (sin compresion) a 9.
+   */
+  public Compression(int threshold, int level) {
+
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold no puede ser negativo");
+    }
+    if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("level debe estar entre 0 y 9");
+    }
+
+    this.threshold = threshold;
+    this.level = level;
+  }
+
+  /**
+   * Obtiene la instancia de la aplicacion.
+   * @return la {@link Compression}.
+   */
+  public static Compression get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Elige la codificacion segun Accept-Encoding: gzip, luego deflate (respetando q=0).
+   * @param acceptEncoding header de la peticion, puede ser null.
+   * @return GZIP, DEFLATE o null (sin compresion).
+   */
+  public String negotiate(String acceptEncoding) {
+
+    if (acceptEncoding == null || level == Deflater.NO_COMPRESSION) {
+      return null;
+    }
+
+    double gzip = -1;
+    double deflate = -1;
+    double otras = -1;
+    for (String parte : acceptEncoding.split(",")) {
+      String[] tokens = parte.split(";");
+      String nombre = tokens[0].trim().toLowerCase();
+      double q = 1;
+      for (int i = 1; i < tokens.length; i++) {
+        String parametro = tokens[i].trim();
+        if (parametro.startsWith("q=")) {
+          try {
+            q = Double.parseDouble(parametro.substring(2));
+          } catch (NumberFormatException ex) {
+            q = 0;
+          }
+        }
+      }
+      if (nombre.equals(GZIP) || nombre.equals("x-gzip")) {
+        gzip = q;
+      } else if (nombre.equals(DEFLATE)) {
+        deflate = q;
+      } else if (nombre.equals("*")) {
+        otras = q;
+      }
+    }
+    if (gzip < 0) {
+      gzip = otras;
+    }
+    if (deflate < 0) {
+      deflate = otras;
+    }
+
+    if (gzip > 0 && gzip >= deflate) {
+      return GZIP;
+    }
+    return deflate > 0 ? DEFLATE : null;
+  }
+
+  /**
+   * Abre la salida de la respuesta: comprime con la codificacion negociada si se supera el umbral.
+   * Se debe terminar con {@link Salida#finish()} y cerrar en un finally con {@link Salida#close()}
+   * (libera el compresor si la respuesta no termino).
+   * @param ctx the Javalin {@link Context}
+   * @return la {@link Salida}.
+   */
+  public Salida open(Context ctx) {
+    ctx.header("Vary", "Accept-Encoding");
+    return new Salida(ctx.res, negotiate(ctx.header("Accept-Encoding")));
+  }
+
+  /**
+   * Escribe una respuesta completa (ej: desde el cache), con Content-Length.
+   * @param ctx the Javalin {@link Context}
+   * @param body sin comprimir.
+   * @param comprimido obtiene el body comprimido en la codificacion (puede guardarlo).
+   */
+  public void write(Context ctx, byte[] body, Comprimido comprimido) {
+
+    ctx.header("Vary", "Accept-Encoding");
+    String encoding = negotiate(ctx.header("Accept-Encoding"));
+
+    byte[] salida = body;
+    if (encoding != null && body.length >= threshold) {
+      salida = comprimido.get(encoding);
+      ctx.header("Content-Encoding", encoding);
+    }
+
+    try {
+      ctx.res.setContentLength(salida.length);
+      Application.timing(ctx.res);
+      ctx.res.getOutputStream().write(salida);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Comprime un body completo.
+   * @param body a comprimir.
+   * @param encoding GZIP o DEFLATE.
+   * @return el body comprimido.
+   */
+  public byte[] compress(byte[] body, String encoding) {
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+    try {
+      Compresor compresor = compresor(out, encoding);
+      try {
+        compresor.stream.write(body);
+        compresor.finish();
+      } finally {
+        compresor.end();
+      }
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+    compressedCount.increment();
+    bytesIn.add(body.length);
+    bytesOut.add(out.size());
+    return out.toByteArray();
+  }
+
+  /**
+   * Construye el compresor de la codificacion.
+   * @param out donde escribir lo comprimido.
+   * @param encoding GZIP o DEFLATE.
+   * @return el {@link Compresor}.
+   * @throws IOException en caso de error.
+   */
+  private Compresor compresor(OutputStream out, String encoding) throws IOException {
+
+    if (GZIP.equals(encoding)) {
+      Gzip gzip = new Gzip(out, level);
+      return new Compresor(gzip, gzip.deflater());
+    }
+    if (DEFLATE.equals(encoding)) {
+      Deflater deflater = new Deflater(level);
+      return new Compresor(new DeflaterOutputStream(out, deflater, BUFFER_SIZE), deflater);
+    }
+    throw new IllegalArgumentException("Codificacion desconocida: " + encoding);
+  }
+
+  /**
+   * Obtiene el umbral.
+   * @return bytes desde los cuales se comprime.
+   */
+  public int getThreshold() {
+    return this.threshold;
+  }
+
+  /**
+   * Obtiene el nivel.
+   * @return nivel de compresion.
+   */
+  public int getLevel() {
+    return this.level;
+  }
+
+  /**
+   * Obtiene la cantidad de respuestas comprimidas.
+   * @return compressedCount.
+   */
+  public long getCompressedCount() {
+    return this.compressedCount.sum();
+  }
+
+  /**
+   * Obtiene los bytes ahorrados por la compresion.
+   * @return bytes antes menos bytes despues de comprimir.
+   */
+  public long getBytesSaved() {
+    return this.bytesIn.sum() - this.bytesOut.sum();
+  }
+
+  /**
+   * Obtiene la proporcion tamanio comprimido / original.
+   * @return ratio entre 0 y 1 (1 si no se ha comprimido nada).
+   */
+  public double getRatio() {
+    long in = this.bytesIn.sum();
+    return in == 0 ? 1 : this.bytesOut.sum() / (double) in;
+  }
+
+  /**
+   * @return configuracion y metricas.
+   */
+  @Override
+  public String toString() {
+    return "Compression{threshold=" + threshold
+            + ", level=" + level
+            + ", compressed=" + getCompressedCount()
+            + ", ratio=" + String.format("%.3f", getRatio())
+            + ", bytesSaved=" + getBytesSaved()
+            + "}";
+  }
+
+  /**
+   * Obtiene un body comprimido.
+   */
+  @FunctionalInterface
+  public interface Comprimido {
+
+    /**
+     * Obtiene el body comprimido.
+     * @param encoding GZIP o DEFLATE.
+     * @return el body comprimido.
+     */
+    byte[] get(String encoding);
+  }
+
+  /**
+   * Salida de una respuesta: acumula hasta el umbral y luego comprime (o no) hacia la respuesta.
+   */
+  public final class Salida extends OutputStream {
+
+    /**
+     * La respuesta.
+     */
+    private final HttpServletResponse res;
+
+    /**
+     * Codificacion negociada, null sin compresion.
+     */
+    private final String encoding;
+
+    /**
+     * Bytes antes de decidir.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Bytes en el buffer.
+     */
+    private int count;
+
+    /**
+     * Bytes escritos.
+     */
+    private long total;
+
+    /**
+     * Destino, null mientras no se decide.
+     */
+    private OutputStream out;
+
+    /**
+     * El compresor, null si no se comprime.
+     */
+    private Compresor compresor;
+
+    /**
+     * Constructor.
+     * @param res la respuesta.
+     * @param encoding negociada, puede ser null.
+     */
+    Salida(HttpServletResponse res, String encoding) {
+      this.res = res;
+      this.encoding = encoding;
+      this.buffer = new byte[encoding == null ? 0 : threshold];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+      total += len;
+      if (out == null) {
+        if (count + len < buffer.length) {
+          System.arraycopy(b, off, buffer, count, len);
+          count += len;
+          return;
+        }
+        decidir(true);
+      }
+      out.write(b, off, len);
+    }
+
+    /**
+     * Decide el destino y vacia el buffer en el.
+     * @param comprimir true si se supero el umbral.
+     * @throws IOException en caso de error.
+     */
+    private void decidir(boolean comprimir) throws IOException {
+
+      // Los headers de la peticion van antes del body: puede enviarse antes de terminar.
+      Application.timing(res);
+      if (comprimir && encoding != null) {
+        res.setHeader("Content-Encoding", encoding);
+        compresor = compresor(res.getOutputStream(), encoding);
+        out = compresor.stream;
+      } else {
+        out = res.getOutputStream();
+      }
+      out.write(buffer, 0, count);
+      count = 0;
+    }
+
+    /**
+     * No envia la respuesta: Jetty la completa al terminar la peticion, despues de los
+     * headers de los filtros after.
+     */
+    @Override
+    public void flush() {
+      //Nada aqui.
+    }
+
+    /**
+     * Termina la respuesta (sin cerrar el stream de la respuesta).
+     * @throws IOException en caso de error.
+     */
+    public void finish() throws IOException {
+
+      if (out == null) {
+        // Bajo el umbral: sin comprimir.
+        decidir(false);
+        return;
+      }
+      if (compresor != null) {
+        try {
+          long comprimidos = compresor.finish();
+          compressedCount.increment();
+          bytesIn.add(total);
+          bytesOut.add(comprimidos);
+        } finally {
+          compresor = null;
+        }
+      }
+    }
+
+    /**
+     * Libera el compresor si la respuesta no termino (ej: el productor lanzo una excepcion), sin
+     * cerrar el stream de la respuesta.
+     */
+    @Override
+    public void close() {
+      if (compresor != null) {
+        compresor.end();
+        compresor = null;
+      }
+    }
+  }
+
+  /**
+   * Stream comprimido y su {@link Deflater} (se libera al terminar).
+   */
+  private static final class Compresor {
+
+    /**
+     * El stream comprimido.
+     */
+    private final DeflaterOutputStream stream;
+
+    /**
+     * El deflater del stream.
+     */
+    private final Deflater deflater;
+
+    /**
+     * Constructor.
+     * @param stream comprimido.
+     * @param deflater del stream.
+     */
+    Compresor(DeflaterOutputStream stream, Deflater deflater) {
+      this.stream = stream;
+      this.deflater = deflater;
+    }
+
+    /**
+     * Escribe el final del stream comprimido (sin cerrar el destino) y libera el deflater.
+     * @return bytes comprimidos escritos.
+     * @throws IOException en caso de error.
+     */
+    long finish() throws IOException {
+      try {
+        stream.finish();
+        long escritos = deflater.getBytesWritten();
+        return stream instanceof Gzip ? escritos + Gzip.OVERHEAD : escritos;
+      } finally {
+        end();
+      }
+    }
+
+    /**
+     * Libera el deflater (sin escribir el final del stream), se puede llamar mas de una vez.
+     */
+    void end() {
+      deflater.end();
+    }
+  }
+
+  /**
+   * {@link GZIPOutputStream} con nivel de compresion.
+   */
+  private static final class Gzip extends GZIPOutputStream {
+
+    /**
+     * Bytes de cabecera y cola de gzip.
+     */
+    static final int OVERHEAD = 18;
+
+    /**
+     * Constructor.
+     * @param out donde escribir.
+     * @param level de compresion.
+     * @throws IOException en caso de error.
+     */
+    Gzip(OutputStream out, int level) throws IOException {
+      super(out, BUFFER_SIZE);
+      def.setLevel(level);
+    }
+
+    /**
+     * Obtiene el deflater.
+     * @return el {@link Deflater}.
+     */
+    Deflater deflater() {
+      return def;
+    }
+  }
+
+}
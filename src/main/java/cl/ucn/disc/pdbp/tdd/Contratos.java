@@ -24,11 +24,17 @@
 
 package cl.ucn.disc.pdbp.tdd;
 
+import cl.ucn.disc.pdbp.tdd.dao.FetchProfile;
+import cl.ucn.disc.pdbp.tdd.dao.FieldSet;
 import cl.ucn.disc.pdbp.tdd.model.Control;
 import cl.ucn.disc.pdbp.tdd.model.Examen;
 import cl.ucn.disc.pdbp.tdd.model.Ficha;
 import cl.ucn.disc.pdbp.tdd.model.Persona;
+import cl.ucn.disc.pdbp.tdd.search.FichaIndex;
+import cl.ucn.disc.pdbp.tdd.search.Sugerencia;
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Contratos del Sistema.
@@ -51,12 +57,31 @@ public interface Contratos {
   Persona registrarPersona(Persona persona);
 
   /**
-   * Contrato: C03-Buscar Ficha.
+   * Contrato: C03-Buscar Ficha, ordenadas por relevancia y sin repetir (a lo mas
+   * {@link FichaIndex#MAX_RESULTADOS}).
    * @param query a buscar
    * @return {@link List} de {@link Ficha}
    */
   List<Ficha> buscarFicha(String query);
 
+  /**
+   * Contrato: C03-Buscar Ficha, con las mejores limit fichas (sin repetir) ordenadas por
+   * relevancia y cargando solo las colecciones del perfil.
+   * @param query a buscar
+   * @param limit cantidad maxima de fichas (a lo mas {@link FichaIndex#MAX_RESULTADOS}).
+   * @param profile colecciones a cargar.
+   * @return {@link List} de {@link Ficha}
+   */
+  List<Ficha> buscarFicha(String query, int limit, FetchProfile profile);
+
+  /**
+   * Sugiere nombres de pacientes, nombres de personas y ruts que empiecen con el prefijo.
+   * @param prefix escrito por el usuario.
+   * @param limit cantidad maxima de sugerencias.
+   * @return {@link List} de {@link Sugerencia}
+   */
+  List<Sugerencia> sugerir(String prefix, int limit);
+
   /**
    * Registra un control asociado a una {@link Ficha}.
    * @param control nuevo a registrar.
@@ -77,6 +102,58 @@ public interface Contratos {
    */
   List<Ficha> getAllFichas();
 
+  /**
+   * Obtiene una pagina de fichas ordenadas por id.
+   * @param after id de la ultima ficha de la pagina anterior, null para la primera.
+   * @param limit cantidad maxima de fichas.
+   * @return {@link List} of {@link Ficha}
+   */
+  List<Ficha> getFichas(Long after, long limit);
+
+  /**
+   * Obtiene una pagina de fichas ordenadas por id, cargando solo las colecciones del perfil.
+   * @param after id de la ultima ficha de la pagina anterior, null para la primera.
+   * @param limit cantidad maxima de fichas.
+   * @param profile colecciones a cargar.
+   * @return {@link List} of {@link Ficha}
+   */
+  List<Ficha> getFichas(Long after, long limit, FetchProfile profile);
+
+  /**
+   * Obtiene una pagina de fichas ordenadas por id, leyendo solo los campos pedidos.
+   * Las colecciones que no estan en los campos no se consultan.
+   * @param after id de la ultima ficha de la pagina anterior, null para la primera.
+   * @param limit cantidad maxima de fichas.
+   * @param profile colecciones a cargar.
+   * @param fields campos a leer.
+   * @return {@link List} of {@link Ficha}
+   */
+  List<Ficha> getFichas(Long after, long limit, FetchProfile profile, FieldSet fields);
+
+  /**
+   * Recorre todas las fichas sin cargarlas todas en memoria.
+   * El {@link Stream} debe cerrarse para liberar la consulta.
+   * @return {@link Stream} of {@link Ficha}
+   */
+  Stream<Ficha> streamFichas();
+
+  /**
+   * Recorre todas las fichas, cargando solo las colecciones del perfil.
+   * El {@link Stream} debe cerrarse para liberar la consulta.
+   * @param profile colecciones a cargar.
+   * @return {@link Stream} of {@link Ficha}
+   */
+  Stream<Ficha> streamFichas(FetchProfile profile);
+
+  /**
+   * Recorre todas las fichas, leyendo solo los campos pedidos.
+   * El {@link Stream} debe cerrarse para liberar la consulta.
+   * @param profile colecciones a cargar.
+   * @param fields campos a leer.
+   * @return {@link Stream} of {@link Ficha}
+   */
+  Stream<Ficha> streamFichas(FetchProfile profile, FieldSet fields);
+
   /**
    * Obtiene el id de una persona.
    * @param id a buscar.
@@ -90,17 +167,63 @@ public interface Contratos {
    */
   List<Persona> getAllPersonas();
 
+  /**
+   * Obtiene una pagina de personas ordenadas por id.
+   * @param after id de la ultima persona de la pagina anterior, null para la primera.
+   * @param limit cantidad maxima de personas.
+   * @return {@link List} of {@link Persona}
+   */
+  List<Persona> getPersonas(Long after, long limit);
+
+  /**
+   * Recorre todas las personas sin cargarlas todas en memoria.
+   * El {@link Stream} debe cerrarse para liberar la consulta.
+   * @return {@link Stream} of {@link Persona}
+   */
+  Stream<Persona> streamPersonas();
+
   /**
    * Obtiene un listado de los controles.
    * @param numeroFicha de los controles.
-   * @return {@link List} de {@link Control}
+   * @return {@link List} de {@link Control}, null si la ficha no existe.
    */
   List<Control> getControles(Long numeroFicha);
 
+  /**
+   * Obtiene una ficha por su numero.
+   * @param numeroFicha buscado.
+   * @return la {@link Ficha}, null si no existe.
+   */
+  Ficha getFichaByNumero(Long numeroFicha);
+
+  /**
+   * Obtiene los controles cuyo proximo control cae en el rango, el mas cercano primero.
+   * Cada control trae su ficha (con su duenio) y su veterinario.
+   * @param desde inicio del rango (inclusivo).
+   * @param hasta fin del rango (inclusivo).
+   * @param limit cantidad maxima de controles.
+   * @return {@link List} de {@link Control}
+   */
+  List<Control> getProximosControles(ZonedDateTime desde, ZonedDateTime hasta, long limit);
+
   /**
    * Obtiene el duenio de un paciente por su numero de ficha.
    * @param numeroFicha buscada.
-   * @return duenio de la Ficha.
+   * @return duenio de la Ficha, null si la ficha no existe.
    */
   Persona getDuenioOfFicha(Integer numeroFicha);
+
+  /**
+   * Obtiene una persona por su rut, con o sin puntos y guion.
+   * @param rut buscado.
+   * @return la {@link Persona}, null si el rut no es valido o no existe.
+   */
+  Persona getPersonaByRut(String rut);
+  /**
+   * Obtiene la version de los datos de las clases: aumenta con cada escritura de alguna de ellas.
+   * @param clases del modelo ({@link Ficha}, {@link Persona}, {@link Control}, {@link Examen}).
+   * @return la version.
+   */
+  long getVersion(Class<?>... clases);
+
 }
@@ -24,20 +24,41 @@
 
 package cl.ucn.disc.pdbp.tdd;
 
+import cl.ucn.disc.pdbp.tdd.dao.CachedRepository;
+import cl.ucn.disc.pdbp.tdd.dao.FetchProfile;
+import cl.ucn.disc.pdbp.tdd.dao.FieldSet;
+import cl.ucn.disc.pdbp.tdd.dao.PoolConfig;
+import cl.ucn.disc.pdbp.tdd.dao.PooledConnectionSource;
+import cl.ucn.disc.pdbp.tdd.dao.QueryCounter;
+import cl.ucn.disc.pdbp.tdd.dao.RelationLoader;
 import cl.ucn.disc.pdbp.tdd.dao.Repository;
 import cl.ucn.disc.pdbp.tdd.dao.RepositoryOrmLite;
+import cl.ucn.disc.pdbp.tdd.dao.RequestTiming;
+import cl.ucn.disc.pdbp.tdd.dao.RutMigration;
+import cl.ucn.disc.pdbp.tdd.dao.WriteQueue;
+import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeMigration;
+import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeMillisType;
 import cl.ucn.disc.pdbp.tdd.model.Control;
 import cl.ucn.disc.pdbp.tdd.model.Examen;
 import cl.ucn.disc.pdbp.tdd.model.Ficha;
 import cl.ucn.disc.pdbp.tdd.model.Persona;
+import cl.ucn.disc.pdbp.tdd.search.FichaIndex;
+import cl.ucn.disc.pdbp.tdd.search.SuggestIndex;
+import cl.ucn.disc.pdbp.tdd.search.Sugerencia;
+import cl.ucn.disc.pdbp.tdd.utils.Validation;
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
-import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 import java.sql.SQLException;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import org.apache.commons.lang3.StringUtils;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +74,16 @@ public class ContratosImpl implements Contratos {
    */
   private static final Logger log = LoggerFactory.getLogger(ContratosImpl.class);
 
+  /**
+   * Maximo de personas (duenios y veterinarios) en cache.
+   */
+  public static final int PERSONA_CACHE_SIZE = 1024;
+
+  /**
+   * Maximo de fichas (y de numeros inexistentes) en cache.
+   */
+  public static final int FICHA_CACHE_SIZE = 4096;
+
   /**
    * Fuente de conexion.
    */
@@ -74,34 +105,133 @@ public class ContratosImpl implements Contratos {
   private Repository<Ficha, Long> repoFicha;
 
   /**
-   * {@link Repository} de {@link Persona}.
+   * Cache de {@link Ficha} por id y por numero, sobre repoFicha.
+   * Sus fichas son compartidas: no se les asignan colecciones.
    */
-  private Repository<Persona, Long> repoPersona;
+  private CachedRepository<Ficha, Long> fichaCache;
 
   /**
-   * Constructor de la clase.
+   * {@link Repository} de {@link Persona}, con cache por id y por rut.
+   */
+  private CachedRepository<Persona, Long> repoPersona;
+
+  /**
+   * {@link Repository} de {@link Persona} sin cache, para leer dentro de las escrituras: la
+   * transaccion aun puede deshacerse.
+   */
+  private Repository<Persona, Long> repoPersonaDb;
+
+  /**
+   * Carga en lote de las relaciones de las fichas.
+   */
+  private RelationLoader relationLoader;
+
+  /**
+   * Indice de busqueda de fichas.
+   */
+  private FichaIndex fichaIndex;
+
+  /**
+   * Indice de sugerencias (typeahead).
+   */
+  private SuggestIndex suggestIndex;
+
+  /**
+   * Version de los datos de cada clase del modelo, aumenta con cada escritura.
+   */
+  private final Map<Class<?>, AtomicLong> versiones = new HashMap<>();
+
+  /**
+   * Cola de escrituras (null si las escrituras se hacen en el hilo del llamador).
+   */
+  private WriteQueue writeQueue;
+
+  /**
+   * Constructor de la clase, usa una unica conexion.
    * @param databaseUrl a utilizar para la conexion.
    */
   public ContratosImpl(String databaseUrl) {
+    this(conectar(databaseUrl));
+  }
 
-    if (databaseUrl == null) {
-      throw new IllegalArgumentException("No es posible crear los contratos con databaseUrl null");
+  /**
+   * Constructor de la clase, usa un pool de conexiones acotado.
+   * @param databaseUrl a utilizar para la conexion.
+   * @param poolConfig configuracion del pool.
+   */
+  public ContratosImpl(String databaseUrl, PoolConfig poolConfig) {
+    this(databaseUrl, poolConfig, false);
+  }
+
+  /**
+   * Constructor de la clase, usa un pool de conexiones acotado y opcionalmente la cola de
+   * escrituras de un unico hilo (group commit).
+   * @param databaseUrl a utilizar para la conexion.
+   * @param poolConfig configuracion del pool.
+   * @param writeQueue true para enviar todas las escrituras a la {@link WriteQueue}.
+   */
+  public ContratosImpl(String databaseUrl, PoolConfig poolConfig, boolean writeQueue) {
+    this(conectar(databaseUrl, poolConfig), writeQueue);
+  }
+
+  /**
+   * Constructor de la clase.
+   * @param connectionSource fuente de conexion a utilizar.
+   */
+  public ContratosImpl(ConnectionSource connectionSource) {
+    this(connectionSource, false);
+  }
+
+  /**
+   * Constructor de la clase.
+   * @param connectionSource fuente de conexion a utilizar.
+   * @param writeQueue true para enviar todas las escrituras a la {@link WriteQueue}.
+   */
+  public ContratosImpl(ConnectionSource connectionSource, boolean writeQueue) {
+
+    if (connectionSource == null) {
+      throw new IllegalArgumentException("No es posible crear los contratos con connectionSource null");
     }
 
     try {
       //Conexion
-      this.connectionSource = new JdbcConnectionSource(databaseUrl);
+      this.connectionSource = connectionSource;
 
       //Creacion de tablas.
       TableUtils.createTableIfNotExists(connectionSource, Control.class);
       TableUtils.createTableIfNotExists(connectionSource, Examen.class);
       TableUtils.createTableIfNotExists(connectionSource, Ficha.class);
+
+      //Ruts de versiones anteriores (k minuscula, ceros a la izquierda): forma canonica, para
+      //encontrarlos al buscar por rut. Las personas repetidas que difieren no se unen, salvo
+      //con RutMigration.MERGE_PROPERTY.
+      RutMigration.migrate(connectionSource, Ficha.class, Control.class);
       TableUtils.createTableIfNotExists(connectionSource, Persona. class);
 
+      //Fechas guardadas como texto por versiones anteriores (SQLite).
+      ZonedDateTimeMigration.migrate(connectionSource, Control.class, Examen.class, Ficha.class);
+
+      for (Class<?> clase : new Class<?>[] {Control.class, Examen.class, Ficha.class,
+          Persona.class}) {
+        this.versiones.put(clase, new AtomicLong());
+      }
+
       this.repoControl = new RepositoryOrmLite<>(connectionSource, Control.class);
       this.repoExamen = new RepositoryOrmLite<>(connectionSource, Examen.class);
       this.repoFicha = new RepositoryOrmLite<>(connectionSource, Ficha.class);
-      this.repoPersona = new RepositoryOrmLite<>(connectionSource, Persona.class);
+      this.fichaCache = new CachedRepository<>(this.repoFicha, FICHA_CACHE_SIZE, Ficha::getId,
+              "numero", Ficha::getNumero);
+      this.repoPersonaDb = new RepositoryOrmLite<>(connectionSource, Persona.class);
+      this.repoPersona = new CachedRepository<>(this.repoPersonaDb, PERSONA_CACHE_SIZE,
+              Persona::getId, "rut", Persona::getRut);
+      this.relationLoader = new RelationLoader(connectionSource);
+      this.fichaIndex = new FichaIndex();
+      this.suggestIndex = new SuggestIndex();
+      indexar();
+
+      if (writeQueue) {
+        this.writeQueue = new WriteQueue(connectionSource, WriteQueue.DEFAULT_MAX_BATCH);
+      }
 
     } catch (SQLException throwables) {
       throw new RuntimeException(throwables);
@@ -110,6 +240,128 @@ public class ContratosImpl implements Contratos {
 
   }
 
+  /**
+   * Construye los indices de busqueda y de sugerencias con las personas y fichas existentes.
+   */
+  private void indexar() {
+
+    long start = System.currentTimeMillis();
+
+    try (Stream<Persona> personas = this.repoPersona.stream()) {
+      personas.forEach(persona -> {
+        this.fichaIndex.addPersona(persona);
+        this.suggestIndex.addPersona(persona);
+      });
+    }
+    try (Stream<Ficha> fichas = this.repoFicha.stream()) {
+      fichas.forEach(ficha -> {
+        this.fichaIndex.addFicha(ficha);
+        this.suggestIndex.addFicha(ficha);
+      });
+    }
+
+    log.debug("Indexed {} Fichas ({} suggestions) in {} ms.", this.fichaIndex.size(),
+            this.suggestIndex.size(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Obtiene el cache de personas, con sus metricas (hits, misses, evictions).
+   * @return el {@link CachedRepository} de {@link Persona}.
+   */
+  public CachedRepository<Persona, Long> getPersonaCache() {
+    return this.repoPersona;
+  }
+
+  /**
+   * Crea una fuente de conexion unica.
+   * @param databaseUrl a utilizar para la conexion.
+   * @return la {@link ConnectionSource}.
+   */
+  private static ConnectionSource conectar(String databaseUrl) {
+
+    if (databaseUrl == null) {
+      throw new IllegalArgumentException("No es posible crear los contratos con databaseUrl null");
+    }
+
+    QueryCounter.install();
+    try {
+      return new JdbcConnectionSource(databaseUrl);
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Crea una fuente de conexion con pool.
+   * @param databaseUrl a utilizar para la conexion.
+   * @param poolConfig del pool.
+   * @return la {@link ConnectionSource}.
+   */
+  private static ConnectionSource conectar(String databaseUrl, PoolConfig poolConfig) {
+
+    if (databaseUrl == null) {
+      throw new IllegalArgumentException("No es posible crear los contratos con databaseUrl null");
+    }
+
+    if (poolConfig == null) {
+      throw new IllegalArgumentException("No es posible crear los contratos con poolConfig null");
+    }
+
+    QueryCounter.install();
+    try {
+      return new PooledConnectionSource(databaseUrl, poolConfig);
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Ejecuta una escritura, a traves de la {@link WriteQueue} si esta activa.
+   * Terminada la escritura (aun si falla) aumenta la version de la clase modificada.
+   * La espera de la {@link WriteQueue} se mide como {@link RequestTiming.Stage#WRITE}.
+   * @param modificada clase del modelo que se escribe.
+   * @param escritura a realizar.
+   * @param <T> tipo del resultado.
+   * @return el resultado de la escritura.
+   */
+  @SuppressWarnings("try")
+  private <T> T escribir(Class<?> modificada, Callable<T> escritura) {
+
+    try {
+      if (this.writeQueue != null) {
+        try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.WRITE)) {
+          return this.writeQueue.execute(escritura);
+        }
+      }
+      return escritura.call();
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    } finally {
+      this.versiones.get(modificada).incrementAndGet();
+    }
+  }
+
+  /**
+   * Obtiene la version de los datos de las clases: la suma de sus versiones.
+   * @param clases del modelo.
+   * @return la version.
+   */
+  @Override
+  public long getVersion(Class<?>... clases) {
+
+    long version = 0;
+    for (Class<?> clase : clases) {
+      AtomicLong actual = this.versiones.get(clase);
+      if (actual == null) {
+        throw new IllegalArgumentException("Clase sin version: " + clase);
+      }
+      version += actual.get();
+    }
+    return version;
+  }
+
   /**
    * Contrato: C01-Registrar los datos de un paciente.
    *
@@ -121,8 +373,20 @@ public class ContratosImpl implements Contratos {
     if (ficha == null) {
       throw new NullPointerException("Ficha invalida!");
     }
-    this.repoFicha.create(ficha);
-    return this.repoFicha.findById(ficha.getId());
+    Ficha registrada;
+    try {
+      registrada = escribir(Ficha.class, () -> {
+        this.repoFicha.create(ficha);
+        return this.repoFicha.findById(ficha.getId());
+      });
+    } finally {
+      //Despues del commit o del rollback: el cache no guarda lo leido durante la transaccion.
+      this.fichaCache.invalidateKey(ficha.getNumero());
+    }
+    //Confirmada la escritura, se agrega al indice de busqueda.
+    this.fichaIndex.addFicha(registrada);
+    this.suggestIndex.addFicha(registrada);
+    return registrada;
   }
 
   /**
@@ -136,8 +400,24 @@ public class ContratosImpl implements Contratos {
     if (persona == null) {
       throw  new NullPointerException("Persona invalida!");
     }
-    this.repoPersona.create(persona);
-    return this.repoPersona.findById(persona.getId());
+    Persona registrada;
+    try {
+      registrada = escribir(Persona.class, () -> {
+        //Sin cache: si la transaccion se deshace (o la WriteQueue la reintenta de a una), el
+        //cache no debe quedar con una persona que no existe.
+        this.repoPersonaDb.create(persona);
+        return this.repoPersonaDb.findById(persona.getId());
+      });
+    } finally {
+      //Despues del commit o del rollback, por id y por rut (incluida la entrada negativa).
+      if (persona.getId() != null) {
+        this.repoPersona.invalidate(persona.getId());
+      }
+      this.repoPersona.invalidateKey(persona.getRut());
+    }
+    this.fichaIndex.addPersona(registrada);
+    this.suggestIndex.addPersona(registrada);
+    return registrada;
   }
 
   /**
@@ -148,45 +428,68 @@ public class ContratosImpl implements Contratos {
    */
   @Override
   public List<Ficha> buscarFicha(String query) {
+    return buscarFicha(query, Integer.MAX_VALUE, FetchProfile.EAGER);
+  }
+
+  /**
+   * Contrato: C03-Buscar Ficha, con las mejores limit fichas (sin repetir) ordenadas por
+   * relevancia y cargando solo las colecciones del perfil.
+   *
+   * @param query a buscar
+   * @param limit cantidad maxima de fichas (a lo mas {@link FichaIndex#MAX_RESULTADOS}).
+   * @param profile colecciones a cargar.
+   * @return {@link List} de {@link Ficha}
+   */
+  @Override
+  public List<Ficha> buscarFicha(String query, int limit, FetchProfile profile) {
 
     //Nullity
     if (query == null) {
       throw new IllegalArgumentException("Query was null");
     }
 
-    //The result: List of Ficha
-    List<Ficha> fichas = new ArrayList<>();
-    QueryBuilder<Persona, Long> queryPersona = this.repoPersona.getQuery();
-
-    try {
-      //1. Buscar por numero.
-      if (StringUtils.isNumeric(query)) {
-
-        //Todas las fichas con el numero buscado.
-        log.debug("Finding Fichas with numero ..");
-        fichas.addAll(this.repoFicha.findAll("numero", query));
+    //1. Ids de las fichas desde el indice (numero, rut y nombre del duenio, nombre del paciente),
+    //sin repetir y de mayor a menor relevancia.
+    List<Long> ids = this.fichaIndex.search(query, limit);
+    log.debug("Found {} Fichas for <{}> in the index ..", ids.size(), query);
 
-        //2. Buscar por el rut del duenio.
-        log.debug("Finding Fichas with rut of Duenio ..");
-        queryPersona.where().like("rut", "%" + query + "%");
+    //2. Las fichas en una sola consulta, en el orden del indice.
+    Map<Long, Ficha> porId = new HashMap<>();
+    for (Ficha ficha : this.repoFicha.findByIds(ids)) {
+      porId.put(ficha.getId(), ficha);
+    }
 
-        //Join between Duenio and Ficha.
-        fichas.addAll(this.repoFicha.getQuery().join(queryPersona).query());
+    List<Ficha> fichas = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      Ficha ficha = porId.get(id);
+      if (ficha != null) {
+        fichas.add(ficha);
       }
-      //3.Busqueda por nombre del paciente
-      log.debug("Finding Fichas with nombre of Paciente ..");
-      fichas.addAll(this.repoFicha.getQuery().where().like("nombre", "%" + query + "%").query());
+    }
 
-      //4.Busqueda por nombre del Duenio.
-      log.debug("Finding Fichas with nombre of Duenio ..");
-      queryPersona.where().like("nombre", query);
-      fichas.addAll(this.repoFicha.getQuery().join(queryPersona).query());
+    return cargar(fichas, profile);
+  }
 
-    } catch (SQLException ex) {
-      throw new RuntimeException(ex);
-    }
+  /**
+   * Sugiere nombres de pacientes, nombres de personas y ruts que empiecen con el prefijo.
+   *
+   * @param prefix escrito por el usuario.
+   * @param limit cantidad maxima de sugerencias.
+   * @return {@link List} de {@link Sugerencia}
+   */
+  @Override
+  public List<Sugerencia> sugerir(String prefix, int limit) {
+    return this.suggestIndex.suggest(prefix, limit);
+  }
 
-    return fichas;
+  /**
+   * Carga en lote los duenios y las colecciones de las fichas segun el perfil.
+   * @param fichas a completar.
+   * @param profile colecciones a cargar.
+   * @return las mismas fichas.
+   */
+  private List<Ficha> cargar(List<Ficha> fichas, FetchProfile profile) {
+    return this.relationLoader.load(fichas, profile);
   }
 
   /**
@@ -202,14 +505,22 @@ public class ContratosImpl implements Contratos {
       throw  new NullPointerException("Control invalido!");
     }
 
-    this.repoControl.create(control);
-
-    control.getFicha().createControl(control);
-    //Cuando se hace la relacion con el control, se debe actualizar la ficha en el repositorio.
-    this.repoFicha.update(control.getFicha());
-
-    return this.repoControl.findById(control.getId());
+    Control registrado = escribir(Control.class, () -> {
+      this.repoControl.create(control);
+      return this.repoControl.findById(control.getId());
+    });
+
+    //La coleccion lazy de la ficha se lee desde la base de datos; la que esta en memoria
+    //(sin dao: no inserta) se completa aqui, ya confirmada la escritura: la WriteQueue puede
+    //ejecutar la escritura mas de una vez (reintento de un group commit fallido).
+    Ficha ficha = control.getFicha();
+    if (ficha != null && ficha.isControlesCargados()) {
+      synchronized (ficha) {
+        ficha.createControl(control);
+      }
+    }
 
+    return registrado;
   }
 
   /**
@@ -224,13 +535,20 @@ public class ContratosImpl implements Contratos {
     if (examen == null) {
       throw  new NullPointerException("Examen invalido");
     }
-    this.repoExamen.create(examen);
-
-    examen.getControl().createExamen(examen);
-
-    this.repoControl.update(examen.getControl());
+    Examen registrado = escribir(Examen.class, () -> {
+      this.repoExamen.create(examen);
+      return this.repoExamen.findById(examen.getId());
+    });
+
+    //Igual que en registrarControl: solo la coleccion en memoria, ya confirmada la escritura.
+    Control control = examen.getControl();
+    if (control != null && control.isExamenesCargados()) {
+      synchronized (control) {
+        control.createExamen(examen);
+      }
+    }
 
-    return this.repoExamen.findById(examen.getId());
+    return registrado;
   }
 
   /**
@@ -240,7 +558,95 @@ public class ContratosImpl implements Contratos {
    */
   @Override
   public List<Ficha> getAllFichas() {
-    return repoFicha.findAll();
+    return cargar(repoFicha.findAll(), FetchProfile.EAGER);
+  }
+
+  /**
+   * Obtiene una pagina de fichas ordenadas por id.
+   *
+   * @param after id de la ultima ficha de la pagina anterior, null para la primera.
+   * @param limit cantidad maxima de fichas.
+   * @return {@link List} of {@link Ficha}
+   */
+  @Override
+  public List<Ficha> getFichas(Long after, long limit) {
+    return getFichas(after, limit, FetchProfile.EAGER);
+  }
+
+  /**
+   * Obtiene una pagina de fichas ordenadas por id, cargando solo las colecciones del perfil.
+   *
+   * @param after id de la ultima ficha de la pagina anterior, null para la primera.
+   * @param limit cantidad maxima de fichas.
+   * @param profile colecciones a cargar.
+   * @return {@link List} of {@link Ficha}
+   */
+  @Override
+  public List<Ficha> getFichas(Long after, long limit, FetchProfile profile) {
+    return getFichas(after, limit, profile, FieldSet.ALL);
+  }
+
+  /**
+   * Obtiene una pagina de fichas ordenadas por id, leyendo solo los campos pedidos.
+   *
+   * @param after id de la ultima ficha de la pagina anterior, null para la primera.
+   * @param limit cantidad maxima de fichas.
+   * @param profile colecciones a cargar.
+   * @param fields campos a leer.
+   * @return {@link List} of {@link Ficha}
+   */
+  @Override
+  public List<Ficha> getFichas(Long after, long limit, FetchProfile profile, FieldSet fields) {
+
+    if (profile == null) {
+      throw new IllegalArgumentException("FetchProfile null");
+    }
+    if (fields == null) {
+      throw new IllegalArgumentException("FieldSet null");
+    }
+    return this.relationLoader.load(repoFicha.findPage(after, limit, fields.getFichaFields()),
+            fields.restrict(profile), fields);
+  }
+
+  /**
+   * Recorre todas las fichas sin cargarlas todas en memoria.
+   *
+   * @return {@link Stream} of {@link Ficha}
+   */
+  @Override
+  public Stream<Ficha> streamFichas() {
+    return streamFichas(FetchProfile.EAGER);
+  }
+
+  /**
+   * Recorre todas las fichas, cargando solo las colecciones del perfil.
+   *
+   * @param profile colecciones a cargar.
+   * @return {@link Stream} of {@link Ficha}
+   */
+  @Override
+  public Stream<Ficha> streamFichas(FetchProfile profile) {
+    return streamFichas(profile, FieldSet.ALL);
+  }
+
+  /**
+   * Recorre todas las fichas, leyendo solo los campos pedidos.
+   *
+   * @param profile colecciones a cargar.
+   * @param fields campos a leer.
+   * @return {@link Stream} of {@link Ficha}
+   */
+  @Override
+  public Stream<Ficha> streamFichas(FetchProfile profile, FieldSet fields) {
+
+    if (profile == null) {
+      throw new IllegalArgumentException("FetchProfile null");
+    }
+    if (fields == null) {
+      throw new IllegalArgumentException("FieldSet null");
+    }
+    return this.relationLoader.stream(repoFicha, fields.restrict(profile), fields,
+            RelationLoader.DEFAULT_BATCH_SIZE);
   }
 
   /**
@@ -267,20 +673,98 @@ public class ContratosImpl implements Contratos {
     return repoPersona.findAll();
   }
 
+  /**
+   * Obtiene una pagina de personas ordenadas por id.
+   *
+   * @param after id de la ultima persona de la pagina anterior, null para la primera.
+   * @param limit cantidad maxima de personas.
+   * @return {@link List} of {@link Persona}
+   */
+  @Override
+  public List<Persona> getPersonas(Long after, long limit) {
+    return repoPersona.findPage(after, limit);
+  }
+
+  /**
+   * Recorre todas las personas sin cargarlas todas en memoria.
+   *
+   * @return {@link Stream} of {@link Persona}
+   */
+  @Override
+  public Stream<Persona> streamPersonas() {
+    return repoPersona.stream();
+  }
+
   /**
    * Obtiene un listado de los controles.
    * @param numeroFicha de los controles.
-   * @return {@link List} de {@link Control}
+   * @return {@link List} de {@link Control}, null si la ficha no existe.
    */
   @Override
   public List<Control> getControles(Long numeroFicha) {
 
-    Ficha fichaBuscada = this.repoFicha.findAll("numero", numeroFicha).get(0);
+    Ficha fichaBuscada = getFichaByNumero(numeroFicha);
+    if (fichaBuscada == null) {
+      return null;
+    }
 
-    if (fichaBuscada.equals(null)) {
+    //La ficha del cache es compartida: las colecciones se cargan en una copia.
+    List<Ficha> fichas = cargar(this.repoFicha.findByIds(
+            Collections.singletonList(fichaBuscada.getId())), FetchProfile.EAGER);
+    if (fichas.isEmpty()) {
       return null;
     }
-    return new ArrayList<>(fichaBuscada.getControles());
+    return new ArrayList<>(fichas.get(0).getControles());
+  }
+
+  /**
+   * Obtiene una ficha por su numero, desde el cache (incluidos los numeros inexistentes).
+   * @param numeroFicha buscado.
+   * @return la {@link Ficha} sin colecciones y con el duenio solo con su id, null si no existe.
+   */
+  @Override
+  public Ficha getFichaByNumero(Long numeroFicha) {
+    if (numeroFicha == null) {
+      return null;
+    }
+    return this.fichaCache.findByUnique("numero", numeroFicha);
+  }
+
+  /**
+   * Obtiene los controles cuyo proximo control cae en el rango, el mas cercano primero.
+   * Usa el indice de Control.proximoControl (BIGINT ordenable): un BETWEEN acotado por limit.
+   * @param desde inicio del rango (inclusivo).
+   * @param hasta fin del rango (inclusivo).
+   * @param limit cantidad maxima de controles.
+   * @return {@link List} de {@link Control}
+   */
+  @Override
+  public List<Control> getProximosControles(ZonedDateTime desde, ZonedDateTime hasta,
+                                            long limit) {
+
+    if (desde == null || hasta == null) {
+      throw new IllegalArgumentException("El rango no puede ser null");
+    }
+    if (hasta.isBefore(desde)) {
+      throw new IllegalArgumentException("hasta debe ser posterior a desde");
+    }
+    if (limit < 1) {
+      throw new IllegalArgumentException("limit debe ser >= 1");
+    }
+
+    try {
+      List<Control> controles = this.repoControl.getQuery()
+              .orderBy("proximoControl", true)
+              .orderBy("id", true)
+              .limit(limit)
+              .where().between("proximoControl",
+                      ZonedDateTimeMillisType.desde(desde.toInstant()),
+                      ZonedDateTimeMillisType.hasta(hasta.toInstant()))
+              .query();
+      return this.relationLoader.loadControles(controles);
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
   }
 
 
@@ -288,17 +772,41 @@ public class ContratosImpl implements Contratos {
    * Obtiene el duenio de un paciente por su numero de ficha.
    *
    * @param numeroFicha buscada.
-   * @return duenio de la Ficha.
+   * @return duenio de la Ficha, null si la ficha no existe.
    */
   @Override
   public Persona getDuenioOfFicha(Integer numeroFicha) {
 
-    Ficha fichaBuscada = this.repoFicha.findAll("numero", numeroFicha).get(0);
+    Ficha fichaBuscada = getFichaByNumero(numeroFicha == null ? null : numeroFicha.longValue());
+    if (fichaBuscada == null) {
+      return null;
+    }
+
+    return this.repoPersona.findById(fichaBuscada.getDuenio().getId());
+  }
 
-    if (fichaBuscada.equals(null)) {
+  /**
+   * Obtiene una persona por su rut, con o sin puntos y guion.
+   * Se busca la forma canonica por igualdad (indice de Persona.rut), desde el cache.
+   *
+   * @param rut buscado.
+   * @return la {@link Persona}, null si el rut no es valido o no existe.
+   */
+  @Override
+  public Persona getPersonaByRut(String rut) {
+
+    String canonico = Validation.normalizeRut(rut);
+    if (canonico == null) {
       return null;
     }
+    return this.repoPersona.findByUnique("rut", canonico);
+  }
 
-    return fichaBuscada.getDuenio();
+  /**
+   * Obtiene el cache de fichas por numero, con sus metricas.
+   * @return el {@link CachedRepository} de {@link Ficha}.
+   */
+  public CachedRepository<Ficha, Long> getFichaCache() {
+    return this.fichaCache;
   }
 }
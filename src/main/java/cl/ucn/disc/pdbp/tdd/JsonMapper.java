@@ -0,0 +1,718 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.dao.RequestTiming;
+import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeType;
+import cl.ucn.disc.pdbp.tdd.model.Control;
+import cl.ucn.disc.pdbp.tdd.model.Examen;
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.Persona;
+import cl.ucn.disc.pdbp.tdd.model.Sexo;
+import cl.ucn.disc.pdbp.tdd.model.Tipo;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.j256.ormlite.dao.LazyForeignCollection;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Configuracion JSON de la API: Gson con {@link TypeAdapter}s escritos a mano para el modelo
+ * (sin reflexion) y escritura directa a un {@link OutputStream} con {@link JsonWriter}.
+ * Compacto por defecto; con {@code -Dfivet.json.pretty=true} indentado (desarrollo).
+ *
+ * @author Gerald Lopez
+ */
+public final class JsonMapper {
+
+  /**
+   * Propiedad del sistema que activa el JSON indentado.
+   */
+  public static final String PRETTY_PROPERTY = "fivet.json.pretty";
+
+  /**
+   * La instancia de la aplicacion, segun {@link #PRETTY_PROPERTY}.
+   */
+  private static final JsonMapper INSTANCE = new JsonMapper(Boolean.getBoolean(PRETTY_PROPERTY));
+
+  /**
+   * Gson configurado.
+   */
+  private final Gson gson;
+
+  /**
+   * JSON indentado.
+   */
+  private final boolean pretty;
+
+  /**
+   * Constructor.
+   * @param pretty true para JSON indentado.
+   */
+  public JsonMapper(boolean pretty) {
+
+    this.pretty = pretty;
+
+    GsonBuilder builder = new GsonBuilder()
+            .registerTypeAdapter(ZonedDateTime.class, new ZonedDateTimeAdapter().nullSafe())
+            .registerTypeAdapter(Persona.class, new PersonaAdapter().nullSafe())
+            // Las colecciones lazy (no incluidas) no se serializan, para no consultarlas.
+            .registerTypeHierarchyAdapter(LazyForeignCollection.class, new LazyCollectionAdapter());
+    if (pretty) {
+      builder.setPrettyPrinting();
+    }
+    Gson base = builder.create();
+
+    // Ficha, Control y Examen se escriben unos dentro de otros: comparten los adaptadores.
+    ExamenAdapter examen = new ExamenAdapter(base);
+    ControlAdapter control = new ControlAdapter(base, examen);
+    FichaAdapter ficha = new FichaAdapter(base, control);
+    control.fichaAdapter = ficha;
+    examen.controlAdapter = control;
+
+    builder.registerTypeAdapter(Ficha.class, ficha.nullSafe())
+            .registerTypeAdapter(Control.class, control.nullSafe())
+            .registerTypeAdapter(Examen.class, examen.nullSafe());
+    this.gson = builder.create();
+  }
+
+  /**
+   * Obtiene la instancia de la aplicacion.
+   * @return el {@link JsonMapper}.
+   */
+  public static JsonMapper get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Obtiene el Gson configurado.
+   * @return el {@link Gson}.
+   */
+  public Gson getGson() {
+    return this.gson;
+  }
+
+  /**
+   * Indica si el JSON es indentado.
+   * @return true si es indentado.
+   */
+  public boolean isPretty() {
+    return this.pretty;
+  }
+
+  /**
+   * Serializa un objeto a String.
+   * @param objeto a serializar.
+   * @return el JSON.
+   */
+  @SuppressWarnings("try")
+  public String toJson(Object objeto) {
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SERIALIZE)) {
+      return this.gson.toJson(objeto);
+    }
+  }
+
+  /**
+   * Deserializa un objeto.
+   * @param json a leer.
+   * @param clase del objeto.
+   * @param <T> tipo del objeto.
+   * @return el objeto.
+   */
+  public <T> T fromJson(String json, Class<T> clase) {
+    return this.gson.fromJson(json, clase);
+  }
+
+  /**
+   * Escribe el objeto como JSON directamente en el stream, sin construir el String.
+   * El tiempo y los bytes escritos se informan a {@link RequestTiming}.
+   * @param out donde escribir.
+   * @param objeto a escribir.
+   * @throws IOException en caso de error al escribir.
+   */
+  @SuppressWarnings("try")
+  public void write(OutputStream out, Object objeto) throws IOException {
+
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SERIALIZE)) {
+      Contador contador = new Contador(out);
+      JsonWriter writer = writer(contador);
+      if (objeto == null) {
+        writer.nullValue();
+      } else {
+        this.gson.toJson(objeto, objeto.getClass(), writer);
+      }
+      writer.flush();
+      RequestTiming.addBytes(contador.bytes);
+    }
+  }
+
+  /**
+   * Escribe los elementos como un arreglo JSON directamente en el stream, uno a la vez,
+   * sin construir la respuesta completa en memoria. Las lecturas que el stream haga a la base
+   * de datos se informan a {@link RequestTiming} como tales, no como serializacion.
+   * @param out donde escribir.
+   * @param elementos a escribir.
+   * @param <T> tipo de los elementos.
+   * @throws IOException en caso de error al escribir.
+   */
+  @SuppressWarnings("try")
+  public <T> void writeArray(OutputStream out, Stream<T> elementos) throws IOException {
+
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SERIALIZE)) {
+      Contador contador = new Contador(out);
+      JsonWriter writer = writer(contador);
+      writer.beginArray();
+      Iterator<T> iterator = elementos.iterator();
+      while (iterator.hasNext()) {
+        T elemento = iterator.next();
+        this.gson.toJson(elemento, elemento.getClass(), writer);
+      }
+      writer.endArray();
+      writer.flush();
+      RequestTiming.addBytes(contador.bytes);
+    }
+  }
+
+  /**
+   * Construye el {@link JsonWriter} sobre el stream, con la configuracion de Gson.
+   * @param out donde escribir.
+   * @return el {@link JsonWriter}.
+   * @throws IOException en caso de error.
+   */
+  private JsonWriter writer(OutputStream out) throws IOException {
+    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    return this.gson.newJsonWriter(writer);
+  }
+
+  /**
+   * @return el modo del JSON.
+   */
+  @Override
+  public String toString() {
+    return "JsonMapper{pretty=" + pretty + "}";
+  }
+
+  /**
+   * Cuenta los bytes escritos en el stream (sin buffer propio: el {@link OutputStreamWriter}
+   * ya escribe en bloques).
+   */
+  private static final class Contador extends FilterOutputStream {
+
+    /**
+     * Bytes escritos.
+     */
+    private long bytes;
+
+    /**
+     * Constructor.
+     * @param out donde escribir.
+     */
+    Contador(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      bytes += len;
+    }
+  }
+
+  /**
+   * Omite el valor actual del reader si es null.
+   * @param in el reader.
+   * @return true si el valor era null.
+   * @throws IOException en caso de error.
+   */
+  private static boolean skipNull(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Lee un String que puede ser null.
+   * @param in el reader.
+   * @return el String o null.
+   * @throws IOException en caso de error.
+   */
+  private static String nextString(JsonReader in) throws IOException {
+    return skipNull(in) ? null : in.nextString();
+  }
+
+  /**
+   * Lee un Float que puede ser null.
+   * @param in el reader.
+   * @return el Float o null.
+   * @throws IOException en caso de error.
+   */
+  private static Float nextFloat(JsonReader in) throws IOException {
+    return skipNull(in) ? null : (float) in.nextDouble();
+  }
+
+  /**
+   * Lee un Integer que puede ser null.
+   * @param in el reader.
+   * @return el Integer o null.
+   * @throws IOException en caso de error.
+   */
+  private static Integer nextInt(JsonReader in) throws IOException {
+    return skipNull(in) ? null : in.nextInt();
+  }
+
+  /**
+   * {@link ZonedDateTime} como fecha-hora ISO con offset (2020-07-01T10:15:30-04:00).
+   */
+  static final class ZonedDateTimeAdapter extends TypeAdapter<ZonedDateTime> {
+
+    @Override
+    public void write(JsonWriter out, ZonedDateTime value) throws IOException {
+      out.value(ZonedDateTimeType.format(value));
+    }
+
+    @Override
+    public ZonedDateTime read(JsonReader in) throws IOException {
+      String texto = in.nextString();
+      try {
+        return ZonedDateTimeType.parse(texto);
+      } catch (DateTimeParseException ex) {
+        throw new JsonParseException("Fecha invalida: " + texto, ex);
+      }
+    }
+  }
+
+  /**
+   * {@link Persona}: sus campos no nulos (una persona no cargada solo tiene id).
+   * Al leer se construye con su constructor (validado), sin id.
+   */
+  static final class PersonaAdapter extends TypeAdapter<Persona> {
+
+    @Override
+    public void write(JsonWriter out, Persona persona) throws IOException {
+      out.beginObject();
+      // Los campos null (no leidos o solo el id) no se escriben.
+      out.name("id").value(persona.getId());
+      out.name("nombre").value(persona.getNombre());
+      out.name("apellido").value(persona.getApellido());
+      out.name("rut").value(persona.getRut());
+      out.name("direccion").value(persona.getDireccion());
+      out.name("telefonoFijo").value(persona.getTelefonoFijo());
+      out.name("telefonoMovil").value(persona.getTelefonoMovil());
+      out.name("email").value(persona.getEmail());
+      out.endObject();
+    }
+
+    @Override
+    public Persona read(JsonReader in) throws IOException {
+
+      String nombre = null;
+      String apellido = null;
+      String rut = null;
+      String direccion = null;
+      Integer telefonoFijo = null;
+      Integer telefonoMovil = null;
+      String email = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "nombre":
+            nombre = nextString(in);
+            break;
+          case "apellido":
+            apellido = nextString(in);
+            break;
+          case "rut":
+            rut = nextString(in);
+            break;
+          case "direccion":
+            direccion = nextString(in);
+            break;
+          case "telefonoFijo":
+            telefonoFijo = nextInt(in);
+            break;
+          case "telefonoMovil":
+            telefonoMovil = nextInt(in);
+            break;
+          case "email":
+            email = nextString(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      return new Persona(nombre, apellido, rut, direccion, telefonoFijo, telefonoMovil, email);
+    }
+  }
+
+  /**
+   * {@link Ficha}: sus campos no nulos, con el duenio y los controles solo si estan cargados.
+   * Al leer se construye con su constructor, sin id.
+   */
+  static final class FichaAdapter extends TypeAdapter<Ficha> {
+
+    /**
+     * Gson para fechas y personas.
+     */
+    private final Gson gson;
+
+    /**
+     * Adaptador de los controles.
+     */
+    private final ControlAdapter controlAdapter;
+
+    /**
+     * Constructor.
+     * @param gson para fechas y personas.
+     * @param controlAdapter de los controles.
+     */
+    FichaAdapter(Gson gson, ControlAdapter controlAdapter) {
+      this.gson = gson;
+      this.controlAdapter = controlAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Ficha ficha) throws IOException {
+      out.beginObject();
+      // Los campos null (no leidos o solo el id) no se escriben.
+      out.name("id").value(ficha.getId());
+      out.name("numero").value(ficha.getNumero());
+      out.name("nombre").value(ficha.getNombre());
+      out.name("especie").value(ficha.getEspecie());
+      if (ficha.getFechaNacimiento() != null) {
+        out.name("fechaNacimiento").value(ZonedDateTimeType.format(ficha.getFechaNacimiento()));
+      }
+      if (ficha.getRaza() != null) {
+        out.name("raza").value(ficha.getRaza());
+      }
+      if (ficha.getSexo() != null) {
+        out.name("sexo").value(ficha.getSexo().name());
+      }
+      out.name("color").value(ficha.getColor());
+      if (ficha.getTipo() != null) {
+        out.name("tipo").value(ficha.getTipo().name());
+      }
+      if (ficha.getDuenio() != null) {
+        out.name("duenio");
+        this.gson.toJson(ficha.getDuenio(), Persona.class, out);
+      }
+      if (ficha.isControlesCargados()) {
+        out.name("controles").beginArray();
+        for (Control control : ficha.getControles()) {
+          this.controlAdapter.write(out, control);
+        }
+        out.endArray();
+      }
+      if (ficha.getNombreFoto() != null) {
+        out.name("nombreFoto").value(ficha.getNombreFoto());
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Ficha read(JsonReader in) throws IOException {
+
+      Long numero = null;
+      String nombre = null;
+      String especie = null;
+      ZonedDateTime fechaNacimiento = null;
+      String raza = null;
+      Sexo sexo = null;
+      String color = null;
+      Tipo tipo = null;
+      Persona duenio = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "numero":
+            numero = skipNull(in) ? null : in.nextLong();
+            break;
+          case "nombre":
+            nombre = nextString(in);
+            break;
+          case "especie":
+            especie = nextString(in);
+            break;
+          case "fechaNacimiento":
+            fechaNacimiento = this.gson.fromJson(in, ZonedDateTime.class);
+            break;
+          case "raza":
+            raza = nextString(in);
+            break;
+          case "sexo":
+            sexo = skipNull(in) ? null : Sexo.valueOf(in.nextString());
+            break;
+          case "color":
+            color = nextString(in);
+            break;
+          case "tipo":
+            tipo = skipNull(in) ? null : Tipo.valueOf(in.nextString());
+            break;
+          case "duenio":
+            duenio = this.gson.fromJson(in, Persona.class);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      if (numero == null) {
+        throw new JsonParseException("Ficha sin numero");
+      }
+      return new Ficha(numero, nombre, especie, fechaNacimiento, raza, sexo, color, tipo, duenio);
+    }
+  }
+
+  /**
+   * {@link Control}: sus campos no nulos, con la ficha, el veterinario y los examenes
+   * (si estan cargados). Al leer se construye con su constructor, sin id.
+   */
+  static final class ControlAdapter extends TypeAdapter<Control> {
+
+    /**
+     * Gson para fechas y personas.
+     */
+    private final Gson gson;
+
+    /**
+     * Adaptador de los examenes.
+     */
+    private final ExamenAdapter examenAdapter;
+
+    /**
+     * Adaptador de la ficha (asignado despues, se referencian mutuamente).
+     */
+    private FichaAdapter fichaAdapter;
+
+    /**
+     * Constructor.
+     * @param gson para fechas y personas.
+     * @param examenAdapter de los examenes.
+     */
+    ControlAdapter(Gson gson, ExamenAdapter examenAdapter) {
+      this.gson = gson;
+      this.examenAdapter = examenAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Control control) throws IOException {
+      out.beginObject();
+      out.name("id").value(control.getId());
+      if (control.getFecha() != null) {
+        out.name("fecha").value(ZonedDateTimeType.format(control.getFecha()));
+      }
+      if (control.getProximoControl() != null) {
+        out.name("proximoControl").value(ZonedDateTimeType.format(control.getProximoControl()));
+      }
+      if (control.getTemperatura() != null) {
+        out.name("temperatura").value(control.getTemperatura());
+        out.name("peso").value(control.getPeso());
+        out.name("altura").value(control.getAltura());
+      }
+      if (control.getDiagnostico() != null) {
+        out.name("diagnostico").value(control.getDiagnostico());
+      }
+      if (control.getVeterinario() != null) {
+        out.name("veterinario");
+        this.gson.toJson(control.getVeterinario(), Persona.class, out);
+      }
+      if (control.getFicha() != null) {
+        out.name("ficha");
+        this.fichaAdapter.write(out, control.getFicha());
+      }
+      if (control.isExamenesCargados()) {
+        out.name("examenes").beginArray();
+        for (Examen examen : control.getExamenes()) {
+          this.examenAdapter.write(out, examen);
+        }
+        out.endArray();
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Control read(JsonReader in) throws IOException {
+
+      ZonedDateTime fecha = null;
+      ZonedDateTime proximoControl = null;
+      Float temperatura = null;
+      Float peso = null;
+      Float altura = null;
+      String diagnostico = null;
+      Persona veterinario = null;
+      Ficha ficha = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "fecha":
+            fecha = this.gson.fromJson(in, ZonedDateTime.class);
+            break;
+          case "proximoControl":
+            proximoControl = this.gson.fromJson(in, ZonedDateTime.class);
+            break;
+          case "temperatura":
+            temperatura = nextFloat(in);
+            break;
+          case "peso":
+            peso = nextFloat(in);
+            break;
+          case "altura":
+            altura = nextFloat(in);
+            break;
+          case "diagnostico":
+            diagnostico = nextString(in);
+            break;
+          case "veterinario":
+            veterinario = this.gson.fromJson(in, Persona.class);
+            break;
+          case "ficha":
+            ficha = skipNull(in) ? null : this.fichaAdapter.read(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      return new Control(fecha, proximoControl, temperatura, peso, altura, diagnostico,
+              veterinario, ficha);
+    }
+  }
+
+  /**
+   * {@link Examen}: sus campos no nulos, con su control (normalmente solo el id).
+   * Al leer se construye con su constructor, sin id.
+   */
+  static final class ExamenAdapter extends TypeAdapter<Examen> {
+
+    /**
+     * Gson para fechas.
+     */
+    private final Gson gson;
+
+    /**
+     * Adaptador del control (asignado despues, se referencian mutuamente).
+     */
+    private ControlAdapter controlAdapter;
+
+    /**
+     * Constructor.
+     * @param gson para fechas.
+     */
+    ExamenAdapter(Gson gson) {
+      this.gson = gson;
+    }
+
+    @Override
+    public void write(JsonWriter out, Examen examen) throws IOException {
+      out.beginObject();
+      out.name("id").value(examen.getId());
+      if (examen.getNombre() != null) {
+        out.name("nombre").value(examen.getNombre());
+      }
+      if (examen.getFecha() != null) {
+        out.name("fecha").value(ZonedDateTimeType.format(examen.getFecha()));
+      }
+      if (examen.getControl() != null) {
+        out.name("control");
+        this.controlAdapter.write(out, examen.getControl());
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Examen read(JsonReader in) throws IOException {
+
+      String nombre = null;
+      ZonedDateTime fecha = null;
+      Control control = null;
+
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "nombre":
+            nombre = nextString(in);
+            break;
+          case "fecha":
+            fecha = this.gson.fromJson(in, ZonedDateTime.class);
+            break;
+          case "control":
+            control = skipNull(in) ? null : this.controlAdapter.read(in);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+
+      return new Examen(nombre, fecha, control);
+    }
+  }
+
+  /**
+   * Serializa una {@link LazyForeignCollection} como null (se omite) sin consultarla.
+   */
+  private static final class LazyCollectionAdapter
+          extends TypeAdapter<LazyForeignCollection<?, ?>> {
+
+    @Override
+    public void write(JsonWriter out, LazyForeignCollection<?, ?> value) throws IOException {
+      out.nullValue();
+    }
+
+    @Override
+    public LazyForeignCollection<?, ?> read(JsonReader in) throws IOException {
+      in.skipValue();
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,542 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd;
+
+import cl.ucn.disc.pdbp.tdd.dao.RequestTiming;
+import io.javalin.http.Context;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache de respuestas JSON ya serializadas, por ruta y query, con su version y ETag.
+ * Una respuesta se reutiliza mientras la version de sus datos no cambie; un
+ * {@code If-None-Match} con el ETag vigente se responde con 304 sin consultar la base de datos
+ * ni serializar.
+ *
+ * @author Gerald Lopez
+ */
+public final class ResponseCache {
+
+  /**
+   * Maximo de respuestas en cache por defecto.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 512;
+
+  /**
+   * Maximo de bytes en cache por defecto.
+   */
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * Header que indica como se obtuvo la respuesta: HIT, MISS o REVALIDATED (304).
+   */
+  public static final String X_CACHE = "X-Cache";
+
+  /**
+   * Maximo de respuestas en cache.
+   */
+  private final int maxEntries;
+
+  /**
+   * Maximo de bytes en cache (una respuesta de mas de un cuarto no se guarda).
+   */
+  private final long maxBytes;
+
+  /**
+   * Compresion de las respuestas.
+   */
+  private final Compression compression;
+
+  /**
+   * Prefijo de los ETag: distingue las versiones de otra ejecucion del servidor.
+   */
+  private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+  /**
+   * Respuestas por ruta y query, la menos usada primero.
+   */
+  private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Bytes en cache.
+   */
+  private long bytes;
+
+  /**
+   * Respuestas entregadas desde el cache.
+   */
+  private final LongAdder hitCount = new LongAdder();
+
+  /**
+   * Respuestas 304.
+   */
+  private final LongAdder notModifiedCount = new LongAdder();
+
+  /**
+   * Respuestas serializadas.
+   */
+  private final LongAdder missCount = new LongAdder();
+
+  /**
+   * Bytes que no se serializaron (hits) ni se enviaron (304).
+   */
+  private final LongAdder bytesSaved = new LongAdder();
+
+  /**
+   * Constructor.
+   * @param maxEntries maximo de respuestas en cache.
+   * @param maxBytes maximo de bytes en cache.
+   * @param compression de las respuestas.
+   */
+  public ResponseCache(int maxEntries, long maxBytes, Compression compression) {
+
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries debe ser >= 1");
+    }
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("maxBytes debe ser >= 1");
+    }
+
+    if (compression == null) {
+      throw new IllegalArgumentException("Compression no puede ser null");
+    }
+
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.compression = compression;
+  }
+
+  /**
+   * Entrega la respuesta de la peticion: 304 si el cliente tiene la version vigente, la copia
+   * en cache si existe, o la que escribe el productor (guardando una copia).
+   * El productor solo se ejecuta en el ultimo caso: ahi se consulta la base de datos.
+   * @param ctx the Javalin {@link Context}
+   * @param version de los datos de la respuesta.
+   * @param productor que escribe la respuesta JSON (y sus headers).
+   */
+  public void serve(Context ctx, long version, Productor productor) {
+
+    String clave = ctx.queryString() == null ? ctx.path() : ctx.path() + '?' + ctx.queryString();
+    // Cada codificacion es una representacion distinta: su propio ETag.
+    String etag = etag(version, compression.negotiate(ctx.header("Accept-Encoding")));
+
+    Entrada entrada = get(clave, version);
+
+    if (matches(ctx.header("If-None-Match"), etag)) {
+      notModifiedCount.increment();
+      if (entrada != null) {
+        bytesSaved.add(entrada.body.length);
+        entrada.headers(ctx);
+      }
+      ctx.header("ETag", etag);
+      ctx.header("Vary", "Accept-Encoding");
+      ctx.header(X_CACHE, "REVALIDATED");
+      ctx.status(304);
+      return;
+    }
+
+    if (entrada != null) {
+      hitCount.increment();
+      bytesSaved.add(entrada.body.length);
+      RequestTiming.addBytes(entrada.body.length);
+      entrada.headers(ctx);
+      ctx.header("ETag", etag);
+      ctx.header(X_CACHE, "HIT");
+      ctx.contentType("application/json");
+      compression.write(ctx, entrada.body, encoding -> comprimido(entrada, encoding));
+      return;
+    }
+
+    missCount.increment();
+    ctx.header("ETag", etag);
+    ctx.header(X_CACHE, "MISS");
+    ctx.contentType("application/json");
+    Compression.Salida salida = compression.open(ctx);
+    Set<String> antes = new HashSet<>(ctx.res.getHeaderNames());
+    antes.add("Content-Encoding");
+
+    Copia copia = new Copia(salida, maxBytes / 4);
+    try {
+      productor.producir(copia);
+      salida.finish();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    } catch (RuntimeException ex) {
+      // Sin respuesta (ej: 404): sin ETag.
+      ctx.res.setHeader("ETag", null);
+      throw ex;
+    } finally {
+      salida.close();
+    }
+
+    if (copia.completa()) {
+      List<String[]> headers = new ArrayList<>();
+      for (String nombre : ctx.res.getHeaderNames()) {
+        if (!antes.contains(nombre)) {
+          headers.add(new String[] {nombre, ctx.res.getHeader(nombre)});
+        }
+      }
+      put(clave, new Entrada(version, copia.toByteArray(), headers));
+    }
+  }
+
+  /**
+   * Construye el ETag de una version.
+   * @param version de los datos.
+   * @param encoding de la respuesta, null sin compresion.
+   * @return el ETag (fuerte).
+   */
+  String etag(long version, String encoding) {
+    String etag = epoch + '-' + Long.toString(version, 36);
+    return '"' + (encoding == null ? etag : etag + '-' + encoding) + '"';
+  }
+
+  /**
+   * Obtiene el body comprimido de la entrada, comprimiendolo la primera vez.
+   * @param entrada en cache.
+   * @param encoding de la compresion.
+   * @return el body comprimido.
+   */
+  private byte[] comprimido(Entrada entrada, String encoding) {
+
+    byte[] comprimido = entrada.comprimidos.get(encoding);
+    if (comprimido == null) {
+      comprimido = compression.compress(entrada.body, encoding);
+      if (entrada.comprimidos.putIfAbsent(encoding, comprimido) == null) {
+        sumar(entrada, comprimido.length);
+      }
+    }
+    return comprimido;
+  }
+
+  /**
+   * Suma bytes de una entrada al total, si sigue en cache.
+   * @param entrada en cache.
+   * @param cantidad de bytes.
+   */
+  private synchronized void sumar(Entrada entrada, long cantidad) {
+    if (entradas.containsValue(entrada)) {
+      bytes += cantidad;
+      entrada.size += cantidad;
+    }
+  }
+
+  /**
+   * Indica si el If-None-Match incluye el ETag (o es *).
+   * @param ifNoneMatch header de la peticion, puede ser null.
+   * @param etag vigente.
+   * @return true si el cliente tiene la version vigente.
+   */
+  static boolean matches(String ifNoneMatch, String etag) {
+
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidato : ifNoneMatch.split(",")) {
+      String valor = candidato.trim();
+      if (valor.startsWith("W/")) {
+        valor = valor.substring(2);
+      }
+      if (valor.equals("*") || valor.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Obtiene la entrada vigente (de la version pedida), eliminando la obsoleta.
+   * @param clave de la respuesta.
+   * @param version vigente.
+   * @return la {@link Entrada}, null si no existe o es obsoleta.
+   */
+  private synchronized Entrada get(String clave, long version) {
+
+    Entrada entrada = entradas.get(clave);
+    if (entrada == null) {
+      return null;
+    }
+    if (entrada.version != version) {
+      entradas.remove(clave);
+      bytes -= entrada.size;
+      return null;
+    }
+    return entrada;
+  }
+
+  /**
+   * Guarda una entrada, eliminando las menos usadas si se superan los maximos.
+   * @param clave de la respuesta.
+   * @param entrada a guardar.
+   */
+  private synchronized void put(String clave, Entrada entrada) {
+
+    Entrada anterior = entradas.put(clave, entrada);
+    if (anterior != null) {
+      bytes -= anterior.size;
+    }
+    bytes += entrada.size;
+
+    Iterator<Entrada> iterator = entradas.values().iterator();
+    while ((entradas.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+      bytes -= iterator.next().size;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Elimina todas las respuestas.
+   */
+  public synchronized void clear() {
+    entradas.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Obtiene la cantidad de respuestas en cache.
+   * @return respuestas en cache.
+   */
+  public synchronized int size() {
+    return entradas.size();
+  }
+
+  /**
+   * Obtiene los bytes en cache.
+   * @return bytes de las respuestas en cache.
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Obtiene la cantidad de respuestas entregadas desde el cache.
+   * @return hitCount.
+   */
+  public long getHitCount() {
+    return this.hitCount.sum();
+  }
+
+  /**
+   * Obtiene la cantidad de respuestas 304.
+   * @return notModifiedCount.
+   */
+  public long getNotModifiedCount() {
+    return this.notModifiedCount.sum();
+  }
+
+  /**
+   * Obtiene la cantidad de respuestas serializadas.
+   * @return missCount.
+   */
+  public long getMissCount() {
+    return this.missCount.sum();
+  }
+
+  /**
+   * Obtiene los bytes que no se serializaron ni enviaron gracias al cache.
+   * @return bytesSaved.
+   */
+  public long getBytesSaved() {
+    return this.bytesSaved.sum();
+  }
+
+  /**
+   * Obtiene la proporcion de respuestas sin serializar (hits y 304).
+   * @return hit ratio entre 0 y 1.
+   */
+  public double getHitRatio() {
+    long hits = getHitCount() + getNotModifiedCount();
+    long total = hits + getMissCount();
+    return total == 0 ? 0 : hits / (double) total;
+  }
+
+  /**
+   * @return resumen de las metricas del cache.
+   */
+  @Override
+  public String toString() {
+    return "ResponseCache{size=" + size()
+            + ", bytes=" + getBytes()
+            + ", hits=" + getHitCount()
+            + ", notModified=" + getNotModifiedCount()
+            + ", misses=" + getMissCount()
+            + ", hitRatio=" + String.format("%.3f", getHitRatio())
+            + ", bytesSaved=" + getBytesSaved()
+            + "}";
+  }
+
+  /**
+   * Escribe una respuesta JSON.
+   */
+  @FunctionalInterface
+  public interface Productor {
+
+    /**
+     * Escribe la respuesta (puede agregar headers antes de escribir).
+     * @param out donde escribir.
+     * @throws IOException en caso de error al escribir.
+     */
+    void producir(OutputStream out) throws IOException;
+  }
+
+  /**
+   * Respuesta en cache.
+   */
+  private static final class Entrada {
+
+    /**
+     * Version de los datos.
+     */
+    private final long version;
+
+    /**
+     * El JSON serializado.
+     */
+    private final byte[] body;
+
+    /**
+     * Headers agregados por el productor (ej: X-Next-Cursor).
+     */
+    private final List<String[]> headers;
+
+    /**
+     * El body comprimido por codificacion.
+     */
+    private final Map<String, byte[]> comprimidos = new ConcurrentHashMap<>(2);
+
+    /**
+     * Bytes de la entrada (body y comprimidos).
+     */
+    private long size;
+
+    /**
+     * Constructor.
+     * @param version de los datos.
+     * @param body serializado.
+     * @param headers del productor.
+     */
+    Entrada(long version, byte[] body, List<String[]> headers) {
+      this.version = version;
+      this.body = body;
+      this.headers = headers;
+      this.size = body.length;
+    }
+
+    /**
+     * Agrega los headers del productor a la respuesta.
+     * @param ctx the Javalin {@link Context}
+     */
+    void headers(Context ctx) {
+      for (String[] header : headers) {
+        ctx.header(header[0], header[1]);
+      }
+    }
+  }
+
+  /**
+   * Escribe en la respuesta guardando una copia, mientras no supere el maximo.
+   */
+  private static final class Copia extends OutputStream {
+
+    /**
+     * La salida de la respuesta.
+     */
+    private final OutputStream out;
+
+    /**
+     * Maximo de bytes a copiar.
+     */
+    private final long max;
+
+    /**
+     * La copia, null si supero el maximo.
+     */
+    private ByteArrayOutputStream copia = new ByteArrayOutputStream();
+
+    /**
+     * Constructor.
+     * @param out donde escribir.
+     * @param max bytes a copiar.
+     */
+    Copia(OutputStream out, long max) {
+      this.out = out;
+      this.max = max;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      if (copia != null) {
+        copia.write(b);
+        limitar();
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      if (copia != null) {
+        copia.write(b, off, len);
+        limitar();
+      }
+    }
+
+    /**
+     * Descarta la copia si supera el maximo.
+     */
+    private void limitar() {
+      if (copia.size() > max) {
+        copia = null;
+      }
+    }
+
+    /**
+     * Indica si la copia esta completa.
+     * @return true si no supero el maximo.
+     */
+    boolean completa() {
+      return copia != null;
+    }
+
+    /**
+     * Obtiene la copia.
+     * @return los bytes escritos.
+     */
+    byte[] toByteArray() {
+      return copia.toByteArray();
+    }
+  }
+
+}
@@ -0,0 +1,498 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import com.j256.ormlite.dao.CloseableIterator;
+import com.j256.ormlite.stmt.QueryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Decorador de un {@link Repository} con un cache LRU acotado (read-through) por id y por una
+ * llave unica secundaria (ej: el rut de una Persona). Las llaves secundarias que no existen
+ * tambien se recuerdan (cache negativo, acotado), para no consultarlas de nuevo.
+ * Las escrituras hechas a traves del decorador invalidan las entradas afectadas; los objetos
+ * del cache son compartidos, por lo que no deben modificarse sin llamar a {@link #update(Object)}.
+ *
+ * @author Gerald Lopez
+ * @param <T> tipo de dato
+ * @param <K> tipo de llave del elemento
+ */
+public final class CachedRepository<T, K> implements Repository<T, K> {
+
+  /**
+   * El repositorio decorado.
+   */
+  private final Repository<T, K> delegate;
+
+  /**
+   * Maximo de elementos en el cache.
+   */
+  private final int maxSize;
+
+  /**
+   * Obtiene el id de un T.
+   */
+  private final Function<T, K> id;
+
+  /**
+   * Nombre de la columna de la llave secundaria.
+   */
+  private final String claveColumna;
+
+  /**
+   * Obtiene la llave secundaria de un T.
+   */
+  private final Function<T, Object> clave;
+
+  /**
+   * Elementos por id, en orden de acceso (LRU).
+   */
+  private final LinkedHashMap<K, T> porId;
+
+  /**
+   * Id por llave secundaria, de los elementos en cache.
+   */
+  private final Map<Object, K> porClave = new HashMap<>();
+
+  /**
+   * Llaves secundarias que no existen, en orden de acceso (LRU).
+   */
+  private final LinkedHashMap<Object, Boolean> negativos;
+
+  /**
+   * Cambia con cada invalidacion: una lectura que empezo antes no guarda su resultado.
+   */
+  private long generacion;
+
+  /**
+   * Lecturas resueltas desde el cache.
+   */
+  private long hitCount;
+
+  /**
+   * Lecturas que fueron al repositorio.
+   */
+  private long missCount;
+
+  /**
+   * Lecturas resueltas por el cache negativo (incluidas en hitCount).
+   */
+  private long negativeHitCount;
+
+  /**
+   * Elementos desalojados por tamanio.
+   */
+  private long evictionCount;
+
+  /**
+   * Constructor.
+   * @param delegate repositorio a decorar.
+   * @param maxSize maximo de elementos en el cache.
+   * @param id funcion que obtiene el id de un T.
+   * @param claveColumna columna de la llave unica secundaria.
+   * @param clave funcion que obtiene la llave secundaria de un T.
+   */
+  public CachedRepository(Repository<T, K> delegate, int maxSize, Function<T, K> id,
+                          String claveColumna, Function<T, Object> clave) {
+
+    if (delegate == null || id == null || claveColumna == null || clave == null) {
+      throw new IllegalArgumentException("Parametros null");
+    }
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize debe ser >= 1");
+    }
+
+    this.delegate = delegate;
+    this.maxSize = maxSize;
+    this.id = id;
+    this.claveColumna = claveColumna;
+    this.clave = clave;
+    this.porId = new LinkedHashMap<K, T>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, T> eldest) {
+        if (size() <= CachedRepository.this.maxSize) {
+          return false;
+        }
+        porClave.remove(clave.apply(eldest.getValue()));
+        evictionCount++;
+        return true;
+      }
+    };
+    this.negativos = new LinkedHashMap<Object, Boolean>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+        return size() > CachedRepository.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * Obtiene un T a traves de su identificador, desde el cache si esta.
+   * @param id a buscar
+   * @return T con la id.
+   */
+  @Override
+  public T findById(K id) {
+
+    long inicio;
+    synchronized (this) {
+      T cached = porId.get(id);
+      if (cached != null) {
+        hitCount++;
+        return cached;
+      }
+      missCount++;
+      inicio = generacion;
+    }
+
+    T objeto = delegate.findById(id);
+    guardar(objeto, inicio);
+    return objeto;
+  }
+
+  /**
+   * Obtiene un List filtrado por "key". La llave secundaria se resuelve desde el cache.
+   * @param key que se busca
+   * @param value que se busca
+   * @return Lista de T filtrada por key
+   */
+  @Override
+  public List<T> findAll(String key, Object value) {
+
+    if (!claveColumna.equals(key) || value == null) {
+      return delegate.findAll(key, value);
+    }
+
+    T objeto = findByUnique(key, value);
+    return objeto == null ? Collections.emptyList() : Collections.singletonList(objeto);
+  }
+
+  /**
+   * Obtiene el T con una llave unica. La llave secundaria se resuelve desde el cache,
+   * incluidas las que no existen.
+   * @param key columna unica
+   * @param value que se busca
+   * @return el T, null si no existe.
+   */
+  @Override
+  public T findByUnique(String key, Object value) {
+
+    if (!claveColumna.equals(key) || value == null) {
+      return delegate.findByUnique(key, value);
+    }
+
+    long inicio;
+    synchronized (this) {
+      K cachedId = porClave.get(value);
+      T cached = cachedId != null ? porId.get(cachedId) : null;
+      if (cached != null && value.equals(clave.apply(cached))) {
+        hitCount++;
+        return cached;
+      }
+      if (negativos.get(value) != null) {
+        hitCount++;
+        negativeHitCount++;
+        return null;
+      }
+      missCount++;
+      inicio = generacion;
+    }
+
+    T objeto = delegate.findByUnique(key, value);
+    if (objeto != null) {
+      guardar(objeto, inicio);
+    } else {
+      synchronized (this) {
+        if (inicio == generacion) {
+          negativos.put(value, Boolean.TRUE);
+        }
+      }
+    }
+    return objeto;
+  }
+
+  /**
+   * Obtiene los T con los identificadores dados: los que no estan en cache en una consulta.
+   * @param ids a buscar
+   * @return Lista de T (sin orden definido).
+   */
+  @Override
+  public List<T> findByIds(Collection<K> ids) {
+
+    List<T> objetos = new ArrayList<>(ids.size());
+    List<K> faltantes = new ArrayList<>();
+    long inicio;
+    synchronized (this) {
+      for (K k : ids) {
+        T cached = porId.get(k);
+        if (cached != null) {
+          hitCount++;
+          objetos.add(cached);
+        } else {
+          missCount++;
+          faltantes.add(k);
+        }
+      }
+      inicio = generacion;
+    }
+
+    if (!faltantes.isEmpty()) {
+      for (T objeto : delegate.findByIds(faltantes)) {
+        guardar(objeto, inicio);
+        objetos.add(objeto);
+      }
+    }
+    return objetos;
+  }
+
+  /**
+   * Guarda un T leido del repositorio, si no hubo invalidaciones desde que se pidio.
+   * @param objeto leido (puede ser null).
+   * @param inicio generacion al momento de la lectura.
+   */
+  private synchronized void guardar(T objeto, long inicio) {
+    if (objeto == null || inicio != generacion) {
+      return;
+    }
+    T anterior = porId.put(id.apply(objeto), objeto);
+    if (anterior != null) {
+      porClave.remove(clave.apply(anterior));
+    }
+    porClave.put(clave.apply(objeto), id.apply(objeto));
+  }
+
+  /**
+   * Saca un T del cache.
+   * Las escrituras a traves del decorador lo hacen solas, al terminar la escritura; si la
+   * escritura queda dentro de una transaccion mayor (ej: {@link WriteQueue}) se debe llamar
+   * tambien despues del commit.
+   * @param k id del T.
+   */
+  public synchronized void invalidate(K k) {
+    generacion++;
+    T anterior = porId.remove(k);
+    if (anterior != null) {
+      porClave.remove(clave.apply(anterior));
+    }
+  }
+
+  /**
+   * Saca del cache una llave secundaria (y su T), incluida su entrada negativa.
+   * Se llama al crear un T; con una {@link WriteQueue}, tambien despues del commit.
+   * @param valor de la llave secundaria.
+   */
+  public synchronized void invalidateKey(Object valor) {
+    generacion++;
+    negativos.remove(valor);
+    K k = porClave.remove(valor);
+    if (k != null) {
+      porId.remove(k);
+    }
+  }
+
+  /**
+   * Vacia el cache (ej: despues de escribir sin pasar por el decorador).
+   */
+  public synchronized void clear() {
+    generacion++;
+    porId.clear();
+    porClave.clear();
+    negativos.clear();
+  }
+
+  @Override
+  public List<T> findAll() {
+    return delegate.findAll();
+  }
+
+  @Override
+  public CloseableIterator<T> iterate() {
+    return delegate.iterate();
+  }
+
+  @Override
+  public Stream<T> stream() {
+    return delegate.stream();
+  }
+
+  @Override
+  public Stream<T> stream(Collection<String> campos) {
+    return delegate.stream(campos);
+  }
+
+  @Override
+  public List<T> findPage(K after, long limit) {
+    return delegate.findPage(after, limit);
+  }
+
+  @Override
+  public List<T> findPage(K after, long limit, Collection<String> campos) {
+    return delegate.findPage(after, limit, campos);
+  }
+
+  /**
+   * Las consultas construidas aqui no pasan por el cache.
+   * @return la {@link QueryBuilder}
+   */
+  @Override
+  public QueryBuilder<T, K> getQuery() {
+    return delegate.getQuery();
+  }
+
+  @Override
+  public boolean create(T objeto) {
+    try {
+      return delegate.create(objeto);
+    } finally {
+      invalidateKey(clave.apply(objeto));
+    }
+  }
+
+  @Override
+  public boolean update(T objeto) {
+    try {
+      return delegate.update(objeto);
+    } finally {
+      invalidate(id.apply(objeto));
+      invalidateKey(clave.apply(objeto));
+    }
+  }
+
+  @Override
+  public boolean delete(K id) {
+    try {
+      return delegate.delete(id);
+    } finally {
+      invalidate(id);
+    }
+  }
+
+  @Override
+  public List<Boolean> createAll(Collection<T> objetos) {
+    try {
+      return delegate.createAll(objetos);
+    } finally {
+      for (T objeto : objetos) {
+        invalidateKey(clave.apply(objeto));
+      }
+    }
+  }
+
+  @Override
+  public List<Boolean> updateAll(Collection<T> objetos) {
+    try {
+      return delegate.updateAll(objetos);
+    } finally {
+      for (T objeto : objetos) {
+        invalidate(id.apply(objeto));
+        invalidateKey(clave.apply(objeto));
+      }
+    }
+  }
+
+  @Override
+  public List<Boolean> deleteAll(Collection<K> ids) {
+    try {
+      return delegate.deleteAll(ids);
+    } finally {
+      for (K k : ids) {
+        invalidate(k);
+      }
+    }
+  }
+
+  /**
+   * Obtiene la cantidad de lecturas resueltas desde el cache.
+   * @return hitCount.
+   */
+  public synchronized long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Obtiene la cantidad de lecturas que fueron al repositorio.
+   * @return missCount.
+   */
+  public synchronized long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Obtiene la cantidad de lecturas resueltas por el cache negativo.
+   * @return negativeHitCount.
+   */
+  public synchronized long getNegativeHitCount() {
+    return this.negativeHitCount;
+  }
+
+  /**
+   * Obtiene la cantidad de elementos desalojados por tamanio.
+   * @return evictionCount.
+   */
+  public synchronized long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  /**
+   * Obtiene la proporcion de lecturas resueltas desde el cache.
+   * @return hits / (hits + misses), 0 sin lecturas.
+   */
+  public synchronized double getHitRatio() {
+    long total = hitCount + missCount;
+    return total == 0 ? 0 : hitCount / (double) total;
+  }
+
+  /**
+   * Obtiene la cantidad de elementos en el cache.
+   * @return size.
+   */
+  public synchronized int size() {
+    return this.porId.size();
+  }
+
+  /**
+   * @return resumen de las metricas del cache.
+   */
+  @Override
+  public synchronized String toString() {
+    return "CachedRepository{size=" + porId.size()
+            + ", max=" + maxSize
+            + ", hits=" + hitCount
+            + ", negatives=" + negativos.size()
+            + ", misses=" + missCount
+            + ", evictions=" + evictionCount
+            + ", hitRatio=" + String.format("%.3f", getHitRatio())
+            + "}";
+  }
+
+}
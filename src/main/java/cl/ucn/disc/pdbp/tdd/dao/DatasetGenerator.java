@@ -0,0 +1,690 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.Control;
+import cl.ucn.disc.pdbp.tdd.model.Examen;
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.Persona;
+import cl.ucn.disc.pdbp.tdd.model.Sexo;
+import cl.ucn.disc.pdbp.tdd.model.Tipo;
+import cl.ucn.disc.pdbp.tdd.utils.Validation;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableUtils;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generador de datos sinteticos de la clinica (personas, fichas, controles y examenes) para
+ * pruebas de carga y de escala.
+ * Es determinista: con la misma semilla, cantidad de fichas y fecha de referencia genera
+ * siempre las mismas filas, con los mismos ids. Cada fila se deriva solo de la semilla y de su
+ * id, asi {@link #persona(long)} y {@link #ficha(long)} reconstruyen cualquier fila sin leer
+ * la base de datos (ej: para elegir ruts o numeros de ficha existentes en una prueba de carga).
+ * Los ruts, emails y telefonos generados pasan las validaciones de {@link Validation}.
+ *
+ * <p>La carga ({@link #load(ConnectionSource)}) escribe con JDBC directo: inserts en batch con
+ * ids explicitos y un commit cada {@link #DEFAULT_CHUNK} fichas, sin pasar por los DAO.
+ *
+ * @author Gerald Lopez
+ */
+public final class DatasetGenerator {
+
+  /**
+   * Logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(DatasetGenerator.class);
+
+  /**
+   * Escala pequenia (fichas).
+   */
+  public static final int SMALL = 10_000;
+
+  /**
+   * Escala mediana (fichas).
+   */
+  public static final int MEDIUM = 1_000_000;
+
+  /**
+   * Escala grande (fichas).
+   */
+  public static final int LARGE = 10_000_000;
+
+  /**
+   * Fichas por transaccion en la carga.
+   */
+  public static final int DEFAULT_CHUNK = 10_000;
+
+  /**
+   * Fichas por duenio.
+   */
+  public static final int FICHAS_POR_DUENIO = 2;
+
+  /**
+   * Fichas por veterinario (hay al menos {@link #VETERINARIOS_MIN}).
+   */
+  public static final int FICHAS_POR_VETERINARIO = 2_000;
+
+  /**
+   * Minimo de veterinarios.
+   */
+  public static final int VETERINARIOS_MIN = 5;
+
+  /**
+   * Maximo de controles por ficha (en promedio la mitad).
+   */
+  public static final int CONTROLES_MAX = 4;
+
+  /**
+   * Maximo de examenes por control (en promedio la mitad).
+   */
+  public static final int EXAMENES_MAX = 2;
+
+  /**
+   * Cuerpo del rut de la persona con id 0: la persona con id n tiene el rut RUT_BASE + n.
+   */
+  public static final long RUT_BASE = 5_000_000;
+
+  /**
+   * Zona horaria de las fechas.
+   */
+  private static final ZoneId ZONA = ZoneId.of("America/Santiago");
+
+  /**
+   * Edad maxima de un paciente (dias).
+   */
+  private static final int EDAD_MAX = 15 * 365;
+
+  /**
+   * Antiguedad maxima de un control (dias).
+   */
+  private static final int CONTROL_MAX = 2 * 365;
+
+  /**
+   * Secuencia aleatoria de las personas.
+   */
+  private static final long PERSONA = 1;
+
+  /**
+   * Secuencia aleatoria de las fichas.
+   */
+  private static final long FICHA = 2;
+
+  /**
+   * Secuencia aleatoria de los controles (y examenes) de cada ficha.
+   */
+  private static final long CONTROL = 3;
+
+  /**
+   * Nombres.
+   */
+  private static final String[] NOMBRES = {"Brenda", "Mauricio", "Dylan", "José", "Camila",
+      "Francisca", "Ignacio", "Valentina", "Matías", "Catalina", "Benjamín", "Javiera", "Diego",
+      "Fernanda", "Sebastián", "Constanza", "Tomás", "Antonia", "Vicente", "Isidora"};
+
+  /**
+   * Apellidos.
+   */
+  private static final String[] APELLIDOS = {"Lopez", "Fuentes", "Frost", "Muñoz", "González",
+      "Rojas", "Díaz", "Pérez", "Soto", "Contreras", "Silva", "Martínez", "Sepúlveda", "Morales",
+      "Araya", "Flores", "Castillo", "Espinoza", "Valenzuela", "Tapia"};
+
+  /**
+   * Nombres para los emails (minusculas, sin tildes).
+   */
+  private static final String[] EMAIL_NOMBRES = email(NOMBRES);
+
+  /**
+   * Apellidos para los emails (minusculas, sin tildes).
+   */
+  private static final String[] EMAIL_APELLIDOS = email(APELLIDOS);
+
+  /**
+   * Dominios de email.
+   */
+  private static final String[] DOMINIOS = {"gmail.com", "hotmail.com", "outlook.com", "ucn.cl",
+      "yahoo.es"};
+
+  /**
+   * Calles.
+   */
+  private static final String[] CALLES = {"Angamos", "Avenida Argentina", "Avenida Brasil",
+      "Matta", "Prat", "Sucre", "Latorre", "Baquedano", "Condell", "Copiapo", "Bolivar"};
+
+  /**
+   * Ciudades.
+   */
+  private static final String[] CIUDADES = {"Antofagasta", "Calama", "Santiago", "Valparaiso",
+      "La Serena", "Concepcion"};
+
+  /**
+   * Prefijo del telefono fijo de cada ciudad.
+   */
+  private static final int[] PREFIJOS = {55, 55, 2, 32, 51, 41};
+
+  /**
+   * Nombres de pacientes.
+   */
+  private static final String[] PACIENTES = {"Askar", "Harry", "Artemi", "Calcetin", "Rhea",
+      "Luna", "Max", "Canela", "Rocky", "Mota", "Bruno", "Nala", "Simba", "Kira", "Toby", "Coco",
+      "Lola", "Manchas", "Pelusa", "Chispa", "Copito", "Negro", "Tobi", "Firulais"};
+
+  /**
+   * Especies (primer elemento) y sus razas.
+   */
+  private static final String[][] RAZAS = {
+      {"Canino", "Pastor belga", "Labrador", "Quiltro", "Poodle", "Beagle", "Bulldog"},
+      {"Felino", "Siames", "Angora", "Siberiano", "American shorthair", "Persa"},
+      {"Conejo", "Holland lop", "Belier"},
+      {"Ave", "Canario", "Loro", "Catita"}};
+
+  /**
+   * Colores.
+   */
+  private static final String[] COLORES = {"Negro", "Gris", "Blanco", "Café", "Amarillo",
+      "Atigrado", "Tricolor", "Canela"};
+
+  /**
+   * Diagnosticos.
+   */
+  private static final String[] DIAGNOSTICOS = {"Sano", "Obesidad", "Otitis", "Dermatitis",
+      "Gastroenteritis", "Control de vacunas", "Fractura", "Parasitos"};
+
+  /**
+   * Examenes.
+   */
+  private static final String[] EXAMENES = {"Hemograma", "Perfil bioquimico", "Radiografia",
+      "Ecografia", "Orina completa", "Coprologico"};
+
+  /**
+   * Semilla.
+   */
+  private final long seed;
+
+  /**
+   * Cantidad de fichas.
+   */
+  private final long fichas;
+
+  /**
+   * Cantidad de veterinarios (personas con id 1 .. veterinarios).
+   */
+  private final long veterinarios;
+
+  /**
+   * Cantidad de duenios (personas con id veterinarios + 1 .. veterinarios + duenios).
+   */
+  private final long duenios;
+
+  /**
+   * Fecha de referencia: ningun control es posterior a ella.
+   */
+  private final ZonedDateTime hoy;
+
+  /**
+   * Constructor, con el inicio del dia de hoy como fecha de referencia.
+   * @param seed semilla.
+   * @param fichas cantidad de fichas (ej: {@link #SMALL}, {@link #MEDIUM}, {@link #LARGE}).
+   */
+  public DatasetGenerator(long seed, long fichas) {
+    this(seed, fichas, LocalDate.now(ZONA).atStartOfDay(ZONA));
+  }
+
+  /**
+   * Constructor.
+   * @param seed semilla.
+   * @param fichas cantidad de fichas (ej: {@link #SMALL}, {@link #MEDIUM}, {@link #LARGE}).
+   * @param hoy fecha de referencia.
+   */
+  public DatasetGenerator(long seed, long fichas, ZonedDateTime hoy) {
+
+    if (fichas < 1) {
+      throw new IllegalArgumentException("fichas debe ser >= 1");
+    }
+    if (hoy == null) {
+      throw new IllegalArgumentException("Fecha de referencia null");
+    }
+
+    this.seed = seed;
+    this.fichas = fichas;
+    this.veterinarios = Math.max(VETERINARIOS_MIN, fichas / FICHAS_POR_VETERINARIO);
+    this.duenios = (fichas + FICHAS_POR_DUENIO - 1) / FICHAS_POR_DUENIO;
+    // La precision de las fechas guardadas (ZonedDateTimeMillisType).
+    this.hoy = hoy.truncatedTo(ChronoUnit.MILLIS);
+  }
+
+  /**
+   * Obtiene la cantidad de fichas (ids 1 .. fichas, numero = id).
+   * @return fichas.
+   */
+  public long getFichas() {
+    return this.fichas;
+  }
+
+  /**
+   * Obtiene la cantidad de personas: veterinarios y duenios.
+   * @return personas.
+   */
+  public long getPersonas() {
+    return this.veterinarios + this.duenios;
+  }
+
+  /**
+   * Obtiene la cantidad de veterinarios (personas con id 1 .. veterinarios).
+   * @return veterinarios.
+   */
+  public long getVeterinarios() {
+    return this.veterinarios;
+  }
+
+  /**
+   * Obtiene el id del duenio de una ficha.
+   * @param ficha id de la ficha.
+   * @return id de la persona.
+   */
+  public long getDuenioId(long ficha) {
+    check(ficha, this.fichas);
+    return this.veterinarios + 1 + (ficha - 1) / FICHAS_POR_DUENIO;
+  }
+
+  /**
+   * Obtiene el rut (canonico) de una persona.
+   * @param persona id de la persona.
+   * @return el rut.
+   */
+  public String rut(long persona) {
+    check(persona, getPersonas());
+    long cuerpo = RUT_BASE + persona;
+    return String.valueOf(cuerpo) + Validation.digitoVerificador(cuerpo);
+  }
+
+  /**
+   * Genera la persona con el id dado (sin id asignado en el objeto).
+   * @param id de la persona, entre 1 y {@link #getPersonas()}.
+   * @return la persona.
+   */
+  public Persona persona(long id) {
+
+    String rut = rut(id);
+    SplittableRandom random = random(PERSONA, id);
+
+    int nombre = random.nextInt(NOMBRES.length);
+    int apellido = random.nextInt(APELLIDOS.length);
+    int ciudad = random.nextInt(CIUDADES.length);
+    String direccion = CALLES[random.nextInt(CALLES.length)] + " " + (1 + random.nextInt(9_999))
+            + ", " + CIUDADES[ciudad];
+
+    // Fijo de 8 digitos con el prefijo de la ciudad, movil de 9 digitos empezando en 9.
+    int prefijo = PREFIJOS[ciudad];
+    int digitos = prefijo < 10 ? 10_000_000 : 1_000_000;
+    int fijo = prefijo * digitos + 2 * digitos / 10 + random.nextInt(8 * digitos / 10);
+    int movil = 900_000_000 + random.nextInt(100_000_000);
+
+    String email = EMAIL_NOMBRES[nombre] + "." + EMAIL_APELLIDOS[apellido] + id + "@"
+            + (id <= this.veterinarios ? "fivet.cl" : DOMINIOS[random.nextInt(DOMINIOS.length)]);
+
+    return new Persona(NOMBRES[nombre], APELLIDOS[apellido], rut, direccion, fijo, movil, email);
+  }
+
+  /**
+   * Genera la ficha con el id dado (y numero = id), con su duenio.
+   * @param id de la ficha, entre 1 y {@link #getFichas()}.
+   * @return la ficha.
+   */
+  public Ficha ficha(long id) {
+    return ficha(id, persona(getDuenioId(id)));
+  }
+
+  /**
+   * Genera la ficha con el id dado.
+   * @param id de la ficha.
+   * @param duenio de la ficha.
+   * @return la ficha.
+   */
+  private Ficha ficha(long id, Persona duenio) {
+
+    check(id, this.fichas);
+    SplittableRandom random = random(FICHA, id);
+
+    String[] especie = RAZAS[random.nextInt(RAZAS.length)];
+    ZonedDateTime nacimiento = this.hoy.minusDays(30 + random.nextInt(EDAD_MAX))
+            .plusMinutes(random.nextInt(24 * 60));
+    return new Ficha(id, PACIENTES[random.nextInt(PACIENTES.length)], especie[0], nacimiento,
+            especie[1 + random.nextInt(especie.length - 1)],
+            random.nextBoolean() ? Sexo.MACHO : Sexo.HEMBRA,
+            COLORES[random.nextInt(COLORES.length)],
+            random.nextInt(4) == 0 ? Tipo.EXTERNO : Tipo.INTERNO, duenio);
+  }
+
+  /**
+   * Carga el dataset en una base de datos vacia (crea las tablas si no existen).
+   * Las filas se insertan con JDBC en batch y con ids explicitos, un commit cada
+   * {@link #DEFAULT_CHUNK} fichas.
+   * @param connectionSource de la base de datos.
+   * @return la cantidad de filas insertadas por tabla.
+   */
+  public Map<String, Long> load(ConnectionSource connectionSource) {
+    return load(connectionSource, DEFAULT_CHUNK);
+  }
+
+  /**
+   * Carga el dataset en una base de datos vacia (crea las tablas si no existen).
+   * @param connectionSource de la base de datos.
+   * @param chunk fichas (o personas) por batch y transaccion.
+   * @return la cantidad de filas insertadas por tabla.
+   */
+  public Map<String, Long> load(ConnectionSource connectionSource, int chunk) {
+
+    if (connectionSource == null) {
+      throw new IllegalArgumentException("ConnectionSource no puede ser null");
+    }
+    if (chunk < 1) {
+      throw new IllegalArgumentException("chunk debe ser >= 1");
+    }
+
+    long start = System.currentTimeMillis();
+    Map<String, Long> filas = new LinkedHashMap<>();
+
+    try {
+      for (Class<?> clase : new Class<?>[] {Persona.class, Ficha.class, Control.class,
+          Examen.class}) {
+        TableUtils.createTableIfNotExists(connectionSource, clase);
+        if (DaoManager.createDao(connectionSource, clase).countOf() > 0) {
+          throw new IllegalStateException("La tabla de " + clase.getSimpleName()
+                  + " no esta vacia");
+        }
+      }
+
+      DatabaseConnection databaseConnection = connectionSource.getReadWriteConnection(null);
+      try {
+        DatabaseConnection real = QueryCounter.unwrap(databaseConnection);
+        if (!(real instanceof JdbcDatabaseConnection)) {
+          throw new IllegalArgumentException("La carga requiere una conexion JDBC");
+        }
+        Connection connection = ((JdbcDatabaseConnection) real).getInternalConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+          filas.put("Persona", cargarPersonas(connectionSource, connection, chunk));
+          cargarFichas(connectionSource, connection, chunk, filas);
+        } catch (SQLException | RuntimeException ex) {
+          connection.rollback();
+          throw ex;
+        } finally {
+          connection.setAutoCommit(autoCommit);
+        }
+      } finally {
+        connectionSource.releaseConnection(databaseConnection);
+      }
+
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+
+    long total = filas.values().stream().mapToLong(Long::longValue).sum();
+    long millis = Math.max(1, System.currentTimeMillis() - start);
+    log.info("Loaded {} rows {} in {} ms ({} rows/s).", total, filas, millis,
+            total * 1000 / millis);
+    return filas;
+  }
+
+  /**
+   * Inserta las personas.
+   * @param connectionSource de la base de datos.
+   * @param connection JDBC.
+   * @param chunk personas por batch.
+   * @return las personas insertadas.
+   * @throws SQLException en caso de error.
+   */
+  private long cargarPersonas(ConnectionSource connectionSource, Connection connection,
+          int chunk) throws SQLException {
+
+    long personas = getPersonas();
+    try (PreparedStatement insert = connection.prepareStatement(insert(connectionSource,
+            "Persona", "id", "nombre", "apellido", "rut", "direccion", "telefonoFijo",
+            "telefonoMovil", "email"))) {
+
+      for (long id = 1; id <= personas; id++) {
+        Persona persona = persona(id);
+        insert.setLong(1, id);
+        insert.setString(2, persona.getNombre());
+        insert.setString(3, persona.getApellido());
+        insert.setString(4, persona.getRut());
+        insert.setString(5, persona.getDireccion());
+        insert.setInt(6, persona.getTelefonoFijo());
+        insert.setInt(7, persona.getTelefonoMovil());
+        insert.setString(8, persona.getEmail());
+        insert.addBatch();
+
+        if (id % chunk == 0 || id == personas) {
+          insert.executeBatch();
+          connection.commit();
+        }
+      }
+    }
+    return personas;
+  }
+
+  /**
+   * Inserta las fichas, y por cada una sus controles y los examenes de cada control.
+   * @param connectionSource de la base de datos.
+   * @param connection JDBC.
+   * @param chunk fichas por batch.
+   * @param filas donde registrar las filas insertadas por tabla.
+   * @throws SQLException en caso de error.
+   */
+  private void cargarFichas(ConnectionSource connectionSource, Connection connection, int chunk,
+          Map<String, Long> filas) throws SQLException {
+
+    long controles = 0;
+    long examenes = 0;
+
+    try (PreparedStatement insertFicha = connection.prepareStatement(insert(connectionSource,
+            "Ficha", "id", "numero", "nombre", "especie", "fechaNacimiento", "raza", "sexo",
+            "color", "tipo", "duenio_id"));
+         PreparedStatement insertControl = connection.prepareStatement(insert(connectionSource,
+            "Control", "id", "fecha", "proximoControl", "temperatura", "peso", "altura",
+            "diagnostico", "veterinario_id", "ficha_id"));
+         PreparedStatement insertExamen = connection.prepareStatement(insert(connectionSource,
+            "Examen", "id", "nombre", "fecha", "control_id"))) {
+
+      // Las fichas de un duenio son consecutivas: se genera una vez.
+      long duenioId = 0;
+      Persona duenio = null;
+
+      for (long id = 1; id <= this.fichas; id++) {
+
+        if (getDuenioId(id) != duenioId) {
+          duenioId = getDuenioId(id);
+          duenio = persona(duenioId);
+        }
+        Ficha ficha = ficha(id, duenio);
+
+        insertFicha.setLong(1, id);
+        insertFicha.setLong(2, ficha.getNumero());
+        insertFicha.setString(3, ficha.getNombre());
+        insertFicha.setString(4, ficha.getEspecie());
+        insertFicha.setLong(5, ZonedDateTimeMillisType.encode(ficha.getFechaNacimiento()));
+        insertFicha.setString(6, ficha.getRaza());
+        insertFicha.setString(7, ficha.getSexo().name());
+        insertFicha.setString(8, ficha.getColor());
+        insertFicha.setString(9, ficha.getTipo().name());
+        insertFicha.setLong(10, duenioId);
+        insertFicha.addBatch();
+
+        // Controles entre el nacimiento y ayer, como mucho CONTROL_MAX dias atras.
+        SplittableRandom random = random(CONTROL, id);
+        int dias = (int) Math.min(CONTROL_MAX,
+                ChronoUnit.DAYS.between(ficha.getFechaNacimiento(), this.hoy));
+        for (int c = random.nextInt(CONTROLES_MAX + 1); c > 0; c--) {
+
+          long controlId = ++controles;
+          ZonedDateTime fecha = this.hoy.minusDays(1 + random.nextInt(dias))
+                  .plusMinutes(9 * 60 + random.nextInt(9 * 60));
+          insertControl.setLong(1, controlId);
+          insertControl.setLong(2, ZonedDateTimeMillisType.encode(fecha));
+          if (random.nextInt(5) == 0) {
+            insertControl.setNull(3, Types.BIGINT);
+          } else {
+            insertControl.setLong(3, ZonedDateTimeMillisType.encode(
+                    fecha.plusWeeks(1 + random.nextInt(26))));
+          }
+          insertControl.setFloat(4, 37.5F + random.nextInt(20) / 10F);
+          insertControl.setFloat(5, 1F + random.nextInt(450) / 10F);
+          insertControl.setFloat(6, 10F + random.nextInt(70));
+          insertControl.setString(7, DIAGNOSTICOS[random.nextInt(DIAGNOSTICOS.length)]);
+          insertControl.setLong(8, 1 + random.nextInt((int) this.veterinarios));
+          insertControl.setLong(9, id);
+          insertControl.addBatch();
+
+          for (int e = random.nextInt(EXAMENES_MAX + 1); e > 0; e--) {
+            insertExamen.setLong(1, ++examenes);
+            insertExamen.setString(2, EXAMENES[random.nextInt(EXAMENES.length)]);
+            insertExamen.setLong(3, ZonedDateTimeMillisType.encode(fecha));
+            insertExamen.setLong(4, controlId);
+            insertExamen.addBatch();
+          }
+        }
+
+        if (id % chunk == 0 || id == this.fichas) {
+          insertFicha.executeBatch();
+          insertControl.executeBatch();
+          insertExamen.executeBatch();
+          connection.commit();
+          if (id % (chunk * 100L) == 0) {
+            log.debug("Loaded {} of {} Fichas.", id, this.fichas);
+          }
+        }
+      }
+    }
+
+    filas.put("Ficha", this.fichas);
+    filas.put("Control", controles);
+    filas.put("Examen", examenes);
+  }
+
+  /**
+   * Construye un insert con parametros.
+   * @param connectionSource de la base de datos.
+   * @param tabla a insertar.
+   * @param columnas de la tabla.
+   * @return el sql.
+   */
+  private static String insert(ConnectionSource connectionSource, String tabla,
+          String... columnas) {
+
+    StringBuilder sql = new StringBuilder("INSERT INTO ");
+    connectionSource.getDatabaseType().appendEscapedEntityName(sql, tabla);
+    sql.append(" (");
+    for (int i = 0; i < columnas.length; i++) {
+      if (i > 0) {
+        sql.append(", ");
+      }
+      connectionSource.getDatabaseType().appendEscapedEntityName(sql, columnas[i]);
+    }
+    sql.append(") VALUES (?");
+    for (int i = 1; i < columnas.length; i++) {
+      sql.append(", ?");
+    }
+    return sql.append(')').toString();
+  }
+
+  /**
+   * Secuencia aleatoria de una fila: depende solo de la semilla, la tabla y el id.
+   * @param tabla de la fila.
+   * @param id de la fila.
+   * @return el generador.
+   */
+  private SplittableRandom random(long tabla, long id) {
+    return new SplittableRandom(this.seed
+            ^ (tabla * 0x9E3779B97F4A7C15L + id * 0xBF58476D1CE4E5B9L));
+  }
+
+  /**
+   * Valida un id.
+   * @param id a validar.
+   * @param maximo id.
+   */
+  private static void check(long id, long maximo) {
+    if (id < 1 || id > maximo) {
+      throw new IllegalArgumentException("Id fuera de rango: " + id + " (1 .. " + maximo + ")");
+    }
+  }
+
+  /**
+   * Pasa nombres a minusculas sin tildes, para los emails.
+   * @param nombres a convertir.
+   * @return los nombres convertidos.
+   */
+  private static String[] email(String[] nombres) {
+    String[] emails = new String[nombres.length];
+    for (int i = 0; i < nombres.length; i++) {
+      emails[i] = Normalizer.normalize(nombres[i], Normalizer.Form.NFD)
+              .replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+    return emails;
+  }
+
+  /**
+   * Genera una base de datos.
+   * @param args url de la base de datos, cantidad de fichas y semilla (opcional).
+   * @throws IOException al cerrar la conexion.
+   */
+  public static void main(String[] args) throws IOException {
+
+    if (args.length < 2) {
+      System.err.println("Uso: DatasetGenerator jdbc:url fichas [seed]");
+      System.exit(2);
+    }
+
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+    DatasetGenerator generator = new DatasetGenerator(seed, Long.parseLong(args[1]));
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource(args[0])) {
+      generator.load(connectionSource);
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+}
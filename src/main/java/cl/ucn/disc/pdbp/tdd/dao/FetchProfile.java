@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+/**
+ * Colecciones foraneas que se cargan junto con una Ficha.
+ * Por defecto las colecciones son lazy: solo se consultan si el perfil las incluye.
+ *
+ * @author Gerald Lopez
+ */
+public final class FetchProfile {
+
+  /**
+   * Coleccion de controles de la Ficha.
+   */
+  public static final String CONTROLES = "controles";
+
+  /**
+   * Coleccion de examenes de cada Control.
+   */
+  public static final String EXAMENES = "examenes";
+
+  /**
+   * Carga los controles y sus examenes (comportamiento eager).
+   */
+  public static final FetchProfile EAGER = new FetchProfile(true, true);
+
+  /**
+   * No carga ninguna coleccion.
+   */
+  public static final FetchProfile LAZY = new FetchProfile(false, false);
+
+  /**
+   * Incluye los controles.
+   */
+  private final boolean controles;
+
+  /**
+   * Incluye los examenes.
+   */
+  private final boolean examenes;
+
+  /**
+   * Constructor.
+   * @param controles incluidos.
+   * @param examenes incluidos.
+   */
+  private FetchProfile(boolean controles, boolean examenes) {
+    this.controles = controles;
+    this.examenes = examenes;
+  }
+
+  /**
+   * Construye el perfil desde una lista separada por comas, ej: "controles,examenes".
+   * Los examenes implican los controles.
+   * @param include colecciones a cargar, null o vacio para ninguna.
+   * @return el {@link FetchProfile}.
+   */
+  public static FetchProfile of(String include) {
+
+    if (include == null || include.trim().isEmpty()) {
+      return LAZY;
+    }
+
+    boolean controles = false;
+    boolean examenes = false;
+    for (String coleccion : include.split(",")) {
+      switch (coleccion.trim().toLowerCase()) {
+        case CONTROLES:
+          controles = true;
+          break;
+        case EXAMENES:
+          examenes = true;
+          break;
+        case "":
+          break;
+        default:
+          throw new IllegalArgumentException("Coleccion desconocida: " + coleccion);
+      }
+    }
+
+    if (examenes) {
+      return EAGER;
+    }
+    return controles ? new FetchProfile(true, false) : LAZY;
+  }
+
+  /**
+   * Indica si se cargan los controles.
+   * @return true si incluye los controles.
+   */
+  public boolean isControles() {
+    return this.controles;
+  }
+
+  /**
+   * Indica si se cargan los examenes de cada control.
+   * @return true si incluye los examenes.
+   */
+  public boolean isExamenes() {
+    return this.examenes;
+  }
+
+  /**
+   * @return las colecciones incluidas.
+   */
+  @Override
+  public String toString() {
+    return "FetchProfile{controles=" + controles + ", examenes=" + examenes + "}";
+  }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Campos de una Ficha pedidos por el cliente (sparse fieldset), ej:
+ * "numero,nombre,duenio.nombre,duenio.email".
+ * Los campos se leen con {@code SELECT} de solo esas columnas y las colecciones no pedidas
+ * no se consultan. El id siempre se incluye.
+ *
+ * @author Gerald Lopez
+ */
+public final class FieldSet {
+
+  /**
+   * Campo de la Ficha con su duenio.
+   */
+  public static final String DUENIO = "duenio";
+
+  /**
+   * Todos los campos (sin restriccion).
+   */
+  public static final FieldSet ALL = new FieldSet(null, null, true);
+
+  /**
+   * Campos de la Ficha que se pueden pedir (columnas de la tabla).
+   */
+  private static final List<String> CAMPOS_FICHA = Arrays.asList("id", "numero", "nombre",
+          "especie", "fechaNacimiento", "raza", "sexo", "color", "tipo");
+
+  /**
+   * Campos del duenio que se pueden pedir (columnas de la tabla).
+   */
+  private static final List<String> CAMPOS_PERSONA = Arrays.asList("id", "nombre", "apellido",
+          "rut", "direccion", "telefonoFijo", "telefonoMovil", "email");
+
+  /**
+   * Campos de la Ficha, null para todos.
+   */
+  private final Set<String> ficha;
+
+  /**
+   * Campos del duenio, null para todos.
+   */
+  private final Set<String> persona;
+
+  /**
+   * Incluye los controles.
+   */
+  private final boolean controles;
+
+  /**
+   * Constructor.
+   * @param ficha campos de la ficha.
+   * @param persona campos del duenio.
+   * @param controles incluidos.
+   */
+  private FieldSet(Set<String> ficha, Set<String> persona, boolean controles) {
+    this.ficha = ficha == null ? null : Collections.unmodifiableSet(ficha);
+    this.persona = persona == null ? null : Collections.unmodifiableSet(persona);
+    this.controles = controles;
+  }
+
+  /**
+   * Construye el conjunto desde una lista separada por comas.
+   * "duenio" pide el duenio completo y "duenio.campo" solo ese campo del duenio.
+   * @param fields campos a leer, null o vacio para todos.
+   * @return el {@link FieldSet}.
+   */
+  public static FieldSet of(String fields) {
+
+    if (fields == null || fields.trim().isEmpty()) {
+      return ALL;
+    }
+
+    Set<String> ficha = new LinkedHashSet<>();
+    ficha.add("id");
+    Set<String> persona = new LinkedHashSet<>();
+    boolean duenio = false;
+    boolean duenioCompleto = false;
+    boolean controles = false;
+
+    for (String field : fields.split(",")) {
+      String campo = field.trim();
+      if (campo.isEmpty()) {
+        continue;
+      }
+      if (campo.equals(FetchProfile.CONTROLES)) {
+        controles = true;
+      } else if (campo.equals(DUENIO)) {
+        duenio = true;
+        duenioCompleto = true;
+      } else if (campo.startsWith(DUENIO + ".")) {
+        String campoPersona = campo.substring(DUENIO.length() + 1);
+        if (!CAMPOS_PERSONA.contains(campoPersona)) {
+          throw new IllegalArgumentException("Campo desconocido: " + campo);
+        }
+        duenio = true;
+        persona.add(campoPersona);
+      } else if (CAMPOS_FICHA.contains(campo)) {
+        ficha.add(campo);
+      } else {
+        throw new IllegalArgumentException("Campo desconocido: " + campo);
+      }
+    }
+
+    if (duenio) {
+      ficha.add(DUENIO);
+      persona.add("id");
+    } else {
+      persona.clear();
+    }
+    return new FieldSet(ficha, duenioCompleto ? null : persona, controles);
+  }
+
+  /**
+   * Indica si se leen todos los campos.
+   * @return true si no hay restriccion.
+   */
+  public boolean isAll() {
+    return this.ficha == null;
+  }
+
+  /**
+   * Campos de la Ficha a leer (incluye el id y "duenio" si se pidio el duenio).
+   * @return los campos, null para todos.
+   */
+  public Set<String> getFichaFields() {
+    return this.ficha;
+  }
+
+  /**
+   * Indica si se lee el duenio.
+   * @return true si se pidio el duenio o alguno de sus campos.
+   */
+  public boolean isDuenio() {
+    return this.ficha == null || this.ficha.contains(DUENIO);
+  }
+
+  /**
+   * Campos del duenio a leer (incluye el id).
+   * @return los campos, null para todos.
+   */
+  public Set<String> getPersonaFields() {
+    return this.persona;
+  }
+
+  /**
+   * Restringe el perfil pedido a las colecciones que estan en el conjunto:
+   * las colecciones no pedidas no se consultan.
+   * @param include colecciones pedidas.
+   * @return el {@link FetchProfile} efectivo.
+   */
+  public FetchProfile restrict(FetchProfile include) {
+    if (isAll()) {
+      return include;
+    }
+    if (!this.controles) {
+      return FetchProfile.LAZY;
+    }
+    return include.isControles() ? include : FetchProfile.of(FetchProfile.CONTROLES);
+  }
+
+  /**
+   * @return los campos incluidos.
+   */
+  @Override
+  public String toString() {
+    if (isAll()) {
+      return "FieldSet{all}";
+    }
+    return "FieldSet{ficha=" + ficha + ", persona=" + (persona == null ? "all" : persona)
+            + ", controles=" + controles + "}";
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+/**
+ * Parametros del pool de conexiones.
+ *
+ * @author Gerald Lopez
+ */
+public final class PoolConfig {
+
+  /**
+   * Cantidad minima de conexiones que se mantienen abiertas.
+   */
+  private final int minSize;
+
+  /**
+   * Cantidad maxima de conexiones prestadas al mismo tiempo.
+   */
+  private final int maxSize;
+
+  /**
+   * Tiempo (ms) que una conexion libre puede estar sin uso antes de cerrarse.
+   */
+  private final long idleTimeoutMillis;
+
+  /**
+   * Consulta de validacion (null usa el ping de la base de datos).
+   */
+  private final String validationQuery;
+
+  /**
+   * Tiempo maximo (ms) de espera por una conexion.
+   */
+  private final long acquireTimeoutMillis;
+
+  /**
+   * Constructor.
+   * @param minSize de conexiones abiertas.
+   * @param maxSize de conexiones en uso.
+   * @param idleTimeoutMillis antes de cerrar una conexion libre.
+   * @param validationQuery a ejecutar para validar una conexion, puede ser null.
+   * @param acquireTimeoutMillis de espera por una conexion.
+   */
+  public PoolConfig(int minSize, int maxSize, long idleTimeoutMillis, String validationQuery,
+                    long acquireTimeoutMillis) {
+
+    if (minSize < 0) {
+      throw new IllegalArgumentException("minSize no puede ser negativo");
+    }
+    if (maxSize < 1 || maxSize < minSize) {
+      throw new IllegalArgumentException("maxSize debe ser >= 1 y >= minSize");
+    }
+    if (idleTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("idleTimeoutMillis debe ser positivo");
+    }
+    if (acquireTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("acquireTimeoutMillis debe ser positivo");
+    }
+
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.validationQuery = validationQuery;
+    this.acquireTimeoutMillis = acquireTimeoutMillis;
+  }
+
+  /**
+   * Configuracion por defecto: 1..(nucleos * 2) conexiones, 5 minutos de inactividad,
+   * ping de la base de datos y 30 segundos de espera maxima.
+   * @return la {@link PoolConfig}.
+   */
+  public static PoolConfig defaults() {
+    int max = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    return new PoolConfig(1, max, 5 * 60 * 1000L, null, 30 * 1000L);
+  }
+
+  /**
+   * Obtiene la cantidad minima de conexiones.
+   * @return minSize.
+   */
+  public int getMinSize() {
+    return this.minSize;
+  }
+
+  /**
+   * Obtiene la cantidad maxima de conexiones.
+   * @return maxSize.
+   */
+  public int getMaxSize() {
+    return this.maxSize;
+  }
+
+  /**
+   * Obtiene el tiempo maximo de inactividad.
+   * @return idleTimeoutMillis.
+   */
+  public long getIdleTimeoutMillis() {
+    return this.idleTimeoutMillis;
+  }
+
+  /**
+   * Obtiene la consulta de validacion.
+   * @return validationQuery, puede ser null.
+   */
+  public String getValidationQuery() {
+    return this.validationQuery;
+  }
+
+  /**
+   * Obtiene el tiempo maximo de espera por una conexion.
+   * @return acquireTimeoutMillis.
+   */
+  public long getAcquireTimeoutMillis() {
+    return this.acquireTimeoutMillis;
+  }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool de conexiones acotado sobre {@link JdbcPooledConnectionSource}.
+ * Limita las conexiones prestadas a {@link PoolConfig#getMaxSize()}, cierra las conexiones
+ * libres inactivas (manteniendo {@link PoolConfig#getMinSize()}) y mide la espera por conexion.
+ *
+ * @author Gerald Lopez
+ */
+public final class PooledConnectionSource extends JdbcPooledConnectionSource {
+
+  /**
+   * Logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(PooledConnectionSource.class);
+
+  /**
+   * La configuracion.
+   */
+  private final PoolConfig config;
+
+  /**
+   * Permisos: uno por conexion que se puede prestar.
+   */
+  private final Semaphore permits;
+
+  /**
+   * Cantidad de conexiones entregadas.
+   */
+  private final LongAdder acquireCount = new LongAdder();
+
+  /**
+   * Cantidad de esperas que superaron el tiempo maximo.
+   */
+  private final LongAdder acquireTimeoutCount = new LongAdder();
+
+  /**
+   * Tiempo total (ns) esperando por una conexion.
+   */
+  private final LongAdder acquireWaitNanos = new LongAdder();
+
+  /**
+   * Maxima espera (ns) observada.
+   */
+  private final AtomicLong maxAcquireWaitNanos = new AtomicLong();
+
+  /**
+   * Constructor.
+   * @param databaseUrl de la base de datos.
+   * @param config del pool.
+   * @throws SQLException en caso de no poder abrir las conexiones iniciales.
+   */
+  public PooledConnectionSource(String databaseUrl, PoolConfig config) throws SQLException {
+    super(databaseUrl);
+
+    if (config == null) {
+      throw new IllegalArgumentException("PoolConfig no puede ser null");
+    }
+
+    this.config = config;
+    this.permits = new Semaphore(config.getMaxSize(), true);
+
+    // Las conexiones solo se cierran por inactividad, no por edad.
+    setMaxConnectionsFree(config.getMaxSize());
+    setMaxConnectionAgeMillis(Long.MAX_VALUE);
+    setCheckConnectionsEveryMillis(Math.max(1000L, config.getIdleTimeoutMillis() / 2));
+    setTestBeforeGet(config.getValidationQuery() != null);
+
+    // Conexiones iniciales.
+    List<DatabaseConnection> warm = new ArrayList<>(config.getMinSize());
+    try {
+      for (int i = 0; i < config.getMinSize(); i++) {
+        warm.add(getReadWriteConnection(null));
+      }
+    } finally {
+      for (DatabaseConnection connection : warm) {
+        releaseConnection(connection);
+      }
+    }
+  }
+
+  /**
+   * Obtiene una conexion, esperando a lo mas {@link PoolConfig#getAcquireTimeoutMillis()}.
+   * @see JdbcPooledConnectionSource#getReadWriteConnection(String)
+   */
+  @Override
+  public DatabaseConnection getReadWriteConnection(String tableName) throws SQLException {
+
+    // Conexion guardada (transaccion / batch en curso): no consume permiso.
+    if (getSavedConnection() != null) {
+      return super.getReadWriteConnection(tableName);
+    }
+
+    long start = System.nanoTime();
+    boolean acquired;
+    try {
+      acquired = permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrumpido esperando una conexion", ex);
+    }
+    long waited = System.nanoTime() - start;
+    acquireWaitNanos.add(waited);
+    maxAcquireWaitNanos.accumulateAndGet(waited, Math::max);
+
+    if (!acquired) {
+      acquireTimeoutCount.increment();
+      throw new SQLException("Timeout de " + config.getAcquireTimeoutMillis()
+              + " ms esperando una conexion del pool (max " + config.getMaxSize() + ")");
+    }
+
+    try {
+      DatabaseConnection connection = super.getReadWriteConnection(tableName);
+      acquireCount.increment();
+      return connection;
+    } catch (SQLException | RuntimeException ex) {
+      permits.release();
+      throw ex;
+    }
+  }
+
+  /**
+   * Devuelve la conexion al pool y libera su permiso.
+   * @see JdbcPooledConnectionSource#releaseConnection(DatabaseConnection)
+   */
+  @Override
+  public void releaseConnection(DatabaseConnection connection) throws SQLException {
+
+    // La conexion guardada se libera cuando se limpia, no aqui.
+    if (isSavedConnection(connection)) {
+      super.releaseConnection(connection);
+      return;
+    }
+
+    try {
+      super.releaseConnection(connection);
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Valida una conexion libre: la cierra si supero el tiempo de inactividad (sobre el minimo)
+   * o si falla la consulta de validacion.
+   * @see JdbcPooledConnectionSource#testConnection(ConnectionMetaData)
+   */
+  @Override
+  protected boolean testConnection(ConnectionMetaData connMetaData) {
+
+    long idle = System.currentTimeMillis() - connMetaData.getLastUsed();
+    if (idle > config.getIdleTimeoutMillis()
+            && getCurrentConnectionsManaged() > config.getMinSize()) {
+      log.debug("Cerrando conexion inactiva {} ({} ms).", connMetaData, idle);
+      return false;
+    }
+
+    if (config.getValidationQuery() == null) {
+      return super.testConnection(connMetaData);
+    }
+
+    try {
+      connMetaData.connection.queryForLong(config.getValidationQuery());
+      return true;
+    } catch (SQLException | RuntimeException ex) {
+      log.warn("Conexion {} invalida: {}", connMetaData, ex.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Obtiene la configuracion del pool.
+   * @return la {@link PoolConfig}.
+   */
+  public PoolConfig getConfig() {
+    return this.config;
+  }
+
+  /**
+   * Obtiene la cantidad de conexiones entregadas.
+   * @return acquireCount.
+   */
+  public long getAcquireCount() {
+    return this.acquireCount.sum();
+  }
+
+  /**
+   * Obtiene la cantidad de esperas que terminaron en timeout.
+   * @return acquireTimeoutCount.
+   */
+  public long getAcquireTimeoutCount() {
+    return this.acquireTimeoutCount.sum();
+  }
+
+  /**
+   * Obtiene el tiempo promedio de espera por una conexion.
+   * @return espera promedio en milisegundos.
+   */
+  public double getAverageAcquireMillis() {
+    long count = this.acquireCount.sum() + this.acquireTimeoutCount.sum();
+    if (count == 0) {
+      return 0;
+    }
+    return this.acquireWaitNanos.sum() / (double) count / 1_000_000d;
+  }
+
+  /**
+   * Obtiene la maxima espera observada por una conexion.
+   * @return espera maxima en milisegundos.
+   */
+  public double getMaxAcquireMillis() {
+    return this.maxAcquireWaitNanos.get() / 1_000_000d;
+  }
+
+  /**
+   * Obtiene la cantidad de conexiones prestadas en este momento.
+   * @return conexiones en uso.
+   */
+  public int getActiveCount() {
+    return this.config.getMaxSize() - this.permits.availablePermits();
+  }
+
+  /**
+   * @return resumen de las metricas del pool.
+   */
+  @Override
+  public String toString() {
+    return "PooledConnectionSource{active=" + getActiveCount()
+            + ", free=" + getCurrentConnectionsFree()
+            + ", max=" + config.getMaxSize()
+            + ", acquired=" + getAcquireCount()
+            + ", timeouts=" + getAcquireTimeoutCount()
+            + ", avgWaitMs=" + String.format("%.3f", getAverageAcquireMillis())
+            + ", maxWaitMs=" + String.format("%.3f", getMaxAcquireMillis())
+            + "}";
+  }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import com.j256.ormlite.dao.ObjectCache;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.stmt.GenericRowMapper;
+import com.j256.ormlite.stmt.StatementBuilder;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseConnectionProxy;
+import com.j256.ormlite.support.DatabaseResults;
+import com.j256.ormlite.support.GeneratedKeyHolder;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cuenta las consultas enviadas a la base de datos.
+ * Las conexiones JDBC se envuelven en un proxy que incrementa un contador por hilo (una peticion
+ * HTTP se atiende en un hilo) y un total global. Las escrituras hechas por la {@link WriteQueue}
+ * se cuentan en el hilo escritor. El proxy tambien mide la ejecucion de cada sentencia como
+ * {@link RequestTiming.Stage#SQL}.
+ *
+ * @author Gerald Lopez
+ */
+public final class QueryCounter {
+
+  /**
+   * Consultas del hilo actual.
+   */
+  private static final ThreadLocal<long[]> queries = ThreadLocal.withInitial(() -> new long[1]);
+
+  /**
+   * Total de consultas.
+   */
+  private static final LongAdder total = new LongAdder();
+
+  /**
+   * Estado de la instalacion.
+   */
+  private static volatile boolean installed;
+
+  /**
+   * Constructor privado.
+   */
+  private QueryCounter() {
+    //nada aqui.
+  }
+
+  /**
+   * Instala el proxy en las conexiones JDBC que se creen desde ahora.
+   */
+  public static synchronized void install() {
+    if (!installed) {
+      JdbcConnectionSource.setDatabaseConnectionProxyFactory(CountingConnection::new);
+      installed = true;
+    }
+  }
+
+  /**
+   * Reinicia el contador del hilo actual (al comienzo de cada peticion).
+   */
+  public static void reset() {
+    queries.get()[0] = 0;
+  }
+
+  /**
+   * Obtiene las consultas hechas por el hilo actual desde el ultimo {@link #reset()}.
+   * @return la cantidad de consultas.
+   */
+  public static long get() {
+    return queries.get()[0];
+  }
+
+  /**
+   * Obtiene el total de consultas hechas por todos los hilos.
+   * @return la cantidad de consultas.
+   */
+  public static long getTotal() {
+    return total.sum();
+  }
+
+  /**
+   * Obtiene la conexion real, sin el proxy que cuenta las consultas.
+   * @param connection posiblemente envuelta por el contador.
+   * @return la conexion real.
+   */
+  static DatabaseConnection unwrap(DatabaseConnection connection) {
+    return connection instanceof CountingConnection
+            ? ((CountingConnection) connection).connection : connection;
+  }
+
+  /**
+   * Registra una consulta (ej: un batch JDBC ejecutado fuera del proxy).
+   */
+  static void count() {
+    queries.get()[0]++;
+    total.increment();
+  }
+
+  /**
+   * Conexion que cuenta cada sentencia enviada.
+   */
+  @SuppressWarnings("try")
+  private static final class CountingConnection extends DatabaseConnectionProxy {
+
+    /**
+     * La conexion real.
+     */
+    private final DatabaseConnection connection;
+
+    /**
+     * Constructor.
+     * @param connection real.
+     */
+    CountingConnection(DatabaseConnection connection) {
+      super(connection);
+      this.connection = connection;
+    }
+
+    @Override
+    public int executeStatement(String statementStr, int resultFlags) throws SQLException {
+      count();
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return super.executeStatement(statementStr, resultFlags);
+      }
+    }
+
+    @Override
+    public CompiledStatement compileStatement(String statement,
+                                              StatementBuilder.StatementType type,
+                                              FieldType[] argFieldTypes, int resultFlags,
+                                              boolean cacheStore) throws SQLException {
+      count();
+      return new TimedStatement(super.compileStatement(statement, type, argFieldTypes,
+              resultFlags, cacheStore));
+    }
+
+    @Override
+    public int insert(String statement, Object[] args, FieldType[] argfieldTypes,
+                      GeneratedKeyHolder keyHolder) throws SQLException {
+      count();
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return super.insert(statement, args, argfieldTypes, keyHolder);
+      }
+    }
+
+    @Override
+    public int update(String statement, Object[] args, FieldType[] argfieldTypes)
+            throws SQLException {
+      count();
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return super.update(statement, args, argfieldTypes);
+      }
+    }
+
+    @Override
+    public int delete(String statement, Object[] args, FieldType[] argfieldTypes)
+            throws SQLException {
+      count();
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return super.delete(statement, args, argfieldTypes);
+      }
+    }
+
+    @Override
+    public <T> Object queryForOne(String statement, Object[] args, FieldType[] argfieldTypes,
+                                  GenericRowMapper<T> rowMapper, ObjectCache objectCache)
+            throws SQLException {
+      count();
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return super.queryForOne(statement, args, argfieldTypes, rowMapper, objectCache);
+      }
+    }
+
+    @Override
+    public long queryForLong(String statement) throws SQLException {
+      count();
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return super.queryForLong(statement);
+      }
+    }
+
+    @Override
+    public long queryForLong(String statement, Object[] args, FieldType[] argFieldTypes)
+            throws SQLException {
+      count();
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return super.queryForLong(statement, args, argFieldTypes);
+      }
+    }
+
+  }
+
+  /**
+   * Sentencia compilada que mide su ejecucion (la lectura de las filas queda fuera).
+   */
+  @SuppressWarnings("try")
+  private static final class TimedStatement implements CompiledStatement {
+
+    /**
+     * La sentencia real.
+     */
+    private final CompiledStatement statement;
+
+    /**
+     * Constructor.
+     * @param statement real.
+     */
+    TimedStatement(CompiledStatement statement) {
+      this.statement = statement;
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+      return statement.getColumnCount();
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) throws SQLException {
+      return statement.getColumnName(columnIndex);
+    }
+
+    @Override
+    public int runUpdate() throws SQLException {
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return statement.runUpdate();
+      }
+    }
+
+    @Override
+    public DatabaseResults runQuery(ObjectCache objectCache) throws SQLException {
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return statement.runQuery(objectCache);
+      }
+    }
+
+    @Override
+    public int runExecute() throws SQLException {
+      try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        return statement.runExecute();
+      }
+    }
+
+    @Override
+    public void closeQuietly() {
+      statement.closeQuietly();
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+      statement.cancel();
+    }
+
+    @Override
+    public void setObject(int parameterIndex, Object obj, SqlType sqlType) throws SQLException {
+      statement.setObject(parameterIndex, obj, sqlType);
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+      statement.setMaxRows(max);
+    }
+
+    @Override
+    public void setQueryTimeout(long millis) throws SQLException {
+      statement.setQueryTimeout(millis);
+    }
+
+    @Override
+    public void close() throws IOException {
+      statement.close();
+    }
+
+  }
+
+}
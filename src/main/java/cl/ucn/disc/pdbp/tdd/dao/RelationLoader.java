@@ -0,0 +1,532 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.Control;
+import cl.ucn.disc.pdbp.tdd.model.Examen;
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.Persona;
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.dao.EagerForeignCollection;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableInfo;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Carga en lote (estilo DataLoader) las relaciones de una pagina de fichas.
+ * Junta las llaves foraneas de todas las fichas y resuelve cada relacion con una sola consulta
+ * {@code WHERE id IN (...)}: controles, examenes y personas (duenios y veterinarios).
+ * Cada {@link Persona} se carga una sola vez y se comparte entre todo el grafo.
+ * Con una pagina ya leida son a lo mas 3 consultas mas, sin importar la cantidad de filas.
+ *
+ * @author Gerald Lopez
+ */
+public final class RelationLoader {
+
+  /**
+   * Fichas por lote al recorrer un {@link Stream}.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /**
+   * Dao de {@link Ficha}.
+   */
+  private final BaseDaoImpl<Ficha, Long> daoFicha;
+
+  /**
+   * Dao de {@link Persona}.
+   */
+  private final BaseDaoImpl<Persona, Long> daoPersona;
+
+  /**
+   * Dao de {@link Control}.
+   */
+  private final BaseDaoImpl<Control, Long> daoControl;
+
+  /**
+   * Dao de {@link Examen}.
+   */
+  private final BaseDaoImpl<Examen, Long> daoExamen;
+
+  /**
+   * Ficha.duenio.
+   */
+  private final FieldType fichaDuenio;
+
+  /**
+   * Ficha.controles.
+   */
+  private final FieldType fichaControles;
+
+  /**
+   * Control.ficha.
+   */
+  private final FieldType controlFicha;
+
+  /**
+   * Control.veterinario.
+   */
+  private final FieldType controlVeterinario;
+
+  /**
+   * Control.examenes.
+   */
+  private final FieldType controlExamenes;
+
+  /**
+   * Examen.control.
+   */
+  private final FieldType examenControl;
+
+  /**
+   * Constructor.
+   * @param connectionSource de la base de datos.
+   */
+  public RelationLoader(ConnectionSource connectionSource) {
+
+    if (connectionSource == null) {
+      throw new IllegalArgumentException("ConnectionSource no puede ser null");
+    }
+
+    try {
+      this.daoFicha = DaoManager.createDao(connectionSource, Ficha.class);
+      this.daoPersona = DaoManager.createDao(connectionSource, Persona.class);
+      this.daoControl = DaoManager.createDao(connectionSource, Control.class);
+      this.daoExamen = DaoManager.createDao(connectionSource, Examen.class);
+
+      this.fichaDuenio = campo(daoFicha.getTableInfo(), "duenio");
+      this.fichaControles = campo(daoFicha.getTableInfo(), FetchProfile.CONTROLES);
+      this.controlFicha = campo(daoControl.getTableInfo(), "ficha");
+      this.controlVeterinario = campo(daoControl.getTableInfo(), "veterinario");
+      this.controlExamenes = campo(daoControl.getTableInfo(), FetchProfile.EXAMENES);
+      this.examenControl = campo(daoExamen.getTableInfo(), "control");
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Busca un campo por su nombre.
+   * @param tableInfo de la clase.
+   * @param nombre del campo.
+   * @return el {@link FieldType}.
+   */
+  private static FieldType campo(TableInfo<?, ?> tableInfo, String nombre) {
+    for (FieldType fieldType : tableInfo.getFieldTypes()) {
+      if (fieldType.getFieldName().equals(nombre)) {
+        return fieldType;
+      }
+    }
+    throw new IllegalStateException("La clase " + tableInfo.getDataClass().getSimpleName()
+            + " no tiene el campo " + nombre);
+  }
+
+  /**
+   * Carga los duenios de las fichas y las colecciones del perfil.
+   * @param fichas a completar (pueden repetirse).
+   * @param profile colecciones a cargar.
+   * @return las mismas fichas.
+   */
+  public List<Ficha> load(List<Ficha> fichas, FetchProfile profile) {
+    return load(fichas, profile, FieldSet.ALL);
+  }
+
+  /**
+   * Carga los duenios de las fichas (solo los campos pedidos) y las colecciones del perfil.
+   * Las fichas leidas sin la columna del duenio quedan sin duenio.
+   * @param fichas a completar (pueden repetirse).
+   * @param profile colecciones a cargar.
+   * @param fields campos pedidos del duenio.
+   * @return las mismas fichas.
+   */
+  @SuppressWarnings("try")
+  public List<Ficha> load(List<Ficha> fichas, FetchProfile profile, FieldSet fields) {
+
+    if (fichas == null) {
+      throw new IllegalArgumentException("Fichas null");
+    }
+    if (profile == null) {
+      throw new IllegalArgumentException("FetchProfile null");
+    }
+    if (fields == null) {
+      throw new IllegalArgumentException("FieldSet null");
+    }
+
+    if (fichas.isEmpty()) {
+      return fichas;
+    }
+
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      Set<Long> idDuenios = new LinkedHashSet<>();
+      for (Ficha ficha : fichas) {
+        if (ficha.getDuenio() != null) {
+          idDuenios.add(ficha.getDuenio().getId());
+        }
+      }
+
+      List<Control> controles = Collections.emptyList();
+      Set<Long> idVeterinarios = new LinkedHashSet<>();
+      if (profile.isControles()) {
+        controles = controles(fichas, profile.isExamenes());
+        for (Control control : controles) {
+          idVeterinarios.add(control.getVeterinario().getId());
+        }
+      }
+
+      Map<Long, Persona> duenios;
+      Map<Long, Persona> veterinarios;
+      if (fields.getPersonaFields() == null) {
+        // Una sola instancia por persona en todo el grafo.
+        idDuenios.addAll(idVeterinarios);
+        duenios = personas(idDuenios, null);
+        veterinarios = duenios;
+      } else {
+        // Duenios con solo los campos pedidos, veterinarios completos.
+        duenios = personas(idDuenios, fields.getPersonaFields());
+        veterinarios = personas(idVeterinarios, null);
+      }
+
+      for (Ficha ficha : fichas) {
+        if (ficha.getDuenio() != null) {
+          fichaDuenio.assignField(ficha, duenios.get(ficha.getDuenio().getId()), true, null);
+        }
+      }
+      for (Control control : controles) {
+        controlVeterinario.assignField(control,
+                veterinarios.get(control.getVeterinario().getId()), true, null);
+      }
+      padres(fichas, controles);
+
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+
+    return fichas;
+  }
+
+  /**
+   * Asigna a cada control su ficha (con su duenio) como una copia sin colecciones, para no
+   * volver a la coleccion de controles al recorrer el grafo (ej: al escribir el JSON).
+   * @param fichas duenias de los controles, con su duenio ya cargado.
+   * @param controles de las fichas.
+   * @throws SQLException en caso de error.
+   */
+  private void padres(List<Ficha> fichas, List<Control> controles) throws SQLException {
+
+    if (controles.isEmpty()) {
+      return;
+    }
+
+    Map<Long, Ficha> copias = new HashMap<>(fichas.size() * 2);
+    for (Ficha ficha : fichas) {
+      if (!copias.containsKey(ficha.getId())) {
+        copias.put(ficha.getId(), copia(ficha));
+      }
+    }
+    for (Control control : controles) {
+      controlFicha.assignField(control, copias.get(control.getFicha().getId()), true, null);
+    }
+  }
+
+  /**
+   * Copia una ficha sin sus colecciones (comparte el duenio).
+   * @param ficha a copiar.
+   * @return la copia.
+   * @throws SQLException en caso de error.
+   */
+  private Ficha copia(Ficha ficha) throws SQLException {
+
+    Ficha copia = daoFicha.getTableInfo().createObject();
+    for (FieldType fieldType : daoFicha.getTableInfo().getFieldTypes()) {
+      if (!fieldType.isForeignCollection()) {
+        fieldType.assignField(copia, fieldType.extractRawJavaFieldValue(ficha), true, null);
+      }
+    }
+    return copia;
+  }
+
+  /**
+   * Carga las personas con una sola consulta {@code WHERE id IN (...)}.
+   * @param ids de las personas.
+   * @param campos a leer (columnas), null para todos.
+   * @return el mapa id -> persona.
+   * @throws SQLException en caso de error.
+   */
+  private Map<Long, Persona> personas(Set<Long> ids, Set<String> campos) throws SQLException {
+
+    if (ids.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    QueryBuilder<Persona, Long> query = daoPersona.queryBuilder();
+    if (campos != null) {
+      for (String campo : campos) {
+        query.selectColumns(campo(daoPersona.getTableInfo(), campo).getColumnName());
+      }
+    }
+    return porId(query.where().in("id", ids).query(), Persona::getId);
+  }
+
+  /**
+   * Carga la ficha (con su duenio) y el veterinario de cada control, sin sus colecciones.
+   * @param controles a completar.
+   * @return los mismos controles.
+   */
+  @SuppressWarnings("try")
+  public List<Control> loadControles(List<Control> controles) {
+
+    if (controles == null) {
+      throw new IllegalArgumentException("Controles null");
+    }
+
+    if (controles.isEmpty()) {
+      return controles;
+    }
+
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      Set<Long> idFichas = new LinkedHashSet<>();
+      for (Control control : controles) {
+        idFichas.add(control.getFicha().getId());
+      }
+      Map<Long, Ficha> fichas = porId(daoFicha.queryBuilder().where()
+              .in("id", idFichas).query(), Ficha::getId);
+
+      Set<Long> idPersonas = new LinkedHashSet<>();
+      for (Ficha ficha : fichas.values()) {
+        idPersonas.add(ficha.getDuenio().getId());
+      }
+      for (Control control : controles) {
+        idPersonas.add(control.getVeterinario().getId());
+      }
+
+      // Una sola instancia por ficha y por persona.
+      Map<Long, Persona> personas = porId(daoPersona.queryBuilder().where()
+              .in("id", idPersonas).query(), Persona::getId);
+      for (Ficha ficha : fichas.values()) {
+        fichaDuenio.assignField(ficha, personas.get(ficha.getDuenio().getId()), true, null);
+      }
+      for (Control control : controles) {
+        controlFicha.assignField(control, fichas.get(control.getFicha().getId()), true, null);
+        controlVeterinario.assignField(control,
+                personas.get(control.getVeterinario().getId()), true, null);
+      }
+
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+
+    return controles;
+  }
+
+  /**
+   * Recorre todas las fichas ordenadas por id, de a paginas por llave (keyset), cargando en cada
+   * pagina los duenios (solo los campos pedidos) y las colecciones del perfil.
+   * Cada consulta toma y devuelve su propia conexion: ninguna queda abierta entre paginas ni
+   * mientras se consume el {@link Stream} (basta un pool de una conexion).
+   * @param repository de las fichas.
+   * @param profile colecciones a cargar.
+   * @param fields campos pedidos de la ficha y del duenio.
+   * @param batchSize fichas por pagina.
+   * @return el {@link Stream} de fichas completas.
+   */
+  public Stream<Ficha> stream(Repository<Ficha, Long> repository, FetchProfile profile,
+                              FieldSet fields, int batchSize) {
+
+    if (repository == null) {
+      throw new IllegalArgumentException("Repository null");
+    }
+    if (profile == null) {
+      throw new IllegalArgumentException("FetchProfile null");
+    }
+    if (fields == null) {
+      throw new IllegalArgumentException("FieldSet null");
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("batchSize debe ser >= 1");
+    }
+
+    Iterator<Ficha> paginas = new Iterator<Ficha>() {
+
+      private Iterator<Ficha> pagina = Collections.emptyIterator();
+
+      private Long after;
+
+      private boolean ultima;
+
+      @Override
+      public boolean hasNext() {
+        if (!pagina.hasNext() && !ultima) {
+          List<Ficha> lote = repository.findPage(after, batchSize, fields.getFichaFields());
+          ultima = lote.size() < batchSize;
+          if (!lote.isEmpty()) {
+            after = lote.get(lote.size() - 1).getId();
+          }
+          pagina = load(lote, profile, fields).iterator();
+        }
+        return pagina.hasNext();
+      }
+
+      @Override
+      public Ficha next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return pagina.next();
+      }
+    };
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(paginas,
+            Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Carga los controles de las fichas (y sus examenes) con una consulta por relacion.
+   * @param fichas duenias de los controles.
+   * @param examenes true para cargar los examenes de cada control.
+   * @return todos los controles cargados.
+   * @throws SQLException en caso de error.
+   */
+  private List<Control> controles(List<Ficha> fichas, boolean examenes) throws SQLException {
+
+    Map<Long, List<Ficha>> fichasPorId = agrupar(fichas, Ficha::getId);
+
+    List<Control> controles = daoControl.queryBuilder()
+            .orderBy("id", true)
+            .where().in(controlFicha.getColumnName(), fichasPorId.keySet())
+            .query();
+
+    Map<Long, List<Control>> controlesPorFicha = agrupar(controles,
+            control -> control.getFicha().getId());
+    for (Map.Entry<Long, List<Ficha>> entry : fichasPorId.entrySet()) {
+      List<Control> hijos = controlesPorFicha.getOrDefault(entry.getKey(),
+              Collections.emptyList());
+      for (Ficha ficha : entry.getValue()) {
+        fichaControles.assignField(ficha, coleccion(ficha, hijos, controlFicha), false, null);
+      }
+    }
+
+    if (examenes && !controles.isEmpty()) {
+      Map<Long, List<Control>> controlesPorId = agrupar(controles, Control::getId);
+
+      List<Examen> todos = daoExamen.queryBuilder()
+              .orderBy("id", true)
+              .where().in(examenControl.getColumnName(), controlesPorId.keySet())
+              .query();
+
+      Map<Long, List<Examen>> examenesPorControl = agrupar(todos,
+              examen -> examen.getControl().getId());
+      for (Control control : controles) {
+        List<Examen> hijos = examenesPorControl.getOrDefault(control.getId(),
+                Collections.emptyList());
+        controlExamenes.assignField(control, coleccion(control, hijos, examenControl), false,
+                null);
+      }
+    }
+
+    return controles;
+  }
+
+  /**
+   * Construye una coleccion foranea ya cargada, sin dao: no consulta ni escribe.
+   * @param parent duenio de la coleccion.
+   * @param elementos de la coleccion.
+   * @param foreignField de los elementos hacia el parent.
+   * @param <E> tipo de los elementos.
+   * @return la coleccion.
+   * @throws SQLException en caso de error.
+   */
+  private static <E> EagerForeignCollection<E, Long> coleccion(Object parent,
+                                                              Collection<E> elementos,
+                                                              FieldType foreignField)
+          throws SQLException {
+    EagerForeignCollection<E, Long> coleccion = new EagerForeignCollection<>(null, parent, null,
+            foreignField, null, true);
+    coleccion.addAll(elementos);
+    return coleccion;
+  }
+
+  /**
+   * Indexa una lista por id (el ultimo gana).
+   * @param elementos a indexar.
+   * @param id funcion que obtiene el id.
+   * @param <E> tipo de los elementos.
+   * @return el mapa id -> elemento.
+   */
+  private static <E> Map<Long, E> porId(List<E> elementos, Id<E> id) {
+    Map<Long, E> mapa = new HashMap<>(elementos.size() * 2);
+    for (E elemento : elementos) {
+      mapa.put(id.of(elemento), elemento);
+    }
+    return mapa;
+  }
+
+  /**
+   * Agrupa una lista por una llave, manteniendo el orden.
+   * @param elementos a agrupar.
+   * @param llave funcion que obtiene la llave.
+   * @param <E> tipo de los elementos.
+   * @return el mapa llave -> elementos.
+   */
+  private static <E> Map<Long, List<E>> agrupar(List<E> elementos, Id<E> llave) {
+    Map<Long, List<E>> mapa = new HashMap<>(elementos.size() * 2);
+    for (E elemento : elementos) {
+      mapa.computeIfAbsent(llave.of(elemento), k -> new ArrayList<>(1)).add(elemento);
+    }
+    return mapa;
+  }
+
+  /**
+   * Obtiene un id (o llave foranea) de un elemento.
+   * @param <E> tipo del elemento.
+   */
+  @FunctionalInterface
+  private interface Id<E> {
+
+    /**
+     * Obtiene el id.
+     * @param elemento del que se obtiene.
+     * @return el id.
+     */
+    Long of(E elemento);
+  }
+
+}
@@ -24,11 +24,16 @@
 
 package cl.ucn.disc.pdbp.tdd.dao;
 
+import com.j256.ormlite.dao.CloseableIterator;
 import com.j256.ormlite.stmt.QueryBuilder;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Capa de acceso a  datos.
+ * Solo {@link #findById(Object)} carga las referencias foraneas: el resto de las consultas las
+ * entrega con solo su id (para cargarlas de a lotes, ver {@link RelationLoader}).
  * @author Gerald Lopez
  *
  * @param <T> tipo de dato
@@ -42,6 +47,46 @@ public interface Repository<T, K> {
    */
   List<T> findAll();
 
+  /**
+   * Recorre todos los T del repositorio sin materializarlos en memoria.
+   * El iterador mantiene abierta la consulta y debe cerrarse.
+   * @return el {@link CloseableIterator} de T
+   */
+  CloseableIterator<T> iterate();
+
+  /**
+   * Recorre todos los T del repositorio como {@link Stream}, leyendo de a una fila.
+   * El stream debe cerrarse (try-with-resources) para liberar la consulta.
+   * @return el {@link Stream} de T
+   */
+  Stream<T> stream();
+
+  /**
+   * Recorre todos los T del repositorio como {@link Stream}, leyendo solo algunos campos.
+   * Las referencias foraneas leidas quedan con solo su id.
+   * @param campos nombres de los campos a leer (el id siempre se lee), null para todos.
+   * @return el {@link Stream} de T
+   */
+  Stream<T> stream(Collection<String> campos);
+
+  /**
+   * Obtiene una pagina de T ordenada por id (paginacion por llave / keyset).
+   * @param after ultimo id de la pagina anterior, null para la primera pagina.
+   * @param limit cantidad maxima de elementos.
+   * @return Lista de T con id mayor a after.
+   */
+  List<T> findPage(K after, long limit);
+
+  /**
+   * Obtiene una pagina de T ordenada por id, leyendo solo algunos campos ({@code SELECT} de
+   * esas columnas). Los campos no leidos quedan en null.
+   * @param after ultimo id de la pagina anterior, null para la primera pagina.
+   * @param limit cantidad maxima de elementos.
+   * @param campos nombres de los campos a leer (el id siempre se lee), null para todos.
+   * @return Lista de T con id mayor a after.
+   */
+  List<T> findPage(K after, long limit, Collection<String> campos);
+
   /**
    * Obtiene un List filtrado por "key".
    * @param key que se busca
@@ -51,12 +96,27 @@ public interface Repository<T, K> {
   List<T> findAll(String key, Object value);
 
   /**
-   * Obtiene un T a traves de su identificador.
+   * Obtiene el T con una llave unica (sin cargar sus referencias foraneas).
+   * @param key columna unica
+   * @param value que se busca
+   * @return el T, null si no existe.
+   */
+  T findByUnique(String key, Object value);
+
+  /**
+   * Obtiene un T a traves de su identificador, con sus referencias foraneas cargadas.
    * @param id a buscar
    * @return T con la id.
    */
   T findById(K id);
 
+  /**
+   * Obtiene los T con los identificadores dados, en una sola consulta.
+   * @param ids a buscar
+   * @return Lista de T (sin orden definido).
+   */
+  List<T> findByIds(Collection<K> ids);
+
   /**
    * Permite construir consultas al repositorio de forma generica.
    * @return la {@link QueryBuilder}
@@ -84,5 +144,26 @@ public interface Repository<T, K> {
    */
   boolean delete(K id);
 
+  /**
+   * Crea todos los T en el repositorio, dentro de una transaccion.
+   * @param objetos a crear
+   * @return por cada objeto (en orden), true si se creo correctamente.
+   */
+  List<Boolean> createAll(Collection<T> objetos);
+
+  /**
+   * Actualiza todos los T en el repositorio, dentro de una transaccion.
+   * @param objetos a actualizar
+   * @return por cada objeto (en orden), true si se actualizo satisfactoriamente.
+   */
+  List<Boolean> updateAll(Collection<T> objetos);
+
+  /**
+   * Borra todos los T dados sus identificadores, dentro de una transaccion.
+   * @param ids de los T a eliminar.
+   * @return por cada id (en orden), true si se elimino correctamente.
+   */
+  List<Boolean> deleteAll(Collection<K> ids);
+
 
 }
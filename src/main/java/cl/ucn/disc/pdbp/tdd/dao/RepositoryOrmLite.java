@@ -26,12 +26,35 @@ package cl.ucn.disc.pdbp.tdd.dao;
 
 import cl.ucn.disc.pdbp.tdd.model.Control;
 import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.CloseableIterator;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.jdbc.TypeValMapper;
+import com.j256.ormlite.misc.TransactionManager;
 import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableInfo;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implementacion generica de {@link Repository}.
@@ -41,22 +64,121 @@ import java.util.List;
  */
 public final class RepositoryOrmLite<T, K> implements Repository<T, K> {
 
+  /**
+   * Tamanio por defecto de cada lote en las operaciones masivas.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+
   private final Dao<T, K> theDao;
 
+  /**
+   * Metadatos de la tabla.
+   */
+  private final TableInfo<T, K> tableInfo;
+
+  /**
+   * Tamanio de cada batch JDBC en las operaciones masivas.
+   */
+  private final int chunkSize;
+
+  /**
+   * DAO de cada campo foraneo, para cargarlos en findById sin buscar el DAO en cada consulta.
+   */
+  private final Map<FieldType, Dao<Object, Object>> foraneos = new LinkedHashMap<>();
+
+  /**
+   * INSERT de createAll y sus campos (sin el id generado).
+   */
+  private final String insertSql;
+
+  /**
+   * Campos del INSERT, en orden.
+   */
+  private final FieldType[] insertCampos;
+
+  /**
+   * UPDATE por id de updateAll, null si la tabla no tiene id.
+   */
+  private final String updateSql;
+
+  /**
+   * Campos del UPDATE, en orden y con el id al final.
+   */
+  private final FieldType[] updateCampos;
+
+  /**
+   * DELETE por id de deleteAll, null si la tabla no tiene id.
+   */
+  private final String deleteSql;
+
   /**
    * Constructor.
    * @param connectionSource conexion con  ORM.
    * @param theClazz para usar como fuente.
    */
   public RepositoryOrmLite(ConnectionSource connectionSource, Class<T> theClazz) {
+    this(connectionSource, theClazz, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param connectionSource conexion con  ORM.
+   * @param theClazz para usar como fuente.
+   * @param chunkSize filas de cada batch JDBC en createAll, updateAll y deleteAll.
+   */
+  public RepositoryOrmLite(ConnectionSource connectionSource, Class<T> theClazz, int chunkSize) {
+
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize debe ser >= 1");
+    }
+    this.chunkSize = chunkSize;
 
     try {
-      theDao = DaoManager.createDao(connectionSource, theClazz);
+      BaseDaoImpl<T, K> dao = DaoManager.createDao(connectionSource, theClazz);
+      theDao = dao;
+      tableInfo = dao.getTableInfo();
+
+      for (FieldType fieldType : tableInfo.getFieldTypes()) {
+        if (fieldType.isForeign()) {
+          @SuppressWarnings("unchecked")
+          Class<Object> clazz = (Class<Object>) fieldType.getType();
+          foraneos.put(fieldType, DaoManager.createDao(connectionSource, clazz));
+        }
+      }
 
     } catch (SQLException throwables) {
       throw new RuntimeException(throwables);
     }
 
+    // Sentencias de las operaciones masivas: los mismos campos que ORMLite usa en create/update.
+    FieldType idField = tableInfo.getIdField();
+    List<FieldType> insertar = new ArrayList<>();
+    List<FieldType> actualizar = new ArrayList<>();
+    for (FieldType fieldType : tableInfo.getFieldTypes()) {
+      if (fieldType.isForeignCollection() || fieldType.isReadOnly()) {
+        continue;
+      }
+      if (fieldType != idField || !fieldType.isGeneratedId()) {
+        insertar.add(fieldType);
+      }
+      if (fieldType != idField) {
+        actualizar.add(fieldType);
+      }
+    }
+    DatabaseType databaseType = connectionSource.getDatabaseType();
+    insertCampos = insertar.toArray(new FieldType[0]);
+    insertSql = insert(databaseType, tableInfo.getTableName(), insertCampos);
+    if (idField == null) {
+      updateCampos = null;
+      updateSql = null;
+      deleteSql = null;
+    } else {
+      actualizar.add(idField);
+      updateCampos = actualizar.toArray(new FieldType[0]);
+      updateSql = update(databaseType, tableInfo.getTableName(), updateCampos);
+      deleteSql = delete(databaseType, tableInfo.getTableName(), idField);
+    }
+
   }
 
   /**
@@ -65,15 +187,137 @@ public final class RepositoryOrmLite<T, K> implements Repository<T, K> {
    * @return la lista de T
    */
   @Override
+  @SuppressWarnings("try")
   public List<T> findAll() {
 
-    try {
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
       return theDao.queryForAll();
     } catch (SQLException throwables) {
       throw new RuntimeException(throwables);
     }
   }
 
+  /**
+   * Recorre todos los T del repositorio sin materializarlos en memoria.
+   *
+   * @return el {@link CloseableIterator} de T
+   */
+  @Override
+  @SuppressWarnings("try")
+  public CloseableIterator<T> iterate() {
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      return theDao.iterator();
+    }
+  }
+
+  /**
+   * Recorre todos los T del repositorio como {@link Stream}, leyendo de a una fila.
+   *
+   * @return el {@link Stream} de T
+   */
+  @Override
+  public Stream<T> stream() {
+
+    return filas(iterate());
+  }
+
+  /**
+   * Recorre todos los T del repositorio como {@link Stream}, leyendo solo algunos campos.
+   *
+   * @param campos nombres de los campos a leer (el id siempre se lee), null para todos.
+   * @return el {@link Stream} de T
+   */
+  @Override
+  @SuppressWarnings("try")
+  public Stream<T> stream(Collection<String> campos) {
+
+    if (campos == null) {
+      return stream();
+    }
+
+    CloseableIterator<T> iterator;
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      iterator = theDao.iterator(theDao.queryBuilder().selectColumns(columnas(campos)).prepare());
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+    return filas(iterator);
+  }
+
+  /**
+   * Recorre el iterador como {@link Stream}. Leer cada fila (y convertirla en T) se mide como
+   * {@link RequestTiming.Stage#DB} aunque ocurra mientras se serializa la respuesta.
+   * @param iterator de las filas.
+   * @param <T> tipo de dato.
+   * @return el {@link Stream} de T, que al cerrarse cierra el iterador.
+   */
+  @SuppressWarnings("try")
+  private static <T> Stream<T> filas(CloseableIterator<T> iterator) {
+
+    Spliterator<T> filas = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+            Spliterator.ORDERED | Spliterator.NONNULL) {
+
+      @Override
+      public boolean tryAdvance(Consumer<? super T> action) {
+
+        T fila;
+        try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+          if (!iterator.hasNext()) {
+            return false;
+          }
+          fila = iterator.next();
+        }
+        action.accept(fila);
+        return true;
+      }
+    };
+    return StreamSupport.stream(filas, false).onClose(iterator::closeQuietly);
+  }
+
+  /**
+   * Obtiene una pagina de T ordenada por id (paginacion por llave / keyset).
+   *
+   * @param after ultimo id de la pagina anterior, null para la primera pagina.
+   * @param limit cantidad maxima de elementos.
+   * @return Lista de T con id mayor a after.
+   */
+  @Override
+  public List<T> findPage(K after, long limit) {
+    return findPage(after, limit, null);
+  }
+
+  /**
+   * Obtiene una pagina de T ordenada por id, leyendo solo algunos campos.
+   *
+   * @param after ultimo id de la pagina anterior, null para la primera pagina.
+   * @param limit cantidad maxima de elementos.
+   * @param campos nombres de los campos a leer (el id siempre se lee), null para todos.
+   * @return Lista de T con id mayor a after.
+   */
+  @Override
+  @SuppressWarnings("try")
+  public List<T> findPage(K after, long limit, Collection<String> campos) {
+
+    if (limit < 1) {
+      throw new IllegalArgumentException("limit debe ser >= 1");
+    }
+
+    String idColumn = tableInfo.getIdField().getColumnName();
+
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      QueryBuilder<T, K> query = theDao.queryBuilder().orderBy(idColumn, true).limit(limit);
+      if (campos != null) {
+        query.selectColumns(columnas(campos));
+      }
+      if (after != null) {
+        query.where().gt(idColumn, after);
+      }
+      return query.query();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
   /**
    * Obtiene un List filtrado por "key".
    *
@@ -82,8 +326,9 @@ public final class RepositoryOrmLite<T, K> implements Repository<T, K> {
    * @return Lista de T filtrada por key
    */
   @Override
+  @SuppressWarnings("try")
   public List<T> findAll(String key, Object value) {
-    try {
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
       return theDao.queryForEq(key, value);
     } catch (SQLException throwables) {
       throw new RuntimeException(throwables);
@@ -91,22 +336,113 @@ public final class RepositoryOrmLite<T, K> implements Repository<T, K> {
   }
 
   /**
-   * Obtiene un T a traves de su identificador.
+   * Obtiene el T con una llave unica (sin cargar sus referencias foraneas).
+   *
+   * @param key   columna unica
+   * @param value que se busca
+   * @return el T, null si no existe.
+   */
+  @Override
+  @SuppressWarnings("try")
+  public T findByUnique(String key, Object value) {
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      return theDao.queryBuilder().where().eq(key, value).queryForFirst();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Obtiene un T a traves de su identificador, con sus referencias foraneas cargadas
+   * (un nivel). Las listas se completan en lote con {@link RelationLoader}.
    *
    * @param id a buscar
    * @return T con la id.
    */
   @Override
+  @SuppressWarnings("try")
   public T findById(K id) {
 
-    try {
-      return theDao.queryForId(id);
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      T objeto = theDao.queryForId(id);
+      if (objeto != null) {
+        refrescar(objeto);
+      }
+      return objeto;
     } catch (SQLException throwables) {
       throw new RuntimeException(throwables);
     }
 
   }
 
+  /**
+   * Obtiene los T con los identificadores dados, en una sola consulta.
+   *
+   * @param ids a buscar
+   * @return Lista de T (sin orden definido).
+   */
+  @Override
+  @SuppressWarnings("try")
+  public List<T> findByIds(Collection<K> ids) {
+
+    if (ids == null) {
+      throw new IllegalArgumentException("Coleccion null");
+    }
+
+    if (ids.isEmpty()) {
+      return new ArrayList<>(0);
+    }
+
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      return theDao.queryBuilder().where().in(tableInfo.getIdField().getColumnName(), ids)
+              .query();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Traduce nombres de campos a columnas de la tabla, agregando el id.
+   * @param campos nombres de los campos.
+   * @return las columnas.
+   */
+  private List<String> columnas(Collection<String> campos) {
+
+    List<String> columnas = new ArrayList<>(campos.size() + 1);
+    columnas.add(tableInfo.getIdField().getColumnName());
+    for (String campo : campos) {
+      FieldType fieldType = null;
+      for (FieldType candidato : tableInfo.getFieldTypes()) {
+        if (candidato.getFieldName().equals(campo)) {
+          fieldType = candidato;
+          break;
+        }
+      }
+      if (fieldType == null || fieldType.isForeignCollection()) {
+        throw new IllegalArgumentException("Campo desconocido: " + campo);
+      }
+      if (!columnas.contains(fieldType.getColumnName())) {
+        columnas.add(fieldType.getColumnName());
+      }
+    }
+    return columnas;
+  }
+
+  /**
+   * Carga los objetos foraneos (que ORMLite deja solo con su id) de T.
+   * @param objeto a completar.
+   * @throws SQLException en caso de error.
+   */
+  private void refrescar(T objeto) throws SQLException {
+
+    for (Map.Entry<FieldType, Dao<Object, Object>> foraneo : foraneos.entrySet()) {
+      Object valor = foraneo.getKey().extractRawJavaFieldValue(objeto);
+      if (valor != null) {
+        foraneo.getValue().refresh(valor);
+      }
+    }
+  }
+
   /**
    * Permite construir consultas al repositorio de forma generica.
    *
@@ -124,22 +460,47 @@ public final class RepositoryOrmLite<T, K> implements Repository<T, K> {
    * @return true si se creo correctamente.
    */
   @Override
+  @SuppressWarnings("try")
   public boolean create(T objeto) {
 
-    try {
-      if (objeto.getClass() == Ficha.class) {
-        //permite agregar el listado de controles al objeto ficha.
-        theDao.assignEmptyForeignCollection(objeto, "controles");
-      } else if (objeto.getClass() == Control.class) {
-        theDao.assignEmptyForeignCollection(objeto, "examenes");
-      }
-      return theDao.create(objeto) == 1;
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      return crear(objeto);
     } catch (SQLException throwables) {
       throw new RuntimeException(throwables);
     }
 
   }
 
+  /**
+   * Crea un T asignando las colecciones foraneas vacias.
+   * Se asignan despues del insert: la coleccion lazy consulta por el id del padre, que antes
+   * del insert es null.
+   * @param objeto a crear
+   * @return true si se creo correctamente.
+   * @throws SQLException en caso de error.
+   */
+  private boolean crear(T objeto) throws SQLException {
+
+    boolean creado = theDao.create(objeto) == 1;
+    colecciones(objeto);
+    return creado;
+  }
+
+  /**
+   * Asigna las colecciones foraneas vacias de un T ya insertado (con id).
+   * @param objeto creado.
+   * @throws SQLException en caso de error.
+   */
+  private void colecciones(T objeto) throws SQLException {
+
+    if (objeto.getClass() == Ficha.class) {
+      //permite agregar el listado de controles al objeto ficha.
+      theDao.assignEmptyForeignCollection(objeto, "controles");
+    } else if (objeto.getClass() == Control.class) {
+      theDao.assignEmptyForeignCollection(objeto, "examenes");
+    }
+  }
+
   /**
    * Actualiza los datos de T en el repositorio.
    *
@@ -147,9 +508,10 @@ public final class RepositoryOrmLite<T, K> implements Repository<T, K> {
    * @return true si se actualizo satisfactoriamente.
    */
   @Override
+  @SuppressWarnings("try")
   public boolean update(T objeto) {
 
-    try {
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
       return theDao.update(objeto) == 1;
     } catch (SQLException throwables) {
       throw new RuntimeException(throwables);
@@ -164,13 +526,322 @@ public final class RepositoryOrmLite<T, K> implements Repository<T, K> {
    * @return true si se elimino correctamente.
    */
   @Override
+  @SuppressWarnings("try")
   public boolean delete(K id) {
 
-    try {
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
       return theDao.deleteById(id) == 1;
     } catch (SQLException throwables) {
       throw new RuntimeException(throwables);
     }
 
   }
+
+  /**
+   * Crea todos los T en el repositorio, dentro de una transaccion, con un batch JDBC
+   * ({@code addBatch}/{@code executeBatch}) de chunkSize filas. Asigna el id generado y las
+   * colecciones foraneas vacias de cada T.
+   *
+   * @param objetos a crear
+   * @return por cada objeto (en orden), true si se creo correctamente.
+   */
+  @Override
+  public List<Boolean> createAll(Collection<T> objetos) {
+    return enLote(objetos, insertSql, tableInfo.getIdField() != null
+            && tableInfo.getIdField().isGeneratedId(),
+        (statement, objeto) -> asignar(statement, insertCampos, objeto), this::creados);
+  }
+
+  /**
+   * Actualiza todos los T en el repositorio, dentro de una transaccion, con un batch JDBC de
+   * chunkSize filas.
+   *
+   * @param objetos a actualizar
+   * @return por cada objeto (en orden), true si se actualizo satisfactoriamente.
+   */
+  @Override
+  public List<Boolean> updateAll(Collection<T> objetos) {
+    return enLote(objetos, updateSql, false,
+        (statement, objeto) -> asignar(statement, updateCampos, objeto), null);
+  }
+
+  /**
+   * Borra todos los T dados sus identificadores, dentro de una transaccion, con un batch JDBC de
+   * chunkSize filas.
+   *
+   * @param ids de los T a eliminar.
+   * @return por cada id (en orden), true si se elimino correctamente.
+   */
+  @Override
+  public List<Boolean> deleteAll(Collection<K> ids) {
+    return enLote(ids, deleteSql, false, (statement, id) -> asignar(statement, 1,
+            tableInfo.getIdField(), tableInfo.getIdField().convertJavaFieldToSqlArgValue(id)),
+        null);
+  }
+
+  /**
+   * Ejecuta la sentencia para cada elemento en una sola transaccion, en batches JDBC de
+   * chunkSize elementos (una ida y vuelta a la base de datos por batch).
+   * @param elementos a procesar.
+   * @param sql la sentencia.
+   * @param llaves true para pedir las llaves generadas.
+   * @param parametros asigna los parametros de un elemento.
+   * @param ejecutado despues de cada batch, puede ser null.
+   * @param <E> tipo del elemento.
+   * @return por cada elemento (en orden), true si afecto una fila.
+   */
+  @SuppressWarnings("try")
+  private <E> List<Boolean> enLote(Collection<E> elementos, String sql, boolean llaves,
+                                   Parametros<E> parametros, Lote<E> ejecutado) {
+
+    if (elementos == null) {
+      throw new IllegalArgumentException("Coleccion null");
+    }
+
+    if (sql == null) {
+      throw new IllegalStateException("La tabla " + tableInfo.getTableName() + " no tiene id");
+    }
+
+    if (elementos.isEmpty()) {
+      return new ArrayList<>(0);
+    }
+
+    ConnectionSource connectionSource = theDao.getConnectionSource();
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.DB)) {
+      return TransactionManager.callInTransaction(connectionSource, () -> {
+
+        // Dentro de la transaccion: la misma conexion, sin auto-commit.
+        DatabaseConnection databaseConnection = connectionSource
+                .getReadWriteConnection(tableInfo.getTableName());
+        try (PreparedStatement statement = llaves
+                ? jdbc(databaseConnection).prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : jdbc(databaseConnection).prepareStatement(sql)) {
+
+          List<Boolean> resultados = new ArrayList<>(elementos.size());
+          List<E> lote = new ArrayList<>(Math.min(chunkSize, elementos.size()));
+          Iterator<E> iterator = elementos.iterator();
+
+          while (iterator.hasNext()) {
+            lote.clear();
+            while (lote.size() < chunkSize && iterator.hasNext()) {
+              E elemento = iterator.next();
+              parametros.asignar(statement, elemento);
+              statement.addBatch();
+              lote.add(elemento);
+            }
+            for (int filas : ejecutar(statement)) {
+              resultados.add(filas == 1 || filas == Statement.SUCCESS_NO_INFO);
+            }
+            if (ejecutado != null) {
+              ejecutado.ejecutado(statement, lote);
+            }
+          }
+          return resultados;
+        } finally {
+          connectionSource.releaseConnection(databaseConnection);
+        }
+      });
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Ejecuta el batch, contandolo como una consulta.
+   * @param statement con el batch.
+   * @return las filas afectadas por cada elemento.
+   * @throws SQLException en caso de error.
+   */
+  @SuppressWarnings("try")
+  private static int[] ejecutar(PreparedStatement statement) throws SQLException {
+    QueryCounter.count();
+    try (RequestTiming.Timer timer = RequestTiming.start(RequestTiming.Stage.SQL)) {
+      return statement.executeBatch();
+    }
+  }
+
+  /**
+   * Completa los T de un batch de inserts: su id generado y sus colecciones foraneas vacias.
+   * @param statement ejecutado.
+   * @param lote de T insertados.
+   * @throws SQLException en caso de error.
+   */
+  private void creados(PreparedStatement statement, List<T> lote) throws SQLException {
+
+    FieldType idField = tableInfo.getIdField();
+    if (idField != null && idField.isGeneratedId()) {
+
+      List<Long> llaves = new ArrayList<>(lote.size());
+      try (ResultSet keys = statement.getGeneratedKeys()) {
+        while (keys.next()) {
+          llaves.add(keys.getLong(1));
+        }
+      }
+
+      if (llaves.size() == 1 && lote.size() > 1) {
+        // SQLite solo entrega la ultima llave: las filas del batch son consecutivas porque la
+        // transaccion tiene el lock de escritura.
+        long ultima = llaves.get(0);
+        llaves.clear();
+        for (long llave = ultima - lote.size() + 1; llave <= ultima; llave++) {
+          llaves.add(llave);
+        }
+      }
+      if (llaves.size() != lote.size()) {
+        throw new SQLException("Se esperaban " + lote.size() + " llaves generadas, se obtuvieron "
+                + llaves.size());
+      }
+
+      for (int i = 0; i < lote.size(); i++) {
+        idField.assignIdValue(lote.get(i), llaves.get(i), null);
+      }
+    }
+
+    for (T objeto : lote) {
+      colecciones(objeto);
+    }
+  }
+
+  /**
+   * Obtiene la conexion JDBC (sin el proxy de {@link QueryCounter}).
+   * @param databaseConnection de ORMLite.
+   * @return la conexion JDBC.
+   * @throws SQLException si no es una conexion JDBC.
+   */
+  private static Connection jdbc(DatabaseConnection databaseConnection) throws SQLException {
+    DatabaseConnection real = QueryCounter.unwrap(databaseConnection);
+    if (!(real instanceof JdbcDatabaseConnection)) {
+      throw new SQLException("Las operaciones masivas requieren una conexion JDBC");
+    }
+    return ((JdbcDatabaseConnection) real).getInternalConnection();
+  }
+
+  /**
+   * Asigna los campos de T como parametros de la sentencia, desde el primero y en orden.
+   * @param statement la sentencia.
+   * @param campos a asignar.
+   * @param objeto de donde se leen.
+   * @throws SQLException en caso de error.
+   */
+  private static void asignar(PreparedStatement statement, FieldType[] campos, Object objeto)
+          throws SQLException {
+    for (int i = 0; i < campos.length; i++) {
+      asignar(statement, i + 1, campos[i], campos[i].extractJavaFieldToSqlArgValue(objeto));
+    }
+  }
+
+  /**
+   * Asigna un parametro ya convertido por el persister del campo (ej: las fechas como BIGINT).
+   * @param statement la sentencia.
+   * @param indice del parametro (desde 1).
+   * @param fieldType del campo.
+   * @param valor a asignar, puede ser null.
+   * @throws SQLException en caso de error.
+   */
+  private static void asignar(PreparedStatement statement, int indice, FieldType fieldType,
+                              Object valor) throws SQLException {
+    if (valor == null) {
+      statement.setNull(indice, TypeValMapper.getTypeValForSqlType(fieldType.getSqlType()));
+    } else {
+      statement.setObject(indice, valor);
+    }
+  }
+
+  /**
+   * Construye el INSERT de los campos.
+   * @param databaseType para escapar los nombres.
+   * @param tabla nombre de la tabla.
+   * @param campos a insertar.
+   * @return la sentencia.
+   */
+  private static String insert(DatabaseType databaseType, String tabla, FieldType[] campos) {
+
+    StringBuilder sql = new StringBuilder("INSERT INTO ");
+    databaseType.appendEscapedEntityName(sql, tabla);
+    sql.append(" (");
+    for (int i = 0; i < campos.length; i++) {
+      if (i > 0) {
+        sql.append(", ");
+      }
+      databaseType.appendEscapedEntityName(sql, campos[i].getColumnName());
+    }
+    sql.append(") VALUES (");
+    for (int i = 0; i < campos.length; i++) {
+      sql.append(i > 0 ? ", ?" : "?");
+    }
+    return sql.append(')').toString();
+  }
+
+  /**
+   * Construye el UPDATE de los campos (el ultimo es el id, en el WHERE).
+   * @param databaseType para escapar los nombres.
+   * @param tabla nombre de la tabla.
+   * @param campos a actualizar, con el id al final.
+   * @return la sentencia.
+   */
+  private static String update(DatabaseType databaseType, String tabla, FieldType[] campos) {
+
+    StringBuilder sql = new StringBuilder("UPDATE ");
+    databaseType.appendEscapedEntityName(sql, tabla);
+    sql.append(" SET ");
+    for (int i = 0; i < campos.length - 1; i++) {
+      if (i > 0) {
+        sql.append(", ");
+      }
+      databaseType.appendEscapedEntityName(sql, campos[i].getColumnName());
+      sql.append(" = ?");
+    }
+    sql.append(" WHERE ");
+    databaseType.appendEscapedEntityName(sql, campos[campos.length - 1].getColumnName());
+    return sql.append(" = ?").toString();
+  }
+
+  /**
+   * Construye el DELETE por id.
+   * @param databaseType para escapar los nombres.
+   * @param tabla nombre de la tabla.
+   * @param id campo id.
+   * @return la sentencia.
+   */
+  private static String delete(DatabaseType databaseType, String tabla, FieldType id) {
+
+    StringBuilder sql = new StringBuilder("DELETE FROM ");
+    databaseType.appendEscapedEntityName(sql, tabla);
+    sql.append(" WHERE ");
+    databaseType.appendEscapedEntityName(sql, id.getColumnName());
+    return sql.append(" = ?").toString();
+  }
+
+  /**
+   * Asigna los parametros de un elemento del batch.
+   * @param <E> tipo del elemento.
+   */
+  @FunctionalInterface
+  private interface Parametros<E> {
+
+    /**
+     * Asigna los parametros.
+     * @param statement la sentencia.
+     * @param elemento a procesar.
+     * @throws SQLException en caso de error.
+     */
+    void asignar(PreparedStatement statement, E elemento) throws SQLException;
+  }
+
+  /**
+   * Se llama despues de ejecutar cada batch.
+   * @param <E> tipo del elemento.
+   */
+  @FunctionalInterface
+  private interface Lote<E> {
+
+    /**
+     * Procesa el batch ejecutado.
+     * @param statement ejecutado.
+     * @param lote elementos del batch, en orden.
+     * @throws SQLException en caso de error.
+     */
+    void ejecutado(PreparedStatement statement, List<E> lote) throws SQLException;
+  }
+
 }
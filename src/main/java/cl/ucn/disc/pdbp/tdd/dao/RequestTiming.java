@@ -0,0 +1,258 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import java.util.Arrays;
+
+/**
+ * Mide en que se gasta el tiempo de una peticion: sentencias SQL, lectura de filas a objetos
+ * (ORMLite, {@code ZonedDateTime}), espera del escritor y serializacion JSON.
+ * Como {@link QueryCounter}, el estado es por hilo (una peticion HTTP se atiende en un hilo): cada
+ * {@link #start(Stage)} devuelve el mismo {@link Timer} del hilo, sin crear objetos, y cada
+ * nanosegundo se asigna solo a la etapa mas interna en curso (ej: el SQL dentro del repositorio
+ * no se cuenta dos veces, ni la base de datos consultada mientras se serializa un stream).
+ *
+ * @author Gerald Lopez
+ */
+public final class RequestTiming {
+
+  /**
+   * Etapas medidas.
+   */
+  public enum Stage {
+
+    /**
+     * Dentro del repositorio, fuera de las sentencias SQL: convertir las filas en objetos.
+     */
+    DB,
+
+    /**
+     * Ejecucion de las sentencias SQL en la conexion.
+     */
+    SQL,
+
+    /**
+     * Espera de las escrituras enviadas a la {@link WriteQueue} (se ejecutan en otro hilo).
+     */
+    WRITE,
+
+    /**
+     * Serializacion JSON de la respuesta.
+     */
+    SERIALIZE
+  }
+
+  /**
+   * Medicion del hilo actual.
+   */
+  private static final ThreadLocal<Timer> timers = ThreadLocal.withInitial(Timer::new);
+
+  /**
+   * Constructor privado.
+   */
+  private RequestTiming() {
+    //nada aqui.
+  }
+
+  /**
+   * Reinicia la medicion del hilo actual (al comienzo de cada peticion).
+   */
+  public static void reset() {
+    timers.get().reset();
+  }
+
+  /**
+   * Comienza una etapa en el hilo actual, hasta cerrar el {@link Timer}:
+   * {@code try (RequestTiming.Timer timer = RequestTiming.start(Stage.DB)) { .. }}.
+   * @param stage que comienza.
+   * @return el {@link Timer} del hilo.
+   */
+  public static Timer start(Stage stage) {
+    return timers.get().start(stage);
+  }
+
+  /**
+   * Suma bytes de JSON a la respuesta del hilo actual.
+   * @param bytes escritos.
+   */
+  public static void addBytes(long bytes) {
+    timers.get().bytes += bytes;
+  }
+
+  /**
+   * Obtiene el tiempo de una etapa en el hilo actual desde el ultimo {@link #reset()}.
+   * @param stage a consultar.
+   * @return los nanosegundos (sin las etapas internas).
+   */
+  public static long get(Stage stage) {
+    return timers.get().nanos[stage.ordinal()];
+  }
+
+  /**
+   * Obtiene los bytes de JSON de la respuesta del hilo actual desde el ultimo {@link #reset()}.
+   * @return los bytes.
+   */
+  public static long getBytes() {
+    return timers.get().bytes;
+  }
+
+  /**
+   * Obtiene el tiempo transcurrido desde el ultimo {@link #reset()} del hilo actual.
+   * @return los nanosegundos.
+   */
+  public static long getTotal() {
+    return System.nanoTime() - timers.get().inicio;
+  }
+
+  /**
+   * Construye el valor del header {@code Server-Timing} del hilo actual, ej:
+   * {@code total;dur=12.40, db;dur=3.10;count=4, sql;dur=2.05, hydrate;dur=1.05, write;dur=0.00,
+   * serialize;dur=6.52, bytes;size=18232} (duraciones en milisegundos, db = sql + hydrate).
+   * @param queries consultas de la peticion ({@link QueryCounter#get()}).
+   * @return el valor del header.
+   */
+  public static String header(long queries) {
+
+    Timer timer = timers.get();
+    long sql = timer.nanos[Stage.SQL.ordinal()];
+    long hydrate = timer.nanos[Stage.DB.ordinal()];
+
+    StringBuilder sb = new StringBuilder(160);
+    dur(sb.append("total;dur="), System.nanoTime() - timer.inicio);
+    dur(sb.append(", db;dur="), sql + hydrate);
+    sb.append(";count=").append(queries);
+    dur(sb.append(", sql;dur="), sql);
+    dur(sb.append(", hydrate;dur="), hydrate);
+    dur(sb.append(", write;dur="), timer.nanos[Stage.WRITE.ordinal()]);
+    dur(sb.append(", serialize;dur="), timer.nanos[Stage.SERIALIZE.ordinal()]);
+    sb.append(", bytes;size=").append(timer.bytes);
+    return sb.toString();
+  }
+
+  /**
+   * Agrega una duracion en milisegundos con dos decimales (sin {@link String#format}).
+   * @param sb donde agregar.
+   * @param nanos la duracion.
+   */
+  private static void dur(StringBuilder sb, long nanos) {
+
+    long centesimas = (nanos + 5_000) / 10_000;
+    long resto = centesimas % 100;
+    sb.append(centesimas / 100).append('.');
+    if (resto < 10) {
+      sb.append('0');
+    }
+    sb.append(resto);
+  }
+
+  /**
+   * Medicion de un hilo: la pila de etapas en curso y el tiempo de cada una.
+   * Se cierra al terminar la etapa mas interna.
+   */
+  public static final class Timer implements AutoCloseable {
+
+    /**
+     * Nanosegundos por etapa.
+     */
+    private final long[] nanos = new long[Stage.values().length];
+
+    /**
+     * Etapas en curso (ordinal), la mas interna al final.
+     */
+    private int[] pila = new int[8];
+
+    /**
+     * Etapas en la pila.
+     */
+    private int nivel;
+
+    /**
+     * Inicio de la medicion (ultimo reset).
+     */
+    private long inicio = System.nanoTime();
+
+    /**
+     * Ultimo cambio de etapa.
+     */
+    private long desde;
+
+    /**
+     * Bytes de JSON escritos.
+     */
+    private long bytes;
+
+    /**
+     * Constructor (uno por hilo).
+     */
+    private Timer() {
+      //nada aqui.
+    }
+
+    /**
+     * Reinicia la medicion.
+     */
+    private void reset() {
+      Arrays.fill(nanos, 0);
+      nivel = 0;
+      bytes = 0;
+      inicio = System.nanoTime();
+    }
+
+    /**
+     * Comienza una etapa, pausando la que estaba en curso.
+     * @param stage que comienza.
+     * @return este timer.
+     */
+    private Timer start(Stage stage) {
+
+      long ahora = System.nanoTime();
+      if (nivel > 0) {
+        nanos[pila[nivel - 1]] += ahora - desde;
+      }
+      if (nivel == pila.length) {
+        pila = Arrays.copyOf(pila, nivel * 2);
+      }
+      pila[nivel++] = stage.ordinal();
+      desde = ahora;
+      return this;
+    }
+
+    /**
+     * Termina la etapa mas interna, continuando la anterior.
+     */
+    @Override
+    public void close() {
+
+      if (nivel == 0) {
+        return;
+      }
+      long ahora = System.nanoTime();
+      nanos[pila[--nivel]] += ahora - desde;
+      desde = ahora;
+    }
+  }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import cl.ucn.disc.pdbp.tdd.model.Persona;
+import cl.ucn.disc.pdbp.tdd.utils.Validation;
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableInfo;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lleva los ruts de las personas guardadas por versiones anteriores a su forma canonica
+ * ({@link Validation#normalizeRut(String)}: sin puntos, guion ni ceros a la izquierda y con K
+ * mayuscula). La busqueda por rut usa la forma canonica, por lo que una persona guardada de otra
+ * forma no se encuentra. El indice unico de Persona.rut distingue k de K: dos filas con el mismo
+ * rut canonico (ej: 12345678k y 12345678K) pueden existir y son la misma persona.
+ * Se conserva una (la que ya era canonica o la de menor id), las referencias de las otras se
+ * apuntan a ella y se eliminan, registrando cada union como WARN. Si las filas difieren en otro
+ * campo (nombre, direccion, telefonos, email) no se unen, salvo que se active
+ * {@link #MERGE_PROPERTY}: los datos de las filas eliminadas se pierden. Todo en una transaccion.
+ *
+ * @author Gerald Lopez
+ */
+public final class RutMigration {
+
+  /**
+   * Logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(RutMigration.class);
+
+  /**
+   * Propiedad del sistema que permite unir personas con el mismo rut que difieren en otros campos.
+   */
+  public static final String MERGE_PROPERTY = "fivet.rut.merge";
+
+  /**
+   * Constructor privado.
+   */
+  private RutMigration() {
+    //Nada aqui.
+  }
+
+  /**
+   * Normaliza los ruts de la tabla Persona, si existe. Las personas repetidas que difieren en
+   * otros campos se unen solo si {@link #MERGE_PROPERTY} es {@code true}.
+   * @param connectionSource de la base de datos.
+   * @param referencias clases con campos foraneos a {@link Persona} (ej: Ficha, Control).
+   * @return la cantidad de personas modificadas o eliminadas.
+   */
+  public static long migrate(ConnectionSource connectionSource, Class<?>... referencias) {
+    return migrate(connectionSource, Boolean.getBoolean(MERGE_PROPERTY), referencias);
+  }
+
+  /**
+   * Normaliza los ruts de la tabla Persona, si existe.
+   * @param connectionSource de la base de datos.
+   * @param unirDistintas true para unir personas repetidas que difieren en otros campos.
+   * @param referencias clases con campos foraneos a {@link Persona} (ej: Ficha, Control).
+   * @return la cantidad de personas modificadas o eliminadas.
+   */
+  public static long migrate(ConnectionSource connectionSource, boolean unirDistintas,
+                             Class<?>... referencias) {
+
+    try {
+      BaseDaoImpl<Persona, Long> dao = DaoManager.createDao(connectionSource, Persona.class);
+      if (!dao.isTableExists()) {
+        return 0;
+      }
+
+      long start = System.currentTimeMillis();
+      long filas = TransactionManager.callInTransaction(connectionSource, () ->
+              normalizar(connectionSource, dao, unirDistintas, referencias));
+      if (filas > 0) {
+        log.info("Normalized {} ruts in {} ms.", filas, System.currentTimeMillis() - start);
+      }
+      return filas;
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
+
+  /**
+   * Normaliza los ruts que no son canonicos, uniendo las personas repetidas.
+   * @param connectionSource de la base de datos.
+   * @param dao de Persona.
+   * @param unirDistintas true para unir personas repetidas que difieren en otros campos.
+   * @param referencias clases con campos foraneos a {@link Persona}.
+   * @return la cantidad de personas modificadas o eliminadas.
+   * @throws SQLException en caso de error.
+   */
+  private static long normalizar(ConnectionSource connectionSource, BaseDaoImpl<Persona, Long> dao,
+                                 boolean unirDistintas, Class<?>... referencias)
+          throws SQLException {
+
+    String tabla = escapar(connectionSource, dao.getTableInfo().getTableName());
+    String id = escapar(connectionSource, dao.getTableInfo().getIdField().getColumnName());
+    String rut = escapar(connectionSource, "rut");
+
+    // Rut canonico -> ids con ese rut (no canonicos), en orden de id.
+    Map<String, List<Long>> repetidos = new TreeMap<>();
+    try (GenericRawResults<String[]> rows = dao.queryRaw("SELECT " + id + ", " + rut + " FROM "
+            + tabla + " WHERE " + rut + " LIKE '%k' OR " + rut + " LIKE '0%' OR " + rut
+            + " LIKE '%.%' OR " + rut + " LIKE '%-%' ORDER BY " + id)) {
+      for (String[] row : rows) {
+        String canonico = Validation.normalizeRut(row[1]);
+        if (canonico != null && !canonico.equals(row[1])) {
+          repetidos.computeIfAbsent(canonico, c -> new ArrayList<>()).add(Long.valueOf(row[0]));
+        }
+      }
+    } catch (IOException ex) {
+      throw new SQLException(ex);
+    }
+
+    // Columnas que referencian a una persona.
+    List<String> actualizar = new ArrayList<>();
+    for (Class<?> referencia : referencias) {
+      TableInfo<?, ?> tableInfo = ((BaseDaoImpl<?, ?>) DaoManager.createDao(connectionSource,
+              referencia)).getTableInfo();
+      for (FieldType fieldType : tableInfo.getFieldTypes()) {
+        if (fieldType.isForeign() && fieldType.getType() == Persona.class) {
+          String columna = escapar(connectionSource, fieldType.getColumnName());
+          actualizar.add("UPDATE " + escapar(connectionSource, tableInfo.getTableName())
+                  + " SET " + columna + " = ? WHERE " + columna + " = ?");
+        }
+      }
+    }
+
+    long filas = 0;
+    for (Map.Entry<String, List<Long>> entry : repetidos.entrySet()) {
+
+      List<Long> ids = entry.getValue();
+      String[] canonica = dao.queryRaw("SELECT " + id + " FROM " + tabla + " WHERE " + rut
+              + " = ?", entry.getKey()).getFirstResult();
+
+      // Se conserva la persona que ya era canonica o, si no hay, la de menor id.
+      long conservada = canonica != null ? Long.parseLong(canonica[0]) : ids.remove(0);
+      if (!ids.isEmpty()) {
+        Set<String> distintas = distintas(dao, conservada, ids);
+        if (!distintas.isEmpty() && !unirDistintas) {
+          log.warn("Rut {}: persons {} and {} differ in {}, not merged (set -D{}=true to merge).",
+                  entry.getKey(), conservada, ids, distintas, MERGE_PROPERTY);
+          continue;
+        }
+        log.warn("Rut {}: keeping person {}, deleting {}{}.", entry.getKey(), conservada, ids,
+                distintas.isEmpty() ? "" : " (their " + distintas + " are lost)");
+      }
+
+      for (long repetida : ids) {
+        for (String sql : actualizar) {
+          dao.executeRaw(sql, String.valueOf(conservada), String.valueOf(repetida));
+        }
+        dao.executeRaw("DELETE FROM " + tabla + " WHERE " + id + " = ?",
+                String.valueOf(repetida));
+        filas++;
+      }
+      if (canonica == null) {
+        dao.executeRaw("UPDATE " + tabla + " SET " + rut + " = ? WHERE " + id + " = ?",
+                entry.getKey(), String.valueOf(conservada));
+        filas++;
+      }
+    }
+    return filas;
+  }
+
+  /**
+   * Compara la persona conservada con las repetidas, campo a campo (sin el id ni el rut).
+   * @param dao de Persona.
+   * @param conservada id de la persona conservada.
+   * @param repetidas ids de las personas a eliminar.
+   * @return las columnas en que alguna repetida difiere de la conservada.
+   * @throws SQLException en caso de error.
+   */
+  private static Set<String> distintas(BaseDaoImpl<Persona, Long> dao, long conservada,
+                                       List<Long> repetidas) throws SQLException {
+
+    Set<String> distintas = new TreeSet<>();
+    Persona persona = dao.queryForId(conservada);
+    for (long id : repetidas) {
+      Persona repetida = dao.queryForId(id);
+      for (FieldType fieldType : dao.getTableInfo().getFieldTypes()) {
+        if (!fieldType.isId() && !"rut".equals(fieldType.getFieldName())
+                && !Objects.equals(fieldType.extractJavaFieldValue(persona),
+                fieldType.extractJavaFieldValue(repetida))) {
+          distintas.add(fieldType.getColumnName());
+        }
+      }
+    }
+    return distintas;
+  }
+
+  /**
+   * Escapa un nombre de tabla o columna.
+   * @param connectionSource de la base de datos.
+   * @param nombre a escapar.
+   * @return el nombre escapado.
+   */
+  private static String escapar(ConnectionSource connectionSource, String nombre) {
+    DatabaseType databaseType = connectionSource.getDatabaseType();
+    StringBuilder sb = new StringBuilder();
+    databaseType.appendEscapedEntityName(sb, nombre);
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,378 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import com.j256.ormlite.db.SqliteDatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.StatementBuilder;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cola de escrituras con un unico hilo escritor.
+ * Las escrituras pendientes se agrupan en una sola transaccion (group commit) y cada
+ * llamador recibe su resultado a traves de un {@link CompletableFuture}.
+ * Si el group commit falla, cada escritura se ejecuta otra vez en su propia transaccion: una
+ * escritura puede ejecutarse mas de una vez, por lo que solo debe modificar la base de datos
+ * (el rollback no deshace los cambios a objetos en memoria).
+ *
+ * @author Gerald Lopez
+ */
+public final class WriteQueue implements Closeable {
+
+  /**
+   * Logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(WriteQueue.class);
+
+  /**
+   * Maximo de escrituras por transaccion por defecto.
+   */
+  public static final int DEFAULT_MAX_BATCH = 256;
+
+  /**
+   * Fuente de conexion.
+   */
+  private final ConnectionSource connectionSource;
+
+  /**
+   * Maximo de escrituras por transaccion.
+   */
+  private final int maxBatch;
+
+  /**
+   * Escrituras pendientes.
+   */
+  private final BlockingQueue<Escritura<?>> pendientes = new LinkedBlockingQueue<>();
+
+  /**
+   * El hilo escritor.
+   */
+  private final Thread writer;
+
+  /**
+   * Cantidad de escrituras realizadas.
+   */
+  private final LongAdder writeCount = new LongAdder();
+
+  /**
+   * Cantidad de transacciones realizadas.
+   */
+  private final LongAdder commitCount = new LongAdder();
+
+  /**
+   * Estado de la cola.
+   */
+  private volatile boolean running = true;
+
+  /**
+   * Constructor.
+   * @param connectionSource donde escribir.
+   * @param maxBatch maximo de escrituras por transaccion.
+   */
+  public WriteQueue(ConnectionSource connectionSource, int maxBatch) {
+
+    if (connectionSource == null) {
+      throw new IllegalArgumentException("ConnectionSource no puede ser null");
+    }
+    if (maxBatch < 1) {
+      throw new IllegalArgumentException("maxBatch debe ser >= 1");
+    }
+
+    this.connectionSource = connectionSource;
+    this.maxBatch = maxBatch;
+
+    enableWal(connectionSource);
+
+    this.writer = new Thread(this::loop, "fivet-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Activa el journal WAL en SQLite para que las lecturas no se bloqueen durante las escrituras.
+   * @param connectionSource a configurar.
+   */
+  private static void enableWal(ConnectionSource connectionSource) {
+
+    if (!(connectionSource.getDatabaseType() instanceof SqliteDatabaseType)) {
+      return;
+    }
+
+    try {
+      DatabaseConnection connection = connectionSource.getReadWriteConnection(null);
+      try {
+        CompiledStatement statement = connection.compileStatement("PRAGMA journal_mode=WAL",
+                StatementBuilder.StatementType.EXECUTE, new FieldType[0],
+                DatabaseConnection.DEFAULT_RESULT_FLAGS, false);
+        try {
+          statement.runExecute();
+        } finally {
+          statement.closeQuietly();
+        }
+        log.debug("SQLite en modo WAL.");
+      } finally {
+        connectionSource.releaseConnection(connection);
+      }
+    } catch (SQLException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * Encola una escritura.
+   * @param escritura a realizar.
+   * @param <T> tipo del resultado.
+   * @return el {@link CompletableFuture} con el resultado.
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> escritura) {
+
+    if (escritura == null) {
+      throw new IllegalArgumentException("Escritura null");
+    }
+    if (!running) {
+      throw new IllegalStateException("WriteQueue cerrada");
+    }
+
+    Escritura<T> pendiente = new Escritura<>(escritura);
+    pendientes.add(pendiente);
+    return pendiente.future;
+  }
+
+  /**
+   * Encola una escritura y espera su resultado.
+   * Si se llama desde el hilo escritor se ejecuta directamente (dentro de la transaccion en curso).
+   * @param escritura a realizar.
+   * @param <T> tipo del resultado.
+   * @return el resultado de la escritura.
+   */
+  public <T> T execute(Callable<T> escritura) {
+
+    if (Thread.currentThread() == writer) {
+      try {
+        return escritura.call();
+      } catch (RuntimeException ex) {
+        throw ex;
+      } catch (Exception ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+
+    try {
+      return submit(escritura).get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw new RuntimeException(ex.getCause());
+    }
+  }
+
+  /**
+   * Ciclo del hilo escritor.
+   */
+  private void loop() {
+
+    List<Escritura<?>> batch = new ArrayList<>(maxBatch);
+
+    while (running || !pendientes.isEmpty()) {
+      try {
+        Escritura<?> primera = pendientes.take();
+        batch.add(primera);
+        pendientes.drainTo(batch, maxBatch - 1);
+        commit(batch);
+      } catch (InterruptedException ex) {
+        // Cierre: se terminan las escrituras pendientes.
+        running = false;
+      } catch (Throwable ex) {
+        // El hilo escritor no puede morir: los llamadores esperarian para siempre.
+        log.error("Lote de {} escrituras fallo", batch.size(), ex);
+        for (Escritura<?> escritura : batch) {
+          escritura.future.completeExceptionally(ex);
+        }
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Ejecuta las escrituras en una sola transaccion.
+   * Si alguna falla (con cualquier {@link Throwable}), se deshace la transaccion y se ejecutan
+   * de a una para aislar el error.
+   * @param batch de escrituras.
+   */
+  private void commit(List<Escritura<?>> batch) {
+
+    if (batch.size() > 1) {
+      try {
+        TransactionManager.callInTransaction(connectionSource, () -> {
+          for (Escritura<?> escritura : batch) {
+            escritura.run();
+          }
+          return null;
+        });
+        commitCount.increment();
+        writeCount.add(batch.size());
+        for (Escritura<?> escritura : batch) {
+          escritura.complete();
+        }
+        return;
+      } catch (Throwable ex) {
+        log.warn("Group commit de {} escrituras fallo, reintentando de a una: {}", batch.size(),
+                ex.getMessage());
+      }
+    }
+
+    for (Escritura<?> escritura : batch) {
+      try {
+        TransactionManager.callInTransaction(connectionSource, () -> {
+          escritura.run();
+          return null;
+        });
+        commitCount.increment();
+        writeCount.increment();
+        escritura.complete();
+      } catch (SQLException ex) {
+        // TransactionManager envuelve las excepciones que no son SQLException.
+        Throwable cause = ex.getCause() instanceof RuntimeException ? ex.getCause() : ex;
+        escritura.future.completeExceptionally(cause);
+      } catch (Throwable ex) {
+        escritura.future.completeExceptionally(ex);
+      }
+    }
+  }
+
+  /**
+   * Obtiene la cantidad de escrituras confirmadas.
+   * @return writeCount.
+   */
+  public long getWriteCount() {
+    return this.writeCount.sum();
+  }
+
+  /**
+   * Obtiene la cantidad de transacciones confirmadas.
+   * @return commitCount.
+   */
+  public long getCommitCount() {
+    return this.commitCount.sum();
+  }
+
+  /**
+   * Obtiene la cantidad de escrituras en espera.
+   * @return escrituras pendientes.
+   */
+  public int getPendingCount() {
+    return this.pendientes.size();
+  }
+
+  /**
+   * Termina las escrituras pendientes y detiene el hilo escritor.
+   */
+  @Override
+  public void close() {
+    running = false;
+    writer.interrupt();
+    try {
+      writer.join();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    // Escrituras que llegaron despues del cierre.
+    Escritura<?> tardia;
+    while ((tardia = pendientes.poll()) != null) {
+      tardia.future.completeExceptionally(new IllegalStateException("WriteQueue cerrada"));
+    }
+
+    log.debug("WriteQueue cerrada: {} escrituras en {} transacciones.", getWriteCount(),
+            getCommitCount());
+  }
+
+  /**
+   * Escritura pendiente.
+   * @param <T> tipo del resultado.
+   */
+  private static final class Escritura<T> {
+
+    /**
+     * La escritura.
+     */
+    private final Callable<T> callable;
+
+    /**
+     * El resultado para el llamador.
+     */
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    /**
+     * Resultado obtenido dentro de la transaccion.
+     */
+    private T result;
+
+    /**
+     * Constructor.
+     * @param callable a ejecutar.
+     */
+    Escritura(Callable<T> callable) {
+      this.callable = callable;
+    }
+
+    /**
+     * Ejecuta la escritura (sin completar el future).
+     * @throws Exception de la escritura.
+     */
+    void run() throws Exception {
+      this.result = callable.call();
+    }
+
+    /**
+     * Completa el future una vez confirmada la transaccion.
+     */
+    void complete() {
+      future.complete(result);
+    }
+
+  }
+
+}
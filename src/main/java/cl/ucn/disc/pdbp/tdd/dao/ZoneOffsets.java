@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import java.time.ZoneOffset;
+
+/**
+ * Cache de {@link ZoneOffset} por cuarto de hora, sin pasar por el mapa concurrente de
+ * {@link ZoneOffset#ofTotalSeconds(int)}.
+ *
+ * @author Gerald Lopez
+ */
+final class ZoneOffsets {
+
+  /**
+   * Maximo offset (en segundos) permitido por {@link ZoneOffset}.
+   */
+  static final int MAX_SECONDS = 18 * 60 * 60;
+
+  /**
+   * Segundos en un cuarto de hora.
+   */
+  private static final int CUARTO = 15 * 60;
+
+  /**
+   * Offsets de -18:00 a +18:00 cada 15 minutos.
+   */
+  private static final ZoneOffset[] OFFSETS = new ZoneOffset[2 * MAX_SECONDS / CUARTO + 1];
+
+  static {
+    for (int i = 0; i < OFFSETS.length; i++) {
+      OFFSETS[i] = ZoneOffset.ofTotalSeconds(i * CUARTO - MAX_SECONDS);
+    }
+  }
+
+  /**
+   * Constructor privado.
+   */
+  private ZoneOffsets() {
+    //Nada aqui.
+  }
+
+  /**
+   * Obtiene el offset.
+   * @param totalSeconds del offset, entre -{@link #MAX_SECONDS} y {@link #MAX_SECONDS}.
+   * @return el {@link ZoneOffset}.
+   */
+  static ZoneOffset of(int totalSeconds) {
+    if (totalSeconds % CUARTO == 0) {
+      return OFFSETS[(totalSeconds + MAX_SECONDS) / CUARTO];
+    }
+    return ZoneOffset.ofTotalSeconds(totalSeconds);
+  }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.db.SqliteDatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableInfo;
+import com.j256.ormlite.table.TableUtils;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Migra los archivos SQLite que guardan las fechas como texto ISO-8601
+ * ({@link ZonedDateTimeType}) a {@link ZonedDateTimeMillisType}.
+ * SQLite no cambia el tipo de una columna: la tabla se renombra, se crea de nuevo con el esquema
+ * actual y se copian las filas convirtiendo las fechas, todo en una transaccion.
+ *
+ * @author Gerald Lopez
+ */
+public final class ZonedDateTimeMigration {
+
+  /**
+   * Logger.
+   */
+  private static final Logger log = LoggerFactory.getLogger(ZonedDateTimeMigration.class);
+
+  /**
+   * Sufijo de la tabla antigua durante la migracion.
+   */
+  private static final String SUFIJO = "_iso";
+
+  /**
+   * Constructor privado.
+   */
+  private ZonedDateTimeMigration() {
+    //Nada aqui.
+  }
+
+  /**
+   * Migra las tablas de las clases indicadas que aun tengan fechas como texto.
+   * En bases de datos distintas de SQLite no hace nada (las tablas se crean con el esquema actual).
+   * @param connectionSource de la base de datos.
+   * @param clases a migrar.
+   * @return la cantidad de filas migradas.
+   */
+  public static long migrate(ConnectionSource connectionSource, Class<?>... clases) {
+
+    if (!(connectionSource.getDatabaseType() instanceof SqliteDatabaseType)) {
+      return 0;
+    }
+
+    long filas = 0;
+    try {
+      for (Class<?> clase : clases) {
+        filas += migrar(connectionSource, clase);
+      }
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+    return filas;
+  }
+
+  /**
+   * Migra una tabla si alguna de sus columnas {@link ZonedDateTimeMillisType} no es entera.
+   * @param connectionSource de la base de datos.
+   * @param clase de la tabla.
+   * @param <T> tipo de la tabla.
+   * @return la cantidad de filas migradas.
+   * @throws SQLException en caso de error.
+   */
+  private static <T> long migrar(ConnectionSource connectionSource, Class<T> clase)
+          throws SQLException {
+
+    BaseDaoImpl<T, ?> dao = DaoManager.createDao(connectionSource, clase);
+    TableInfo<T, ?> tableInfo = dao.getTableInfo();
+    String tabla = tableInfo.getTableName();
+
+    // Columnas existentes y su tipo declarado.
+    Map<String, String> tipos = new HashMap<>();
+    try (GenericRawResults<String[]> info = dao.queryRaw("PRAGMA table_info("
+            + escapar(connectionSource, tabla) + ")")) {
+      for (String[] columna : info) {
+        tipos.put(columna[1], columna[2] == null ? "" : columna[2].toUpperCase(Locale.ROOT));
+      }
+    } catch (IOException ex) {
+      throw new SQLException(ex);
+    }
+
+    // Columnas a copiar y cuales son fechas.
+    List<FieldType> columnas = new ArrayList<>();
+    boolean legacy = false;
+    for (FieldType fieldType : tableInfo.getFieldTypes()) {
+      String tipo = tipos.get(fieldType.getColumnName());
+      if (fieldType.isForeignCollection() || tipo == null) {
+        continue;
+      }
+      columnas.add(fieldType);
+      if (fieldType.getDataPersister() instanceof ZonedDateTimeMillisType && !tipo.contains("INT")) {
+        legacy = true;
+      }
+    }
+
+    if (!legacy) {
+      return 0;
+    }
+
+    long start = System.currentTimeMillis();
+    long filas = TransactionManager.callInTransaction(connectionSource, () ->
+            copiar(connectionSource, dao, clase, tabla, columnas));
+    log.info("Migrated {} rows of {} to epoch millis in {} ms.", filas, tabla,
+            System.currentTimeMillis() - start);
+    return filas;
+  }
+
+  /**
+   * Renombra la tabla, la crea de nuevo y copia las filas convirtiendo las fechas.
+   * @param connectionSource de la base de datos.
+   * @param dao de la tabla.
+   * @param clase de la tabla.
+   * @param tabla nombre de la tabla.
+   * @param columnas a copiar.
+   * @param <T> tipo de la tabla.
+   * @return la cantidad de filas copiadas.
+   * @throws SQLException en caso de error.
+   */
+  private static <T> long copiar(ConnectionSource connectionSource, BaseDaoImpl<T, ?> dao,
+          Class<T> clase, String tabla, List<FieldType> columnas) throws SQLException {
+
+    String antigua = escapar(connectionSource, tabla + SUFIJO);
+    dao.executeRawNoArgs("ALTER TABLE " + escapar(connectionSource, tabla)
+            + " RENAME TO " + antigua);
+
+    // Los indices se van con la tabla renombrada y chocarian con los de la tabla nueva.
+    List<String> indices = new ArrayList<>();
+    try (GenericRawResults<String[]> rows = dao.queryRaw("SELECT name FROM sqlite_master "
+            + "WHERE type = 'index' AND sql IS NOT NULL AND tbl_name = ?", tabla + SUFIJO)) {
+      for (String[] row : rows) {
+        indices.add(row[0]);
+      }
+    } catch (IOException ex) {
+      throw new SQLException(ex);
+    }
+    for (String indice : indices) {
+      dao.executeRawNoArgs("DROP INDEX " + escapar(connectionSource, indice));
+    }
+
+    TableUtils.createTable(connectionSource, clase);
+
+    StringBuilder nombres = new StringBuilder();
+    StringBuilder parametros = new StringBuilder();
+    for (FieldType columna : columnas) {
+      if (nombres.length() > 0) {
+        nombres.append(", ");
+        parametros.append(", ");
+      }
+      nombres.append(escapar(connectionSource, columna.getColumnName()));
+      parametros.append('?');
+    }
+    String insert = "INSERT INTO " + escapar(connectionSource, tabla) + " (" + nombres
+            + ") VALUES (" + parametros + ")";
+
+    long filas = 0;
+    try (GenericRawResults<String[]> rows = dao.queryRaw("SELECT " + nombres + " FROM "
+            + antigua)) {
+      for (String[] row : rows) {
+        for (int i = 0; i < row.length; i++) {
+          if (row[i] != null
+                  && columnas.get(i).getDataPersister() instanceof ZonedDateTimeMillisType) {
+            row[i] = convertir(row[i]);
+          }
+        }
+        dao.executeRaw(insert, row);
+        filas++;
+      }
+    } catch (IOException ex) {
+      throw new SQLException(ex);
+    }
+
+    dao.executeRawNoArgs("DROP TABLE " + antigua);
+    return filas;
+  }
+
+  /**
+   * Convierte una fecha ISO-8601 a su valor {@link ZonedDateTimeMillisType}.
+   * @param valor de la columna antigua.
+   * @return el valor como texto, SQLite lo guarda como entero por la afinidad de la columna.
+   */
+  static String convertir(String valor) {
+    Object fecha = ZonedDateTimeType.getSingleton().sqlArgToJava(null, valor, 0);
+    return String.valueOf(ZonedDateTimeMillisType.getSingleton().javaToSqlArg(null, fecha));
+  }
+
+  /**
+   * Escapa un nombre de tabla o columna.
+   * @param connectionSource de la base de datos.
+   * @param nombre a escapar.
+   * @return el nombre escapado.
+   */
+  private static String escapar(ConnectionSource connectionSource, String nombre) {
+    DatabaseType databaseType = connectionSource.getDatabaseType();
+    StringBuilder sb = new StringBuilder();
+    databaseType.appendEscapedEntityName(sb, nombre);
+    return sb.toString();
+  }
+
+}
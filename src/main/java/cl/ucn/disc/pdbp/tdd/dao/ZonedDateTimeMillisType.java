@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.dao;
+
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.field.types.BaseDataType;
+import com.j256.ormlite.support.DatabaseResults;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * ZonedDateTime como un BIGINT ordenable: epoch millis en los bits altos y el offset (en
+ * segundos) en los {@link #OFFSET_BITS} bits bajos.
+ * El orden numerico de la columna es el orden cronologico, por lo que los rangos de fechas se
+ * resuelven con un BETWEEN sobre el valor: {@link #desde(Instant)} y {@link #hasta(Instant)} se
+ * pueden pasar directamente al QueryBuilder.
+ * Se guarda el offset, igual que {@link ZonedDateTimeType}; la precision es de milisegundos.
+ *
+ * @author Gerald Lopez
+ */
+@SuppressWarnings({"StaticVariableOfConcreteClass", "Singleton"})
+public final class ZonedDateTimeMillisType extends BaseDataType {
+
+  /**
+   * Bits reservados para el offset: 2 * 18 horas en segundos caben en 17 bits.
+   */
+  public static final int OFFSET_BITS = 17;
+
+  /**
+   * Mascara del offset.
+   */
+  private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+  /**
+   * Desplazamiento para guardar el offset como un valor positivo.
+   */
+  private static final int OFFSET_BIAS = ZoneOffsets.MAX_SECONDS;
+
+  /**
+   * Maximo epoch millis representable (aprox. el anio 4200).
+   */
+  private static final long MAX_MILLIS = Long.MAX_VALUE >> OFFSET_BITS;
+
+  /**
+   * Minimo epoch millis representable (aprox. el anio -260).
+   */
+  private static final long MIN_MILLIS = Long.MIN_VALUE >> OFFSET_BITS;
+
+  /**
+   * The Singleton.
+   */
+  public static final ZonedDateTimeMillisType SINGLETON = new ZonedDateTimeMillisType();
+
+  /**
+   * @return the singleton.
+   */
+  public static ZonedDateTimeMillisType getSingleton() {
+    return SINGLETON;
+  }
+
+  /**
+   * The Constructor.
+   */
+  private ZonedDateTimeMillisType() {
+    // ZonedDateTime <-> BIGINT
+    super(SqlType.LONG, new Class<?>[]{ZonedDateTime.class});
+  }
+
+  /**
+   * Codifica una fecha.
+   * @param fecha a codificar.
+   * @return epoch millis y offset en un long.
+   */
+  public static long encode(ZonedDateTime fecha) {
+
+    long millis = fecha.toInstant().toEpochMilli();
+    if (millis > MAX_MILLIS || millis < MIN_MILLIS) {
+      throw new IllegalArgumentException("Fecha fuera de rango: " + fecha);
+    }
+
+    return (millis << OFFSET_BITS) | (fecha.getOffset().getTotalSeconds() + OFFSET_BIAS);
+  }
+
+  /**
+   * Decodifica una fecha.
+   * @param valor codificado con {@link #encode(ZonedDateTime)}.
+   * @return la fecha con su offset.
+   */
+  public static ZonedDateTime decode(long valor) {
+
+    ZoneOffset offset = ZoneOffsets.of((int) (valor & OFFSET_MASK) - OFFSET_BIAS);
+    return ZonedDateTime.ofInstant(Instant.ofEpochMilli(valor >> OFFSET_BITS), offset);
+  }
+
+  /**
+   * Limite inferior (inclusivo) de un rango de fechas.
+   * @param instante desde.
+   * @return el menor valor codificado con ese instante.
+   */
+  public static long desde(Instant instante) {
+    return instante.toEpochMilli() << OFFSET_BITS;
+  }
+
+  /**
+   * Limite superior (inclusivo) de un rango de fechas.
+   * @param instante hasta.
+   * @return el mayor valor codificado con ese instante.
+   */
+  public static long hasta(Instant instante) {
+    return (instante.toEpochMilli() << OFFSET_BITS) | OFFSET_MASK;
+  }
+
+  /**
+   * @see BaseDataType#sqlArgToJava(FieldType, Object, int)
+   */
+  @Override
+  public Object sqlArgToJava(FieldType fieldType, Object sqlArg, int columnPos) {
+
+    // Nullity test
+    if (sqlArg == null) {
+      return null;
+    }
+
+    return decode((Long) sqlArg);
+  }
+
+  /**
+   * @see BaseDataType#parseDefaultString(FieldType, String)
+   */
+  @Override
+  public Object parseDefaultString(FieldType fieldType, String defaultStr) {
+    return Long.parseLong(defaultStr);
+  }
+
+  /**
+   * @see BaseDataType#javaToSqlArg(FieldType, Object)
+   */
+  @Override
+  public Object javaToSqlArg(FieldType fieldType, Object javaObject) {
+
+    // Nullity test
+    if (javaObject == null) {
+      return null;
+    }
+
+    // Limite de rango ya codificado (desde / hasta).
+    if (javaObject instanceof Long) {
+      return javaObject;
+    }
+
+    return encode((ZonedDateTime) javaObject);
+  }
+
+  /**
+   * @see BaseDataType#resultToSqlArg(FieldType, DatabaseResults, int)
+   */
+  @Override
+  public Object resultToSqlArg(FieldType fieldType, DatabaseResults results, int columnPos)
+          throws SQLException {
+    long valor = results.getLong(columnPos);
+    return results.wasNull(columnPos) ? null : valor;
+  }
+
+}
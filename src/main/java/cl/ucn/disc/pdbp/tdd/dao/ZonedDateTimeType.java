@@ -30,12 +30,15 @@ import com.j256.ormlite.field.types.BaseDataType;
 import com.j256.ormlite.support.DatabaseResults;
 
 import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.TemporalAccessor;
 
 /**
  * ZonedDateTime to String.
+ * The exact format written by this type (4 digit year, offset in whole minutes) is parsed and
+ * formatted by hand; anything else goes through the {@link DateTimeFormatter}.
  *
  * @author Diego Urrutia-Astorga.
  */
@@ -47,6 +50,23 @@ public final class ZonedDateTimeType extends BaseDataType {
      */
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
 
+    /**
+     * Longest fast path output: 2011-12-03T10:15:30.123456789+01:00
+     */
+    private static final int MAX_LENGTH = 35;
+
+    /**
+     * Format buffer, per thread.
+     */
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
+
+    /**
+     * Powers of ten to scale the fraction of second to nanos.
+     */
+    private static final int[] SCALE = {
+            1_000_000_000, 100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1
+    };
+
     /**
      * The Singleton.
      */
@@ -89,7 +109,7 @@ public final class ZonedDateTimeType extends BaseDataType {
         }
 
         // String to ZonedDateTime
-        return ZonedDateTime.parse((CharSequence) sqlArg, FORMATTER);
+        return parse((CharSequence) sqlArg);
     }
 
     /**
@@ -112,7 +132,7 @@ public final class ZonedDateTimeType extends BaseDataType {
         }
 
         // ZonedDateTime to String
-        return FORMATTER.format((TemporalAccessor) javaObject);
+        return format((ZonedDateTime) javaObject);
     }
 
     /**
@@ -123,4 +143,178 @@ public final class ZonedDateTimeType extends BaseDataType {
         return results.getString(columnPos);
     }
 
+    /**
+     * String to ZonedDateTime, same result as {@code ZonedDateTime.parse(text, FORMATTER)}.
+     *
+     * @param text to parse.
+     * @return the ZonedDateTime.
+     */
+    public static ZonedDateTime parse(CharSequence text) {
+        ZonedDateTime fast = parseFast(text);
+        return fast != null ? fast : ZonedDateTime.parse(text, FORMATTER);
+    }
+
+    /**
+     * Parse uuuu-MM-ddTHH:mm[:ss[.fraction]](Z|+HH:MM) without the formatter.
+     *
+     * @param s to parse.
+     * @return the ZonedDateTime or null if the text is not in that exact format.
+     */
+    private static ZonedDateTime parseFast(CharSequence s) {
+
+        int length = s.length();
+        if (length < 17 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T'
+                || s.charAt(13) != ':') {
+            return null;
+        }
+
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        if ((year | month | day | hour | minute) < 0) {
+            return null;
+        }
+
+        // Seconds and fraction
+        int pos = 16;
+        int second = 0;
+        int nano = 0;
+        if (pos + 2 < length && s.charAt(pos) == ':') {
+            second = digits(s, pos + 1, 2);
+            if (second < 0) {
+                return null;
+            }
+            pos += 3;
+            if (pos < length && s.charAt(pos) == '.') {
+                int start = ++pos;
+                while (pos < length && pos - start < 9 && isDigit(s.charAt(pos))) {
+                    nano = nano * 10 + s.charAt(pos++) - '0';
+                }
+                if (pos == start) {
+                    return null;
+                }
+                nano *= SCALE[pos - start];
+            }
+        }
+
+        // Offset
+        ZoneOffset offset;
+        if (pos == length - 1 && s.charAt(pos) == 'Z') {
+            offset = ZoneOffset.UTC;
+        } else if (pos == length - 6 && (s.charAt(pos) == '+' || s.charAt(pos) == '-')
+                && s.charAt(pos + 3) == ':') {
+            int hours = digits(s, pos + 1, 2);
+            int minutes = digits(s, pos + 4, 2);
+            if ((hours | minutes) < 0 || minutes > 59) {
+                return null;
+            }
+            int seconds = hours * 3600 + minutes * 60;
+            if (seconds > ZoneOffsets.MAX_SECONDS) {
+                return null;
+            }
+            offset = ZoneOffsets.of(s.charAt(pos) == '-' ? -seconds : seconds);
+        } else {
+            return null;
+        }
+
+        try {
+            return ZonedDateTime.of(year, month, day, hour, minute, second, nano, offset);
+        } catch (DateTimeException ex) {
+            // Invalid field: let the formatter report it.
+            return null;
+        }
+    }
+
+    /**
+     * ZonedDateTime to String, bit-for-bit identical to {@code FORMATTER.format(zonedDateTime)}.
+     *
+     * @param zonedDateTime to format.
+     * @return the String.
+     */
+    public static String format(ZonedDateTime zonedDateTime) {
+
+        int year = zonedDateTime.getYear();
+        int offset = zonedDateTime.getOffset().getTotalSeconds();
+        if (year < 0 || year > 9999 || offset % 60 != 0) {
+            return FORMATTER.format(zonedDateTime);
+        }
+
+        char[] buffer = BUFFER.get();
+        int pos = put(buffer, 0, year / 100);
+        pos = put(buffer, pos, year % 100);
+        buffer[pos++] = '-';
+        pos = put(buffer, pos, zonedDateTime.getMonthValue());
+        buffer[pos++] = '-';
+        pos = put(buffer, pos, zonedDateTime.getDayOfMonth());
+        buffer[pos++] = 'T';
+        pos = put(buffer, pos, zonedDateTime.getHour());
+        buffer[pos++] = ':';
+        pos = put(buffer, pos, zonedDateTime.getMinute());
+        buffer[pos++] = ':';
+        pos = put(buffer, pos, zonedDateTime.getSecond());
+
+        // Fraction without trailing zeros
+        int nano = zonedDateTime.getNano();
+        if (nano > 0) {
+            buffer[pos++] = '.';
+            int digits = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                digits--;
+            }
+            for (int i = pos + digits - 1; i >= pos; i--) {
+                buffer[i] = (char) ('0' + nano % 10);
+                nano /= 10;
+            }
+            pos += digits;
+        }
+
+        if (offset == 0) {
+            buffer[pos++] = 'Z';
+        } else {
+            buffer[pos++] = offset < 0 ? '-' : '+';
+            int abs = Math.abs(offset);
+            pos = put(buffer, pos, abs / 3600);
+            buffer[pos++] = ':';
+            pos = put(buffer, pos, abs / 60 % 60);
+        }
+
+        return new String(buffer, 0, pos);
+    }
+
+    /**
+     * @return the value of count digits starting at start, -1 if any is not a digit.
+     */
+    private static int digits(CharSequence s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * @return true if c is an ASCII digit.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Write a value between 0 and 99 as two digits.
+     *
+     * @return the next position.
+     */
+    private static int put(char[] buffer, int pos, int value) {
+        buffer[pos] = (char) ('0' + value / 10);
+        buffer[pos + 1] = (char) ('0' + value % 10);
+        return pos + 2;
+    }
+
 }
@@ -24,8 +24,9 @@
 
 package cl.ucn.disc.pdbp.tdd.model;
 
-import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeType;
+import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeMillisType;
 import com.j256.ormlite.dao.ForeignCollection;
+import com.j256.ormlite.dao.LazyForeignCollection;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.field.ForeignCollectionField;
 import com.j256.ormlite.table.DatabaseTable;
@@ -51,13 +52,13 @@ public class Control {
   /**
    * Fecha de control.
    */
-  @DatabaseField(persisterClass = ZonedDateTimeType.class, canBeNull = false)
+  @DatabaseField(persisterClass = ZonedDateTimeMillisType.class, canBeNull = false, index = true)
   private ZonedDateTime fecha;
 
   /**
-   * Fecha del proximo control.
+   * Fecha del proximo control (indexada para la agenda).
    */
-  @DatabaseField(persisterClass = ZonedDateTimeType.class)
+  @DatabaseField(persisterClass = ZonedDateTimeMillisType.class, index = true)
   private ZonedDateTime proximoControl;
 
   /**
@@ -91,16 +92,16 @@ public class Control {
   /**
    * Veterinario.
    */
-  @DatabaseField(foreign = true, canBeNull = false, foreignAutoRefresh = true)
+  @DatabaseField(foreign = true, canBeNull = false)
   private Persona veterinario;
 
   /**
    * Ficha.
    */
-  @DatabaseField(canBeNull = false, foreign = true, foreignAutoRefresh = true)
+  @DatabaseField(canBeNull = false, foreign = true)
   private Ficha ficha;
 
-  @ForeignCollectionField(eager = true)
+  @ForeignCollectionField(eager = false)
   private ForeignCollection<Examen> examenes;
 
   /**
@@ -263,6 +264,14 @@ public class Control {
     return Collections.unmodifiableList(new ArrayList<>(examenes));
   }
 
+  /**
+   * Indica si los examenes estan en memoria: leerlos no consulta la base de datos.
+   * @return true si la coleccion existe y no es lazy.
+   */
+  public boolean isExamenesCargados() {
+    return this.examenes != null && !(this.examenes instanceof LazyForeignCollection);
+  }
+
   /**
    * Agrega un nuevo examen.
    */
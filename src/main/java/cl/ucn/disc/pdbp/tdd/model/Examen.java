@@ -24,7 +24,7 @@
 
 package cl.ucn.disc.pdbp.tdd.model;
 
-import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeType;
+import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeMillisType;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
 import java.time.ZonedDateTime;
@@ -51,13 +51,13 @@ public final class Examen {
   /**
    * Fecha del Examen.
    */
-  @DatabaseField(canBeNull = false, persisterClass = ZonedDateTimeType.class)
+  @DatabaseField(canBeNull = false, persisterClass = ZonedDateTimeMillisType.class, index = true)
   private ZonedDateTime fecha;
 
   /**
    * Control asociado al Examen.
    */
-  @DatabaseField(canBeNull = false, foreign = true, foreignAutoRefresh = true)
+  @DatabaseField(canBeNull = false, foreign = true)
   private Control control;
 
   /**
@@ -24,9 +24,10 @@
 
 package cl.ucn.disc.pdbp.tdd.model;
 
-import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeType;
+import cl.ucn.disc.pdbp.tdd.dao.ZonedDateTimeMillisType;
 import cl.ucn.disc.pdbp.tdd.utils.Validation;
 import com.j256.ormlite.dao.ForeignCollection;
+import com.j256.ormlite.dao.LazyForeignCollection;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.field.ForeignCollectionField;
 import com.j256.ormlite.table.DatabaseTable;
@@ -71,7 +72,8 @@ public final class Ficha {
   /**
    * Fecha de nacimiento del paciente.
    */
-  @DatabaseField(canBeNull = false, persisterClass = ZonedDateTimeType.class)
+  @DatabaseField(canBeNull = false, persisterClass = ZonedDateTimeMillisType.class,
+      index = true)
   private ZonedDateTime fechaNacimiento;
 
   /**
@@ -101,13 +103,13 @@ public final class Ficha {
   /**
    * Duenio de paciente.
    */
-  @DatabaseField(foreign = true, canBeNull = false, foreignAutoRefresh = true)
+  @DatabaseField(foreign = true, canBeNull = false)
   private Persona duenio;
 
   /**
    * Controles del paciente.
    */
-  @ForeignCollectionField(eager = true, columnName = "controles")
+  @ForeignCollectionField(eager = false, columnName = "controles")
   private ForeignCollection<Control> controles;
 
   /**
@@ -236,6 +238,14 @@ public final class Ficha {
     return Collections.unmodifiableList(new ArrayList<>(controles));
   }
 
+  /**
+   * Indica si los controles estan en memoria: leerlos no consulta la base de datos.
+   * @return true si la coleccion existe y no es lazy.
+   */
+  public boolean isControlesCargados() {
+    return this.controles != null && !(this.controles instanceof LazyForeignCollection);
+  }
+
   /**
    * Agrega un control a la coleccion asociado a la ficha.
    * @param control a insertar.
@@ -27,8 +27,6 @@ package cl.ucn.disc.pdbp.tdd.model;
 import cl.ucn.disc.pdbp.tdd.utils.Validation;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Clase Persona.
@@ -54,7 +52,7 @@ public final class Persona {
   @DatabaseField(canBeNull = false)
   private String apellido;
   /**
-   * El RUT.
+   * El RUT, en forma canonica (ver Validation.normalizeRut).
    */
   @DatabaseField(canBeNull = false, unique = true, index = true)
   private String rut;
@@ -85,20 +83,6 @@ public final class Persona {
   @DatabaseField(canBeNull = false)
   private String email;
 
-  /**
-   * Patrón de un telefono fijo valido.
-   */
-  private final Pattern telFijoValido = Pattern.compile("^[0-9]{8}$");
-  /**
-   * Patrón de un telefono movil valido.
-   */
-  private final Pattern telMovilValido = Pattern.compile("^9[0-9]{8}$");
-  /**
-   * Patrón de un correo electronico valido.
-   */
-  private final Pattern emailValido = Pattern.compile("^[_a-z0-9-]+(.[_a-z0-9-]+)*@[a-z0-9-]+"
-          + "(.[a-z0-9-]+)*(.[a-z]{2,4})$");
-
   /**
    * Constructor vacio.
    */
@@ -119,72 +103,28 @@ public final class Persona {
   public Persona(String nombre, String apellido, String rut, String direccion, Integer telefonoFijo,
                  Integer telefonoMovil, String email) {
 
-    if (nombre.equals(null) || apellido.equals(null) || rut.equals(null)) {
+    if (nombre == null || apellido == null || rut == null) {
       throw new NullPointerException("Dato invalido");
     }
 
-    if (nombre.length() < 2) {
-      throw new RuntimeException("Nombre invalido");
-    }
-
-    this.nombre = nombre;
-
-    if (apellido.length() < 3) {
-      throw new RuntimeException("Apellido invalido");
-    }
-
-    this.apellido = apellido;
-
-    if (!Validation.isRutValid(rut)) {
-      throw new RuntimeException("Rut invalido");
-    }
-
-    this.rut = rut;
-
-    if (direccion.equals(null)) {
+    if (direccion == null || telefonoFijo == null || telefonoMovil == null || email == null) {
       throw new NullPointerException("No puede ser null");
     }
 
-    if (direccion.length() < 2) {
-      throw new RuntimeException("Direccion invalida");
+    //Validadores estaticos: sin expresiones regulares ni objetos por persona.
+    String error = Validation.validarPersona(nombre, apellido, rut, direccion, telefonoFijo,
+            telefonoMovil, email);
+    if (error != null) {
+      throw new RuntimeException(error);
     }
 
+    this.nombre = nombre;
+    this.apellido = apellido;
+    //Forma canonica: las busquedas por igualdad usan el indice de la columna.
+    this.rut = Validation.normalizeRut(rut);
     this.direccion = direccion;
-
-    Matcher fijoMatch = telFijoValido.matcher(Integer.toString(telefonoFijo));
-
-    if (telefonoFijo.equals(null)) {
-      throw new NullPointerException("No puede ser null");
-    }
-
-    if (fijoMatch.matches() == false) {
-      throw new RuntimeException("Telefono fijo invalido");
-    }
-
     this.telefonoFijo = telefonoFijo;
-
-    Matcher movilMatch = telMovilValido.matcher(Integer.toString(telefonoMovil));
-
-    if (telefonoMovil.equals(null)) {
-      throw new NullPointerException("No puede ser null");
-    }
-
-    if (movilMatch.matches() == false) {
-      throw new RuntimeException("Telefono movil invalido");
-    }
-
     this.telefonoMovil = telefonoMovil;
-
-    Matcher emailMatch = emailValido.matcher(email);
-
-    if (email.equals(null)) {
-      throw new NullPointerException("No puede ser null");
-    }
-
-    if (emailMatch.matches() == false) {
-      throw new RuntimeException("Email invalido");
-    }
-
     this.email = email;
 
   }
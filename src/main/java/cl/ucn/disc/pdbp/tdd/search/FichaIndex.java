@@ -0,0 +1,510 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.search;
+
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.Persona;
+import cl.ucn.disc.pdbp.tdd.utils.Validation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Indice invertido en memoria para la busqueda de fichas.
+ * Indexa el numero de ficha, el nombre del paciente, el nombre/apellido y el rut del duenio con
+ * terminos normalizados (minusculas, sin acentos). Se construye al iniciar y se actualiza con
+ * cada ficha o persona registrada. Las busquedas no consultan la base de datos.
+ *
+ * @author Gerald Lopez
+ */
+public final class FichaIndex {
+
+  /**
+   * Separador de terminos.
+   */
+  private static final Pattern SEPARADOR = Pattern.compile("[^\\p{Alnum}]+");
+
+  /**
+   * Puntaje: numero de ficha exacto.
+   */
+  static final int EXACT_NUMERO = 4;
+
+  /**
+   * Puntaje: rut del duenio exacto (con o sin digito verificador).
+   */
+  static final int EXACT_RUT = 3;
+
+  /**
+   * Puntaje: cada termino es prefijo del nombre del paciente o del duenio.
+   */
+  static final int PREFIX_NOMBRE = 2;
+
+  /**
+   * Puntaje: cada termino esta contenido en un nombre o en el rut.
+   */
+  static final int SUBSTRING = 1;
+
+  /**
+   * Maximo de fichas de una busqueda, para acotar el {@code WHERE id IN (..)} que las carga.
+   */
+  public static final int MAX_RESULTADOS = 1_000;
+
+  /**
+   * Maximo de listas de documentos (terminos encontrados) que se mezclan sin unirlas antes.
+   */
+  private static final int MAX_LISTAS = 16;
+
+  /**
+   * Digitos verificadores posibles.
+   */
+  private static final String DIGITOS = "0123456789k";
+
+  /**
+   * Lecturas concurrentes, escrituras exclusivas.
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Id de ficha por numero de ficha.
+   */
+  private final Map<Long, Long> numeros = new HashMap<>();
+
+  /**
+   * Terminos del nombre del paciente -> ids de ficha.
+   */
+  private final SubstringIndex nombres = new SubstringIndex();
+
+  /**
+   * Terminos del nombre y apellido de la persona -> ids de persona.
+   */
+  private final SubstringIndex personas = new SubstringIndex();
+
+  /**
+   * Rut de la persona -> ids de persona.
+   */
+  private final SubstringIndex ruts = new SubstringIndex();
+
+  /**
+   * Id de persona por rut normalizado.
+   */
+  private final Map<String, Long> personaPorRut = new HashMap<>();
+
+  /**
+   * Ids de ficha de cada duenio.
+   */
+  private final Map<Long, SubstringIndex.LongList> fichasPorDuenio = new HashMap<>();
+
+  /**
+   * Personas indexadas.
+   */
+  private final Set<Long> idPersonas = new HashSet<>();
+
+  /**
+   * Indexa una persona (si no estaba indexada).
+   * @param persona a indexar.
+   */
+  public void addPersona(Persona persona) {
+
+    if (persona == null || persona.getId() == null || persona.getRut() == null) {
+      throw new IllegalArgumentException("Persona sin id o sin datos");
+    }
+
+    lock.writeLock().lock();
+    try {
+      if (!idPersonas.add(persona.getId())) {
+        return;
+      }
+      for (String token : tokens(persona.getNombre() + " " + persona.getApellido())) {
+        personas.add(token, persona.getId());
+      }
+      String rut = normalizarRut(persona.getRut());
+      ruts.add(rut, persona.getId());
+      personaPorRut.put(rut, persona.getId());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Indexa una ficha. Si el duenio viene con sus datos tambien se indexa.
+   * @param ficha a indexar.
+   */
+  public void addFicha(Ficha ficha) {
+
+    if (ficha == null || ficha.getId() == null || ficha.getDuenio() == null) {
+      throw new IllegalArgumentException("Ficha sin id o sin duenio");
+    }
+
+    if (ficha.getDuenio().getRut() != null) {
+      addPersona(ficha.getDuenio());
+    }
+
+    lock.writeLock().lock();
+    try {
+      if (numeros.putIfAbsent(ficha.getNumero(), ficha.getId()) != null) {
+        return;
+      }
+      for (String token : tokens(ficha.getNombre())) {
+        nombres.add(token, ficha.getId());
+      }
+      fichasPorDuenio.computeIfAbsent(ficha.getDuenio().getId(),
+              id -> new SubstringIndex.LongList()).add(ficha.getId());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Busca las fichas como C03: por numero y rut del duenio (consultas numericas), por nombre
+   * del paciente y por nombre/apellido del duenio. Cada termino de la consulta debe estar
+   * contenido en algun termino indexado. Cada ficha aparece una vez, con su mejor puntaje:
+   * numero exacto > rut exacto > prefijo del nombre > substring. Los puntajes se resuelven de
+   * mayor a menor y la busqueda termina al completar limit fichas: una consulta con suficientes
+   * prefijos no busca los substrings. Un termino de 1 o 2 caracteres solo encuentra los terminos
+   * que empiezan con el y, si es el unico de la consulta, a lo mas {@link #MAX_RESULTADOS}
+   * documentos por indice (no se revisan todas las fichas con una letra).
+   * @param query a buscar.
+   * @param limit cantidad maxima de fichas (a lo mas {@link #MAX_RESULTADOS}).
+   * @return los ids de ficha, de mayor a menor puntaje (a igual puntaje, por id).
+   */
+  public List<Long> search(String query, int limit) {
+
+    if (query == null) {
+      throw new IllegalArgumentException("Query was null");
+    }
+    if (limit < 1) {
+      throw new IllegalArgumentException("limit debe ser >= 1");
+    }
+
+    List<String> tokens = tokens(query);
+    if (tokens.isEmpty()) {
+      return new ArrayList<>(0);
+    }
+
+    Resultados resultados = new Resultados(Math.min(limit, MAX_RESULTADOS));
+    boolean numerica = StringUtils.isNumeric(query);
+
+    lock.readLock().lock();
+    try {
+      // EXACT_NUMERO.
+      if (numerica) {
+        try {
+          Long id = numeros.get(Long.valueOf(query));
+          if (id != null) {
+            SubstringIndex.LongList numero = new SubstringIndex.LongList();
+            numero.add(id);
+            resultados.agregar(Collections.singletonList(numero));
+          }
+        } catch (NumberFormatException ex) {
+          // Fuera del rango de los numeros de ficha.
+        }
+      }
+
+      // EXACT_RUT: solo digitos o con puntos y guion, ej: 15.253.287-3.
+      if (!resultados.completo()) {
+        String rut = numerica ? normalizarRut(query) : Validation.normalizeRut(query.trim());
+        if (rut != null) {
+          resultados.agregar(fichas(Collections.singletonList(
+                  rutExacto(numerica ? rut : normalizar(rut)))));
+        }
+      }
+
+      // PREFIX_NOMBRE.
+      if (!resultados.completo()) {
+        resultados.agregar(match(nombres, tokens, true), fichas(match(personas, tokens, true)));
+      }
+
+      // SUBSTRING.
+      if (!resultados.completo()) {
+        List<SubstringIndex.LongList> rut = numerica
+                ? fichas(ruts.match(normalizarRut(query), false, maximo(tokens)))
+                : Collections.emptyList();
+        resultados.agregar(match(nombres, tokens, false), fichas(match(personas, tokens, false)),
+                rut);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return resultados.ids();
+  }
+
+  /**
+   * Personas con el rut exacto, con o sin digito verificador.
+   * @param rut normalizado.
+   * @return los ids de persona.
+   */
+  private SubstringIndex.LongList rutExacto(String rut) {
+
+    SubstringIndex.LongList ids = new SubstringIndex.LongList();
+    Long id = personaPorRut.get(rut);
+    if (id != null) {
+      ids.add(id);
+    }
+    for (int i = 0; i < DIGITOS.length(); i++) {
+      id = personaPorRut.get(rut + DIGITOS.charAt(i));
+      if (id != null) {
+        ids.add(id);
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Obtiene la cantidad de fichas indexadas.
+   * @return fichas.
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return numeros.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Normaliza un texto: sin acentos y en minusculas.
+   * @param texto a normalizar.
+   * @return el texto normalizado.
+   */
+  public static String normalizar(String texto) {
+    return StringUtils.stripAccents(texto).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Separa un texto en terminos normalizados.
+   * @param texto a separar.
+   * @return los terminos, sin vacios.
+   */
+  public static List<String> tokens(String texto) {
+
+    List<String> tokens = new ArrayList<>();
+    if (texto == null) {
+      return tokens;
+    }
+    for (String token : SEPARADOR.split(normalizar(texto))) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Normaliza un rut: solo digitos y k.
+   * @param rut a normalizar.
+   * @return el rut normalizado.
+   */
+  private static String normalizarRut(String rut) {
+    return SEPARADOR.matcher(normalizar(rut)).replaceAll("");
+  }
+
+  /**
+   * Documentos por indice de una consulta corta (1 o 2 caracteres): solo se acota si es el unico
+   * termino, porque con varios la interseccion necesita todos los documentos.
+   * @param tokens de la consulta.
+   * @return el maximo de documentos.
+   */
+  private static int maximo(List<String> tokens) {
+    return tokens.size() == 1 ? MAX_RESULTADOS : Integer.MAX_VALUE;
+  }
+
+  /**
+   * Documentos que contienen todos los terminos (AND).
+   * @param index donde buscar.
+   * @param tokens de la consulta.
+   * @param prefijo true para los documentos donde cada termino es prefijo, false para los
+   *     documentos donde cada termino esta contenido.
+   * @return los ids, en listas ordenadas (con un solo termino, las listas del indice sin unir).
+   */
+  private static List<SubstringIndex.LongList> match(SubstringIndex index, List<String> tokens,
+                                                     boolean prefijo) {
+
+    if (tokens.size() == 1) {
+      List<SubstringIndex.LongList> docs = index.match(tokens.get(0), prefijo, maximo(tokens));
+      return docs.size() <= MAX_LISTAS ? docs
+              : Collections.singletonList(SubstringIndex.union(docs));
+    }
+
+    SubstringIndex.LongList ids = null;
+    for (String token : tokens) {
+      SubstringIndex.LongList docs = SubstringIndex.union(index.match(token, prefijo));
+      ids = ids == null ? docs : interseccion(ids, docs);
+      if (ids.size() == 0) {
+        break;
+      }
+    }
+    return Collections.singletonList(ids);
+  }
+
+  /**
+   * Interseccion de dos listas ordenadas.
+   * @param a lista ordenada.
+   * @param b lista ordenada.
+   * @return los valores en ambas, ordenados.
+   */
+  private static SubstringIndex.LongList interseccion(SubstringIndex.LongList a,
+                                                      SubstringIndex.LongList b) {
+
+    SubstringIndex.LongList c = new SubstringIndex.LongList(Math.min(a.size(), b.size()) + 1);
+    int i = 0;
+    int j = 0;
+    // Sin saltos condicionales (ids al azar: cada comparacion seria un salto mal predicho).
+    while (i < a.size() && j < b.size()) {
+      long x = a.get(i);
+      long y = b.get(j);
+      c.addIf(x, x == y);
+      i += x <= y ? 1 : 0;
+      j += y <= x ? 1 : 0;
+    }
+    return c;
+  }
+
+  /**
+   * Fichas de un conjunto de duenios.
+   * @param duenios ids de persona.
+   * @return los ids de ficha, en una lista ordenada.
+   */
+  private List<SubstringIndex.LongList> fichas(List<SubstringIndex.LongList> duenios) {
+
+    SubstringIndex.LongList fichas = new SubstringIndex.LongList();
+    for (SubstringIndex.LongList lista : duenios) {
+      long anterior = -1;
+      for (int i = 0; i < lista.size(); i++) {
+        long duenio = lista.get(i);
+        SubstringIndex.LongList deDuenio = duenio == anterior ? null
+                : fichasPorDuenio.get(duenio);
+        if (deDuenio != null) {
+          fichas.addAll(deDuenio);
+        }
+        anterior = duenio;
+      }
+    }
+    return Collections.singletonList(fichas.ordenada());
+  }
+
+  /**
+   * Resultados de una busqueda, de mayor a menor puntaje: cada {@link #agregar} es el
+   * siguiente puntaje y agrega sus fichas por id, sin las ya agregadas, hasta completar el limite.
+   */
+  private static final class Resultados {
+
+    /**
+     * Ids agregados, en orden.
+     */
+    private final long[] ids;
+
+    /**
+     * Cantidad de ids agregados.
+     */
+    private int size;
+
+    /**
+     * Ids agregados, ordenados (para no repetirlos en un puntaje menor).
+     */
+    private long[] agregados = new long[0];
+
+    /**
+     * Constructor.
+     * @param limit cantidad maxima de ids.
+     */
+    Resultados(int limit) {
+      this.ids = new long[limit];
+    }
+
+    /**
+     * Indica si ya se completo el limite.
+     * @return true si no caben mas ids.
+     */
+    boolean completo() {
+      return size == ids.length;
+    }
+
+    /**
+     * Agrega las fichas de un puntaje, de menor a mayor id, hasta completar el limite.
+     * @param fuentes listas de ids ordenados (de cada indice).
+     */
+    @SafeVarargs
+    final void agregar(List<SubstringIndex.LongList>... fuentes) {
+
+      List<SubstringIndex.LongList> todas = new ArrayList<>();
+      for (List<SubstringIndex.LongList> fuente : fuentes) {
+        todas.addAll(fuente);
+      }
+      SubstringIndex.LongList[] listas = todas.toArray(new SubstringIndex.LongList[0]);
+
+      int inicio = size;
+      int[] posiciones = new int[listas.length];
+      long anterior = -1;
+      while (size < ids.length) {
+        // El menor id entre las listas.
+        int menor = -1;
+        for (int i = 0; i < listas.length; i++) {
+          if (posiciones[i] < listas[i].size() && (menor < 0
+                  || listas[i].get(posiciones[i]) < listas[menor].get(posiciones[menor]))) {
+            menor = i;
+          }
+        }
+        if (menor < 0) {
+          break;
+        }
+        long id = listas[menor].get(posiciones[menor]++);
+        if (id != anterior && Arrays.binarySearch(agregados, id) < 0) {
+          ids[size++] = id;
+        }
+        anterior = id;
+      }
+
+      if (size > inicio && size < ids.length) {
+        agregados = Arrays.copyOf(ids, size);
+        Arrays.sort(agregados);
+      }
+    }
+
+    /**
+     * Obtiene los ids agregados.
+     * @return los ids, en orden.
+     */
+    List<Long> ids() {
+      List<Long> lista = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        lista.add(ids[i]);
+      }
+      return lista;
+    }
+  }
+
+}
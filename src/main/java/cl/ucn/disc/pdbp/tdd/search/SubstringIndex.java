@@ -0,0 +1,339 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indice invertido de terminos con busqueda por substring.
+ * Cada termino distinto tiene su lista ordenada de documentos (ids) y cada trigrama su lista de
+ * terminos, de modo que una busqueda de 3 o mas caracteres solo revisa los terminos que
+ * contienen el trigrama menos frecuente de la consulta. Una consulta de 1 o 2 caracteres solo
+ * busca los terminos que empiezan con ella (un substring tan corto esta en casi todo el
+ * diccionario), con la lista de terminos de cada prefijo corto. No es thread-safe.
+ *
+ * @author Gerald Lopez
+ */
+final class SubstringIndex {
+
+  /**
+   * Largo de los n-gramas.
+   */
+  private static final int GRAM = 3;
+
+  /**
+   * Terminos por id.
+   */
+  private final List<String> terms = new ArrayList<>();
+
+  /**
+   * Id de cada termino.
+   */
+  private final Map<String, Integer> termIds = new HashMap<>();
+
+  /**
+   * Documentos de cada termino (por id de termino).
+   */
+  private final List<LongList> postings = new ArrayList<>();
+
+  /**
+   * Terminos que contienen cada trigrama.
+   */
+  private final Map<String, IntList> grams = new HashMap<>();
+
+  /**
+   * Terminos que empiezan con cada prefijo de 1 o 2 caracteres.
+   */
+  private final Map<String, IntList> prefijos = new HashMap<>();
+
+  /**
+   * Agrega un termino (ya normalizado) de un documento.
+   * @param term del documento.
+   * @param doc id del documento.
+   */
+  void add(String term, long doc) {
+
+    Integer id = termIds.get(term);
+    if (id == null) {
+      id = terms.size();
+      terms.add(term);
+      termIds.put(term, id);
+      postings.add(new LongList());
+
+      for (int i = 0; i + GRAM <= term.length(); i++) {
+        IntList lista = grams.computeIfAbsent(term.substring(i, i + GRAM), g -> new IntList());
+        // Los ids de termino son crecientes: un trigrama repetido queda al final.
+        if (lista.size == 0 || lista.values[lista.size - 1] != id) {
+          lista.add(id);
+        }
+      }
+      for (int i = 1; i < GRAM && i <= term.length(); i++) {
+        prefijos.computeIfAbsent(term.substring(0, i), p -> new IntList()).add(id);
+      }
+    }
+    postings.get(id).add(doc);
+  }
+
+  /**
+   * Busca los documentos con algun termino que contenga la consulta (que empiece con ella, si
+   * tiene menos de 3 caracteres).
+   * @param query normalizada.
+   * @param prefijo true para solo los terminos que empiezan con la consulta.
+   * @return los documentos de cada termino encontrado, cada lista ordenada.
+   */
+  List<LongList> match(String query, boolean prefijo) {
+    return match(query, prefijo, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Busca los documentos con algun termino que contenga la consulta (que empiece con ella, si
+   * tiene menos de 3 caracteres). Una consulta corta obtiene a lo mas maximo documentos: los
+   * primeros de los terminos mas antiguos que empiezan con ella. Las listas de documentos del
+   * indice se retornan sin copiarlas (si ya estan ordenadas): no se deben modificar.
+   * @param query normalizada.
+   * @param prefijo true para solo los terminos que empiezan con la consulta.
+   * @param maximo documentos de una consulta corta.
+   * @return los documentos de cada termino encontrado, cada lista ordenada.
+   */
+  List<LongList> match(String query, boolean prefijo, int maximo) {
+
+    List<LongList> encontrados = new ArrayList<>();
+
+    if (query.length() < GRAM) {
+      // Consulta corta: solo los terminos que empiezan con ella.
+      IntList lista = prefijos.get(query);
+      if (lista == null) {
+        return encontrados;
+      }
+      int total = 0;
+      for (int i = 0; i < lista.size && total < maximo; i++) {
+        LongList docs = postings.get(lista.values[i]);
+        if (docs.size > maximo - total) {
+          LongList primeros = new LongList();
+          primeros.addAll(docs, maximo - total);
+          docs = primeros;
+        }
+        encontrados.add(docs.ordenada());
+        total += docs.size;
+      }
+      return encontrados;
+    }
+
+    // El trigrama con menos terminos acota los candidatos.
+    IntList candidatos = null;
+    for (int i = 0; i + GRAM <= query.length(); i++) {
+      IntList lista = grams.get(query.substring(i, i + GRAM));
+      if (lista == null) {
+        return encontrados;
+      }
+      if (candidatos == null || lista.size < candidatos.size) {
+        candidatos = lista;
+      }
+    }
+
+    for (int i = 0; i < candidatos.size; i++) {
+      String term = terms.get(candidatos.values[i]);
+      if (prefijo ? term.startsWith(query) : term.contains(query)) {
+        encontrados.add(postings.get(candidatos.values[i]).ordenada());
+      }
+    }
+    return encontrados;
+  }
+
+  /**
+   * Une listas de documentos.
+   * @param listas de documentos.
+   * @return la unica lista (sin copiar) si esta ordenada, o todas juntas y ordenadas.
+   */
+  static LongList union(List<LongList> listas) {
+
+    if (listas.size() == 1) {
+      return listas.get(0).ordenada();
+    }
+    LongList union = new LongList();
+    for (LongList docs : listas) {
+      union.addAll(docs);
+    }
+    return union.ordenada();
+  }
+
+  /**
+   * Obtiene la cantidad de terminos distintos.
+   * @return terminos.
+   */
+  int terms() {
+    return terms.size();
+  }
+
+  /**
+   * Lista creciente de ints.
+   */
+  private static final class IntList {
+
+    /**
+     * Valores.
+     */
+    private int[] values = new int[2];
+
+    /**
+     * Cantidad de valores.
+     */
+    private int size;
+
+    /**
+     * Agrega un valor al final.
+     * @param value a agregar.
+     */
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+  }
+
+  /**
+   * Lista de longs (ids de documentos).
+   */
+  static final class LongList {
+
+    /**
+     * Valores.
+     */
+    private long[] values = new long[1];
+
+    /**
+     * Cantidad de valores.
+     */
+    private int size;
+
+    /**
+     * Si los valores son crecientes (los documentos se indexan en orden de id): ordenarlos es
+     * solo copiarlos.
+     */
+    private boolean creciente = true;
+
+    /**
+     * Constructor.
+     */
+    LongList() {
+      //nada aqui.
+    }
+
+    /**
+     * Constructor con capacidad inicial.
+     * @param capacidad inicial.
+     */
+    LongList(int capacidad) {
+      this.values = new long[Math.max(1, capacidad)];
+    }
+
+    /**
+     * Agrega un valor al final.
+     * @param value a agregar.
+     */
+    void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      if (size > 0 && value < values[size - 1]) {
+        creciente = false;
+      }
+      values[size++] = value;
+    }
+
+    /**
+     * Agrega un valor mayor o igual al ultimo, si se cumple la condicion, sin saltos condicionales.
+     * La lista debe tener capacidad para un valor mas.
+     * @param value a agregar.
+     * @param condicion para agregarlo.
+     */
+    void addIf(long value, boolean condicion) {
+      values[size] = value;
+      size += condicion ? 1 : 0;
+    }
+
+    /**
+     * Agrega todos los valores de otra lista.
+     * @param other lista.
+     */
+    void addAll(LongList other) {
+      addAll(other, other.size);
+    }
+
+    /**
+     * Agrega los primeros valores de otra lista.
+     * @param other lista.
+     * @param n cantidad de valores (a lo mas el tamanio de la otra lista).
+     */
+    void addAll(LongList other, int n) {
+      if (size + n > values.length) {
+        values = Arrays.copyOf(values, Math.max(size + n, size * 2));
+      }
+      if (n > 0 && (!other.creciente || size > 0 && other.values[0] < values[size - 1])) {
+        creciente = false;
+      }
+      System.arraycopy(other.values, 0, values, size, n);
+      size += n;
+    }
+
+    /**
+     * Obtiene la cantidad de valores.
+     * @return size.
+     */
+    int size() {
+      return size;
+    }
+
+    /**
+     * Obtiene un valor.
+     * @param i posicion del valor.
+     * @return el valor.
+     */
+    long get(int i) {
+      return values[i];
+    }
+
+    /**
+     * Obtiene la lista ordenada: esta misma si ya lo esta (no se copia).
+     * @return la lista ordenada (con los valores repetidos).
+     */
+    LongList ordenada() {
+      if (creciente) {
+        return this;
+      }
+      LongList ordenada = new LongList();
+      ordenada.values = Arrays.copyOf(values, size);
+      ordenada.size = size;
+      Arrays.sort(ordenada.values);
+      return ordenada;
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.search;
+
+/**
+ * Sugerencia de busqueda (typeahead).
+ *
+ * @author Gerald Lopez
+ */
+public final class Sugerencia {
+
+  /**
+   * Origen de la sugerencia.
+   */
+  public enum Origen {
+    /**
+     * Nombre del paciente.
+     */
+    PACIENTE,
+    /**
+     * Nombre y apellido de una persona.
+     */
+    PERSONA,
+    /**
+     * Rut de una persona.
+     */
+    RUT
+  }
+
+  /**
+   * Texto a mostrar.
+   */
+  private final String texto;
+
+  /**
+   * Origen.
+   */
+  private final Origen origen;
+
+  /**
+   * Constructor.
+   * @param texto a mostrar.
+   * @param origen del texto.
+   */
+  public Sugerencia(String texto, Origen origen) {
+    this.texto = texto;
+    this.origen = origen;
+  }
+
+  /**
+   * Obtiene el texto a mostrar.
+   * @return texto.
+   */
+  public String getTexto() {
+    return this.texto;
+  }
+
+  /**
+   * Obtiene el origen del texto.
+   * @return origen.
+   */
+  public Origen getOrigen() {
+    return this.origen;
+  }
+
+}
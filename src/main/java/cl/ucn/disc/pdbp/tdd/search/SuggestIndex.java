@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Gerald Lopez Gutiérrez <gerald.lopez@alumnos.ucn.cl>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package cl.ucn.disc.pdbp.tdd.search;
+
+import cl.ucn.disc.pdbp.tdd.model.Ficha;
+import cl.ucn.disc.pdbp.tdd.model.Persona;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Indice ordenado de prefijos para sugerencias (typeahead).
+ * Cada texto se indexa desde el comienzo de cada termino normalizado ("nandu rojo" y "rojo"),
+ * en un {@link ConcurrentSkipListMap}: una sugerencia es una busqueda O(log n) del primer
+ * prefijo y un recorrido de a lo mas limit entradas. Las lecturas no bloquean.
+ *
+ * @author Gerald Lopez
+ */
+public final class SuggestIndex {
+
+  /**
+   * Separa la llave normalizada del resto de la entrada.
+   */
+  private static final char SEPARADOR = '\u0000';
+
+  /**
+   * Entradas: llave normalizada + separador + origen + texto.
+   */
+  private final NavigableMap<String, Sugerencia> entradas = new ConcurrentSkipListMap<>();
+
+  /**
+   * Indexa el nombre del paciente.
+   * @param ficha a indexar.
+   */
+  public void addFicha(Ficha ficha) {
+
+    if (ficha == null || ficha.getNombre() == null) {
+      throw new IllegalArgumentException("Ficha sin nombre");
+    }
+    agregar(ficha.getNombre(), Sugerencia.Origen.PACIENTE);
+  }
+
+  /**
+   * Indexa el nombre completo y el rut de la persona.
+   * @param persona a indexar.
+   */
+  public void addPersona(Persona persona) {
+
+    if (persona == null || persona.getRut() == null) {
+      throw new IllegalArgumentException("Persona sin datos");
+    }
+    agregar(persona.getNombre() + " " + persona.getApellido(), Sugerencia.Origen.PERSONA);
+    agregar(persona.getRut(), Sugerencia.Origen.RUT);
+  }
+
+  /**
+   * Agrega un texto desde el comienzo de cada uno de sus terminos.
+   * @param texto a agregar.
+   * @param origen del texto.
+   */
+  private void agregar(String texto, Sugerencia.Origen origen) {
+
+    List<String> tokens = FichaIndex.tokens(texto);
+    Sugerencia sugerencia = new Sugerencia(texto, origen);
+    String sufijo = SEPARADOR + origen.name() + SEPARADOR + texto;
+
+    for (int i = 0; i < tokens.size(); i++) {
+      String llave = String.join(" ", tokens.subList(i, tokens.size()));
+      entradas.putIfAbsent(llave + sufijo, sugerencia);
+    }
+  }
+
+  /**
+   * Sugiere textos que tengan un termino que empiece con el prefijo.
+   * @param prefix escrito por el usuario.
+   * @param limit cantidad maxima de sugerencias.
+   * @return las sugerencias, en orden alfabetico y sin textos repetidos.
+   */
+  public List<Sugerencia> suggest(String prefix, int limit) {
+
+    if (prefix == null) {
+      throw new IllegalArgumentException("Prefix was null");
+    }
+    if (limit < 1) {
+      throw new IllegalArgumentException("limit debe ser >= 1");
+    }
+
+    List<Sugerencia> sugerencias = new ArrayList<>(limit);
+    String desde = String.join(" ", FichaIndex.tokens(prefix));
+    if (desde.isEmpty()) {
+      return sugerencias;
+    }
+
+    Set<String> textos = new HashSet<>();
+    for (Map.Entry<String, Sugerencia> entrada
+            : entradas.tailMap(desde, true).entrySet()) {
+      if (!entrada.getKey().startsWith(desde)) {
+        break;
+      }
+      if (textos.add(entrada.getValue().getTexto())) {
+        sugerencias.add(entrada.getValue());
+        if (sugerencias.size() == limit) {
+          break;
+        }
+      }
+    }
+    return sugerencias;
+  }
+
+  /**
+   * Obtiene la cantidad de entradas.
+   * @return entradas.
+   */
+  public int size() {
+    return entradas.size();
+  }
+
+}
@@ -24,6 +24,8 @@
 
 package cl.ucn.disc.pdbp.tdd.utils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,9 +37,30 @@ import java.util.regex.Pattern;
 public class Validation {
 
   /**
-   * Patron que sigue el rut.
+   * Largo minimo del nombre de una persona.
    */
-  private static final Pattern pattern = Pattern.compile("^[0-9]+[0-9kK]{1}$");
+  public static final int NOMBRE_MIN = 2;
+
+  /**
+   * Largo minimo del apellido de una persona.
+   */
+  public static final int APELLIDO_MIN = 3;
+
+  /**
+   * Largo minimo de la direccion de una persona.
+   */
+  public static final int DIRECCION_MIN = 2;
+
+  /**
+   * Campos de una fila de persona: nombre, apellido, rut, direccion, telefonoFijo,
+   * telefonoMovil y email (el orden del constructor de Persona).
+   */
+  public static final int CAMPOS_PERSONA = 7;
+
+  /**
+   * Digitos maximos del cuerpo de un rut (cabe en un long).
+   */
+  public static final int RUT_MAX_DIGITOS = 18;
 
   /**
    * Patron que sigue el formato de foto.
@@ -45,42 +68,338 @@ public class Validation {
   private static final Pattern formato = Pattern.compile("^[_aA-zZ0-9]+.(jpg|jpeg|png){1}$");
 
   /**
-   * Valida que el rut ingresado sea correcto.
+   * Valida que el rut ingresado sea correcto, con o sin puntos y guion
+   * (152532873, 15253287-3, 15.253.287-3). No crea objetos.
    * @param rut valido
+   * @return true si el digito verificador corresponde al cuerpo.
    */
   public static boolean isRutValid(String rut) {
+    return rutCuerpo(rut) > 0;
+  }
+
+  /**
+   * Lee un rut en una sola pasada de derecha a izquierda: digito verificador (0-9, k o K), guion
+   * opcional y el cuerpo (hasta {@link #RUT_MAX_DIGITOS} digitos, con puntos de miles opcionales).
+   * El digito verificador se calcula en la misma pasada (modulo 11).
+   * @param rut a leer.
+   * @return el cuerpo del rut, -1 si el rut no es valido.
+   */
+  public static long rutCuerpo(String rut) {
+
+    if (rut == null || rut.length() < 2) {
+      return -1;
+    }
+
+    int i = rut.length() - 1;
+    char dv = rut.charAt(i--);
+    int verificador;
+    if (dv >= '0' && dv <= '9') {
+      verificador = dv - '0';
+    } else if (dv == 'k' || dv == 'K') {
+      verificador = 10;
+    } else {
+      return -1;
+    }
+    if (rut.charAt(i) == '-') {
+      i--;
+    }
+
+    long cuerpo = 0;
+    long potencia = 1;
+    int suma = 0;
+    int peso = 2;
+    int digitos = 0;
+    int grupo = 0;
+    boolean puntos = false;
+
+    for (; i >= 0; i--) {
+      char c = rut.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (digitos == RUT_MAX_DIGITOS) {
+          return -1;
+        }
+        int digito = c - '0';
+        cuerpo += digito * potencia;
+        if (++digitos < RUT_MAX_DIGITOS) {
+          potencia *= 10;
+        }
+        suma += digito * peso;
+        peso = peso == 7 ? 2 : peso + 1;
+        grupo++;
+      } else if (c == '.' && grupo == 3) {
+        // Puntos de miles: grupos de tres digitos.
+        grupo = 0;
+        puntos = true;
+      } else {
+        return -1;
+      }
+    }
+
+    if (cuerpo == 0 || (puntos && (grupo == 0 || grupo > 3))) {
+      return -1;
+    }
+
+    int esperado = 11 - suma % 11;
+    return (esperado == 11 ? 0 : esperado) == verificador ? cuerpo : -1;
+  }
+
+  /**
+   * Calcula el digito verificador (modulo 11) del cuerpo de un rut.
+   * @param cuerpo del rut (positivo).
+   * @return el digito verificador: 0-9 o K.
+   */
+  public static char digitoVerificador(long cuerpo) {
+
+    if (cuerpo <= 0) {
+      throw new IllegalArgumentException("Cuerpo de rut invalido: " + cuerpo);
+    }
+
+    int suma = 0;
+    int peso = 2;
+    for (; cuerpo > 0; cuerpo /= 10) {
+      suma += (int) (cuerpo % 10) * peso;
+      peso = peso == 7 ? 2 : peso + 1;
+    }
+
+    int esperado = 11 - suma % 11;
+    return esperado == 11 ? '0' : esperado == 10 ? 'K' : (char) ('0' + esperado);
+  }
+
+  /**
+   * Forma canonica de un rut: el cuerpo sin puntos ni ceros a la izquierda seguido del digito
+   * verificador (K mayuscula), ej: 15.253.287-3 -> 152532873. Es la forma que se guarda en
+   * Persona.rut, para buscar por igualdad en su indice.
+   * Si el rut ya es canonico se retorna el mismo String.
+   * @param rut a normalizar.
+   * @return el rut canonico, null si no es valido.
+   */
+  public static String normalizeRut(String rut) {
+
+    long cuerpo = rutCuerpo(rut);
+    if (cuerpo < 0) {
+      return null;
+    }
+
+    char dv = rut.charAt(rut.length() - 1);
+    if (dv != 'k' && rut.charAt(0) != '0' && rut.length() == largo(cuerpo) + 1) {
+      return rut;
+    }
+    return new StringBuilder(RUT_MAX_DIGITOS + 1).append(cuerpo)
+            .append(dv == 'k' ? 'K' : dv).toString();
+  }
+
+  /**
+   * Cantidad de digitos de un numero positivo.
+   * @param numero a medir.
+   * @return los digitos.
+   */
+  private static int largo(long numero) {
+    int largo = 1;
+    while (numero >= 10) {
+      numero /= 10;
+      largo++;
+    }
+    return largo;
+  }
+
+  /**
+   * Valida un nombre (o apellido, direccion): no null y con al menos minLength caracteres.
+   * @param nombre a validar.
+   * @param minLength largo minimo.
+   * @return true si es valido.
+   */
+  public static boolean isNombreValid(String nombre, int minLength) {
+    return nombre != null && nombre.length() >= minLength;
+  }
+
+  /**
+   * Valida un telefono fijo: 8 digitos (YY XX-XXXX).
+   * @param telefono a validar.
+   * @return true si es valido.
+   */
+  public static boolean isTelefonoFijoValid(int telefono) {
+    return telefono >= 10_000_000 && telefono <= 99_999_999;
+  }
+
+  /**
+   * Valida un telefono movil: 9 digitos comenzando con 9 (9 XXXX-XXXX).
+   * @param telefono a validar.
+   * @return true si es valido.
+   */
+  public static boolean isTelefonoMovilValid(int telefono) {
+    return telefono >= 900_000_000 && telefono <= 999_999_999;
+  }
 
-    if (rut == null) {
+  /**
+   * Valida un email en minusculas, en una pasada y sin expresiones regulares:
+   * usuario con partes [_a-z0-9-] separadas por puntos, @, dominio con partes [a-z0-9-]
+   * separadas por puntos y terminado en [a-z]{2,4}.
+   * @param email a validar.
+   * @return true si es valido.
+   */
+  public static boolean isEmailValid(String email) {
+
+    if (email == null) {
       return false;
     }
 
-    Matcher matcher = pattern.matcher(rut);
+    int n = email.length();
+    int i = 0;
 
-    if (matcher.matches() == false) {
+    // Usuario.
+    int largo = 0;
+    for (; i < n; i++) {
+      char c = email.charAt(i);
+      if (c == '@') {
+        break;
+      }
+      if (c == '.') {
+        if (largo == 0) {
+          return false;
+        }
+        largo = 0;
+      } else if (c == '_' || isEmailChar(c)) {
+        largo++;
+      } else {
+        return false;
+      }
+    }
+    if (i == n || largo == 0) {
       return false;
     }
-    String digVerificador = Character.toString(rut.charAt(rut.length() - 1));
 
-    String rutAux = rut.substring(0, rut.length() - 1);
+    // Dominio.
+    int partes = 1;
+    boolean letras = true;
+    largo = 0;
+    for (i++; i < n; i++) {
+      char c = email.charAt(i);
+      if (c == '.') {
+        if (largo == 0) {
+          return false;
+        }
+        partes++;
+        largo = 0;
+        letras = true;
+      } else if (isEmailChar(c)) {
+        largo++;
+        letras &= c >= 'a' && c <= 'z';
+      } else {
+        return false;
+      }
+    }
+    return partes >= 2 && letras && largo >= 2 && largo <= 4;
+  }
+
+  /**
+   * Caracter del dominio de un email: [a-z0-9-].
+   * @param c a revisar.
+   * @return true si es valido.
+   */
+  private static boolean isEmailChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-';
+  }
 
-    return digVerificador.toLowerCase().equals(Validation.digitoVerificador(rutAux));
+  /**
+   * Valida los datos de una persona sin construirla ni lanzar excepciones.
+   * @param nombre de la persona.
+   * @param apellido de la persona.
+   * @param rut de la persona.
+   * @param direccion de la persona.
+   * @param telefonoFijo de la persona.
+   * @param telefonoMovil de la persona.
+   * @param email de la persona.
+   * @return el error del primer dato invalido, null si todos son validos.
+   */
+  public static String validarPersona(String nombre, String apellido, String rut,
+                                      String direccion, Integer telefonoFijo,
+                                      Integer telefonoMovil, String email) {
 
+    if (!isNombreValid(nombre, NOMBRE_MIN)) {
+      return "Nombre invalido";
+    }
+    if (!isNombreValid(apellido, APELLIDO_MIN)) {
+      return "Apellido invalido";
+    }
+    if (!isRutValid(rut)) {
+      return "Rut invalido";
+    }
+    if (!isNombreValid(direccion, DIRECCION_MIN)) {
+      return "Direccion invalida";
+    }
+    if (telefonoFijo == null || !isTelefonoFijoValid(telefonoFijo)) {
+      return "Telefono fijo invalido";
+    }
+    if (telefonoMovil == null || !isTelefonoMovilValid(telefonoMovil)) {
+      return "Telefono movil invalido";
+    }
+    if (!isEmailValid(email)) {
+      return "Email invalido";
+    }
+    return null;
   }
 
   /**
-   * Valida el dígito verificador.
-   * @param rut valido
+   * Valida una fila de texto de una persona (ej: una linea de una importacion).
+   * @param fila con los {@link #CAMPOS_PERSONA} campos en el orden del constructor de Persona.
+   * @return el error del primer dato invalido, null si la fila es valida.
+   */
+  public static String validarPersona(String[] fila) {
+
+    if (fila == null || fila.length != CAMPOS_PERSONA) {
+      return "Fila invalida";
+    }
+
+    int telefonoFijo = digitos(fila[4]);
+    int telefonoMovil = digitos(fila[5]);
+    return validarPersona(fila[0], fila[1], fila[2], fila[3],
+            telefonoFijo < 0 ? null : telefonoFijo,
+            telefonoMovil < 0 ? null : telefonoMovil, fila[6]);
+  }
+
+  /**
+   * Valida un lote de filas de personas (ej: una importacion) en una sola pasada.
+   * @param filas a validar, ver {@link #validarPersona(String[])}.
+   * @return el error de cada fila invalida por su indice (en orden), vacio si todas son validas.
    */
-  private static String digitoVerificador(String rut) {
-    int m = 0;
-    int s = 1;
-    int t = Integer.parseInt(rut);
-    for (; t != 0; t = (int) Math.floor(t /= 10)) {
-      s = (s + t % 10 * (9 - m++ % 6)) % 11;
+  public static Map<Integer, String> validarPersonas(Iterable<String[]> filas) {
+
+    if (filas == null) {
+      throw new IllegalArgumentException("Filas null");
+    }
+
+    Map<Integer, String> errores = new LinkedHashMap<>();
+    int indice = 0;
+    for (String[] fila : filas) {
+      String error = validarPersona(fila);
+      if (error != null) {
+        errores.put(indice, error);
+      }
+      indice++;
     }
+    return errores;
+  }
+
+  /**
+   * Lee un entero positivo de a lo mas 9 digitos.
+   * @param texto a leer.
+   * @return el entero, -1 si no son solo digitos.
+   */
+  private static int digitos(String texto) {
 
-    return (s > 0) ? String.valueOf(s - 1) : "k";
+    if (texto == null || texto.isEmpty() || texto.length() > 9) {
+      return -1;
+    }
 
+    int valor = 0;
+    for (int i = 0; i < texto.length(); i++) {
+      char c = texto.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      valor = valor * 10 + (c - '0');
+    }
+    return valor;
   }
 
   /**
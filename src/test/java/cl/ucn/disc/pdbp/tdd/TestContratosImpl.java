@@ -25,13 +25,33 @@
 package cl.ucn.disc.pdbp.tdd;
 
 import checkers.units.quals.A;
+import cl.ucn.disc.pdbp.tdd.dao.DatasetGenerator;
+import cl.ucn.disc.pdbp.tdd.dao.FetchProfile;
+import cl.ucn.disc.pdbp.tdd.dao.FieldSet;
+import cl.ucn.disc.pdbp.tdd.dao.PoolConfig;
+import cl.ucn.disc.pdbp.tdd.dao.QueryCounter;
+import cl.ucn.disc.pdbp.tdd.dao.RequestTiming;
 import cl.ucn.disc.pdbp.tdd.model.*;
+import cl.ucn.disc.pdbp.tdd.search.Sugerencia;
+import cl.ucn.disc.pdbp.tdd.utils.Validation;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.platform.commons.logging.Logger;
 import org.junit.platform.commons.logging.LoggerFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /**
  * Test Contratos del sistema
@@ -179,6 +199,103 @@ public class TestContratosImpl {
 
   }
 
+  /**
+   * Testing C03 sobre el indice: sin acentos ni mayusculas, apellido y varios terminos.
+   */
+  @Test
+  public void testBuscarFichaIndex() {
+
+    Contratos contratosIndex = new ContratosImpl("jdbc:h2:mem:fivet_index");
+
+    Persona duenio = contratosIndex.registrarPersona(new Persona("José", "Muñoz", rut(15123456),
+            "Fake 123", 55225544, 948931276, "jmunoz@gmail.com"));
+
+    Ficha ficha = contratosIndex.registrarPaciente(new Ficha(7001L, "Ñandú Rojo", "Ave",
+            ZonedDateTime.now(), "Rhea", Sexo.HEMBRA, "Gris", Tipo.EXTERNO, duenio));
+
+    //Nombre del paciente.
+    Assertions.assertEquals(ficha.getId(), contratosIndex.buscarFicha("nandu").get(0).getId());
+    Assertions.assertEquals(ficha.getId(), contratosIndex.buscarFicha("ANDU").get(0).getId());
+    Assertions.assertEquals(ficha.getId(), contratosIndex.buscarFicha("rojo ñan").get(0).getId());
+
+    //Nombre y apellido del duenio.
+    Assertions.assertEquals(ficha.getId(), contratosIndex.buscarFicha("munoz").get(0).getId());
+    Assertions.assertEquals(ficha.getId(),
+            contratosIndex.buscarFicha("Jose Muñoz").get(0).getId());
+
+    //Numero y rut.
+    Assertions.assertEquals(ficha.getId(), contratosIndex.buscarFicha("7001").get(0).getId());
+    Assertions.assertEquals(ficha.getId(), contratosIndex.buscarFicha("512345").get(0).getId());
+
+    //Sin resultados.
+    Assertions.assertTrue(contratosIndex.buscarFicha("gato").isEmpty());
+    Assertions.assertTrue(contratosIndex.buscarFicha(" ").isEmpty());
+
+    //Sin repetir y por relevancia: prefijo del nombre antes que substring.
+    Ficha otra = contratosIndex.registrarPaciente(new Ficha(7002L, "Pirojo", "Ave",
+            ZonedDateTime.now(), "Rhea", Sexo.MACHO, "Gris", Tipo.EXTERNO, duenio));
+    {
+      List<Ficha> fichas = contratosIndex.buscarFicha("rojo");
+      Assertions.assertEquals(2, fichas.size());
+      Assertions.assertEquals(ficha.getId(), fichas.get(0).getId());
+      Assertions.assertEquals(otra.getId(), fichas.get(1).getId());
+    }
+    {
+      //Rut exacto (sin digito verificador) y substring del rut: una vez cada ficha.
+      List<Ficha> fichas = contratosIndex.buscarFicha("15123456");
+      Assertions.assertEquals(2, fichas.size());
+      Assertions.assertEquals(1, contratosIndex.buscarFicha("15123456", 1, FetchProfile.LAZY)
+              .size());
+    }
+    {
+      //Numero exacto primero.
+      List<Ficha> fichas = contratosIndex.buscarFicha("7002");
+      Assertions.assertEquals(otra.getId(), fichas.get(0).getId());
+    }
+
+    //Un contrato nuevo sobre la misma base reconstruye el indice.
+    Contratos reabierto = new ContratosImpl("jdbc:h2:mem:fivet_index");
+    Assertions.assertEquals(ficha.getId(), reabierto.buscarFicha("nandu").get(0).getId());
+  }
+
+  /**
+   * Testing de las sugerencias por prefijo.
+   */
+  @Test
+  public void testSugerir() {
+
+    Contratos contratosSuggest = new ContratosImpl("jdbc:h2:mem:fivet_suggest");
+
+    Persona duenio = contratosSuggest.registrarPersona(new Persona("José", "Muñoz",
+            rut(16123456), "Fake 123", 55225544, 948931276, "jmunoz@gmail.com"));
+    for (int i = 0; i < 20; i++) {
+      contratosSuggest.registrarPaciente(new Ficha(8000L + i, "Rocky " + (char) ('a' + i),
+              "Canino", ZonedDateTime.now(), "Quiltro", Sexo.MACHO, "Cafe", Tipo.EXTERNO,
+              duenio));
+    }
+
+    //Nombre y apellido de la persona, sin acentos.
+    List<Sugerencia> sugerencias = contratosSuggest.sugerir("mun", 10);
+    Assertions.assertEquals(1, sugerencias.size());
+    Assertions.assertEquals("José Muñoz", sugerencias.get(0).getTexto());
+    Assertions.assertEquals(Sugerencia.Origen.PERSONA, sugerencias.get(0).getOrigen());
+    Assertions.assertEquals("José Muñoz", contratosSuggest.sugerir("JOSE m", 10).get(0)
+            .getTexto());
+
+    //Rut.
+    Assertions.assertEquals(Sugerencia.Origen.RUT, contratosSuggest.sugerir("1612", 10).get(0)
+            .getOrigen());
+
+    //Pacientes: a lo mas limit, en orden.
+    sugerencias = contratosSuggest.sugerir("rock", 10);
+    Assertions.assertEquals(10, sugerencias.size());
+    Assertions.assertEquals("Rocky a", sugerencias.get(0).getTexto());
+    Assertions.assertEquals("Rocky j", sugerencias.get(9).getTexto());
+
+    Assertions.assertTrue(contratosSuggest.sugerir("zz", 10).isEmpty());
+    Assertions.assertTrue(contratosSuggest.sugerir("", 10).isEmpty());
+  }
+
   /**
    * Testing registrar un control.
    */
@@ -261,6 +378,607 @@ public class TestContratosImpl {
 
   }
 
+  /**
+   * Testing de la cola de escrituras sobre SQLite con 64 clientes concurrentes.
+   */
+  @Test
+  public void testWriteQueue() throws Exception {
+
+    File db = File.createTempFile("fivet", ".db");
+    db.deleteOnExit();
+
+    Contratos contratosSqlite = new ContratosImpl("jdbc:sqlite:" + db.getAbsolutePath(),
+            PoolConfig.defaults(), true);
+
+    //Rut aun no registrado: queda en el cache negativo.
+    Assertions.assertNull(contratosSqlite.getPersonaByRut(rut(10_000_000)));
 
+    int clientes = 64;
+    ExecutorService executor = Executors.newFixedThreadPool(clientes);
+    List<Future<Persona>> futures = new ArrayList<>();
+
+    for (int i = 0; i < clientes; i++) {
+      String rut = rut(10_000_000 + i);
+      futures.add(executor.submit(() -> contratosSqlite.registrarPersona(new Persona("Dylan",
+              "Frost", rut, "Fake 541", 55229988, 998761234, "dfrost@gmail.com"))));
+    }
+
+    for (Future<Persona> future : futures) {
+      Assertions.assertNotNull(future.get().getId());
+    }
+    executor.shutdown();
+
+    Assertions.assertEquals(clientes, contratosSqlite.getAllPersonas().size());
+
+    //Rut repetido: falla solo esa escritura.
+    Assertions.assertThrows(RuntimeException.class, () -> contratosSqlite.registrarPersona(
+            new Persona("Dylan", "Frost", rut(10_000_000), "Fake 541", 55229988, 998761234,
+                    "dfrost@gmail.com")));
+
+    //Confirmadas las escrituras (o deshecha la repetida), el cache lee la persona registrada.
+    Persona registrada = contratosSqlite.getPersonaByRut(rut(10_000_000));
+    Assertions.assertNotNull(registrada);
+    Assertions.assertEquals(registrada.getRut(), contratosSqlite.getId(registrada.getId())
+            .getRut());
+  }
+
+  /**
+   * Testing del reintento de la cola de escrituras: los group commit que fallan por un rut
+   * repetido se ejecutan de a una, sin repetir los controles en la ficha en memoria.
+   */
+  @Test
+  public void testWriteQueueRetry() throws Exception {
+
+    File db = File.createTempFile("fivet", ".db");
+    db.deleteOnExit();
+
+    Contratos contratosSqlite = new ContratosImpl("jdbc:sqlite:" + db.getAbsolutePath(),
+            PoolConfig.defaults(), true);
+
+    Persona duenio = contratosSqlite.registrarPersona(new Persona("Brenda", "Lopez", "191468694",
+            "Fake 653", 55218877, 963293074, "blopez@hotmail.com"));
+    Persona vet = contratosSqlite.registrarPersona(new Persona("Mauricio", "Fuentes",
+            "206806052", "Fake 1321", 55225656, 987654321, "mfuentes@gmail.com"));
+    contratosSqlite.registrarPaciente(new Ficha(404L, "Askar", "Canino", ZonedDateTime.now(),
+            "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, duenio));
+
+    Ficha ficha = contratosSqlite.buscarFicha(duenio.getRut()).get(0);
+    Assertions.assertTrue(ficha.isControlesCargados());
+
+    //Controles mezclados con personas de rut repetido (cada una hace fallar su lote).
+    int escrituras = 100;
+    ExecutorService executor = Executors.newFixedThreadPool(64);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < escrituras; i++) {
+      futures.add(executor.submit(() -> contratosSqlite.registrarControl(new Control(
+              ZonedDateTime.now(), null, 38.5F, 10F, 30F, "Sano", vet, ficha))));
+      futures.add(executor.submit(() -> contratosSqlite.registrarPersona(new Persona("Dylan",
+              "Frost", duenio.getRut(), "Fake 541", 55229988, 998761234, "dfrost@gmail.com"))));
+    }
+
+    int fallidas = 0;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        fallidas++;
+      }
+    }
+    executor.shutdown();
+
+    Assertions.assertEquals(escrituras, fallidas);
+    Assertions.assertEquals(escrituras, contratosSqlite.getControles(404L).size());
+    Assertions.assertEquals(escrituras, ficha.getControles().size());
+  }
+
+  /**
+   * Testing de los perfiles de carga: lazy no consulta los controles ni los examenes.
+   */
+  @Test
+  public void testFetchProfile() {
+
+    Contratos contratosFetch = new ContratosImpl("jdbc:h2:mem:fivet_fetch");
+
+    Persona duenio = contratosFetch.registrarPersona(new Persona("Brenda", "Lopez", rut(19146869),
+            "Fake 653", 55218877, 963293074, "blopez@hotmail.com"));
+    Persona vet = contratosFetch.registrarPersona(new Persona("Mauricio", "Fuentes",
+            rut(20680605), "Fake 1321", 55225656, 987654321, "mfuentes@gmail.com"));
+
+    for (long numero = 1; numero <= 5; numero++) {
+      Ficha ficha = contratosFetch.registrarPaciente(new Ficha(numero, "Askar", "Canino",
+              ZonedDateTime.now(), "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, duenio));
+      Control control = contratosFetch.registrarControl(new Control(ZonedDateTime.now(), null,
+              36.2F, 10F, 30F, "Obesidad", vet, ficha));
+      contratosFetch.registrarExamen(new Examen("Cardiologia", ZonedDateTime.now(), control));
+    }
+
+    QueryCounter.reset();
+    List<Ficha> lazy = contratosFetch.getFichas(null, 10, FetchProfile.LAZY);
+    long lazyQueries = QueryCounter.get();
+
+    QueryCounter.reset();
+    List<Ficha> eager = contratosFetch.getFichas(null, 10, FetchProfile.EAGER);
+    long eagerQueries = QueryCounter.get();
+
+    log.info(() -> "Queries lazy: " + lazyQueries + ", eager: " + eagerQueries);
+
+    Assertions.assertEquals(5, lazy.size());
+    Assertions.assertEquals(5, eager.size());
+    Assertions.assertTrue(lazyQueries > 0);
+    Assertions.assertTrue(lazyQueries < eagerQueries);
+
+    //Carga en lote: fichas + personas, y controles + examenes con el perfil eager.
+    Assertions.assertEquals(2, lazyQueries);
+    Assertions.assertTrue(eagerQueries <= 4, "Queries eager: " + eagerQueries);
+
+    //Una sola instancia por persona en todo el grafo.
+    for (Ficha ficha : eager) {
+      Assertions.assertSame(eager.get(0).getDuenio(), ficha.getDuenio());
+      Assertions.assertEquals(duenio.getRut(), ficha.getDuenio().getRut());
+      Assertions.assertSame(ficha.getControles().iterator().next().getVeterinario(),
+              eager.get(0).getControles().iterator().next().getVeterinario());
+    }
+
+    //Con el perfil eager las colecciones ya estan cargadas: no hay mas consultas.
+    QueryCounter.reset();
+    for (Ficha ficha : eager) {
+      Assertions.assertEquals(1, ficha.getControles().size());
+      for (Control control : ficha.getControles()) {
+        Assertions.assertEquals(1, control.getExamenes().size());
+      }
+    }
+    Assertions.assertEquals(0, QueryCounter.get());
+
+    //Include desde la peticion.
+    Assertions.assertTrue(FetchProfile.of("controles").isControles());
+    Assertions.assertFalse(FetchProfile.of("controles").isExamenes());
+    Assertions.assertTrue(FetchProfile.of("examenes").isControles());
+    Assertions.assertFalse(FetchProfile.of(null).isControles());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> FetchProfile.of("duenio"));
+  }
+
+  /**
+   * Testing de la agenda de proximos controles.
+   */
+  @Test
+  public void testProximosControles() {
+
+    Contratos contratosAgenda = new ContratosImpl("jdbc:h2:mem:fivet_agenda");
+
+    Persona duenio = contratosAgenda.registrarPersona(new Persona("Brenda", "Lopez", rut(19146869),
+            "Fake 653", 55218877, 963293074, "blopez@hotmail.com"));
+    Persona vet = contratosAgenda.registrarPersona(new Persona("Mauricio", "Fuentes",
+            rut(20680605), "Fake 1321", 55225656, 987654321, "mfuentes@gmail.com"));
+
+    //Un control por dia durante 30 dias, con offsets distintos, y uno sin proximo control.
+    ZonedDateTime ahora = ZonedDateTime.now();
+    for (long numero = 1; numero <= 30; numero++) {
+      Ficha ficha = contratosAgenda.registrarPaciente(new Ficha(numero, "Askar " + numero,
+              "Canino", ahora, "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, duenio));
+      ZonedDateTime proximo = ahora.plusDays(31 - numero)
+              .withZoneSameInstant(ZoneOffset.ofHours((int) (numero % 5) * 3 - 6));
+      contratosAgenda.registrarControl(new Control(ahora, proximo, 36.2F, 10F, 30F,
+              "Obesidad", vet, ficha));
+    }
+    Ficha sinProximo = contratosAgenda.registrarPaciente(new Ficha(31L, "Rhea", "Felino", ahora,
+            "Siames", Sexo.HEMBRA, "Gris", Tipo.EXTERNO, duenio));
+    contratosAgenda.registrarControl(new Control(ahora, null, 36.2F, 4F, 20F, "Sano", vet,
+            sinProximo));
+
+    //Proxima semana: dias 1 a 7 (fichas 30 a 24).
+    QueryCounter.reset();
+    List<Control> semana = contratosAgenda.getProximosControles(ahora.plusHours(1),
+            ahora.plusDays(7), 100);
+    long queries = QueryCounter.get();
+
+    Assertions.assertEquals(7, semana.size());
+    Assertions.assertTrue(queries <= 3, "Queries: " + queries);
+    for (int i = 0; i < semana.size(); i++) {
+      Control control = semana.get(i);
+      Assertions.assertEquals(30L - i, control.getFicha().getNumero());
+      Assertions.assertEquals("Askar " + (30 - i), control.getFicha().getNombre());
+      Assertions.assertEquals(duenio.getRut(), control.getFicha().getDuenio().getRut());
+      Assertions.assertEquals(vet.getRut(), control.getVeterinario().getRut());
+      Assertions.assertEquals(ahora.plusDays(i + 1).toInstant().toEpochMilli(),
+              control.getProximoControl().toInstant().toEpochMilli());
+      if (i > 0) {
+        Assertions.assertFalse(control.getProximoControl()
+                .isBefore(semana.get(i - 1).getProximoControl()));
+      }
+    }
+
+    //Limites inclusivos y limit.
+    Assertions.assertEquals(1, contratosAgenda.getProximosControles(ahora.plusDays(3),
+            ahora.plusDays(3), 100).size());
+    Assertions.assertEquals(2, contratosAgenda.getProximosControles(ahora, ahora.plusYears(1),
+            2).size());
+    Assertions.assertEquals(30, contratosAgenda.getProximosControles(ahora, ahora.plusYears(1),
+            100).size());
+    Assertions.assertEquals(0, contratosAgenda.getProximosControles(ahora.minusDays(7), ahora,
+            100).size());
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> contratosAgenda.getProximosControles(ahora, ahora.minusDays(1), 10));
+  }
+
+  /**
+   * Test de la busqueda de fichas por numero, con cache (incluidos los numeros inexistentes).
+   */
+  @Test
+  public void testFichaByNumero() {
+
+    Contratos contratosNumero = new ContratosImpl("jdbc:h2:mem:fivet_numero");
+
+    Persona duenio = contratosNumero.registrarPersona(new Persona("Brenda", "Lopez",
+            rut(19146869), "Fake 653", 55218877, 963293074, "blopez@hotmail.com"));
+    Persona vet = contratosNumero.registrarPersona(new Persona("Mauricio", "Fuentes",
+            rut(20680605), "Fake 1321", 55225656, 987654321, "mfuentes@gmail.com"));
+    Ficha ficha = contratosNumero.registrarPaciente(new Ficha(10L, "Askar", "Canino",
+            ZonedDateTime.now(), "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, duenio));
+    contratosNumero.registrarControl(new Control(ZonedDateTime.now(), null, 36.2F, 10F, 30F,
+            "Obesidad", vet, ficha));
+
+    //Primera busqueda a la base de datos, la segunda desde el cache.
+    Assertions.assertEquals("Askar", contratosNumero.getFichaByNumero(10L).getNombre());
+    Assertions.assertEquals(duenio.getRut(), contratosNumero.getDuenioOfFicha(10).getRut());
+    QueryCounter.reset();
+    Assertions.assertEquals(ficha.getId(), contratosNumero.getFichaByNumero(10L).getId());
+    Assertions.assertEquals(duenio.getRut(), contratosNumero.getDuenioOfFicha(10).getRut());
+    Assertions.assertEquals(0, QueryCounter.get());
+
+    //Los controles se cargan en una copia, no en la ficha del cache.
+    Assertions.assertEquals(1, contratosNumero.getControles(10L).size());
+    Assertions.assertEquals(1, contratosNumero.getControles(10L).size());
+
+    //Cada control incluye su ficha (con su duenio), sin volver a la lista de controles.
+    Control control = contratosNumero.getControles(10L).get(0);
+    Assertions.assertEquals("Askar", control.getFicha().getNombre());
+    Assertions.assertEquals(duenio.getRut(), control.getFicha().getDuenio().getRut());
+    Assertions.assertFalse(control.getFicha().isControlesCargados());
+    String json = new JsonMapper(false).toJson(control);
+    Assertions.assertTrue(json.contains("\"ficha\":{\"id\":" + ficha.getId() + ",\"numero\":10,"
+            + "\"nombre\":\"Askar\""), json);
+    Assertions.assertTrue(json.contains("\"rut\":\"" + duenio.getRut() + "\""), json);
+
+    //Un numero inexistente retorna null, y la segunda vez no consulta la base de datos.
+    Assertions.assertNull(contratosNumero.getFichaByNumero(99L));
+    QueryCounter.reset();
+    Assertions.assertNull(contratosNumero.getFichaByNumero(99L));
+    Assertions.assertNull(contratosNumero.getControles(99L));
+    Assertions.assertNull(contratosNumero.getDuenioOfFicha(99));
+    Assertions.assertEquals(0, QueryCounter.get());
+    Assertions.assertNull(contratosNumero.getFichaByNumero(null));
+
+    //Registrada la ficha, el numero deja de estar en el cache negativo.
+    contratosNumero.registrarPaciente(new Ficha(99L, "Rhea", "Felino", ZonedDateTime.now(),
+            "Siames", Sexo.HEMBRA, "Gris", Tipo.EXTERNO, duenio));
+    Assertions.assertEquals("Rhea", contratosNumero.getFichaByNumero(99L).getNombre());
+    Assertions.assertEquals(0, contratosNumero.getControles(99L).size());
+  }
+
+  /**
+   * Test de las versiones de los datos: cada escritura aumenta solo la version de su clase.
+   */
+  @Test
+  public void testVersion() {
+
+    Contratos contratosVersion = new ContratosImpl("jdbc:h2:mem:fivet_version");
+    Assertions.assertEquals(0, contratosVersion.getVersion(Ficha.class, Persona.class,
+            Control.class, Examen.class));
+
+    Persona duenio = contratosVersion.registrarPersona(new Persona("Brenda", "Lopez",
+            rut(19146869), "Fake 653", 55218877, 963293074, "blopez@hotmail.com"));
+    Assertions.assertEquals(1, contratosVersion.getVersion(Persona.class));
+    Assertions.assertEquals(0, contratosVersion.getVersion(Ficha.class));
+
+    contratosVersion.registrarPaciente(new Ficha(1L, "Askar", "Canino", ZonedDateTime.now(),
+            "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, duenio));
+    Assertions.assertEquals(1, contratosVersion.getVersion(Ficha.class));
+    Assertions.assertEquals(1, contratosVersion.getVersion(Persona.class));
+    Assertions.assertEquals(2, contratosVersion.getVersion(Ficha.class, Persona.class));
+    Assertions.assertEquals(0, contratosVersion.getVersion(Control.class, Examen.class));
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> contratosVersion.getVersion(String.class));
+  }
+
+  /**
+   * Test del JSON del modelo: compacto, colecciones solo si estan cargadas y escritura en stream.
+   */
+  @Test
+  public void testJsonMapper() throws Exception {
+
+    Contratos contratosJson = new ContratosImpl("jdbc:h2:mem:fivet_json");
+
+    Persona duenio = contratosJson.registrarPersona(new Persona("Brenda", "Lopez",
+            rut(19146869), "Fake 653", 55218877, 963293074, "blopez@hotmail.com"));
+    Persona vet = contratosJson.registrarPersona(new Persona("Mauricio", "Fuentes",
+            rut(20680605), "Fake 1321", 55225656, 987654321, "mfuentes@gmail.com"));
+    ZonedDateTime nacimiento = ZonedDateTime.parse("2015-03-04T10:15:30-03:00");
+    Ficha ficha = contratosJson.registrarPaciente(new Ficha(1L, "Askar", "Canino", nacimiento,
+            "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, duenio));
+    Control control = contratosJson.registrarControl(new Control(ZonedDateTime.now(), null,
+            36.2F, 10F, 30F, "Obesidad", vet, ficha));
+    contratosJson.registrarExamen(new Examen("Hemograma", ZonedDateTime.now(), control));
+
+    JsonMapper compacto = new JsonMapper(false);
+    JsonMapper pretty = new JsonMapper(true);
+
+    //Sin colecciones: no se consultan ni se escriben.
+    Ficha lazy = contratosJson.getFichas(null, 10, FetchProfile.LAZY).get(0);
+    QueryCounter.reset();
+    String json = compacto.toJson(lazy);
+    Assertions.assertEquals(0, QueryCounter.get());
+    Assertions.assertFalse(json.contains("\n"));
+    Assertions.assertFalse(json.contains("controles"));
+    Assertions.assertTrue(json.contains("\"fechaNacimiento\":\"2015-03-04T10:15:30-03:00\""), json);
+    Assertions.assertTrue(json.contains("\"sexo\":\"MACHO\""), json);
+    Assertions.assertTrue(json.contains("\"rut\":\"" + duenio.getRut() + "\""), json);
+    Assertions.assertTrue(pretty.toJson(lazy).contains("\n"));
+
+    //Con controles y examenes.
+    Ficha eager = contratosJson.getFichas(null, 10, FetchProfile.EAGER).get(0);
+    json = compacto.toJson(eager);
+    Assertions.assertTrue(json.contains("\"diagnostico\":\"Obesidad\""), json);
+    Assertions.assertTrue(json.contains("\"nombre\":\"Hemograma\""), json);
+    Assertions.assertTrue(json.contains("\"veterinario\":{\"id\":" + vet.getId()), json);
+
+    //En stream, igual que como String.
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    List<Ficha> fichas = new ArrayList<>();
+    fichas.add(eager);
+    fichas.add(lazy);
+    compacto.writeArray(out, fichas.stream());
+    Assertions.assertEquals(compacto.toJson(fichas), out.toString("UTF-8"));
+
+    //Lectura con el constructor (validado).
+    Persona leida = compacto.fromJson(compacto.toJson(duenio), Persona.class);
+    Assertions.assertEquals(duenio.getRut(), leida.getRut());
+    Assertions.assertEquals(duenio.getTelefonoMovil(), leida.getTelefonoMovil());
+    Ficha fichaLeida = compacto.fromJson(compacto.toJson(lazy), Ficha.class);
+    Assertions.assertEquals(nacimiento.toInstant(), fichaLeida.getFechaNacimiento().toInstant());
+    Assertions.assertEquals(Tipo.EXTERNO, fichaLeida.getTipo());
+  }
+
+  /**
+   * Test de los campos pedidos (sparse fieldsets): solo se leen esas columnas y colecciones.
+   */
+  @Test
+  public void testFieldSet() {
+
+    Contratos contratosFields = new ContratosImpl("jdbc:h2:mem:fivet_fields");
+
+    Persona duenio = contratosFields.registrarPersona(new Persona("Brenda", "Lopez",
+            rut(19146869), "Fake 653", 55218877, 963293074, "blopez@hotmail.com"));
+    Persona vet = contratosFields.registrarPersona(new Persona("Mauricio", "Fuentes",
+            rut(20680605), "Fake 1321", 55225656, 987654321, "mfuentes@gmail.com"));
+    Ficha ficha = contratosFields.registrarPaciente(new Ficha(7L, "Askar", "Canino",
+            ZonedDateTime.now(), "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, duenio));
+    contratosFields.registrarControl(new Control(ZonedDateTime.now(), null, 36.2F, 10F, 30F,
+            "Obesidad", vet, ficha));
+
+    //Solo el numero y el email del duenio: sin controles aunque se pidan en include.
+    QueryCounter.reset();
+    Ficha sparse = contratosFields.getFichas(null, 10, FetchProfile.EAGER,
+            FieldSet.of("numero,duenio.email")).get(0);
+    Assertions.assertEquals(2, QueryCounter.get());
+    Assertions.assertEquals(ficha.getId(), sparse.getId());
+    Assertions.assertEquals(7L, sparse.getNumero());
+    Assertions.assertNull(sparse.getNombre());
+    Assertions.assertFalse(sparse.isControlesCargados());
+    Assertions.assertEquals(duenio.getEmail(), sparse.getDuenio().getEmail());
+    Assertions.assertNull(sparse.getDuenio().getNombre());
+    Assertions.assertEquals("{\"id\":" + ficha.getId() + ",\"numero\":7,\"duenio\":{\"id\":"
+            + duenio.getId() + ",\"email\":\"" + duenio.getEmail() + "\"}}",
+            new JsonMapper(false).toJson(sparse));
+
+    //Sin duenio no se consulta la tabla Persona.
+    QueryCounter.reset();
+    try (Stream<Ficha> fichas = contratosFields.streamFichas(FetchProfile.LAZY,
+            FieldSet.of("nombre"))) {
+      Ficha soloNombre = fichas.findFirst().get();
+      Assertions.assertEquals("Askar", soloNombre.getNombre());
+      Assertions.assertNull(soloNombre.getDuenio());
+    }
+    Assertions.assertEquals(1, QueryCounter.get());
+
+    //Los controles se cargan si estan en fields, con el veterinario completo.
+    Ficha conControles = contratosFields.getFichas(null, 10, FetchProfile.LAZY,
+            FieldSet.of("controles,duenio.nombre")).get(0);
+    Assertions.assertTrue(conControles.isControlesCargados());
+    Assertions.assertEquals(1, conControles.getControles().size());
+    Assertions.assertEquals(vet.getRut(),
+            conControles.getControles().iterator().next().getVeterinario().getRut());
+    Assertions.assertNull(conControles.getDuenio().getRut());
+
+    //Todos los campos: igual que sin fields.
+    Assertions.assertEquals(duenio.getRut(), contratosFields.getFichas(null, 10,
+            FetchProfile.LAZY, FieldSet.of(null)).get(0).getDuenio().getRut());
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> FieldSet.of("numero,peso"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> FieldSet.of("duenio.foo"));
+  }
+
+  /**
+   * Test de la busqueda por rut: con o sin puntos y guion, sobre la forma canonica.
+   */
+  @Test
+  public void testPersonaByRut() {
+
+    Contratos contratosRut = new ContratosImpl("jdbc:h2:mem:fivet_rut");
+
+    //Se guarda en forma canonica.
+    Persona persona = contratosRut.registrarPersona(new Persona("Gerald", "Lopez",
+            "21.195.194-k", "Fake 653", 55218877, 963293074, "glopez@gmail.com"));
+    Assertions.assertEquals("21195194K", persona.getRut());
+
+    Assertions.assertEquals(persona.getId(), contratosRut.getPersonaByRut("21195194K").getId());
+    Assertions.assertEquals(persona.getId(), contratosRut.getPersonaByRut("21195194-k").getId());
+    Assertions.assertEquals(persona.getId(),
+            contratosRut.getPersonaByRut("21.195.194-K").getId());
+    Assertions.assertNull(contratosRut.getPersonaByRut("152532873"));
+    Assertions.assertNull(contratosRut.getPersonaByRut("21.195.194-1"));
+    Assertions.assertNull(contratosRut.getPersonaByRut(null));
+
+    //La busqueda de fichas tambien acepta el rut con puntos y guion.
+    contratosRut.registrarPaciente(new Ficha(1L, "Askar", "Canino", ZonedDateTime.now(),
+            "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, persona));
+    Assertions.assertEquals(1, contratosRut.buscarFicha("21.195.194-K").size());
+  }
+
+  /**
+   * Testing the synthetic dataset generator.
+   */
+  @Test
+  public void testDatasetGenerator() throws Exception {
+
+    ZonedDateTime hoy = ZonedDateTime.now();
+    DatasetGenerator generator = new DatasetGenerator(7, 1_000, hoy);
+
+    //Determinista: la misma semilla genera las mismas filas.
+    DatasetGenerator otro = new DatasetGenerator(7, 1_000, hoy);
+    Assertions.assertEquals(generator.persona(42).getEmail(), otro.persona(42).getEmail());
+    Assertions.assertEquals(generator.ficha(500).getFechaNacimiento(),
+            otro.ficha(500).getFechaNacimiento());
+    Assertions.assertNotEquals(generator.persona(42).getTelefonoMovil(),
+            new DatasetGenerator(8, 1_000, hoy).persona(42).getTelefonoMovil());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> generator.ficha(1_001));
+
+    //Datos validos.
+    for (long id = 1; id <= generator.getPersonas(); id++) {
+      Persona persona = generator.persona(id);
+      Assertions.assertTrue(Validation.isRutValid(persona.getRut()));
+      Assertions.assertTrue(Validation.isEmailValid(persona.getEmail()));
+    }
+
+    ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:fivet_dataset");
+    Map<String, Long> filas = generator.load(connectionSource, 128);
+    Assertions.assertEquals(generator.getPersonas(), filas.get("Persona"));
+    Assertions.assertEquals(1_000L, filas.get("Ficha"));
+    Assertions.assertTrue(filas.get("Control") > 0);
+    Assertions.assertTrue(filas.get("Examen") > 0);
+
+    //Se lee lo mismo que se genero.
+    Contratos contratosDataset = new ContratosImpl(connectionSource);
+    Ficha ficha = contratosDataset.getFichaByNumero(500L);
+    Assertions.assertEquals(generator.ficha(500).getNombre(), ficha.getNombre());
+    Assertions.assertEquals(generator.ficha(500).getFechaNacimiento().toInstant(),
+            ficha.getFechaNacimiento().toInstant());
+    Persona duenio = contratosDataset.getPersonaByRut(generator.rut(generator.getDuenioId(500)));
+    Assertions.assertEquals(generator.getDuenioId(500), duenio.getId());
+    Assertions.assertEquals(duenio.getId(), contratosDataset.getDuenioOfFicha(500).getId());
+    for (Control control : contratosDataset.getControles(500L)) {
+      Assertions.assertTrue(control.getFecha().isBefore(hoy));
+      Assertions.assertTrue(control.getVeterinario().getId() <= generator.getVeterinarios());
+    }
+    Assertions.assertEquals(DatasetGenerator.FICHAS_POR_DUENIO, contratosDataset.buscarFicha(
+            generator.rut(generator.getDuenioId(999))).size());
+
+    //Los nuevos registros siguen a los ids generados.
+    Persona nueva = contratosDataset.registrarPersona(new Persona("Gerald", "Lopez",
+            "152532873", "Fake 653", 55218877, 963293074, "glopez@gmail.com"));
+    Assertions.assertEquals(generator.getPersonas() + 1, nueva.getId());
+
+    //Solo se carga en una base de datos vacia.
+    Assertions.assertThrows(IllegalStateException.class, () -> generator.load(connectionSource));
+  }
+
+  /**
+   * Testing del recorrido de fichas con un pool de una sola conexion: cada pagina y sus
+   * relaciones se cargan sin tomar una segunda conexion.
+   */
+  @Test
+  public void testStreamFichasPool() throws Exception {
+
+    String url = "jdbc:h2:mem:fivet_stream_pool;DB_CLOSE_DELAY=-1";
+    DatasetGenerator generator = new DatasetGenerator(7, 600, ZonedDateTime.now());
+    try (ConnectionSource connectionSource = new JdbcConnectionSource(url)) {
+      generator.load(connectionSource);
+    }
+
+    Contratos contratosPool = new ContratosImpl(url, new PoolConfig(1, 1, 60_000, "SELECT 1",
+            2_000), false);
+
+    try (Stream<Ficha> fichas = contratosPool.streamFichas(FetchProfile.LAZY)) {
+      Assertions.assertEquals(600, fichas.count());
+    }
+
+    //Con controles y examenes, en orden de id y con el duenio cargado.
+    long controles = 0;
+    long anterior = 0;
+    try (Stream<Ficha> fichas = contratosPool.streamFichas(FetchProfile.EAGER)) {
+      for (Ficha ficha : (Iterable<Ficha>) fichas::iterator) {
+        Assertions.assertTrue(ficha.getId() > anterior);
+        Assertions.assertNotNull(ficha.getDuenio().getRut());
+        anterior = ficha.getId();
+        controles += ficha.getControles().size();
+      }
+    }
+    Assertions.assertEquals(600L, anterior);
+    Assertions.assertTrue(controles > 0);
+  }
+
+  /**
+   * Test de los tiempos por etapa de una peticion (header Server-Timing).
+   */
+  @Test
+  @SuppressWarnings("try")
+  public void testRequestTiming() throws Exception {
+
+    Contratos contratosTiming = new ContratosImpl("jdbc:h2:mem:fivet_timing");
+    Persona duenio = contratosTiming.registrarPersona(new Persona("Brenda", "Lopez",
+            rut(19146869), "Fake 653", 55218877, 963293074, "blopez@hotmail.com"));
+
+    //Base de datos: sentencias (sql) y conversion de filas (db), medidas en el hilo actual.
+    QueryCounter.reset();
+    RequestTiming.reset();
+    Ficha ficha = contratosTiming.registrarPaciente(new Ficha(1L, "Askar", "Canino",
+            ZonedDateTime.now(), "Pastor belga", Sexo.MACHO, "Negro", Tipo.EXTERNO, duenio));
+    contratosTiming.getControles(1L);
+    Assertions.assertTrue(QueryCounter.get() > 0);
+    Assertions.assertTrue(RequestTiming.get(RequestTiming.Stage.SQL) > 0);
+    Assertions.assertTrue(RequestTiming.get(RequestTiming.Stage.DB) > 0);
+    Assertions.assertEquals(0, RequestTiming.get(RequestTiming.Stage.WRITE));
+    Assertions.assertEquals(0, RequestTiming.get(RequestTiming.Stage.SERIALIZE));
+
+    //Serializacion: tiempo y bytes escritos.
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonMapper.get().write(out, ficha);
+    Assertions.assertTrue(RequestTiming.get(RequestTiming.Stage.SERIALIZE) > 0);
+    Assertions.assertEquals(out.size(), RequestTiming.getBytes());
+
+    //Las etapas no se solapan: la interna se descuenta de la externa.
+    RequestTiming.reset();
+    try (RequestTiming.Timer db = RequestTiming.start(RequestTiming.Stage.DB)) {
+      try (RequestTiming.Timer sql = RequestTiming.start(RequestTiming.Stage.SQL)) {
+        Thread.sleep(20);
+      }
+    }
+    long sql = RequestTiming.get(RequestTiming.Stage.SQL);
+    Assertions.assertTrue(sql >= 20_000_000);
+    Assertions.assertTrue(RequestTiming.get(RequestTiming.Stage.DB) < sql);
+    Assertions.assertTrue(RequestTiming.get(RequestTiming.Stage.DB) + sql
+            <= RequestTiming.getTotal());
+
+    String header = RequestTiming.header(3);
+    Assertions.assertTrue(header.matches("total;dur=\\d+\\.\\d{2}, "
+            + "db;dur=\\d{2,}\\.\\d{2};count=3, sql;dur=\\d{2,}\\.\\d{2}, "
+            + "hydrate;dur=\\d+\\.\\d{2}, write;dur=0\\.00, serialize;dur=0\\.00, "
+            + "bytes;size=0"), header);
+  }
+
+  /**
+   * Construye un rut valido (cuerpo + digito verificador).
+   * @param cuerpo del rut.
+   * @return el rut.
+   */
+  private static String rut(int cuerpo) {
+    int m = 0;
+    int s = 1;
+    for (int t = cuerpo; t != 0; t /= 10) {
+      s = (s + t % 10 * (9 - m++ % 6)) % 11;
+    }
+    return cuerpo + ((s > 0) ? String.valueOf(s - 1) : "k");
+  }
 
 }
@@ -28,10 +28,12 @@ import checkers.units.quals.A;
 import checkers.units.quals.C;
 import cl.ucn.disc.pdbp.tdd.model.*;
 import cl.ucn.disc.pdbp.tdd.utils.Entity;
+import cl.ucn.disc.pdbp.tdd.utils.Validation;
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
 import com.j256.ormlite.table.TableUtils;
 import javafx.scene.control.Tab;
 import org.junit.jupiter.api.Assertions;
@@ -39,10 +41,23 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * Storage Test
@@ -344,4 +359,448 @@ public final class StorageTest {
 
   }
 
+  /**
+   * Test del pool de conexiones acotado.
+   */
+  @Test
+  public void testPooledConnectionSource() throws SQLException, IOException {
+
+    PoolConfig config = new PoolConfig(1, 2, 60_000L, "SELECT 1", 100L);
+
+    try (PooledConnectionSource pool = new PooledConnectionSource("jdbc:h2:mem:fivet_pool", config)) {
+
+      //Las conexiones iniciales.
+      Assertions.assertEquals(1, pool.getCurrentConnectionsFree(), "Conexiones iniciales != 1");
+
+      //Se agotan los permisos.
+      DatabaseConnection c1 = pool.getReadWriteConnection(null);
+      DatabaseConnection c2 = pool.getReadWriteConnection(null);
+      Assertions.assertEquals(2, pool.getActiveCount());
+      Assertions.assertThrows(SQLException.class, () -> pool.getReadWriteConnection(null));
+      Assertions.assertEquals(1, pool.getAcquireTimeoutCount());
+
+      //Se liberan.
+      pool.releaseConnection(c1);
+      pool.releaseConnection(c2);
+      Assertions.assertEquals(0, pool.getActiveCount());
+
+      //El repositorio funciona sobre el pool.
+      TableUtils.createTableIfNotExists(pool, Persona.class);
+      Repository<Persona, Long> theRepo = new RepositoryOrmLite<>(pool, Persona.class);
+      Assertions.assertTrue(theRepo.create(new Persona("Gerald", "Lopez", "152532873", "Falsa 123",
+              55221234,912345678, "gerald.lopez@gmail.com")));
+      Assertions.assertEquals(1, theRepo.findAll().size());
+      Assertions.assertEquals(0, pool.getActiveCount(), "Conexion sin liberar");
+
+      log.debug("Pool: {}", pool);
+    }
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new PoolConfig(3, 2, 1L, null, 1L));
+  }
+
+  /**
+   * Test de las operaciones masivas del repositorio.
+   */
+  @Test
+  public void testRepositoryBatch() {
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:fivet_batch")) {
+
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+
+      //Lotes de 2 elementos.
+      Repository<Persona, Long> theRepo = new RepositoryOrmLite<>(connectionSource, Persona.class, 2);
+
+      List<Persona> personas = Arrays.asList(
+              new Persona("Dylan","Frost", "247305335","Fake 541", 55229988, 998761234,"dfrost@gmail.com"),
+              new Persona("Brenda", "Lopez","191468694","Fake 653", 55218877, 963293074,"blopez@hotmail.com"),
+              new Persona("Mauro","Fuentes","198774081","Fake 123", 55225544, 948931276, "mfuentes@gmail.com"));
+
+      Assertions.assertEquals(Arrays.asList(true, true, true), theRepo.createAll(personas));
+      Assertions.assertEquals(3, theRepo.findAll().size(), "Size != 3");
+      Assertions.assertNotNull(personas.get(2).getId());
+
+      Assertions.assertEquals(Arrays.asList(true, true, true), theRepo.updateAll(personas));
+
+      //Un id inexistente no borra nada.
+      Assertions.assertEquals(Arrays.asList(true, false),
+              theRepo.deleteAll(Arrays.asList(personas.get(0).getId(), 999L)));
+      Assertions.assertEquals(2, theRepo.findAll().size(), "Size != 2");
+
+      //Rut repetido: se deshace toda la transaccion.
+      Assertions.assertThrows(RuntimeException.class, () -> theRepo.createAll(Arrays.asList(
+              new Persona("Gerald", "Lopez", "152532873", "Falsa 123", 55221234, 912345678, "gerald.lopez@gmail.com"),
+              new Persona("Gerald", "Lopez", "152532873", "Falsa 123", 55221234, 912345678, "gerald.lopez@gmail.com"))));
+      Assertions.assertEquals(2, theRepo.findAll().size(), "Size != 2");
+
+    } catch (IOException | SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Test de la paginacion por llave del repositorio.
+   */
+  @Test
+  public void testRepositoryPage() {
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:fivet_page")) {
+
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+      Repository<Persona, Long> theRepo = new RepositoryOrmLite<>(connectionSource, Persona.class);
+
+      List<Persona> personas = Arrays.asList(
+              new Persona("Brenda", "Lopez","191468694","Fake 653", 55218877, 963293074,"blopez@hotmail.com"),
+              new Persona("Mauro","Fuentes","198774081","Fake 123", 55225544, 948931276, "mfuentes@gmail.com"));
+      Assertions.assertEquals(Arrays.asList(true, true), theRepo.createAll(personas));
+
+      List<Persona> pagina = theRepo.findPage(null, 1);
+      Assertions.assertEquals(1, pagina.size());
+      Assertions.assertEquals(personas.get(0).getId(), pagina.get(0).getId());
+
+      pagina = theRepo.findPage(pagina.get(0).getId(), 10);
+      Assertions.assertEquals(1, pagina.size());
+      Assertions.assertEquals(personas.get(1).getId(), pagina.get(0).getId());
+
+      Assertions.assertEquals(0, theRepo.findPage(personas.get(1).getId(), 10).size());
+
+    } catch (IOException | SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Test del recorrido del repositorio sin materializar la lista.
+   */
+  @Test
+  public void testRepositoryStream() {
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:fivet_stream")) {
+
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+      Repository<Persona, Long> theRepo = new RepositoryOrmLite<>(connectionSource, Persona.class);
+
+      Assertions.assertEquals(Arrays.asList(true, true), theRepo.createAll(Arrays.asList(
+              new Persona("Brenda", "Lopez","191468694","Fake 653", 55218877, 963293074,"blopez@hotmail.com"),
+              new Persona("Mauro","Fuentes","198774081","Fake 123", 55225544, 948931276, "mfuentes@gmail.com"))));
+
+      try (Stream<Persona> stream = theRepo.stream()) {
+        Assertions.assertEquals(2, stream.count(), "Stream != 2");
+      }
+
+    } catch (IOException | SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Test de {@link ZonedDateTimeMillisType} y la migracion de fechas ISO en SQLite.
+   */
+  @Test
+  public void testZonedDateTimeMillis() throws Exception {
+
+    //Ida y vuelta, con offsets y antes de 1970.
+    for (String iso : Arrays.asList("2020-07-01T10:15:30.123-04:00", "1950-01-31T23:59:59Z",
+            "2020-07-01T15:30+05:30", "2020-03-01T00:00-04:56:02")) {
+      ZonedDateTime fecha = ZonedDateTime.parse(iso);
+      ZonedDateTime db = ZonedDateTimeMillisType.decode(ZonedDateTimeMillisType.encode(fecha));
+      Assertions.assertEquals(fecha, db, iso);
+    }
+
+    //El orden numerico es el orden cronologico, sin importar el offset.
+    Assertions.assertTrue(ZonedDateTimeMillisType.encode(ZonedDateTime.parse("2020-07-01T15:30+05:30"))
+            < ZonedDateTimeMillisType.encode(ZonedDateTime.parse("2020-07-01T10:00-04:00")));
+
+    File file = File.createTempFile("fivet", ".db");
+    file.deleteOnExit();
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:sqlite:" + file.getAbsolutePath())) {
+
+      //Tabla con el esquema antiguo (fechas como texto).
+      Dao<Examen, Long> dao = DaoManager.createDao(connectionSource, Examen.class);
+      dao.executeRawNoArgs("CREATE TABLE `Examen` (`id` INTEGER PRIMARY KEY AUTOINCREMENT, "
+              + "`nombre` VARCHAR NOT NULL, `fecha` VARCHAR(64) NOT NULL, `control_id` BIGINT NOT NULL)");
+      dao.executeRaw("INSERT INTO `Examen` VALUES (1, 'Hemograma', '2020-07-01T10:00:00-04:00', 1)");
+      dao.executeRaw("INSERT INTO `Examen` VALUES (2, 'Radiografia', '2020-07-01T12:00:00Z', 1)");
+      dao.executeRaw("INSERT INTO `Examen` VALUES (5, 'Ecografia', '2020-07-01T15:30:00+05:30', 2)");
+
+      Assertions.assertEquals(3, ZonedDateTimeMigration.migrate(connectionSource, Examen.class));
+      Assertions.assertEquals(0, ZonedDateTimeMigration.migrate(connectionSource, Examen.class));
+      Assertions.assertEquals(3, dao.queryRawValue("SELECT COUNT(*) FROM `Examen` WHERE typeof(`fecha`) = 'integer'"));
+
+      //Orden cronologico.
+      List<Examen> examenes = dao.queryBuilder().orderBy("fecha", true).query();
+      Assertions.assertEquals(Arrays.asList("Ecografia", "Radiografia", "Hemograma"), Arrays.asList(examenes.get(0).getNombre(),
+              examenes.get(1).getNombre(), examenes.get(2).getNombre()));
+      Assertions.assertEquals(5L, examenes.get(0).getId());
+      Assertions.assertEquals(ZonedDateTime.parse("2020-07-01T10:00:00-04:00"), examenes.get(2).getFecha());
+
+      //Rango de fechas: [12:00Z, 14:00Z].
+      List<Examen> rango = dao.queryBuilder().where().between("fecha",
+              ZonedDateTimeMillisType.desde(Instant.parse("2020-07-01T12:00:00Z")),
+              ZonedDateTimeMillisType.hasta(Instant.parse("2020-07-01T14:00:00Z"))).query();
+      Assertions.assertEquals(2, rango.size());
+
+      //Los ids siguen despues de los migrados.
+      Examen nuevo = new Examen("Cardiologia", ZonedDateTime.now(), examenes.get(0).getControl());
+      dao.create(nuevo);
+      Assertions.assertEquals(6L, nuevo.getId());
+
+      //Control antiguo con el indice de proximoControl ya creado.
+      dao.executeRawNoArgs("CREATE TABLE `Control` (`id` INTEGER PRIMARY KEY AUTOINCREMENT, "
+              + "`fecha` VARCHAR(64) NOT NULL, `proximoControl` VARCHAR(64), `temperatura` FLOAT NOT NULL, "
+              + "`peso` FLOAT NOT NULL, `altura` FLOAT NOT NULL, `diagnostico` VARCHAR NOT NULL, "
+              + "`veterinario_id` BIGINT NOT NULL, `ficha_id` BIGINT NOT NULL)");
+      dao.executeRaw("INSERT INTO `Control` VALUES (1, '2020-06-30T09:00:00-04:00', "
+              + "'2020-07-30T09:00:00-04:00', 38.5, 4.2, 0.3, 'Sano', 1, 1)");
+      dao.executeRaw("INSERT INTO `Control` VALUES (3, '2020-07-01T08:00:00Z', NULL, 39.1, 4.0, 0.3, "
+              + "'Fiebre', 1, 1)");
+      TableUtils.createTableIfNotExists(connectionSource, Control.class);
+
+      //Ficha antigua.
+      dao.executeRawNoArgs("CREATE TABLE `Ficha` (`id` INTEGER PRIMARY KEY AUTOINCREMENT, "
+              + "`numero` BIGINT NOT NULL UNIQUE, `nombre` VARCHAR NOT NULL, `especie` VARCHAR NOT NULL, "
+              + "`fechaNacimiento` VARCHAR(64) NOT NULL, `raza` VARCHAR, `sexo` VARCHAR NOT NULL, "
+              + "`color` VARCHAR NOT NULL, `tipo` VARCHAR NOT NULL, `duenio_id` BIGINT NOT NULL)");
+      dao.executeRaw("INSERT INTO `Ficha` VALUES (1, 23, 'Harry', 'Felino', "
+              + "'2018-03-15T00:00:00-03:00', 'American shorthair', 'MACHO', 'Amarillo', 'EXTERNO', 1)");
+
+      Assertions.assertEquals(3, ZonedDateTimeMigration.migrate(connectionSource, Control.class,
+              Examen.class, Ficha.class));
+      Assertions.assertEquals(0, ZonedDateTimeMigration.migrate(connectionSource, Control.class,
+              Examen.class, Ficha.class));
+
+      Dao<Control, Long> daoControl = DaoManager.createDao(connectionSource, Control.class);
+      Assertions.assertEquals(2, daoControl.queryRawValue("SELECT COUNT(*) FROM `Control` "
+              + "WHERE typeof(`fecha`) = 'integer'"));
+      Control control = daoControl.queryForId(1L);
+      Assertions.assertEquals(ZonedDateTime.parse("2020-06-30T09:00:00-04:00"), control.getFecha());
+      Assertions.assertEquals(ZonedDateTime.parse("2020-07-30T09:00:00-04:00"),
+              control.getProximoControl());
+      Assertions.assertNull(daoControl.queryForId(3L).getProximoControl());
+
+      Dao<Ficha, Long> daoFicha = DaoManager.createDao(connectionSource, Ficha.class);
+      Ficha ficha = daoFicha.queryForId(1L);
+      Assertions.assertEquals(ZonedDateTime.parse("2018-03-15T00:00:00-03:00"),
+              ficha.getFechaNacimiento());
+      Assertions.assertEquals(1, daoFicha.queryRawValue("SELECT COUNT(*) FROM pragma_table_info('Ficha') "
+              + "WHERE name = 'fechaNacimiento' AND type = 'BIGINT'"));
+
+      //Todas las columnas de fechas quedan con su indice para las consultas por rango.
+      for (String indice : Arrays.asList("Control_fecha_idx", "Control_proximoControl_idx",
+              "Examen_fecha_idx", "Ficha_fechaNacimiento_idx")) {
+        Assertions.assertEquals(1, dao.queryRawValue("SELECT COUNT(*) FROM sqlite_master "
+                + "WHERE type = 'index' AND name = ?", indice), indice);
+      }
+    }
+  }
+
+  /**
+   * Test de {@link RutMigration}: ruts no canonicos de versiones anteriores, con repetidos.
+   */
+  @Test
+  public void testRutMigration() throws Exception {
+
+    //Cuerpos de rut con digito verificador K.
+    long[] cuerpos = new long[3];
+    for (long cuerpo = 10_000_000, n = 0; n < cuerpos.length; cuerpo++) {
+      if (Validation.digitoVerificador(cuerpo) == 'K') {
+        cuerpos[(int) n++] = cuerpo;
+      }
+    }
+    String canonico = "19146869" + Validation.digitoVerificador(19146869);
+
+    File file = File.createTempFile("fivet", ".db");
+    file.deleteOnExit();
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:sqlite:" + file.getAbsolutePath())) {
+
+      TableUtils.createTable(connectionSource, Persona.class);
+      TableUtils.createTable(connectionSource, Ficha.class);
+      TableUtils.createTable(connectionSource, Control.class);
+
+      Dao<Persona, Long> dao = DaoManager.createDao(connectionSource, Persona.class);
+      String insert = "INSERT INTO `Persona` (`nombre`, `apellido`, `rut`, `direccion`, "
+              + "`telefonoFijo`, `telefonoMovil`, `email`) VALUES ('Brenda', 'Lopez', ?, "
+              + "'Fake 653', 55218877, 963293074, 'blopez@hotmail.com')";
+      //1 y 2: la misma persona (k y K), 3: con cero a la izquierda, 4 y 5: sin la canonica.
+      for (String rut : Arrays.asList(cuerpos[0] + "k", cuerpos[0] + "K", "0" + canonico,
+              "0" + cuerpos[1] + "k", cuerpos[1] + "k")) {
+        dao.executeRaw(insert, rut);
+      }
+      //6 y 7: el mismo rut con otro email, no se unen sin MERGE_PROPERTY.
+      dao.executeRaw(insert, cuerpos[2] + "k");
+      dao.executeRaw(insert.replace("blopez@hotmail.com", "brenda@gmail.com"), cuerpos[2] + "K");
+
+      Dao<Ficha, Long> daoFicha = DaoManager.createDao(connectionSource, Ficha.class);
+      Dao<Control, Long> daoControl = DaoManager.createDao(connectionSource, Control.class);
+      Persona duenio = dao.queryForId(1L);
+      Ficha ficha = new Ficha(1L, "Harry", "Felino", ZonedDateTime.now(), "American shorthair",
+              Sexo.MACHO, "Amarillo", Tipo.EXTERNO, duenio);
+      daoFicha.create(ficha);
+      daoControl.create(new Control(ZonedDateTime.now(),
+              null, 38.5f, 4.2f, 0.3f, "Sano", dao.queryForId(5L), ficha));
+
+      //Borra 1 y 5, actualiza 3 y 4, deja 6 y 7.
+      Assertions.assertEquals(4, RutMigration.migrate(connectionSource, false, Ficha.class,
+              Control.class));
+      Assertions.assertEquals(0, RutMigration.migrate(connectionSource, false, Ficha.class,
+              Control.class));
+
+      Assertions.assertEquals(5, dao.countOf());
+      Assertions.assertEquals(cuerpos[2] + "k", dao.queryForId(6L).getRut());
+      Assertions.assertNull(dao.queryForId(1L));
+      Assertions.assertEquals(cuerpos[0] + "K", dao.queryForId(2L).getRut());
+      Assertions.assertEquals(canonico, dao.queryForId(3L).getRut());
+      Assertions.assertEquals(cuerpos[1] + "K", dao.queryForId(4L).getRut());
+
+      //Las referencias apuntan a la persona conservada.
+      Assertions.assertEquals(2L,
+              daoFicha.queryForId(ficha.getId()).getDuenio().getId().longValue());
+      Assertions.assertEquals(4L,
+              daoControl.queryForAll().get(0).getVeterinario().getId().longValue());
+
+      //Con MERGE_PROPERTY se unen, aunque se pierda el email de 6.
+      Assertions.assertEquals(1, RutMigration.migrate(connectionSource, true, Ficha.class,
+              Control.class));
+      Assertions.assertEquals(4, dao.countOf());
+      Assertions.assertNull(dao.queryForId(6L));
+      Assertions.assertEquals("brenda@gmail.com", dao.queryForId(7L).getEmail());
+
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+    }
+  }
+
+  /**
+   * Test del parser / formatter de {@link ZonedDateTimeType}: mismo resultado que el
+   * {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}.
+   */
+  @Test
+  public void testZonedDateTimeType() {
+
+    DateTimeFormatter formatter = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+    Random random = new Random(7);
+    int[] nanos = {0, 1, 100_000_000, 123_000_000, 123_456_000, 999_999_999};
+
+    for (int i = 0; i < 20_000; i++) {
+      int offset = (random.nextInt(145) - 72) * 900;
+      if (i % 10 == 0) {
+        //Offsets con segundos (LMT) y minutos sueltos.
+        offset = random.nextInt(2 * 64800) - 64800;
+      }
+      int year = i % 100 == 0 ? random.nextInt(20000) - 5000 : 1900 + random.nextInt(200);
+      ZonedDateTime fecha = ZonedDateTime.of(LocalDateTime.of(year, 1 + random.nextInt(12),
+              1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60),
+              i % 3 == 0 ? nanos[random.nextInt(nanos.length)] : random.nextInt(1_000_000_000)),
+              ZoneOffset.ofTotalSeconds(offset));
+
+      String iso = formatter.format(fecha);
+      Assertions.assertEquals(iso, ZonedDateTimeType.format(fecha));
+      Assertions.assertEquals(ZonedDateTime.parse(iso, formatter), ZonedDateTimeType.parse(iso));
+    }
+
+    //Zona con region: se escribe solo el offset.
+    ZonedDateTime santiago = ZonedDateTime.of(2020, 7, 1, 10, 0, 0, 0, ZoneId.of("America/Santiago"));
+    Assertions.assertEquals(formatter.format(santiago), ZonedDateTimeType.format(santiago));
+
+    //Variantes que acepta el formatter.
+    for (String iso : Arrays.asList("2020-07-01T10:15Z", "2020-07-01t10:15:30z", "2020-07-01T10:15:30.5-04:00",
+            "2020-07-01T10:15:30-00:00", "2020-07-01T10:15:30+05:30:15", "+12020-07-01T10:15:30Z")) {
+      Assertions.assertEquals(ZonedDateTime.parse(iso, formatter), ZonedDateTimeType.parse(iso), iso);
+    }
+
+    //Invalidas: misma excepcion que el formatter.
+    for (String iso : Arrays.asList("2020-02-30T10:15:30Z", "2020-07-01T24:00:00Z", "2020-07-01T10:15:30",
+            "2020-07-01T10:15:30+19:00", "2020-07-01T10:15:30.1234567890Z", "2020-07-01T10:15:Z", "")) {
+      Assertions.assertThrows(DateTimeParseException.class, () -> ZonedDateTimeType.parse(iso), iso);
+    }
+  }
+
+  /**
+   * Test del cache LRU de personas por id y por rut.
+   */
+  @Test
+  public void testCachedRepository() throws Exception {
+
+    QueryCounter.install();
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:fivet_cache")) {
+
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+      CachedRepository<Persona, Long> cache = new CachedRepository<>(
+              new RepositoryOrmLite<>(connectionSource, Persona.class), 2, Persona::getId, "rut",
+              Persona::getRut);
+
+      List<Persona> personas = Arrays.asList(
+              new Persona("Brenda", "Lopez", "191468694", "Fake 653", 55218877, 963293074, "blopez@hotmail.com"),
+              new Persona("Mauricio", "Fuentes", "206806052", "Fake 1321", 55225656, 987654321, "mfuentes@gmail.com"),
+              new Persona("Gerald", "Lopez", "130142095", "Falsa 123", 55221234, 912345678, "gerald.lopez@gmail.com"));
+      cache.createAll(personas);
+
+      //Miss y luego hit, sin consultas.
+      Persona brenda = cache.findById(personas.get(0).getId());
+      QueryCounter.reset();
+      Assertions.assertSame(brenda, cache.findById(brenda.getId()));
+      Assertions.assertSame(brenda, cache.findAll("rut", "191468694").get(0));
+      Assertions.assertEquals(0, QueryCounter.get());
+      Assertions.assertEquals(2, cache.getHitCount());
+      Assertions.assertEquals(1, cache.getMissCount());
+
+      //Rut no cacheado: una consulta, despues desde el cache.
+      Persona mauricio = cache.findAll("rut", "206806052").get(0);
+      Assertions.assertSame(mauricio, cache.findById(mauricio.getId()));
+      Assertions.assertEquals(0, cache.findAll("rut", "165983211").size());
+
+      //LRU: brenda fue la menos usada y sale al entrar gerald.
+      cache.findById(personas.get(2).getId());
+      Assertions.assertEquals(2, cache.size());
+      Assertions.assertEquals(1, cache.getEvictionCount());
+      QueryCounter.reset();
+      Assertions.assertNotSame(brenda, cache.findAll("rut", "191468694").get(0));
+      Assertions.assertEquals(1, QueryCounter.get());
+
+      //Update y delete invalidan.
+      Persona gerald = cache.findById(personas.get(2).getId());
+      Assertions.assertTrue(cache.update(gerald));
+      Assertions.assertNotSame(gerald, cache.findById(gerald.getId()));
+      Assertions.assertTrue(cache.delete(gerald.getId()));
+      Assertions.assertNull(cache.findById(gerald.getId()));
+      Assertions.assertEquals(0, cache.findAll("rut", "130142095").size());
+
+      //Lote: los que estan en cache no se consultan.
+      Assertions.assertEquals(2, cache.findByIds(Arrays.asList(personas.get(0).getId(),
+              personas.get(1).getId())).size());
+      log.debug("Cache: {}", cache);
+      Assertions.assertTrue(cache.getHitRatio() > 0);
+    }
+  }
+
+  /**
+   * Test de la {@link WriteQueue}: una escritura que lanza un Error no detiene al hilo escritor.
+   */
+  @Test
+  public void testWriteQueueError() throws Exception {
+
+    try (ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:fivet_queue");
+         WriteQueue writeQueue = new WriteQueue(connectionSource, WriteQueue.DEFAULT_MAX_BATCH)) {
+
+      TableUtils.createTableIfNotExists(connectionSource, Persona.class);
+      Repository<Persona, Long> theRepo = new RepositoryOrmLite<>(connectionSource, Persona.class);
+
+      //Sola y dentro de un grupo: falla solo esa escritura.
+      CompletableFuture<Boolean> error = writeQueue.submit(() -> {
+        throw new AssertionError("Error en la escritura");
+      });
+      CompletableFuture<Boolean> ok = writeQueue.submit(() -> theRepo.create(new Persona("Gerald",
+              "Lopez", "152532873", "Falsa 123", 55221234, 912345678, "gerald.lopez@gmail.com")));
+
+      ExecutionException ex = Assertions.assertThrows(ExecutionException.class,
+          () -> error.get(5, TimeUnit.SECONDS));
+      Assertions.assertTrue(ex.getCause() instanceof AssertionError);
+      Assertions.assertTrue(ok.get(5, TimeUnit.SECONDS));
+
+      //El escritor sigue atendiendo.
+      Assertions.assertEquals(1, writeQueue.execute(() -> theRepo.findAll().size()).intValue());
+    }
+  }
+
 }
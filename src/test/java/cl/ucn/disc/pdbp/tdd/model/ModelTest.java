@@ -25,6 +25,9 @@
 package cl.ucn.disc.pdbp.tdd.model;
 
 import cl.ucn.disc.pdbp.tdd.utils.Validation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -133,6 +136,79 @@ public final class ModelTest {
         Assertions.assertFalse(Validation.isRutValid("15253287K"));
         Assertions.assertFalse(Validation.isRutValid("15253287-"));
 
+        // Con puntos y guion.
+        Assertions.assertTrue(Validation.isRutValid("15253287-3"));
+        Assertions.assertTrue(Validation.isRutValid("15.253.287-3"));
+        Assertions.assertTrue(Validation.isRutValid("21.195.194-k"));
+        Assertions.assertFalse(Validation.isRutValid("15.253.287-4"));
+        Assertions.assertFalse(Validation.isRutValid("1525.3287-3"));
+        Assertions.assertFalse(Validation.isRutValid(".253.287-3"));
+        Assertions.assertFalse(Validation.isRutValid("15.253.287--3"));
+        Assertions.assertFalse(Validation.isRutValid("-3"));
+        Assertions.assertFalse(Validation.isRutValid("0-0"));
+
+        // Cuerpos fuera del rango de un int.
+        Assertions.assertTrue(Validation.isRutValid("1234567890123-K"));
+        Assertions.assertEquals(1234567890123L, Validation.rutCuerpo("1.234.567.890.123-K"));
+        Assertions.assertFalse(Validation.isRutValid("1234567890123456789-0"));
+
+        // Forma canonica.
+        Assertions.assertEquals("152532873", Validation.normalizeRut("15.253.287-3"));
+        Assertions.assertEquals("21195194K", Validation.normalizeRut("21195194-k"));
+        Assertions.assertEquals("152532873", Validation.normalizeRut("0152532873"));
+        String canonico = "152532873";
+        Assertions.assertSame(canonico, Validation.normalizeRut(canonico));
+        Assertions.assertNull(Validation.normalizeRut("15.253.287-4"));
+
+    }
+
+    /**
+     * Test de los validadores de persona (telefonos, email, nombre) y la validacion en lote.
+     */
+    @Test
+    public void testValidacionPersona() {
+
+        Assertions.assertTrue(Validation.isTelefonoFijoValid(55221234));
+        Assertions.assertFalse(Validation.isTelefonoFijoValid(5522123));
+        Assertions.assertFalse(Validation.isTelefonoFijoValid(-5522123));
+        Assertions.assertTrue(Validation.isTelefonoMovilValid(912345678));
+        Assertions.assertFalse(Validation.isTelefonoMovilValid(812345678));
+        Assertions.assertFalse(Validation.isTelefonoMovilValid(91234567));
+
+        Assertions.assertTrue(Validation.isEmailValid("andrea.contreras@gmail.com"));
+        Assertions.assertTrue(Validation.isEmailValid("a_b-1@alumnos.ucn.cl"));
+        Assertions.assertFalse(Validation.isEmailValid(null));
+        Assertions.assertFalse(Validation.isEmailValid("andrea@gmail"));
+        Assertions.assertFalse(Validation.isEmailValid("andrea@gmail.c"));
+        Assertions.assertFalse(Validation.isEmailValid("andrea@gmail.comes"));
+        Assertions.assertFalse(Validation.isEmailValid("andrea@@gmail.com"));
+        Assertions.assertFalse(Validation.isEmailValid(".andrea@gmail.com"));
+        Assertions.assertFalse(Validation.isEmailValid("andrea@gmail..com"));
+        Assertions.assertFalse(Validation.isEmailValid("Andrea@gmail.com"));
+
+        Assertions.assertTrue(Validation.isNombreValid("Al", Validation.NOMBRE_MIN));
+        Assertions.assertFalse(Validation.isNombreValid("Al", Validation.APELLIDO_MIN));
+        Assertions.assertFalse(Validation.isNombreValid(null, Validation.NOMBRE_MIN));
+
+        List<String[]> filas = new ArrayList<>();
+        filas.add(new String[] {"Andrea", "Contreras", "152532873", "Falsa 123", "55221234",
+                "912345678", "andrea.contreras@gmail.com"});
+        filas.add(new String[] {"Andrea", "Contreras", "152532873", "Falsa 123", "55221234",
+                "812345678", "andrea.contreras@gmail.com"});
+        filas.add(new String[] {"Andrea", "Contreras", "15253287K", "Falsa 123", "55221234",
+                "912345678", "andrea.contreras@gmail.com"});
+        filas.add(new String[] {"Andrea"});
+        Map<Integer, String> errores = Validation.validarPersonas(filas);
+        Assertions.assertEquals(3, errores.size());
+        Assertions.assertNull(errores.get(0));
+        Assertions.assertEquals("Telefono movil invalido", errores.get(1));
+        Assertions.assertEquals("Rut invalido", errores.get(2));
+        Assertions.assertEquals("Fila invalida", errores.get(3));
+
+        // Los mismos errores que el constructor.
+        RuntimeException ex = Assertions.assertThrows(RuntimeException.class, () -> new Persona(
+                "Andrea", "Contreras", "152532873", "Falsa 123", 55221234, 912345678, "andrea@gmail"));
+        Assertions.assertEquals("Email invalido", ex.getMessage());
     }
 
     /**